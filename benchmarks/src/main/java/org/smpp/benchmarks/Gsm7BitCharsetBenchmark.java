@@ -0,0 +1,83 @@
+package org.smpp.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smpp.charset.Gsm7BitCharsetProvider;
+
+/**
+ * Encoding and decoding of a full 160 character GSM message with
+ * the table driven <code>Gsm7BitCharset</code> and with the former
+ * implementation based on hash maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Gsm7BitCharsetBenchmark {
+	private static final String TEXT =
+		"Your code is 482913. Valid for 10 minutes; don't share it! "
+			+ "Price: 5€ [incl. VAT] - reply STOP to opt out {ref: aébñ}. "
+			+ "Thanks for using our service @ home.";
+
+	@Param({ "table", "hashmap" })
+	public String implementation;
+
+	private CharsetEncoder encoder;
+	private CharsetDecoder decoder;
+	private CharBuffer chars;
+	private ByteBuffer bytes;
+	private ByteBuffer encoded;
+	private CharBuffer decoded;
+
+	@Setup
+	public void setup() {
+		Charset charset;
+		if ("table".equals(implementation)) {
+			charset = new Gsm7BitCharsetProvider().charsetForName("X-Gsm7Bit");
+		} else {
+			charset = new HashMapGsm7BitCharset("X-Gsm7Bit", null);
+		}
+		encoder = charset.newEncoder();
+		decoder = charset.newDecoder();
+		chars = CharBuffer.wrap(TEXT.toCharArray());
+		bytes = ByteBuffer.allocate(2 * TEXT.length());
+		encoded = charset.encode(TEXT);
+		decoded = CharBuffer.allocate(TEXT.length());
+	}
+
+	@Benchmark
+	public ByteBuffer encode() {
+		chars.rewind();
+		bytes.clear();
+		encoder.reset();
+		encoder.encode(chars, bytes, true);
+		return bytes;
+	}
+
+	@Benchmark
+	public CharBuffer decode() {
+		encoded.rewind();
+		decoded.clear();
+		decoder.reset();
+		decoder.decode(encoded, decoded, true);
+		return decoded;
+	}
+}
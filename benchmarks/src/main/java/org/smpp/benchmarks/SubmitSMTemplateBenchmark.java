@@ -0,0 +1,85 @@
+package org.smpp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smpp.Data;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMTemplate;
+
+/**
+ * Producing the binary <code>submit_sm</code> of a bulk campaign message
+ * by building and encoding a <code>SubmitSM</code>, by patching
+ * a <code>SubmitSMTemplate</code> and by creating a <code>SubmitSM</code>
+ * from the template, as sent through a session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubmitSMTemplateBenchmark {
+	private static final String TEXT = "Dear customer, your parcel {} arrives tomorrow. Reply STOP to opt out.";
+
+	private SubmitSMTemplate template;
+	private byte[] buffer;
+	private int sequenceNumber = 0;
+	private long counter = 600000000L;
+
+	private static SubmitSM prototype(String text) throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setServiceType("CMT");
+		submit.setSourceAddr((byte) 5, (byte) 0, "Courier");
+		submit.setDestAddr((byte) 1, (byte) 1, "0");
+		submit.setValidityPeriod("000001000000000R");
+		submit.setRegisteredDelivery((byte) 1);
+		submit.setShortMessage(text, Data.ENC_ASCII);
+		return submit;
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		template = new SubmitSMTemplate(prototype(TEXT), "{}", Data.ENC_ASCII);
+		buffer = new byte[512];
+	}
+
+	private String nextDestination() {
+		return "420" + counter++;
+	}
+
+	@Benchmark
+	public byte[] objects() throws Exception {
+		String destination = nextDestination();
+		SubmitSM submit = prototype(TEXT.replace("{}", destination.substring(6)));
+		submit.setDestAddr((byte) 1, (byte) 1, destination);
+		submit.setSequenceNumber(++sequenceNumber);
+		submit.encode(buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] template() throws Exception {
+		String destination = nextDestination();
+		template.encode(buffer, 0, ++sequenceNumber, destination, template.encodeValue(destination.substring(6)));
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] templateSubmitSM() throws Exception {
+		String destination = nextDestination();
+		SubmitSM submit = template.createSubmitSM(destination, template.encodeValue(destination.substring(6)));
+		submit.setSequenceNumber(++sequenceNumber);
+		submit.encode(buffer, 0);
+		return buffer;
+	}
+}
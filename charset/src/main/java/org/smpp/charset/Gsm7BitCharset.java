@@ -8,8 +8,6 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.util.HashMap;
 
-import java.util.logging.Logger;
-
 /**
  * A Charset implementation for Gsm 7-bit default and extended character set
  * See GSM 03.38
@@ -19,14 +17,41 @@ import java.util.logging.Logger;
  */
 public class Gsm7BitCharset extends Charset {
 
-	private boolean debug = false;
-	
-	// HashMap's used for encoding and decoding
+	// HashMap's with the alphabets, kept for compatibility,
+	// the encoder and decoder use the tables below
 	protected static HashMap<String, Byte> defaultEncodeMap = new HashMap<String, Byte>();
 	protected static HashMap<Byte, String> defaultDecodeMap = new HashMap<Byte, String>();
 	protected static HashMap<String, Byte> extEncodeMap = new HashMap<String, Byte>();
 	protected static HashMap<Byte, String> extDecodeMap = new HashMap<Byte, String>();
 	
+	// Escape to the extension table
+	static final byte ESCAPE = 0x1b;
+
+	// Replacement of the characters which can't be encoded or decoded
+	static final byte REPLACEMENT_CODE = 0x3f;
+	static final char REPLACEMENT_CHAR = '?';
+
+	/**
+	 * Returned by <code>encodeChar</code> for characters which are
+	 * in the extension table, the low byte is the code following
+	 * the escape.
+	 */
+	static final int EXTENDED = 0x100;
+
+	/** Returned by <code>encodeChar</code> for unknown characters. */
+	static final int NO_CODE = -1;
+
+	// All the characters of the default alphabet are below this value,
+	// higher characters are looked up in highChars
+	private static final int ENCODE_TABLE_SIZE = 0x400;
+
+	// Tables used for encoding and decoding, indexed by the char or the code
+	private static final short[] encodeTable = new short[ENCODE_TABLE_SIZE];
+	private static char[] highChars = new char[0];
+	private static short[] highCodes = new short[0];
+	private static final char[] defaultDecodeTable = new char[128];
+	private static final char[] extDecodeTable = new char[128];
+
 	// Data to populate the hashmaps with
 	private static final Object[][] gsmCharacters = { 
 		{ "@",      new Byte((byte) 0x00) },
@@ -173,16 +198,21 @@ public class Gsm7BitCharset extends Charset {
 		{ "€",  new Byte((byte) 0x65) }
 	};
 
-	private static Logger logger = Logger.getLogger(Gsm7BitCharset.class.getName());
-	
 	// static section that populates the encode and decode HashMap objects
+	// and tables
 	static {
+		java.util.Arrays.fill(encodeTable, (short) NO_CODE);
+
 		// default alphabet
 		int len = gsmCharacters.length;
 		for (int i = 0; i < len; i++) {
 			Object[] map = gsmCharacters[i];
 			defaultEncodeMap.put((String) map[0], (Byte) map[1]);
 			defaultDecodeMap.put((Byte) map[1], (String) map[0]);
+			char ch = ((String) map[0]).charAt(0);
+			byte code = ((Byte) map[1]).byteValue();
+			addEncoding(ch, code);
+			defaultDecodeTable[code] = ch;
 		}
 
 		// extended alphabet
@@ -191,7 +221,76 @@ public class Gsm7BitCharset extends Charset {
 			Object[] map = gsmExtensionCharacters[i];
 			extEncodeMap.put((String) map[0], (Byte) map[1]);
 			extDecodeMap.put((Byte) map[1], (String) map[0]);
+			char ch = ((String) map[0]).charAt(0);
+			byte code = ((Byte) map[1]).byteValue();
+			// the default alphabet takes precedence when encoding
+			if (encodeChar(ch) == NO_CODE) {
+				addEncoding(ch, EXTENDED | code);
+			}
+			extDecodeTable[code] = ch;
+		}
+	}
+
+	private static void addEncoding(char ch, int code) {
+		if (ch < ENCODE_TABLE_SIZE) {
+			encodeTable[ch] = (short) code;
+		} else {
+			int len = highChars.length;
+			char[] chars = new char[len + 1];
+			short[] codes = new short[len + 1];
+			System.arraycopy(highChars, 0, chars, 0, len);
+			System.arraycopy(highCodes, 0, codes, 0, len);
+			chars[len] = ch;
+			codes[len] = (short) code;
+			highChars = chars;
+			highCodes = codes;
+		}
+	}
+
+	/**
+	 * Returns the code of the character in the default alphabet,
+	 * the code in the extension table or'ed with <code>EXTENDED</code>
+	 * or <code>NO_CODE</code> if the character can't be encoded.
+	 */
+	static int encodeChar(char ch) {
+		if (ch < ENCODE_TABLE_SIZE) {
+			return encodeTable[ch];
+		}
+		char[] chars = highChars;
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] == ch) {
+				return highCodes[i];
+			}
 		}
+		return NO_CODE;
+	}
+
+	/**
+	 * Returns the number of septets the character takes in the GSM 7-bit
+	 * alphabet: 1 for the default alphabet, 2 for the extension table
+	 * (escape and the code) and 0 if the character can't be encoded.
+	 */
+	public static int getSeptetCount(char ch) {
+		int code = encodeChar(ch);
+		return code == NO_CODE ? 0 : (code < EXTENDED ? 1 : 2);
+	}
+
+	/**
+	 * Returns the character with the code in the default alphabet,
+	 * <code>REPLACEMENT_CHAR</code> for codes above 127. The escape
+	 * code is returned as the escape character.
+	 */
+	static char decodeChar(byte code) {
+		return code < 0 ? REPLACEMENT_CHAR : defaultDecodeTable[code];
+	}
+
+	/**
+	 * Returns the character with the code in the extension table,
+	 * <code>REPLACEMENT_CHAR</code> if there is no such character.
+	 */
+	static char decodeExtendedChar(byte code) {
+		char ch = code < 0 ? 0 : extDecodeTable[code];
+		return ch == 0 ? REPLACEMENT_CHAR : ch;
 	}
 
 	/**
@@ -233,10 +332,9 @@ public class Gsm7BitCharset extends Charset {
 
 	/**
 	 * The encoder implementation for the Gsm7Bit Charset.
-	 * This class, and the matching decoder class below, should also
-	 * override the "impl" methods, such as implOnMalformedInput() and
-	 * make passthrough calls to the baseEncoder object.  That is left
-	 * as an exercise for the hacker.
+	 * Characters are looked up in the tables, buffers backed by arrays
+	 * are accessed directly; nothing is allocated per character.
+	 * Characters which can't be encoded are replaced by '?'.
 	 */
 	private class Gsm7BitEncoder extends CharsetEncoder {
 
@@ -253,45 +351,63 @@ public class Gsm7BitCharset extends Charset {
 		 * Implementation of the encoding loop.
 		 */
 		protected CoderResult encodeLoop(CharBuffer cb, ByteBuffer bb) {
-			CoderResult cr = CoderResult.UNDERFLOW;
-
+			if (cb.hasArray() && bb.hasArray()) {
+				return encodeArrayLoop(cb, bb);
+			}
 			while (cb.hasRemaining()) {
 				if (!bb.hasRemaining()) {
+					return CoderResult.OVERFLOW;
+				}
+				int code = encodeChar(cb.get());
+				if (code == NO_CODE) {
+					bb.put(REPLACEMENT_CODE);
+				} else if (code < EXTENDED) {
+					bb.put((byte) code);
+				} else {
+					// since the extended character set takes two bytes
+					// we have to check that there is enough space left
+					if (bb.remaining() < 2) {
+						// go back one step
+						cb.position(cb.position() - 1);
+						return CoderResult.OVERFLOW;
+					}
+					bb.put(ESCAPE);
+					bb.put((byte) code);
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
+
+		private CoderResult encodeArrayLoop(CharBuffer cb, ByteBuffer bb) {
+			char[] src = cb.array();
+			int sp = cb.arrayOffset() + cb.position();
+			int sl = cb.arrayOffset() + cb.limit();
+			byte[] dst = bb.array();
+			int dp = bb.arrayOffset() + bb.position();
+			int dl = bb.arrayOffset() + bb.limit();
+			CoderResult cr = CoderResult.UNDERFLOW;
+			while (sp < sl) {
+				if (dp >= dl) {
 					cr = CoderResult.OVERFLOW;
 					break;
 				}
-				char ch = cb.get();
-
-				// first check the default alphabet
-				Byte b = (Byte) defaultEncodeMap.get("" + ch);
-				if(debug)
-					logger.finest("Encoding ch " + ch + " to byte " + b);
-				if (b != null) {
-					bb.put((byte) b.byteValue());
+				int code = encodeChar(src[sp]);
+				if (code == NO_CODE) {
+					dst[dp++] = REPLACEMENT_CODE;
+				} else if (code < EXTENDED) {
+					dst[dp++] = (byte) code;
 				} else {
-					// check extended alphabet
-					b = (Byte) extEncodeMap.get("" + ch);
-					if(debug)
-						logger.finest("Trying extended map to encode ch " + ch + " to byte " + b);
-					if (b != null) {
-						// since the extended character set takes two bytes 
-						// we have to check that there is enough space left
-						if (bb.remaining() < 2) {
-							// go back one step
-							cb.position(cb.position() - 1);
-							cr = CoderResult.OVERFLOW;
-							break;
-						}
-						// all ok, add it to the buffer
-						bb.put((byte) 0x1b);
-						bb.put((byte) b.byteValue());
-					} else {
-						// no match found, send a ?
-						b = new Byte((byte) 0x3F);
-						bb.put((byte) b.byteValue());
+					if (dl - dp < 2) {
+						cr = CoderResult.OVERFLOW;
+						break;
 					}
+					dst[dp++] = ESCAPE;
+					dst[dp++] = (byte) code;
 				}
+				sp++;
 			}
+			cb.position(sp - cb.arrayOffset());
+			bb.position(dp - bb.arrayOffset());
 			return cr;
 		}
 	}
@@ -300,6 +416,8 @@ public class Gsm7BitCharset extends Charset {
 
 	/**
 	 * The decoder implementation for the Gsm 7Bit Charset.
+	 * Codes which don't represent any character are decoded as '?',
+	 * an escape at the end of the input is ignored.
 	 */
 	private class Gsm7BitDecoder extends CharsetDecoder {
 
@@ -316,46 +434,46 @@ public class Gsm7BitCharset extends Charset {
 		 * Implementation of the decoding loop.
 		 */
 		protected CoderResult decodeLoop(ByteBuffer bb, CharBuffer cb) {
-			CoderResult cr = CoderResult.UNDERFLOW;
-
+			if (bb.hasArray() && cb.hasArray()) {
+				return decodeArrayLoop(bb, cb);
+			}
 			while (bb.hasRemaining()) {
 				if (!cb.hasRemaining()) {
-					cr = CoderResult.OVERFLOW;
-					break;
+					return CoderResult.OVERFLOW;
 				}
 				byte b = bb.get();
+				if (b != ESCAPE) {
+					cb.put(decodeChar(b));
+				} else if (bb.hasRemaining()) {
+					// check the extended alphabet
+					cb.put(decodeExtendedChar(bb.get()));
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
 
-				// first check the default alphabet
-				if(debug)
-					logger.finest("Looking up byte " + b);
-				String s = (String) defaultDecodeMap.get(new Byte(b));
-				if (s != null) {
-					char ch = s.charAt(0);
-					if (ch != '\u001B') {
-						if(debug)
-							logger.finest("Found string " + s);
-						cb.put(ch);
-					} else {
-						if(debug)
-							logger.finest("Found escape character");
-						// check the extended alphabet
-						if (bb.hasRemaining()) {
-							b = bb.get();
-							s = (String) extDecodeMap.get(new Byte(b));
-							if (s != null) {
-								if(debug)
-									logger.finest("Found extended string " + s);
-								ch = s.charAt(0);
-								cb.put(ch);
-							} else {
-								cb.put('?');
-							}
-						}
-					}
-				} else {
-					cb.put('?');
+		private CoderResult decodeArrayLoop(ByteBuffer bb, CharBuffer cb) {
+			byte[] src = bb.array();
+			int sp = bb.arrayOffset() + bb.position();
+			int sl = bb.arrayOffset() + bb.limit();
+			char[] dst = cb.array();
+			int dp = cb.arrayOffset() + cb.position();
+			int dl = cb.arrayOffset() + cb.limit();
+			CoderResult cr = CoderResult.UNDERFLOW;
+			while (sp < sl) {
+				if (dp >= dl) {
+					cr = CoderResult.OVERFLOW;
+					break;
+				}
+				byte b = src[sp++];
+				if (b != ESCAPE) {
+					dst[dp++] = decodeChar(b);
+				} else if (sp < sl) {
+					dst[dp++] = decodeExtendedChar(src[sp++]);
 				}
 			}
+			bb.position(sp - bb.arrayOffset());
+			cb.position(dp - cb.arrayOffset());
 			return cr;
 		}
 	}
@@ -0,0 +1,376 @@
+package org.smpp.charset;
+
+/**
+ * Packing of GSM 7-bit default alphabet septets into octets as used
+ * in the short message user data, see GSM 03.38 (3GPP TS 23.038) 6.1.2.1.
+ * <p>
+ * The septets are packed from the least significant bit of the first
+ * octet; eight septets take seven octets. If the user data starts with
+ * a user data header, the septets start at a septet boundary counted
+ * from the start of the user data, so the first octet after the header
+ * has <code>getFillBits(udhLength)</code> zero fill bits.
+ * <p>
+ * When 7 bits are left unused in the last octet, a carriage return is
+ * added as padding so the receiver doesn't see an extra '@'; decoding
+ * of a complete user data removes such padding.
+ * <p>
+ * The methods work on arrays without creating intermediate
+ * <code>String</code>s or unpacked copies, the bits are moved
+ * 56 at a time in a <code>long</code>.
+ *
+ * @see Gsm7BitCharset
+ */
+public final class Gsm7BitPackedCodec {
+	/** The carriage return septet used for padding. */
+	public static final byte CR = 0x0d;
+
+	private Gsm7BitPackedCodec() {
+	}
+
+	/**
+	 * Returns the count of the fill bits needed after a user data header
+	 * so the septets start at a septet boundary.
+	 *
+	 * @param udhLength the length of the header in octets including the
+	 *                  user data header length octet
+	 */
+	public static int getFillBits(int udhLength) {
+		return (7 - (udhLength * 8) % 7) % 7;
+	}
+
+	/**
+	 * Returns the number of octets the packed septets take.
+	 *
+	 * @param septets  the count of the septets
+	 * @param fillBits the count of the fill bits before the first septet
+	 */
+	public static int getPackedLength(int septets, int fillBits) {
+		return septets == 0 ? 0 : (fillBits + septets * 7 + 7) >>> 3;
+	}
+
+	/**
+	 * Returns the number of complete septets in the packed octets.
+	 *
+	 * @param packedLength the count of the octets
+	 * @param fillBits     the count of the fill bits before the first septet
+	 */
+	public static int getSeptetCount(int packedLength, int fillBits) {
+		return packedLength == 0 ? 0 : (packedLength * 8 - fillBits) / 7;
+	}
+
+	/**
+	 * Packs the septets, one per byte, into the destination array.
+	 *
+	 * @param septets    the septets, the most significant bit is ignored
+	 * @param offset     the offset of the first septet
+	 * @param count      the count of the septets
+	 * @param dest       the array with at least <code>getPackedLength</code>
+	 *                   bytes available from <code>destOffset</code>
+	 * @param destOffset where to start writing
+	 * @param fillBits   the count of the zero bits before the first septet
+	 * @return the number of octets written
+	 */
+	public static int pack(byte[] septets, int offset, int count, byte[] dest, int destOffset, int fillBits) {
+		checkFillBits(fillBits);
+		if (count == 0) {
+			return 0;
+		}
+		int sp = offset;
+		int end = offset + count;
+		int dp = destOffset;
+		long acc = 0;
+		int bits = fillBits;
+		// eight septets make seven octets
+		while (end - sp >= 8) {
+			long chunk = (septets[sp] & 0x7fL)
+				| (septets[sp + 1] & 0x7fL) << 7
+				| (septets[sp + 2] & 0x7fL) << 14
+				| (septets[sp + 3] & 0x7fL) << 21
+				| (septets[sp + 4] & 0x7fL) << 28
+				| (septets[sp + 5] & 0x7fL) << 35
+				| (septets[sp + 6] & 0x7fL) << 42
+				| (septets[sp + 7] & 0x7fL) << 49;
+			acc |= chunk << bits;
+			write56(acc, dest, dp);
+			acc >>>= 56;
+			sp += 8;
+			dp += 7;
+		}
+		while (sp < end) {
+			acc |= (septets[sp++] & 0x7fL) << bits;
+			bits += 7;
+			if (bits >= 8) {
+				dest[dp++] = (byte) acc;
+				acc >>>= 8;
+				bits -= 8;
+			}
+		}
+		if (bits > 0) {
+			dest[dp++] = (byte) acc;
+		}
+		return dp - destOffset;
+	}
+
+	/**
+	 * Unpacks the septets to one byte per septet.
+	 *
+	 * @param src        the packed octets
+	 * @param offset     the offset of the first packed octet
+	 * @param septets    the count of the septets to unpack
+	 * @param fillBits   the count of the fill bits before the first septet
+	 * @param dest       the array for the septets
+	 * @param destOffset where to start writing
+	 */
+	public static void unpack(byte[] src, int offset, int septets, int fillBits, byte[] dest, int destOffset) {
+		checkFillBits(fillBits);
+		Reader reader = new Reader(src, offset, getPackedLength(septets, fillBits), fillBits);
+		for (int i = 0; i < septets; i++) {
+			dest[destOffset + i] = reader.next();
+		}
+	}
+
+	/**
+	 * Returns the count of the septets the text takes in the GSM 7-bit
+	 * alphabet, i.e. two for the characters of the extension table. Characters
+	 * which can't be encoded are counted as one as they are replaced by '?'.
+	 */
+	public static int getSeptetLength(CharSequence text) {
+		int septets = 0;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			septets += Gsm7BitCharset.encodeChar(text.charAt(i)) < Gsm7BitCharset.EXTENDED ? 1 : 2;
+		}
+		return septets;
+	}
+
+	/**
+	 * Returns the number of octets the text takes when packed.
+	 *
+	 * @param text     the text to be encoded
+	 * @param fillBits the count of the fill bits before the first septet
+	 * @see #encode(CharSequence,byte[],int,int)
+	 */
+	public static int getEncodedLength(CharSequence text, int fillBits) {
+		return getPackedLength(getSeptetLength(text), fillBits);
+	}
+
+	/**
+	 * Encodes the text to packed septets.
+	 *
+	 * @param text the text
+	 * @return the packed septets without fill bits
+	 */
+	public static byte[] encode(CharSequence text) {
+		byte[] data = new byte[getEncodedLength(text, 0)];
+		encode(text, data, 0, 0);
+		return data;
+	}
+
+	/**
+	 * Encodes the text directly to packed septets in the destination
+	 * array. Characters which can't be encoded are replaced by '?'.
+	 *
+	 * @param text       the text
+	 * @param dest       the array with at least <code>getEncodedLength</code>
+	 *                   bytes available from <code>destOffset</code>
+	 * @param destOffset where to start writing
+	 * @param fillBits   the count of the zero bits before the first septet
+	 * @return the number of octets written
+	 */
+	public static int encode(CharSequence text, byte[] dest, int destOffset, int fillBits) {
+		checkFillBits(fillBits);
+		int length = text.length();
+		if (length == 0) {
+			return 0;
+		}
+		int dp = destOffset;
+		long acc = 0;
+		int bits = fillBits;
+		int septets = 0;
+		for (int i = 0; i < length; i++) {
+			int code = Gsm7BitCharset.encodeChar(text.charAt(i));
+			int count = 1;
+			if (code == Gsm7BitCharset.NO_CODE) {
+				code = Gsm7BitCharset.REPLACEMENT_CODE;
+			} else if (code >= Gsm7BitCharset.EXTENDED) {
+				// escape first, then the code from the extension table
+				code = (code & 0x7f) << 7 | Gsm7BitCharset.ESCAPE;
+				count = 2;
+			}
+			for (; count > 0; count--) {
+				acc |= (long) (code & 0x7f) << bits;
+				code >>>= 7;
+				bits += 7;
+				septets++;
+				if (bits >= 56) {
+					write56(acc, dest, dp);
+					dp += 7;
+					acc >>>= 56;
+					bits -= 56;
+				}
+			}
+		}
+		if ((fillBits + septets * 7) % 8 == 1) {
+			// 7 bits left in the last octet, would be read as '@'
+			acc |= (long) CR << bits;
+			bits += 7;
+		}
+		while (bits > 0) {
+			dest[dp++] = (byte) acc;
+			acc >>>= 8;
+			bits -= 8;
+		}
+		return dp - destOffset;
+	}
+
+	/**
+	 * Decodes the packed septets to text.
+	 *
+	 * @param src      the packed octets
+	 * @param offset   the offset of the first packed octet
+	 * @param length   the count of the packed octets
+	 * @param fillBits the count of the fill bits before the first septet
+	 * @return the text
+	 */
+	public static String decode(byte[] src, int offset, int length, int fillBits) {
+		StringBuilder text = new StringBuilder(getSeptetCount(length, fillBits));
+		decode(src, offset, length, fillBits, text);
+		return text.toString();
+	}
+
+	/**
+	 * Decodes the packed septets and appends the text to the builder.
+	 * All the septets which fit into the octets are decoded, a carriage
+	 * return filling the last 7 bits is taken as padding and ignored.
+	 * As the count of the septets isn't known, a text which really ends
+	 * with a carriage return exactly at an octet boundary loses it.
+	 * Codes which don't represent any character are decoded as '?'.
+	 *
+	 * @param src      the packed octets
+	 * @param offset   the offset of the first packed octet
+	 * @param length   the count of the packed octets
+	 * @param fillBits the count of the fill bits before the first septet
+	 * @param text     where to append the text
+	 */
+	public static void decode(byte[] src, int offset, int length, int fillBits, StringBuilder text) {
+		checkFillBits(fillBits);
+		int septets = getSeptetCount(length, fillBits);
+		boolean padded = (length * 8 - fillBits) % 7 == 0;
+		Reader reader = new Reader(src, offset, length, fillBits);
+		boolean escape = false;
+		for (int i = 0; i < septets; i++) {
+			byte septet = reader.next();
+			if (escape) {
+				text.append(Gsm7BitCharset.decodeExtendedChar(septet));
+				escape = false;
+			} else if (septet == Gsm7BitCharset.ESCAPE) {
+				escape = true;
+			} else if ((septet != CR) || !padded || (i != septets - 1)) {
+				text.append(Gsm7BitCharset.decodeChar(septet));
+			}
+		}
+	}
+
+	/**
+	 * Encodes the user data header followed by the packed text starting
+	 * at the septet boundary.
+	 *
+	 * @param udh  the user data header including the header length octet,
+	 *             can be null
+	 * @param text the text
+	 * @return the user data
+	 */
+	public static byte[] encodeUserData(byte[] udh, CharSequence text) {
+		int udhLength = udh == null ? 0 : udh.length;
+		int fillBits = getFillBits(udhLength);
+		byte[] data = new byte[udhLength + getEncodedLength(text, fillBits)];
+		if (udhLength > 0) {
+			System.arraycopy(udh, 0, data, 0, udhLength);
+		}
+		encode(text, data, udhLength, fillBits);
+		return data;
+	}
+
+	/**
+	 * Decodes the text from the user data.
+	 *
+	 * @param userData the user data
+	 * @param offset   the offset of the user data
+	 * @param length   the length of the user data in octets
+	 * @param udhi     if the user data starts with a user data header,
+	 *                 i.e. the UDHI flag is set in the esm_class
+	 * @return the text
+	 */
+	public static String decodeUserData(byte[] userData, int offset, int length, boolean udhi) {
+		int udhLength = 0;
+		if (udhi && (length > 0)) {
+			udhLength = Math.min(length, (userData[offset] & 0xff) + 1);
+		}
+		return decode(userData, offset + udhLength, length - udhLength, getFillBits(udhLength));
+	}
+
+	private static void checkFillBits(int fillBits) {
+		if ((fillBits < 0) || (fillBits > 6)) {
+			throw new IllegalArgumentException("Fill bits must be 0 to 6: " + fillBits);
+		}
+	}
+
+	private static void write56(long bits, byte[] dest, int offset) {
+		dest[offset] = (byte) bits;
+		dest[offset + 1] = (byte) (bits >>> 8);
+		dest[offset + 2] = (byte) (bits >>> 16);
+		dest[offset + 3] = (byte) (bits >>> 24);
+		dest[offset + 4] = (byte) (bits >>> 32);
+		dest[offset + 5] = (byte) (bits >>> 40);
+		dest[offset + 6] = (byte) (bits >>> 48);
+	}
+
+	private static long read56(byte[] src, int offset) {
+		return (src[offset] & 0xffL)
+			| (src[offset + 1] & 0xffL) << 8
+			| (src[offset + 2] & 0xffL) << 16
+			| (src[offset + 3] & 0xffL) << 24
+			| (src[offset + 4] & 0xffL) << 32
+			| (src[offset + 5] & 0xffL) << 40
+			| (src[offset + 6] & 0xffL) << 48;
+	}
+
+	/**
+	 * Reads the septets from the packed octets, refills seven octets
+	 * at once while there are enough of them.
+	 */
+	private static class Reader {
+		private final byte[] src;
+		private int pos;
+		private final int end;
+		private long acc = 0;
+		private int bits = 0;
+
+		Reader(byte[] src, int offset, int length, int fillBits) {
+			this.src = src;
+			this.pos = offset;
+			this.end = offset + length;
+			if ((fillBits > 0) && (length > 0)) {
+				acc = (src[pos++] & 0xff) >>> fillBits;
+				bits = 8 - fillBits;
+			}
+		}
+
+		byte next() {
+			if (bits < 7) {
+				if (end - pos >= 7) {
+					acc |= read56(src, pos) << bits;
+					pos += 7;
+					bits += 56;
+				} else {
+					acc |= (src[pos++] & 0xffL) << bits;
+					bits += 8;
+				}
+			}
+			byte septet = (byte) (acc & 0x7f);
+			acc >>>= 7;
+			bits -= 7;
+			return septet;
+		}
+	}
+}
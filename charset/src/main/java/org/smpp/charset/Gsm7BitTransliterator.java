@@ -0,0 +1,268 @@
+package org.smpp.charset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces characters which aren't in the GSM 7-bit alphabet by similar
+ * characters of the default alphabet or the extension table.
+ * <p>
+ * A single typographic quote or accented letter out of GSM 03.38 forces
+ * the whole message into UCS2, which takes 70 instead of 160 characters
+ * per segment. The transliterator maps the common Unicode punctuation,
+ * e.g. curly quotes, dashes and special spaces, and the accented Latin
+ * letters onto their GSM equivalents; the characters which are in the GSM
+ * alphabet are never changed. The mappings used are chosen by the policy,
+ * more can be added by <code>addMapping</code>.
+ * <p>
+ * By default a text is transliterated only if the result can be encoded
+ * in the GSM alphabet completely; if it can't, the message has to be sent
+ * in UCS2 anyway and the text is kept intact.
+ * <p>
+ * The transliterator can be shared by threads once it's configured.
+ *
+ * @see Gsm7BitCharset
+ */
+public class Gsm7BitTransliterator {
+	/** Maps quotes, dashes, spaces, ellipsis etc. */
+	public static final int PUNCTUATION = 0x01;
+
+	/** Maps accented Latin letters and Greek capitals looking as Latin ones. */
+	public static final int LETTERS = 0x02;
+
+	/** Maps symbols as copyright, trade mark or multiplication sign. */
+	public static final int SYMBOLS = 0x04;
+
+	/** All the mappings. */
+	public static final int ALL = PUNCTUATION | LETTERS | SYMBOLS;
+
+	/**
+	 * Returned by <code>transliterate</code> if the text can't be encoded
+	 * in the GSM alphabet and partial transliteration isn't allowed.
+	 */
+	public static final int NOT_ENCODABLE = -1;
+
+	private static final String[][] punctuation = {
+		{ "‘’‚‛′`´", "'" },
+		{ "“”„‟″«»", "\"" },
+		{ "‹", "<" },
+		{ "›", ">" },
+		{ "‐‑‒–—―−", "-" },
+		{ "\u00a0\u2000\u2001\u2002\u2003\u2004\u2005\u2006\u2007\u2008\u2009\u200a\u202f\u205f\u3000\t", " " },
+		{ "\u00ad\u200b\u200c\u200d\u2060\ufeff", "" },
+		{ "…", "..." },
+		{ "•", "*" },
+		{ "¦", "|" }
+	};
+
+	private static final String[][] letters = {
+		{ "ÀÁÂÃĀĂĄΑ", "A" },
+		{ "áâãāăą", "a" },
+		{ "Β", "B" },
+		{ "ĆĈĊČ", "C" },
+		{ "ćĉċč", "c" },
+		{ "ÐĎĐ", "D" },
+		{ "ðďđ", "d" },
+		{ "ÈÊËĒĔĖĘĚΕ", "E" },
+		{ "êëēĕėęě", "e" },
+		{ "ĜĞĠĢ", "G" },
+		{ "ĝğġģ", "g" },
+		{ "ĤĦΗ", "H" },
+		{ "ĥħ", "h" },
+		{ "ÌÍÎÏĨĪĬĮİΙ", "I" },
+		{ "íîïĩīĭįı", "i" },
+		{ "Ĳ", "IJ" },
+		{ "ĳ", "ij" },
+		{ "Ĵ", "J" },
+		{ "ĵ", "j" },
+		{ "ĶΚ", "K" },
+		{ "ķĸ", "k" },
+		{ "ĹĻĽĿŁ", "L" },
+		{ "ĺļľŀł", "l" },
+		{ "Μ", "M" },
+		{ "ŃŅŇŊΝ", "N" },
+		{ "ńņňŋ", "n" },
+		{ "ŉ", "'n" },
+		{ "ÒÓÔÕŌŎŐΟ", "O" },
+		{ "óôõōŏő", "o" },
+		{ "Œ", "OE" },
+		{ "œ", "oe" },
+		{ "Ρ", "P" },
+		{ "ŔŖŘ", "R" },
+		{ "ŕŗř", "r" },
+		{ "ŚŜŞŠȘ", "S" },
+		{ "śŝşšșſ", "s" },
+		{ "ŢŤŦȚΤ", "T" },
+		{ "ţťŧț", "t" },
+		{ "Þ", "Th" },
+		{ "þ", "th" },
+		{ "ÙÚÛŨŪŬŮŰŲ", "U" },
+		{ "úûũūŭůűų", "u" },
+		{ "Ŵ", "W" },
+		{ "ŵ", "w" },
+		{ "Χ", "X" },
+		{ "ÝŶŸΥ", "Y" },
+		{ "ýÿŷ", "y" },
+		{ "ŹŻŽΖ", "Z" },
+		{ "źżž", "z" }
+	};
+
+	private static final String[][] symbols = {
+		{ "©", "(c)" },
+		{ "®", "(R)" },
+		{ "™", "TM" },
+		{ "×", "x" },
+		{ "÷", "/" },
+		{ "¹", "1" },
+		{ "²", "2" },
+		{ "³", "3" },
+		{ "¼", "1/4" },
+		{ "½", "1/2" },
+		{ "¾", "3/4" }
+	};
+
+	private final int policy;
+	private final Map<Character, String> mappings = new HashMap<Character, String>();
+	private boolean partialAllowed = false;
+
+	/**
+	 * Creates a transliterator with all the mappings.
+	 */
+	public Gsm7BitTransliterator() {
+		this(ALL);
+	}
+
+	/**
+	 * Creates a transliterator with the mappings selected by the policy.
+	 *
+	 * @param policy combination of <code>PUNCTUATION</code>,
+	 *               <code>LETTERS</code> and <code>SYMBOLS</code>
+	 */
+	public Gsm7BitTransliterator(int policy) {
+		this.policy = policy;
+		if ((policy & PUNCTUATION) != 0) {
+			addMappings(punctuation);
+		}
+		if ((policy & LETTERS) != 0) {
+			addMappings(letters);
+		}
+		if ((policy & SYMBOLS) != 0) {
+			addMappings(symbols);
+		}
+	}
+
+	private void addMappings(String[][] table) {
+		for (int i = 0; i < table.length; i++) {
+			String chars = table[i][0];
+			for (int j = 0; j < chars.length(); j++) {
+				addMapping(chars.charAt(j), table[i][1]);
+			}
+		}
+	}
+
+	/**
+	 * Adds or replaces the mapping of the character. Characters which
+	 * are in the GSM alphabet can't be mapped.
+	 *
+	 * @param ch          the character to replace
+	 * @param replacement the replacement, possibly empty, consisting
+	 *                    of GSM characters
+	 * @exception IllegalArgumentException if the character is in the GSM
+	 *            alphabet or the replacement isn't
+	 */
+	public void addMapping(char ch, String replacement) {
+		if (Gsm7BitCharset.getSeptetCount(ch) != 0) {
+			throw new IllegalArgumentException("Character in the GSM alphabet: " + ch);
+		}
+		if (!isEncodable(replacement)) {
+			throw new IllegalArgumentException("Replacement not in the GSM alphabet: " + replacement);
+		}
+		mappings.put(new Character(ch), replacement);
+	}
+
+	/** Returns the policy the transliterator was created with. */
+	public int getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Sets if the text should be transliterated even if some of its
+	 * characters can't be replaced. Default is <code>false</code>.
+	 */
+	public void setPartialAllowed(boolean partialAllowed) {
+		this.partialAllowed = partialAllowed;
+	}
+
+	public boolean isPartialAllowed() {
+		return partialAllowed;
+	}
+
+	/**
+	 * Returns if all the characters of the text are in the GSM alphabet.
+	 */
+	public static boolean isEncodable(CharSequence text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			if (Gsm7BitCharset.getSeptetCount(text.charAt(i)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the replacement of the character, <code>null</code> if
+	 * there is no mapping of the character.
+	 */
+	public String getMapping(char ch) {
+		return mappings.get(new Character(ch));
+	}
+
+	/**
+	 * Appends the transliterated text to the buffer. If the text can't be
+	 * encoded in the GSM alphabet completely and partial transliteration
+	 * isn't allowed, the text is appended unchanged.
+	 *
+	 * @param text the text
+	 * @param out  the buffer for the result
+	 * @return the count of the characters replaced or <code>NOT_ENCODABLE</code>
+	 */
+	public int transliterate(CharSequence text, StringBuilder out) {
+		int length = text.length();
+		int start = out.length();
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = text.charAt(i);
+			if (Gsm7BitCharset.getSeptetCount(ch) != 0) {
+				out.append(ch);
+				continue;
+			}
+			String replacement = mappings.get(new Character(ch));
+			if (replacement != null) {
+				out.append(replacement);
+				count++;
+			} else if (!partialAllowed) {
+				out.setLength(start);
+				out.append(text);
+				return NOT_ENCODABLE;
+			} else {
+				out.append(ch);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the transliterated text or the same text if there's nothing
+	 * to replace or it can't be transliterated.
+	 *
+	 * @see #transliterate(CharSequence,StringBuilder)
+	 */
+	public String transliterate(String text) {
+		if (isEncodable(text)) {
+			return text;
+		}
+		StringBuilder out = new StringBuilder(text.length() + 8);
+		return transliterate(text, out) > 0 ? out.toString() : text;
+	}
+}
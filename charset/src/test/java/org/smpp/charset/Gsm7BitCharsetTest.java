@@ -7,6 +7,7 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CoderResult;
 import java.nio.charset.spi.CharsetProvider;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -41,4 +42,54 @@ public class Gsm7BitCharsetTest {
 	public void testEuroCharacterDecoding() {
 		assertEquals(CharBuffer.wrap("€"), charset.decode(ByteBuffer.wrap(new byte[] { (byte) 0x1b, (byte) 0x65 })));
 	}
+
+	@Test
+	public void testTablesMatchAlphabets() {
+		for (Map.Entry<String, Byte> entry : Gsm7BitCharset.defaultEncodeMap.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue().intValue(), Gsm7BitCharset.encodeChar(entry.getKey().charAt(0)));
+			assertEquals(entry.getKey().charAt(0), Gsm7BitCharset.decodeChar(entry.getValue().byteValue()));
+		}
+		for (Map.Entry<String, Byte> entry : Gsm7BitCharset.extEncodeMap.entrySet()) {
+			char ch = entry.getKey().charAt(0);
+			if (!Gsm7BitCharset.defaultEncodeMap.containsKey(entry.getKey())) {
+				assertEquals(Gsm7BitCharset.EXTENDED | entry.getValue(), Gsm7BitCharset.encodeChar(ch));
+			}
+			assertEquals(ch, Gsm7BitCharset.decodeExtendedChar(entry.getValue().byteValue()));
+		}
+		assertEquals(Gsm7BitCharset.NO_CODE, Gsm7BitCharset.encodeChar('\u0100'));
+		assertEquals('?', Gsm7BitCharset.decodeExtendedChar((byte) 0x41));
+		assertEquals('?', Gsm7BitCharset.decodeChar((byte) 0x80));
+	}
+
+	@Test
+	public void testUnmappedCharactersReplaced() {
+		assertEquals(ByteBuffer.wrap(new byte[] { 0x41, 0x3f, 0x3f, 0x1b, 0x3c }), charset.encode("A\u0100\u4e2d["));
+		assertEquals(CharBuffer.wrap("A?^"), charset.decode(ByteBuffer.wrap(new byte[] { 0x41, (byte) 0x90, 0x1b, 0x14, 0x1b })));
+		assertEquals(CharBuffer.wrap("?"), charset.decode(ByteBuffer.wrap(new byte[] { 0x1b, 0x41 })));
+	}
+
+	@Test
+	public void testDirectBuffers() {
+		String text = "Hello {World} \u20ac 100 \u00e9";
+		ByteBuffer expected = charset.encode(text);
+		ByteBuffer direct = ByteBuffer.allocateDirect(64);
+		charset.newEncoder().encode(CharBuffer.wrap(text), direct, true);
+		direct.flip();
+		assertEquals(expected, direct);
+
+		CharBuffer chars = CharBuffer.allocate(64);
+		charset.newDecoder().decode(direct, chars, true);
+		chars.flip();
+		assertEquals(text, chars.toString());
+		assertEquals(text, charset.decode(expected).toString());
+	}
+
+	@Test
+	public void testExtendedCharacterNeedsTwoBytes() {
+		ByteBuffer out = ByteBuffer.allocate(2);
+		CharBuffer in = CharBuffer.wrap("A[");
+		assertEquals(CoderResult.OVERFLOW, charset.newEncoder().encode(in, out, true));
+		assertEquals(1, in.position());
+		assertEquals(1, out.position());
+	}
 }
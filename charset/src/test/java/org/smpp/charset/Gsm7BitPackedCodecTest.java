@@ -0,0 +1,105 @@
+package org.smpp.charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Gsm7BitPackedCodecTest {
+
+	private static byte[] bytes(int... values) {
+		byte[] result = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (byte) values[i];
+		}
+		return result;
+	}
+
+	// packs bit by bit, as in the examples of GSM 03.38
+	private static byte[] referencePack(byte[] septets, int fillBits) {
+		byte[] packed = new byte[Gsm7BitPackedCodec.getPackedLength(septets.length, fillBits)];
+		int bit = fillBits;
+		for (byte septet : septets) {
+			for (int i = 0; i < 7; i++, bit++) {
+				if ((septet & (1 << i)) != 0) {
+					packed[bit / 8] |= 1 << (bit % 8);
+				}
+			}
+		}
+		return packed;
+	}
+
+	@Test
+	public void testKnownVectors() {
+		assertArrayEquals(bytes(0xe8, 0x32, 0x9b, 0xfd, 0x06), Gsm7BitPackedCodec.encode("hello"));
+		assertArrayEquals(bytes(0xe8, 0x32, 0x9b, 0xfd, 0x46, 0x97, 0xd9, 0xec, 0x37), Gsm7BitPackedCodec.encode("hellohello"));
+		assertEquals("hellohello", Gsm7BitPackedCodec.decode(bytes(0xe8, 0x32, 0x9b, 0xfd, 0x46, 0x97, 0xd9, 0xec, 0x37), 0, 9, 0));
+	}
+
+	@Test
+	public void testPackMatchesReference() {
+		Random random = new Random(42);
+		for (int length = 0; length < 40; length++) {
+			byte[] septets = new byte[length];
+			for (int i = 0; i < length; i++) {
+				septets[i] = (byte) random.nextInt(128);
+			}
+			for (int fillBits = 0; fillBits < 7; fillBits++) {
+				byte[] expected = referencePack(septets, fillBits);
+				byte[] packed = new byte[expected.length + 2];
+				assertEquals(expected.length, Gsm7BitPackedCodec.pack(septets, 0, length, packed, 1, fillBits));
+				byte[] written = new byte[expected.length];
+				System.arraycopy(packed, 1, written, 0, expected.length);
+				assertArrayEquals("length " + length + " fill " + fillBits, expected, written);
+
+				byte[] unpacked = new byte[length];
+				Gsm7BitPackedCodec.unpack(packed, 1, length, fillBits, unpacked, 0);
+				assertArrayEquals(septets, unpacked);
+			}
+		}
+	}
+
+	@Test
+	public void testTextRoundTrip() {
+		String text = "Price: 5€ [incl. VAT] {ref: éñ} @home\n";
+		for (int i = 0; i <= text.length(); i++) {
+			String part = text.substring(0, i);
+			for (int fillBits = 0; fillBits < 7; fillBits++) {
+				byte[] packed = new byte[Gsm7BitPackedCodec.getEncodedLength(part, fillBits)];
+				assertEquals(packed.length, Gsm7BitPackedCodec.encode(part, packed, 0, fillBits));
+				assertEquals(part, Gsm7BitPackedCodec.decode(packed, 0, packed.length, fillBits));
+			}
+		}
+	}
+
+	@Test
+	public void testPaddingWithCarriageReturn() {
+		// 7 septets leave 7 bits in the last octet
+		byte[] packed = Gsm7BitPackedCodec.encode("1234567");
+		assertEquals(7, packed.length);
+		assertEquals(Gsm7BitPackedCodec.CR, (byte) ((packed[6] & 0xff) >>> 1));
+		assertEquals("1234567", Gsm7BitPackedCodec.decode(packed, 0, 7, 0));
+	}
+
+	@Test
+	public void testUserDataWithHeader() {
+		byte[] udh = bytes(0x05, 0x00, 0x03, 0x2a, 0x02, 0x01);
+		assertEquals(1, Gsm7BitPackedCodec.getFillBits(udh.length));
+		byte[] userData = Gsm7BitPackedCodec.encodeUserData(udh, "hello");
+		assertEquals(udh.length + 5, userData.length);
+		// the septets continue the bit stream after the header: 48 + 1 fill bits
+		byte[] septets = bytes(0, 0, 0, 0, 0, 0, 0, 0x68, 0x65, 0x6c, 0x6c, 0x6f);
+		byte[] whole = referencePack(septets, 0);
+		for (int i = udh.length; i < userData.length; i++) {
+			assertEquals(whole[i], userData[i]);
+		}
+		assertEquals("hello", Gsm7BitPackedCodec.decodeUserData(userData, 0, userData.length, true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFillBits() {
+		Gsm7BitPackedCodec.encode("x", new byte[2], 0, 7);
+	}
+}
@@ -0,0 +1,51 @@
+package org.smpp.charset;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class Gsm7BitTransliteratorTest {
+
+	@Test
+	public void testPunctuationAndLetters() {
+		Gsm7BitTransliterator transliterator = new Gsm7BitTransliterator();
+		StringBuilder out = new StringBuilder();
+		assertEquals(8, transliterator.transliterate("“Crème brûlée” – Łódź…", out));
+		assertEquals("\"Crème brulée\" - Lodz...", out.toString());
+		assertTrue(Gsm7BitTransliterator.isEncodable(out));
+		// characters of the GSM alphabet are kept
+		assertEquals("Ça va? Ñandù €5", transliterator.transliterate("Ça va? Ñandù €5"));
+		assertEquals("ab", transliterator.transliterate("a\u200bb"));
+		String plain = "plain text";
+		assertSame(plain, transliterator.transliterate(plain));
+	}
+
+	@Test
+	public void testPolicy() {
+		Gsm7BitTransliterator punctuation = new Gsm7BitTransliterator(Gsm7BitTransliterator.PUNCTUATION);
+		assertEquals("it's", punctuation.transliterate("it’s"));
+		assertNull(punctuation.getMapping('ł'));
+		assertEquals("it’s ł", punctuation.transliterate("it’s ł"));
+
+		punctuation.setPartialAllowed(true);
+		StringBuilder out = new StringBuilder("x");
+		assertEquals(1, punctuation.transliterate("it’s ł", out));
+		assertEquals("xit's ł", out.toString());
+
+		punctuation.addMapping('ł', "l");
+		assertEquals("it's l", punctuation.transliterate("it’s ł"));
+	}
+
+	@Test
+	public void testNotEncodableKeptIntact() {
+		Gsm7BitTransliterator transliterator = new Gsm7BitTransliterator();
+		StringBuilder out = new StringBuilder("x");
+		assertEquals(Gsm7BitTransliterator.NOT_ENCODABLE, transliterator.transliterate("café – 日本", out));
+		assertEquals("xcafé – 日本", out.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGsmCharacterNotMapped() {
+		new Gsm7BitTransliterator().addMapping('é', "e");
+	}
+}
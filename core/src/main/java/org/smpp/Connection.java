@@ -86,6 +86,26 @@ public abstract class Connection extends SmppObject {
 	 */
 	public abstract void send(ByteBuffer data) throws IOException;
 
+	/**
+	 * Sends <code>length</code> bytes of the array starting at
+	 * <code>offset</code>. The array can be reused by the caller after
+	 * the method returns. This default implementation copies the data
+	 * and calls <code>send(ByteBuffer)</code>; derived classes should
+	 * override it to send the data without copying.
+	 *
+	 * @param data the array with the data to send
+	 * @param offset the start of the data in the array
+	 * @param length the number of bytes to send
+	 * @exception java.io.IOException Sending a data over connection
+	 * can cause IOException in the derived classes.
+	 * @see #send(ByteBuffer)
+	 */
+	public void send(byte[] data, int offset, int length) throws IOException {
+		byte[] copy = new byte[length];
+		System.arraycopy(data, offset, copy, 0, length);
+		send(new ByteBuffer(copy));
+	}
+
 	/**
 	 * This method should receive data from the connection.
 	 * The timeout for receiving is receiveTimeout. If no data are
@@ -469,6 +469,11 @@ public class Data {
 	public static final int OPT_PAR_MSG_PAYLOAD_MIN = 1;
 	public static final int OPT_PAR_MSG_PAYLOAD_MAX = 1500;
 
+	// Congestion State (SMPP 5.0), the load of the peer from 0 to 100
+	public static final short OPT_PAR_CONGESTION_STATE = 0x0428;
+	public static final int OPT_PAR_CONGESTION_STATE_MIN = 0;
+	public static final int OPT_PAR_CONGESTION_STATE_MAX = 100;
+
 	// list of character encodings
 	// see http://java.sun.com/j2se/1.3/docs/guide/intl/encoding.doc.html
 	// from rt.jar
@@ -497,6 +502,9 @@ public class Data {
 	// GSM 7-bit unpacked
 	// Requires JVM 1.4 or later
 	public static final String ENC_GSM7BIT = "X-Gsm7Bit";
+	// GSM 7-bit packed, 8 septets in 7 octets; not a Java charset,
+	// handled by ShortMessage with org.smpp.charset.Gsm7BitPackedCodec
+	public static final String ENC_GSM7BIT_PACKED = "X-Gsm7BitPacked";
 
 	/**
 	 * @deprecated As of version 1.3 of the library there are defined
@@ -0,0 +1,21 @@
+package org.smpp;
+
+/**
+ * Interface for objects notified by <code>KeepaliveService</code> when
+ * a session stops answering the keepalive <code>enquire_link</code>s.
+ *
+ * @see KeepaliveService
+ */
+public interface KeepaliveListener {
+	/**
+	 * Called when the configured number of keepalive
+	 * <code>enquire_link</code>s in a row wasn't answered.
+	 * The session is no longer watched by the service when this is called;
+	 * the implementation typically closes the session and reconnects.
+	 * The method is called from the keepalive scheduler's thread, so it
+	 * shouldn't block for long.
+	 *
+	 * @param session the session which is considered dead
+	 */
+	public void sessionDead(Session session);
+}
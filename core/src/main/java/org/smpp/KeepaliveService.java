@@ -0,0 +1,263 @@
+package org.smpp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.smpp.pdu.EnquireLink;
+import org.smpp.util.TimingWheel;
+
+/**
+ * Keeps bound sessions alive by sending <code>enquire_link</code> only
+ * when a link has been idle.
+ * <p>
+ * For each watched session the service looks at the time when the session
+ * last sent a PDU (<code>Transmitter.getLastSendTime</code>) and last
+ * received data (<code>Receiver.getLastReceiveTime</code>). As long as
+ * there is traffic in both directions within the idle interval, nothing
+ * is sent. Once either direction is idle for the interval, an
+ * <code>enquire_link</code> is sent and the link is checked again after
+ * another interval: if its response wasn't received by then, it's counted
+ * as missed and another one is sent, whatever other traffic there was.
+ * After the configured number of missed
+ * <code>enquire_link</code>s in a row the session is declared dead to the
+ * <code>KeepaliveListener</code> and is no longer watched.
+ * <p>
+ * The response to the keepalive <code>enquire_link</code> is consumed by
+ * the session's receiver, it doesn't reach the application.
+ * <p>
+ * All the sessions are watched from the thread of one
+ * <code>TimingWheel</code> (by default the one shared by the library),
+ * no thread is created per session. The wheel's thread only checks the
+ * idleness; sending the <code>enquire_link</code>, which can block on
+ * a congested connection, and calling the listener are left to the
+ * service's executor, so one session can't delay the timeouts of others.
+ *
+ * @see #setExecutor(Executor)
+ * @see KeepaliveListener
+ * @see TimingWheel
+ */
+public class KeepaliveService extends SmppObject {
+	/**
+	 * Default number of missed enquire links after which the session
+	 * is declared dead.
+	 */
+	public static final int DEFAULT_MAX_MISSED = 3;
+
+	private final long idleInterval;
+	private final int maxMissed;
+	private final TimingWheel timingWheel;
+	private final ConcurrentHashMap<Session, Watch> watches = new ConcurrentHashMap<Session, Watch>();
+	private Executor executor = null;
+
+	/**
+	 * Creates the service using the library's shared timing wheel and
+	 * the default number of missed enquire links.
+	 *
+	 * @param idleInterval after how many milliseconds without traffic
+	 *                     an enquire link is sent
+	 */
+	public KeepaliveService(long idleInterval) {
+		this(idleInterval, DEFAULT_MAX_MISSED, TimingWheel.getSharedInstance());
+	}
+
+	/**
+	 * Creates the service.
+	 *
+	 * @param idleInterval after how many milliseconds without traffic
+	 *                     an enquire link is sent
+	 * @param maxMissed    after how many unanswered enquire links in a row
+	 *                     the session is declared dead
+	 * @param timingWheel  the (running) timing wheel driving the service
+	 */
+	public KeepaliveService(long idleInterval, int maxMissed, TimingWheel timingWheel) {
+		if (idleInterval <= 0) {
+			throw new IllegalArgumentException("idleInterval must be positive: " + idleInterval);
+		}
+		if (maxMissed <= 0) {
+			throw new IllegalArgumentException("maxMissed must be positive: " + maxMissed);
+		}
+		this.idleInterval = idleInterval;
+		this.maxMissed = maxMissed;
+		this.timingWheel = timingWheel;
+	}
+
+	/**
+	 * Starts watching the bound session.
+	 *
+	 * @param session  the session to keep alive
+	 * @param listener notified when the session stops responding, can be null
+	 */
+	public void register(Session session, KeepaliveListener listener) {
+		Watch watch = new Watch(session, listener);
+		Watch previous = watches.put(session, watch);
+		if (previous != null) {
+			previous.cancel();
+		}
+		timingWheel.schedule(watch, idleInterval);
+	}
+
+	/**
+	 * Stops watching the session. Should be called before unbinding.
+	 *
+	 * @param session the session not to watch anymore
+	 */
+	public void unregister(Session session) {
+		Watch watch = watches.remove(session);
+		if (watch != null) {
+			watch.cancel();
+		}
+	}
+
+	/**
+	 * Sets the executor which sends the enquire links and calls
+	 * the listeners. By default the service creates a pool of daemon
+	 * threads which end when idle.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public synchronized Executor getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "KeepaliveService");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private boolean execute(Runnable task) {
+		try {
+			getExecutor().execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			event.write(e, "keepalive: executor rejected the task");
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of watched sessions.
+	 */
+	public int getSessionCount() {
+		return watches.size();
+	}
+
+	/**
+	 * Returns the idle interval after which an enquire link is sent.
+	 */
+	public long getIdleInterval() {
+		return idleInterval;
+	}
+
+	/**
+	 * Returns the number of unanswered enquire links after which a session
+	 * is declared dead.
+	 */
+	public int getMaxMissed() {
+		return maxMissed;
+	}
+
+	/**
+	 * The timeout watching one session; each time it expires it checks
+	 * the idleness of the link and reschedules itself.
+	 */
+	private class Watch extends TimingWheel.Timeout {
+		Session session;
+		KeepaliveListener listener;
+		long enquireSentTime = 0;
+		int missed = 0;
+
+		Watch(Session session, KeepaliveListener listener) {
+			this.session = session;
+			this.listener = listener;
+		}
+
+		protected void expired() {
+			if (watches.get(session) != this) {
+				return; // unregistered meanwhile
+			}
+			Transmitter transmitter = session.getTransmitter();
+			Receiver receiver = session.getReceiver();
+			if (!session.isBound() || (transmitter == null) || (receiver == null)) {
+				debug.write(DSESS, "keepalive: session not bound anymore, not watching it");
+				watches.remove(session, this);
+				return;
+			}
+			long now = Data.getCurrentTime();
+			if (enquireSentTime != 0) {
+				// other PDUs don't prove the peer still processes requests
+				if (receiver.isKeepaliveAnswered()) {
+					missed = 0;
+				} else {
+					missed++;
+					debug.write(DSESS, "keepalive: enquire link not answered, missed " + missed);
+					if (missed >= maxMissed) {
+						execute(new Runnable() {
+							public void run() {
+								declareDead();
+							}
+						});
+						return;
+					}
+				}
+				enquireSentTime = 0;
+			}
+			// a link which only sends, or only receives, is probed as well
+			long lastActivity = Math.min(receiver.getLastReceiveTime(), transmitter.getLastSendTime());
+			long idle = now - lastActivity;
+			if ((missed == 0) && (idle < idleInterval)) {
+				// there was traffic both ways, check again when either could become idle
+				timingWheel.schedule(this, idleInterval - idle);
+				return;
+			}
+			final EnquireLink enquireLink = new EnquireLink();
+			enquireLink.assignSequenceNumber();
+			receiver.setKeepaliveSequenceNumber(enquireLink.getSequenceNumber());
+			enquireSentTime = now;
+			final Transmitter sender = transmitter;
+			execute(new Runnable() {
+				public void run() {
+					send(sender, enquireLink);
+				}
+			});
+		}
+
+		/**
+		 * Sends the enquire link by the executor and checks its response
+		 * after another interval.
+		 */
+		private void send(Transmitter transmitter, EnquireLink enquireLink) {
+			try {
+				transmitter.send(enquireLink);
+			} catch (Exception e) {
+				event.write(e, "keepalive: sending enquire link failed");
+				missed = maxMissed;
+				declareDead();
+				return;
+			}
+			timingWheel.schedule(this, idleInterval);
+		}
+
+		private void declareDead() {
+			if (!watches.remove(session, this)) {
+				return;
+			}
+			event.write("keepalive: session declared dead after " + missed + " missed enquire links");
+			if (listener != null) {
+				try {
+					listener.sessionDead(session);
+				} catch (RuntimeException e) {
+					event.write(e, "keepalive: listener failed");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package org.smpp;
+
+import java.util.LinkedList;
+
+import org.smpp.pdu.PDU;
+import org.smpp.util.Flow;
+
+/**
+ * Publishes the PDUs received by an asynchronous session to a subscriber
+ * on its demand. Used as the session's listener:
+ * <pre>
+ * PDUPublisher publisher = new PDUPublisher();
+ * publisher.subscribe(subscriber);
+ * session.bind(request, publisher);
+ * </pre>
+ * The receiver reads from the connection only while the subscriber has
+ * requested more PDUs than it was passed, so a slow subscriber leaves the
+ * data in the socket and TCP flow control slows down the SMSC, instead of
+ * the PDUs filling the heap. The subscriber gets all PDUs a listener would
+ * get, i.e. the requests of the SMSC as well as the responses to the
+ * asynchronous requests and the responses synthesized for the timed out
+ * ones (see <code>ResponseTimeoutEvent</code>); it has to respond to the
+ * requests and release pooled PDUs as a listener would.
+ * <p>
+ * The subscriber is completed when the receiver stops, e.g. after unbind,
+ * and gets <code>onError</code> if the receiver failed. The PDUs are
+ * passed by the receiver's thread, or by the threads of the decoding
+ * executor; a publisher serves one subscriber and one session.
+ * Cancelling the subscription stops reading from the connection,
+ * the session should be unbound or closed then.
+ * <p>
+ * The session recognizes the publisher only if it's the listener itself.
+ * A publisher wrapped by another listener, e.g. by
+ * <code>MessageReassembler</code>, <code>AdaptiveWindow.wrap</code>,
+ * <code>SessionRouter.wrap</code> or <code>OutboundScheduler.wrap</code>,
+ * still passes the PDUs on demand, but the receiver reads regardless
+ * of it and the PDUs the subscriber didn't request pile up in the
+ * publisher; the subscriber isn't completed when the receiver stops
+ * either. Wrap the subscriber instead where possible.
+ *
+ * @see Flow
+ * @see Receiver#setServerPDUEventListener(ServerPDUEventListener)
+ * @see Receiver#setDecodingExecutor(java.util.concurrent.Executor,boolean)
+ */
+public class PDUPublisher extends SmppObject implements Flow.Publisher<PDU>, ServerPDUEventListener {
+	private Flow.Subscriber<? super PDU> subscriber = null;
+
+	/** The number of PDUs requested and not passed yet. */
+	private long demand = 0;
+
+	/** The PDUs received and not passed yet. */
+	private final LinkedList<PDU> pending = new LinkedList<PDU>();
+
+	/** If the subscription was cancelled or the subscriber completed. */
+	private boolean cancelled = false;
+
+	/** If the subscriber should be completed once the pending PDUs are passed. */
+	private boolean terminated = false;
+
+	/** The reason of termination passed to onError, null to complete. */
+	private Throwable failure = null;
+
+	/** If a thread is calling the subscriber. */
+	private boolean draining = false;
+
+	/** If the receiver waiting for demand should return, e.g. to stop. */
+	private boolean wakeUp = false;
+
+	private class PDUSubscription implements Flow.Subscription {
+		public void request(long n) {
+			PDUPublisher.this.request(n);
+		}
+
+		public void cancel() {
+			PDUPublisher.this.cancel();
+		}
+	}
+
+	/**
+	 * Subscribes the only subscriber; further subscribers get
+	 * <code>onError</code> with <code>IllegalStateException</code>.
+	 */
+	public void subscribe(Flow.Subscriber<? super PDU> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber");
+		}
+		boolean refused;
+		synchronized (this) {
+			refused = this.subscriber != null;
+			if (!refused) {
+				this.subscriber = subscriber;
+				// nothing can be passed before onSubscribe returns
+				draining = true;
+			}
+		}
+		if (refused) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				public void request(long n) {
+				}
+
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("The publisher has already a subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(new PDUSubscription());
+		synchronized (this) {
+			draining = false;
+		}
+		drain();
+	}
+
+	/**
+	 * Queues the received PDU for the subscriber.
+	 */
+	public void handleEvent(ServerPDUEvent received) {
+		PDU pdu = received.getPDU();
+		synchronized (this) {
+			if (cancelled || terminated) {
+				debug.write(DRXTX, "publisher without subscription, discarding " + pdu.debugString());
+				pdu.release();
+				return;
+			}
+			pending.add(pdu);
+		}
+		drain();
+	}
+
+	private void request(long n) {
+		synchronized (this) {
+			if (cancelled || terminated) {
+				return;
+			}
+			if (n <= 0) {
+				releasePending();
+				terminated = true;
+				failure = new IllegalArgumentException("Requested " + n + " PDUs, must be positive");
+			} else {
+				demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+			}
+			notifyAll();
+		}
+		drain();
+	}
+
+	private synchronized void cancel() {
+		cancelled = true;
+		releasePending();
+		notifyAll();
+	}
+
+	private void releasePending() {
+		while (!pending.isEmpty()) {
+			pending.removeFirst().release();
+		}
+	}
+
+	/**
+	 * Passes the pending PDUs to the subscriber while it has demand, then
+	 * completes it if terminated. Only one thread calls the subscriber
+	 * at a time, the others leave the PDUs to it.
+	 */
+	private void drain() {
+		Flow.Subscriber<? super PDU> target;
+		synchronized (this) {
+			if (draining || (subscriber == null)) {
+				return;
+			}
+			draining = true;
+			target = subscriber;
+		}
+		while (true) {
+			PDU next = null;
+			Throwable error = null;
+			synchronized (this) {
+				if (cancelled) {
+					draining = false;
+					return;
+				}
+				if (!pending.isEmpty() && (demand > 0)) {
+					next = pending.removeFirst();
+					if (demand != Long.MAX_VALUE) {
+						demand--;
+					}
+				} else if (terminated && pending.isEmpty()) {
+					// no signal can follow the terminal one
+					cancelled = true;
+					error = failure;
+				} else {
+					draining = false;
+					return;
+				}
+			}
+			if (next == null) {
+				if (error == null) {
+					target.onComplete();
+				} else {
+					target.onError(error);
+				}
+				return;
+			}
+			try {
+				target.onNext(next);
+			} catch (RuntimeException e) {
+				event.write(e, "PDUPublisher: subscriber failed, cancelling the subscription");
+				cancel();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the subscriber requests more PDUs than are pending.
+	 * Called by the receiver before reading from the connection.
+	 *
+	 * @param timeout the longest time to wait in milliseconds
+	 * @return if the receiver should read the next PDU
+	 */
+	synchronized boolean awaitDemand(long timeout) {
+		if (!hasDemand() && !wakeUp) {
+			try {
+				wait(timeout);
+			} catch (InterruptedException e) {
+				// we don't care
+			}
+		}
+		wakeUp = false;
+		return hasDemand();
+	}
+
+	private boolean hasDemand() {
+		return !cancelled && !terminated && (demand > pending.size());
+	}
+
+	/**
+	 * Makes the receiver waiting for demand return, e.g. so it can stop.
+	 */
+	synchronized void wakeUp() {
+		wakeUp = true;
+		notifyAll();
+	}
+
+	/**
+	 * Completes the subscriber after the pending PDUs are passed.
+	 *
+	 * @param failure the reason the receiver stopped, null if it was stopped
+	 */
+	void complete(Throwable failure) {
+		synchronized (this) {
+			if (terminated || cancelled) {
+				return;
+			}
+			terminated = true;
+			this.failure = failure;
+			notifyAll();
+		}
+		drain();
+	}
+
+	/**
+	 * Returns the number of PDUs the subscriber requested and didn't get yet.
+	 */
+	public synchronized long getDemand() {
+		return demand;
+	}
+
+	/**
+	 * Returns the number of PDUs received and not passed to the subscriber yet.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+}
@@ -11,11 +11,18 @@
 package org.smpp;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.smpp.pdu.GenericNack;
 import org.smpp.pdu.InvalidPDUException;
 import org.smpp.pdu.PDU;
 import org.smpp.pdu.PDUException;
+import org.smpp.pdu.PDUPool;
 import org.smpp.pdu.UnknownCommandIdException;
 import org.smpp.util.Queue;
 import org.smpp.util.Unprocessed;
@@ -44,6 +51,14 @@ public class Receiver extends ReceiverBase {
 	 */
 	private static final String RECEIVER_THREAD_NAME = "Receiver";
 
+	/**
+	 * Default limit of the PDUs read and not passed to the listener yet
+	 * when they are decoded by an executor.
+	 *
+	 * @see #setMaxDecodingPDUs(int)
+	 */
+	public static final int DEFAULT_MAX_DECODING_PDUS = 1024;
+
 	/**
 	 * The correspondent transmitter for transmitting PDUs.
 	 * It's used for sending of generic negative acknowledges, if necessary.
@@ -132,6 +147,111 @@ public class Receiver extends ReceiverBase {
 	 */
 	private boolean automaticNack = true;
 
+	/**
+	 * Sequence number of the <code>enquire_link</code> sent by
+	 * <code>KeepaliveService</code> whose response is consumed by the
+	 * receiver instead of being passed to the application; zero if none.
+	 * @see #setKeepaliveSequenceNumber(int)
+	 */
+	private volatile int keepaliveSequenceNumber = 0;
+
+	/**
+	 * If the response to the last keepalive <code>enquire_link</code>
+	 * was received.
+	 */
+	private volatile boolean keepaliveAnswered = false;
+
+	/**
+	 * The executor decoding the bodies of the PDUs received asynchronously,
+	 * null if they're decoded by the receiver's thread.
+	 *
+	 * @see #setDecodingExecutor(Executor,boolean)
+	 */
+	private volatile Executor decodingExecutor = null;
+
+	/**
+	 * Permits to read a PDU for the <code>decodingExecutor</code>; taken
+	 * before reading and returned when the PDU is passed to the listener.
+	 *
+	 * @see #setMaxDecodingPDUs(int)
+	 */
+	private volatile Semaphore decodingPermits = new Semaphore(DEFAULT_MAX_DECODING_PDUS);
+
+	/**
+	 * The listener passing the PDUs to a subscriber on its demand,
+	 * null if the PDUs are read regardless of demand.
+	 *
+	 * @see PDUPublisher
+	 */
+	private volatile PDUPublisher publisher = null;
+
+	/**
+	 * If the PDUs decoded by the <code>decodingExecutor</code> are passed
+	 * to the listener in the order they were received.
+	 */
+	private volatile boolean orderedDecoding = true;
+
+	/**
+	 * The order of the next PDU passed to the <code>decodingExecutor</code>,
+	 * used only by the receiver's thread.
+	 */
+	private long decodingTicket = 0;
+
+	/**
+	 * The PDUs decoded out of order, by their order of receiving;
+	 * null values stand for rejected PDUs.
+	 */
+	private final Map<Long, PDU> decodedPDUs = new HashMap<Long, PDU>();
+
+	/** The order of the next decoded PDU to pass to the listener. */
+	private long deliveryTicket = 0;
+
+	/** If a thread is passing the decoded PDUs to the listener. */
+	private boolean delivering = false;
+
+	/**
+	 * Decodes the body of a received PDU and passes it to the listener.
+	 */
+	private class Decoding implements Runnable {
+		private final PDU pdu;
+		private final long ticket;
+
+		/**
+		 * @param ticket the order of receiving or -1 if the PDU can be
+		 *               passed to the listener at once
+		 */
+		Decoding(PDU pdu, long ticket) {
+			this.pdu = pdu;
+			this.ticket = ticket;
+		}
+
+		public void run() {
+			PDU decoded = pdu;
+			try {
+				pdu.decode();
+			} catch (InvalidPDUException e) {
+				event.write(e, "Receiver: received PDU is invalid.");
+				decoded = reject(Data.ESME_RINVMSGLEN, pdu.getSequenceNumber());
+				discard(pdu);
+			} catch (PDUException e) {
+				event.write(e, "Receiver: decoding received PDU");
+				decoded = reject(e.getErrorCode(), pdu.getSequenceNumber());
+				discard(pdu);
+			}
+			if (ticket < 0) {
+				try {
+					if (decoded != null) {
+						process(decoded);
+					}
+				} finally {
+					decodingPermits.release();
+				}
+			} else {
+				deliverInOrder(ticket, decoded);
+			}
+		}
+	}
+
 	/**
 	 * This constructor sets the connection to receive the messages from.
 	 *
@@ -169,6 +289,94 @@ public class Receiver extends ReceiverBase {
 		return receiver;
 	}
 
+	/**
+	 * Sets the publisher whose subscriber's demand limits reading from
+	 * the connection; set by the session whose listener wraps the publisher.
+	 *
+	 * @param publisher the publisher or null to read regardless of demand
+	 */
+	void setPublisher(PDUPublisher publisher) {
+		PDUPublisher previous = this.publisher;
+		this.publisher = publisher;
+		if ((previous != null) && (previous != publisher)) {
+			// don't let the receiver wait for the demand anymore
+			previous.wakeUp();
+		}
+	}
+
+	/**
+	 * Lets the bodies of the PDUs received asynchronously be decoded by
+	 * the threads of the executor, so a busy connection isn't limited
+	 * by one thread. The receiver's thread then only reads the data and
+	 * splits them to PDUs by their headers; <code>submit_sm</code>,
+	 * <code>deliver_sm</code> and <code>data_sm</code> are decoded by the
+	 * executor, malformed ones are rejected with <code>generic_nack</code>
+	 * as if they were decoded at once.
+	 * <p>
+	 * If <code>ordered</code> is true, the PDUs are passed to the listener
+	 * in the order they were received, one at a time, by the thread which
+	 * completed the decoding of the oldest PDU. Otherwise each PDU is
+	 * passed as soon as it's decoded and the listener is called
+	 * by several threads concurrently. It should be set before the
+	 * receiver is started; the executor isn't shut down by the receiver.
+	 * The number of PDUs read and not passed to the listener yet is limited,
+	 * see <code>setMaxDecodingPDUs</code>.
+	 *
+	 * @param executor the executor to decode the PDUs, null to decode
+	 *                 them by the receiver's thread
+	 * @param ordered  if the order of receiving should be kept
+	 * @see ServerPDUEventListener
+	 * @see PDU#decode()
+	 */
+	public void setDecodingExecutor(Executor executor, boolean ordered) {
+		this.orderedDecoding = ordered;
+		this.decodingExecutor = executor;
+	}
+
+	/**
+	 * Sets how many PDUs the receiver reads ahead for the decoding executor,
+	 * i.e. how many can be decoded or waiting to be passed to the listener;
+	 * when the limit is reached, the receiver stops reading until the
+	 * listener takes some. Should be set before the receiver is started.
+	 *
+	 * @param maxDecodingPDUs the limit, <code>DEFAULT_MAX_DECODING_PDUS</code>
+	 *                        by default
+	 */
+	public void setMaxDecodingPDUs(int maxDecodingPDUs) {
+		if (maxDecodingPDUs < 1) {
+			throw new IllegalArgumentException("maxDecodingPDUs must be positive: " + maxDecodingPDUs);
+		}
+		decodingPermits = new Semaphore(maxDecodingPDUs);
+	}
+
+	/**
+	 * Returns the number of PDUs the receiver can read ahead
+	 * for the decoding executor now.
+	 */
+	public int getAvailableDecodingPermits() {
+		return decodingPermits.availablePermits();
+	}
+
+	/**
+	 * Returns the executor decoding the received PDUs, null if none.
+	 */
+	public Executor getDecodingExecutor() {
+		return decodingExecutor;
+	}
+
+	/**
+	 * Returns if the PDUs decoded by the executor are passed to the
+	 * listener in the order they were received.
+	 */
+	public boolean isOrderedDecoding() {
+		return orderedDecoding;
+	}
+
+	// ReceiverBase's isHeaderDecodingOnly override
+	protected boolean isHeaderDecodingOnly() {
+		return (asynchronous && (decodingExecutor != null)) || super.isHeaderDecodingOnly();
+	}
+
 	/**
 	 * Sets the event listener for asynchronous <code>Receiver</code>.
 	 * In case there are unprocessed PDUs in the queue,
@@ -216,8 +424,22 @@ public class Receiver extends ReceiverBase {
 	public void stop() {
 		debug.write(DRXTX, "Receiver stoping");
 		if (isReceiver()) {
+			PDUPublisher flow = publisher;
+			if (flow != null) {
+				// stop waiting for the subscriber's demand
+				stopProcessing(null);
+				flow.wakeUp();
+			}
 			super.stop();
-			receiver = false;
+			if (flow != null) {
+				flow.complete(getTermException());
+			}
+			synchronized (pduQueue) {
+				receiver = false;
+				// wake up synchronous callers waiting on the queue
+				// so they start to receive from the connection directly
+				pduQueue.notifyAll();
+			}
 		}
 		debug.write(DRXTX, "Receiver stoped");
 	}
@@ -282,6 +504,25 @@ public class Receiver extends ReceiverBase {
 		return pdu;
 	}
 
+	/**
+	 * Called from session to receive a response for previously sent request
+	 * waiting at most for the specified time.
+	 *
+	 * @param expectedPDU the template for expected PDU; the PDU returned
+	 *                    must have the same sequence number
+	 * @param timeout     for how long is tried to receive the PDU
+	 * @return the received PDU or null if none
+	 * @see ReceiverBase#tryReceivePDUWithTimeout(Connection,PDU,long)
+	 */
+	public synchronized PDU receive(PDU expectedPDU, long timeout)
+		throws UnknownCommandIdException, TimeoutException, NotSynchronousException, PDUException, IOException {
+		PDU pdu = null;
+		if (!asynchronous) {
+			pdu = tryReceivePDUWithTimeout(connection, expectedPDU, timeout);
+		}
+		return pdu;
+	}
+
 	/**
 	 * This method tries to receive one PDU from the connection.
 	 * It is called in cycle from <code>tryReceivePDUWithTimeout</code> until
@@ -302,6 +543,25 @@ public class Receiver extends ReceiverBase {
 	 * @see ReceiverBase#run()
 	 */
 	protected PDU tryReceivePDU(Connection connection, PDU expectedPDU)
+		throws UnknownCommandIdException, TimeoutException, PDUException, IOException {
+		return tryReceivePDU(connection, expectedPDU, getQueueWaitTimeout());
+	}
+
+	/**
+	 * Tries to receive one PDU the same way as
+	 * <code>tryReceivePDU(Connection,PDU)</code>, but if the PDU isn't
+	 * in the queue yet, waits for it at most <code>maxWait</code>
+	 * milliseconds. The waiting thread is notified by the receiving thread
+	 * as soon as a new PDU is put to the queue.
+	 *
+	 * @exception IOException exception during communication
+	 * @exception PDUException incorrect format of PDU
+	 * @exception TimeoutException rest of PDU not received for too long time
+	 * @exception UnknownCommandIdException PDU with unknown id was received
+	 * @see #tryReceivePDU(Connection,PDU)
+	 * @see #enqueue(PDU)
+	 */
+	protected PDU tryReceivePDU(Connection connection, PDU expectedPDU, long maxWait)
 		throws UnknownCommandIdException, TimeoutException, PDUException, IOException {
 		PDU pdu = null;
 		if (receiver) {
@@ -316,7 +576,9 @@ public class Receiver extends ReceiverBase {
 				}
 				if (pdu == null) {
 					try {
-						pduQueue.wait(getQueueWaitTimeout());
+						if (receiver) {
+							pduQueue.wait(maxWait);
+						}
 					} catch (InterruptedException e) {
 						// we don't care
 						debug.write(DRXTX, "tryReceivePDU got interrupt waiting for queue");
@@ -352,6 +614,24 @@ public class Receiver extends ReceiverBase {
 	 * @see ReceiverBase#run()
 	 */
 	protected void receiveAsync() {
+		PDUPublisher flow = publisher;
+		if ((flow != null) && !flow.awaitDemand(getQueueWaitTimeout())) {
+			// the data are left in the connection until they're demanded
+			return;
+		}
+		Executor executor = asynchronous ? decodingExecutor : null;
+		boolean permitted = false;
+		if (executor != null) {
+			try {
+				permitted = decodingPermits.tryAcquire(getQueueWaitTimeout(), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// we don't care
+			}
+			if (!permitted) {
+				// the listener didn't keep up with the PDUs read ahead
+				return;
+			}
+		}
 		PDU pdu = null;
 		try {
 			debug.write(DRXTXD2, "Receiver.receiveAsync() going to receive pdu.");
@@ -367,19 +647,11 @@ public class Receiver extends ReceiverBase {
 			event.write(e, "Receiver.receiveAsync(): received PDU is invalid.");
 			PDU expdu = e.getPDU();
 			int seqNr = expdu == null ? 0 : expdu.getSequenceNumber();
-			if(automaticNack) {
-				sendGenericNack(Data.ESME_RINVMSGLEN, seqNr);
-			} else {
-				pdu = new GenericNack(Data.ESME_RINVMSGLEN, seqNr);
-			}
+			pdu = reject(Data.ESME_RINVMSGLEN, seqNr);
 		} catch (UnknownCommandIdException e) {
 			// if received unknown pdu, we must send generic nack
 			event.write(e, "Receiver.receiveAsync(): Unknown command id.");
-			if(automaticNack) {
-				sendGenericNack(Data.ESME_RINVCMDID, e.getSequenceNumber());
-			} else {
-				pdu = new GenericNack(Data.ESME_RINVCMDID, e.getSequenceNumber());
-			}
+			pdu = reject(Data.ESME_RINVCMDID, e.getSequenceNumber());
 		} catch (TimeoutException e) {
 			// too long had unprocessed data
 			debug.write(DRXTX, "Receiver.receiveAsync() too long had an uncomplete message.");
@@ -388,24 +660,124 @@ public class Receiver extends ReceiverBase {
 			event.write(e, "Receiver.receiveAsync()");
 			PDU expdu = e.getPDU();
 			int seqNr = expdu == null ? 0 : expdu.getSequenceNumber();
-			if(automaticNack) {
-				sendGenericNack(e.getErrorCode(), seqNr);
-			} else {
-				pdu = new GenericNack(e.getErrorCode(), seqNr);
-			}
+			pdu = reject(e.getErrorCode(), seqNr);
 		} catch (Exception e) {
 			// don't know what happen, let's end the show
 			event.write(e, "Receiver.receiveAsync()");
 			stopProcessing(e);
+			if (flow != null) {
+				flow.complete(e);
+			}
+		}
+		if ((pdu != null) && isKeepaliveResponse(pdu)) {
+			debug.write(DRXTX, "Receiver.receiveAsync(): keepalive response received");
+			keepaliveAnswered = true;
+			pdu.release();
+			pdu = null;
 		}
 		if (pdu != null) {
 			debug.write(DRXTX, "Receiver.receiveAsync(): PDU received, processing " + pdu.debugString());
-			if (asynchronous) {
+			if (asynchronous && (executor != null)) {
+				// the permit is returned when the PDU is passed to the listener
+				permitted = false;
+				decodeInParallel(executor, pdu);
+			} else if (asynchronous) {
 				process(pdu);
 			} else {
 				enqueue(pdu);
 			}
 		}
+		if (permitted) {
+			decodingPermits.release();
+		}
+	}
+
+	/**
+	 * Passes the <code>pdu</code> to the executor to decode its body;
+	 * already decoded PDUs are passed to the listener by the receiver's
+	 * thread unless they must wait for the PDUs received before them.
+	 * If the executor rejects the PDU, it's decoded by the receiver's thread.
+	 * The caller holds a decoding permit for the PDU.
+	 */
+	private void decodeInParallel(Executor executor, PDU pdu) {
+		Decoding decoding = new Decoding(pdu, orderedDecoding ? decodingTicket++ : -1);
+		if (pdu.isDecoded()) {
+			decoding.run();
+			return;
+		}
+		try {
+			executor.execute(decoding);
+		} catch (RejectedExecutionException e) {
+			debug.write(DRXTX, "Receiver: decoding executor rejected the PDU, decoding it now");
+			decoding.run();
+		}
+	}
+
+	/**
+	 * Stores the decoded <code>pdu</code> and, unless another thread is
+	 * already doing it, passes the PDUs to the listener as long as the next
+	 * one in the order of receiving is decoded.
+	 *
+	 * @param ticket the order the PDU was received in
+	 * @param pdu    the decoded PDU, null if it was rejected
+	 */
+	private void deliverInOrder(long ticket, PDU pdu) {
+		synchronized (decodedPDUs) {
+			decodedPDUs.put(new Long(ticket), pdu);
+			if (delivering) {
+				return;
+			}
+			delivering = true;
+		}
+		while (true) {
+			PDU next;
+			synchronized (decodedPDUs) {
+				Long key = new Long(deliveryTicket);
+				if (!decodedPDUs.containsKey(key)) {
+					delivering = false;
+					return;
+				}
+				next = decodedPDUs.remove(key);
+				deliveryTicket++;
+			}
+			try {
+				if (next != null) {
+					process(next);
+				}
+			} catch (RuntimeException e) {
+				// must go on, the PDUs after it would never be passed
+				event.write(e, "Receiver: ServerPDUEventListener failed");
+			} finally {
+				decodingPermits.release();
+			}
+		}
+	}
+
+	/**
+	 * Sends <code>generic_nack</code> for a PDU which can't be processed
+	 * if automatic nacks are on, otherwise returns it to be passed
+	 * to the application.
+	 *
+	 * @return the <code>generic_nack</code> to pass on or null
+	 * @see #setAutomaticNack(boolean)
+	 */
+	private PDU reject(int commandStatus, int sequenceNumber) {
+		if (automaticNack) {
+			sendGenericNack(commandStatus, sequenceNumber);
+			return null;
+		}
+		return new GenericNack(commandStatus, sequenceNumber);
+	}
+
+	/**
+	 * Gives up the PDU which failed to decode, it may be still referenced
+	 * by the exception.
+	 */
+	private void discard(PDU pdu) {
+		PDUPool pool = getPDUPool();
+		if ((pool != null) && pdu.isPooled()) {
+			pool.discard(pdu);
+		}
 	}
 
 	/**
@@ -426,6 +798,7 @@ public class Receiver extends ReceiverBase {
 			debug.write(
 				DRXTX,
 				"async receiver doesn't have ServerPDUEventListener, " + "discarding " + pdu.debugString());
+			pdu.release();
 		}
 	}
 
@@ -495,6 +868,45 @@ public class Receiver extends ReceiverBase {
 		return queueWaitTimeout;
 	}
 
+	/**
+	 * Tells the receiver that an <code>enquire_link</code> with the given
+	 * sequence number was sent by the <code>KeepaliveService</code>,
+	 * so its response should be consumed by the receiver.
+	 *
+	 * @param sequenceNumber the sequence number of the enquire link
+	 * @see KeepaliveService
+	 */
+	void setKeepaliveSequenceNumber(int sequenceNumber) {
+		keepaliveAnswered = false;
+		keepaliveSequenceNumber = sequenceNumber;
+	}
+
+	/**
+	 * Returns if the response to the last keepalive <code>enquire_link</code>
+	 * was received.
+	 *
+	 * @see #setKeepaliveSequenceNumber(int)
+	 */
+	boolean isKeepaliveAnswered() {
+		return keepaliveAnswered;
+	}
+
+	/**
+	 * Checks if the PDU is the response to the last keepalive
+	 * <code>enquire_link</code>.
+	 */
+	private boolean isKeepaliveResponse(PDU pdu) {
+		int sequenceNumber = keepaliveSequenceNumber;
+		return (sequenceNumber != 0)
+			&& (pdu.getCommandId() == Data.ENQUIRE_LINK_RESP)
+			&& (pdu.getSequenceNumber() == sequenceNumber);
+	}
+
+	// ReceiverBase's getMaxReceiveAttemptTime override
+	protected long getMaxReceiveAttemptTime() {
+		return getQueueWaitTimeout();
+	}
+
 	// ProcessingThread's getThreadName override
 	public String getThreadName() {
 		return RECEIVER_THREAD_NAME;
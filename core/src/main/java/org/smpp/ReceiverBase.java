@@ -16,6 +16,7 @@ import org.smpp.pdu.HeaderIncompleteException;
 import org.smpp.pdu.MessageIncompleteException;
 import org.smpp.pdu.PDU;
 import org.smpp.pdu.PDUException;
+import org.smpp.pdu.PDUPool;
 import org.smpp.pdu.UnknownCommandIdException;
 import org.smpp.util.ByteBuffer;
 import org.smpp.util.NotEnoughDataInByteBufferException;
@@ -49,6 +50,28 @@ public abstract class ReceiverBase extends ProcessingThread {
 
 	private byte messageIncompleteRetryCount = 0;
 
+	/**
+	 * The time (as returned by <code>Data.getCurrentTime</code>) when
+	 * some data were received from the connection for the last time,
+	 * zero if nothing was received yet.
+	 * @see #getLastReceiveTime()
+	 */
+	private volatile long lastReceiveTime = 0;
+
+	/**
+	 * The pool the received PDUs are borrowed from, null if the PDUs
+	 * are always created.
+	 * @see #setPDUPool(PDUPool)
+	 */
+	private volatile PDUPool pduPool = null;
+
+	/**
+	 * If only the headers of the received PDUs are parsed at once.
+	 *
+	 * @see #setLazyDecoding(boolean)
+	 */
+	private volatile boolean lazyDecoding = false;
+
 
 	/**
 	 * Method repeatedly called from <code>process</code> method.
@@ -86,6 +109,50 @@ public abstract class ReceiverBase extends ProcessingThread {
 	protected abstract PDU tryReceivePDU(Connection connection, PDU expectedPDU)
 		throws UnknownCommandIdException, TimeoutException, PDUException, IOException;
 
+	/**
+	 * Variant of <code>tryReceivePDU(Connection,PDU)</code> which is told
+	 * how long the caller is still willing to wait for the PDU.
+	 * Derived classes which block while waiting for a PDU (e.g. on a queue
+	 * filled by another thread) should override this method, block for
+	 * at most <code>maxWait</code> milliseconds and return as soon as
+	 * they're notified that a PDU arrived, so the caller is woken up
+	 * exactly when the PDU is available rather than after a fixed wait.
+	 * The default implementation ignores <code>maxWait</code> and calls
+	 * <code>tryReceivePDU(Connection,PDU)</code>.
+	 *
+	 * @param connection  the connection from which the PDU should be received
+	 * @param expectedPDU the command id and sequence id of the received PDU
+	 *                    should be equal to those of expectedPDU
+	 * @param maxWait     the maximal time in milliseconds the method
+	 *                    should block waiting for the PDU
+	 * @return the received PDU if any or null if none received
+	 *
+	 * @exception IOException exception during communication
+	 * @exception PDUException incorrect format of PDU
+	 * @exception TimeoutException rest of data not received for too long time
+	 * @exception UnknownCommandIdException PDU with unknown id was received
+	 * @see #tryReceivePDUWithTimeout(Connection,PDU,long)
+	 */
+	protected PDU tryReceivePDU(Connection connection, PDU expectedPDU, long maxWait)
+		throws UnknownCommandIdException, TimeoutException, PDUException, IOException {
+		return tryReceivePDU(connection, expectedPDU);
+	}
+
+	/**
+	 * Returns the longest time in milliseconds a single attempt to receive
+	 * a PDU may block when the caller didn't limit it, i.e. for blocking
+	 * receive or for the single attempt with zero timeout.
+	 * Derived classes which override
+	 * <code>tryReceivePDU(Connection,PDU,long)</code> can return their
+	 * own limit here.
+	 *
+	 * @return the maximal length of one receive attempt in milliseconds
+	 * @see #tryReceivePDU(Connection,PDU,long)
+	 */
+	protected long getMaxReceiveAttemptTime() {
+		return Data.QUEUE_TIMEOUT;
+	}
+
 	/**
 	 * This is an implementation of <code>ProcessingThread</code>'s 
 	 * <code>process</code> method, which is method called in loop from
@@ -144,15 +211,25 @@ public abstract class ReceiverBase extends ProcessingThread {
 	final protected PDU tryReceivePDUWithTimeout(Connection connection, PDU expectedPDU, long timeout)
 		throws UnknownCommandIdException, TimeoutException, PDUException, IOException {
 		debug.write(DRXTX, "receivePDU: Going to receive response.");
-		long startTime = Data.getCurrentTime();
 		PDU pdu = null;
+		long maxAttempt = getMaxReceiveAttemptTime();
 		if (timeout == 0) {
 			// with no timeout try just once
-			pdu = tryReceivePDU(connection, expectedPDU);
+			pdu = tryReceivePDU(connection, expectedPDU, maxAttempt);
+		} else if (timeout == Data.RECEIVE_BLOCKING) {
+			// keep trying until get some
+			while (pdu == null) {
+				pdu = tryReceivePDU(connection, expectedPDU, maxAttempt);
+			}
 		} else {
-			// with timeout keep trying until get some or timeout expires
-			while ((pdu == null) && canContinueReceiving(startTime, timeout)) {
-				pdu = tryReceivePDU(connection, expectedPDU);
+			// with timeout keep trying until get some or timeout expires;
+			// each attempt is told exactly how long it can still wait
+			long deadline = System.nanoTime() + timeout * 1000000L;
+			long remaining = timeout;
+			while ((pdu == null) && (remaining > 0)) {
+				long attempt = (maxAttempt > 0) ? Math.min(remaining, maxAttempt) : remaining;
+				pdu = tryReceivePDU(connection, expectedPDU, attempt);
+				remaining = (deadline - System.nanoTime() + 999999L) / 1000000L;
 			}
 		}
 		if (pdu != null) {
@@ -200,6 +277,7 @@ public abstract class ReceiverBase extends ProcessingThread {
 				if (buffer.length() != 0) {
 					unprocBuffer.appendBuffer(buffer);
 					unprocessed.setLastTimeReceived();
+					lastReceiveTime = Data.getCurrentTime();
 					pdu = tryGetUnprocessedPDU(unprocessed);
 				} else {
 					debug.write(DRXTXD2, "no data received this time.");
@@ -239,7 +317,7 @@ public abstract class ReceiverBase extends ProcessingThread {
 		PDU pdu = null;
 		ByteBuffer unprocBuffer = unprocessed.getUnprocessed();
 		try {
-			pdu = PDU.createPDU(unprocBuffer);
+			pdu = PDU.createPDU(unprocBuffer, pduPool, isHeaderDecodingOnly());
 			unprocessed.check();
 			// Reset counter after successful createPDU (as per bug #2138444):
 			messageIncompleteRetryCount = 0;
@@ -339,28 +417,77 @@ public abstract class ReceiverBase extends ProcessingThread {
 	}
 
 	/**
-	 * Returns the current setting of the receiving timeout.
+	 * Returns the time when some data were received from the connection
+	 * for the last time, zero if nothing was received yet.
 	 *
-	 * @return the current timeout value
+	 * @return the time of the last receive in milliseconds
+	 * @see Data#getCurrentTime()
 	 */
-	public long getReceiveTimeout() {
-		return receiveTimeout;
+	public long getLastReceiveTime() {
+		return lastReceiveTime;
+	}
+
+	/**
+	 * Sets the pool the received PDUs are borrowed from. If set, the
+	 * receiver of the PDUs must release them with <code>PDU.release</code>
+	 * after processing.
+	 *
+	 * @param pduPool the pool or null to stop pooling
+	 * @see PDUPool
+	 * @see PDU#release()
+	 */
+	public void setPDUPool(PDUPool pduPool) {
+		this.pduPool = pduPool;
+	}
+
+	/**
+	 * Returns the pool the received PDUs are borrowed from, null if none.
+	 */
+	public PDUPool getPDUPool() {
+		return pduPool;
 	}
 
 	/**
-	 * Depending on value of <code>timeout</code> and on <code>startTime</code>
-	 * returns if it's still possible to continue in receiving of message.
-	 * <code>timeout</code> can indicate either timeout in milliseconds
-	 * (if > 0), or that there has to be only one attempt to receive
-	 * a message (if = 0) or that the the receiving shuld continue until
-	 * a PDU is received (if = Data.RECEIVE_BLOCKING).
+	 * Sets if the received PDUs are decoded lazily: only the header is
+	 * parsed when the PDU is received, the body and optional parameters
+	 * of <code>submit_sm</code>, <code>deliver_sm</code> and
+	 * <code>data_sm</code> are parsed when they are accessed for
+	 * the first time. PDUs with malformed body are then delivered
+	 * to the application instead of being rejected, their
+	 * <code>isValid</code> returns false.
 	 *
-	 * @param startTime when the receiving started
-	 * @param timeout timeout indication
-	 * @return if it's possible to continue receiving
+	 * @param lazyDecoding if the body should be parsed on demand
+	 * @see PDU#setData(ByteBuffer,boolean)
 	 */
-	private boolean canContinueReceiving(long startTime, long timeout) {
-		return timeout == Data.RECEIVE_BLOCKING ? true : Data.getCurrentTime() <= (startTime + timeout);
+	public void setLazyDecoding(boolean lazyDecoding) {
+		this.lazyDecoding = lazyDecoding;
+	}
+
+	/**
+	 * Returns if the received PDUs are decoded lazily.
+	 */
+	public boolean isLazyDecoding() {
+		return lazyDecoding;
+	}
+
+	/**
+	 * Returns if only the headers of the received PDUs are parsed by the
+	 * receiving thread, their bodies later. By default if the PDUs are
+	 * decoded lazily.
+	 *
+	 * @see #setLazyDecoding(boolean)
+	 */
+	protected boolean isHeaderDecodingOnly() {
+		return lazyDecoding;
+	}
+
+	/**
+	 * Returns the current setting of the receiving timeout.
+	 *
+	 * @return the current timeout value
+	 */
+	public long getReceiveTimeout() {
+		return receiveTimeout;
 	}
 
 }
@@ -0,0 +1,55 @@
+package org.smpp;
+
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+
+/**
+ * Event passed to the <code>ServerPDUEventListener</code> of an asynchronous
+ * <code>Session</code> when no response to a request sent by the session
+ * arrived within the session's response timeout.
+ * <p>
+ * The PDU carried by the event is a response synthesized from the request,
+ * i.e. it has the command id of the expected response and the sequence
+ * number of the request, and its command status is
+ * <code>Data.ESME_RUNKNOWNERR</code>, so listeners which don't know this
+ * event still see the request as failed. The original request is available
+ * from <code>getRequest</code>.
+ * <p>
+ * If the response arrives after the timeout expired, it's still passed to
+ * the listener as a regular <code>ServerPDUEvent</code>.
+ *
+ * @see Session#setResponseTimeout(long)
+ */
+public class ResponseTimeoutEvent extends ServerPDUEvent {
+	private static final long serialVersionUID = -3059407524818862514L;
+
+	private transient Request request;
+
+	/**
+	 * Creates the event for a request which wasn't responded in time.
+	 */
+	public ResponseTimeoutEvent(Receiver source, Connection connection, Request request) {
+		super(source, connection, createTimeoutResponse(request));
+		this.request = request;
+	}
+
+	/**
+	 * Returns the request which wasn't responded in time.
+	 */
+	public Request getRequest() {
+		return request;
+	}
+
+	/**
+	 * Returns the synthesized response carried by the event.
+	 */
+	public Response getResponse() {
+		return (Response) getPDU();
+	}
+
+	private static Response createTimeoutResponse(Request request) {
+		Response response = request.getResponse();
+		response.setCommandStatus(Data.ESME_RUNKNOWNERR);
+		return response;
+	}
+}
@@ -12,6 +12,7 @@ package org.smpp;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.smpp.pdu.*;
 import org.smpp.util.*;
@@ -240,6 +241,30 @@ public class Session extends SmppObject {
 	 */
 	private boolean asynchronous = false;
 
+	/**
+	 * For how long (in milliseconds) is waited for a response to a request
+	 * sent by this session. Zero means that the asynchronous requests are
+	 * not tracked at all and that the synchronous requests wait for
+	 * the response for the receiver's receive timeout.
+	 * @see #setResponseTimeout(long)
+	 */
+	private long responseTimeout = 0;
+
+	/**
+	 * The timing wheel used for the response timeouts of asynchronous
+	 * requests. If not set, the wheel shared by the library is used.
+	 * @see TimingWheel#getSharedInstance()
+	 */
+	private TimingWheel timingWheel = null;
+
+	/**
+	 * Asynchronous requests sent by this session waiting for their
+	 * responses, keyed by sequence number.
+	 * @see OutstandingRequest
+	 */
+	private ConcurrentHashMap<Integer, OutstandingRequest> outstandingRequests =
+		new ConcurrentHashMap<Integer, OutstandingRequest>();
+
 	/**
 	 * Default constructor made protected as it's not desirable to
 	 * allow creation of <code>Session</code> without providing 
@@ -315,7 +340,9 @@ public class Session extends SmppObject {
 	 */
 	private void setServerPDUEventListener(ServerPDUEventListener pduListener) {
 		this.pduListener = pduListener;
-		receiver.setServerPDUEventListener(pduListener);
+		receiver.setServerPDUEventListener(
+			pduListener == null ? null : new ResponseTrackingServerPDUEventListener(pduListener));
+		receiver.setPublisher(pduListener instanceof PDUPublisher ? (PDUPublisher) pduListener : null);
 		asynchronous = pduListener != null;
 	}
 
@@ -327,6 +354,16 @@ public class Session extends SmppObject {
 		return pduListener;
 	}
 
+	/**
+	 * Returns if the session is asynchronous, i.e. the responses are
+	 * passed to the listener instead of being returned by the methods
+	 * sending the requests.
+	 * @see #asynchronous
+	 */
+	public boolean isAsynchronous() {
+		return asynchronous;
+	}
+
 	/**
 	 * Sets the type of the session. The type can be either ESME or MC viewed
 	 * from the side where the instance of the <code>Session</code> is used.
@@ -409,6 +446,8 @@ public class Session extends SmppObject {
 				//receiver.stop();
 				close();
 			} else {
+				// the receiver mustn't read anything before the publisher's demand
+				receiver.setPublisher(pduListener instanceof PDUPublisher ? (PDUPublisher) pduListener : null);
 				receiver.start();
 				if (bindReq.isTransmitter()) {
 					if (bindReq.isReceiver()) {
@@ -510,6 +549,10 @@ public class Session extends SmppObject {
 				event.write("stopping receiver");
 				receiver.stop();
 				event.write("receiver stopped");
+				if (origListener instanceof PDUPublisher) {
+					// the receiver was stopped while the unbind listener was set
+					((PDUPublisher) origListener).complete(null);
+				}
 				receiver = null;
 				transmitter = null;
 				close();
@@ -872,6 +915,63 @@ public class Session extends SmppObject {
 		debug.exit(DSESS, this);
 	}
 
+	/**
+	 * Sets for how long is waited for a response to a request sent by this
+	 * session.<br>
+	 * If the session is asynchronous, each request which can be responded
+	 * is tracked on a <code>TimingWheel</code> until its response arrives.
+	 * If no response arrives within the timeout, the request is forgotten
+	 * and a <code>ResponseTimeoutEvent</code> is passed to the session's
+	 * <code>ServerPDUEventListener</code> from the timing wheel's thread.<br>
+	 * If the session is synchronous, the timeout limits the waiting for
+	 * the response instead of the receiver's receive timeout.<br>
+	 * Zero (the default) switches the tracking off.
+	 *
+	 * @param timeout the response timeout in milliseconds
+	 * @see ResponseTimeoutEvent
+	 * @see #setTimingWheel(TimingWheel)
+	 */
+	public void setResponseTimeout(long timeout) {
+		responseTimeout = timeout;
+	}
+
+	/**
+	 * Returns the current response timeout.
+	 *
+	 * @see #setResponseTimeout(long)
+	 */
+	public long getResponseTimeout() {
+		return responseTimeout;
+	}
+
+	/**
+	 * Sets the timing wheel used for tracking the response timeouts.
+	 * If not set, the wheel shared by the library is used.
+	 *
+	 * @param timingWheel the timing wheel to use, must be running
+	 * @see #setResponseTimeout(long)
+	 */
+	public void setTimingWheel(TimingWheel timingWheel) {
+		this.timingWheel = timingWheel;
+	}
+
+	/**
+	 * Returns the timing wheel used for tracking the response timeouts.
+	 */
+	public TimingWheel getTimingWheel() {
+		return timingWheel == null ? TimingWheel.getSharedInstance() : timingWheel;
+	}
+
+	/**
+	 * Returns the number of asynchronous requests waiting for their
+	 * responses which are tracked by the session.
+	 *
+	 * @see #setResponseTimeout(long)
+	 */
+	public int getOutstandingRequestCount() {
+		return outstandingRequests.size();
+	}
+
 	/**
 	 * Returns <code>Transmitter</code> object created for transmitting
 	 * PDUs to SMSC.
@@ -932,13 +1032,30 @@ public class Session extends SmppObject {
 		throws ValueNotSetException, TimeoutException, PDUException, IOException {
 		debug.enter(DSESS, this, "send(Request)");
 		Response response = null;
-		debug.write(DSESS, "Sending request " + request.debugString());
+		if (debug.active(DSESS)) {
+			// not built otherwise, it would parse lazily decoded requests
+			debug.write(DSESS, "Sending request " + request.debugString());
+		}
+		OutstandingRequest outstanding = null;
+		if (asynchronous && (responseTimeout > 0) && request.canResponse()) {
+			// must be tracked before sending as the response can come
+			// before the transmitter returns
+			request.assignSequenceNumber();
+			outstanding = new OutstandingRequest(request);
+			outstanding.track();
+		}
+		boolean sent = false;
 		try {
 			transmitter.send(request);
+			sent = true;
 		} catch (ValueNotSetException e) {
 			event.write(e, "Sending the request.");
 			debug.exit(DSESS, this);
 			throw e;
+		} finally {
+			if (!sent && (outstanding != null)) {
+				outstanding.forget();
+			}
 		}
 		if ((!asynchronous) && (request.canResponse())) {
 			PDU pdu = null;
@@ -947,7 +1064,11 @@ public class Session extends SmppObject {
 			try {
 				debug.write(DSESS, "Going to receive response. Expecting " + expResponse.debugString());
 				try {
-					pdu = receiver.receive(expResponse);
+					if (responseTimeout > 0) {
+						pdu = receiver.receive(expResponse, responseTimeout);
+					} else {
+						pdu = receiver.receive(expResponse);
+					}
 				} catch (NotSynchronousException e) {
 					debug.write("Unexpected NotSynchronousException caught, ignoring :-)");
 				}
@@ -1307,6 +1428,76 @@ public class Session extends SmppObject {
 		}
 	}
 
+	/**
+	 * Asynchronous request waiting for its response. Registered in
+	 * <code>outstandingRequests</code> and scheduled on the timing wheel;
+	 * whichever of the response and the timeout removes it from
+	 * <code>outstandingRequests</code> first decides the outcome.
+	 * @see #setResponseTimeout(long)
+	 * @see ResponseTrackingServerPDUEventListener
+	 */
+	private class OutstandingRequest extends TimingWheel.Timeout {
+		Request request;
+		Integer sequenceNumber;
+		Receiver receiver;
+
+		public OutstandingRequest(Request request) {
+			this.request = request;
+			this.sequenceNumber = new Integer(request.getSequenceNumber());
+			this.receiver = Session.this.receiver;
+		}
+
+		public void track() {
+			outstandingRequests.put(sequenceNumber, this);
+			getTimingWheel().schedule(this, responseTimeout);
+		}
+
+		public void forget() {
+			if (outstandingRequests.remove(sequenceNumber, this)) {
+				cancel();
+			}
+		}
+
+		protected void expired() {
+			if (!outstandingRequests.remove(sequenceNumber, this)) {
+				return; // the response won
+			}
+			debug.write(DSESS, "no response in time for " + request.debugString());
+			ServerPDUEventListener listener = getServerPDUEventListener();
+			if (listener != null) {
+				listener.handleEvent(new ResponseTimeoutEvent(receiver, connection, request));
+			} else {
+				debug.write(DSESS, "no listener for the response timeout, discarding");
+			}
+		}
+	}
+
+	/**
+	 * Listener installed to the receiver in front of the listener
+	 * provided by the application. Stops tracking of the outstanding
+	 * requests whose responses arrived and passes all events
+	 * to the application's listener.
+	 * @see OutstandingRequest
+	 */
+	private class ResponseTrackingServerPDUEventListener extends SmppObject implements ServerPDUEventListener {
+		ServerPDUEventListener origListener;
+
+		public ResponseTrackingServerPDUEventListener(ServerPDUEventListener origListener) {
+			this.origListener = origListener;
+		}
+
+		public void handleEvent(ServerPDUEvent event) {
+			PDU pdu = event.getPDU();
+			if ((pdu != null) && pdu.isResponse() && !outstandingRequests.isEmpty()) {
+				OutstandingRequest outstanding = outstandingRequests.remove(new Integer(pdu.getSequenceNumber()));
+				if (outstanding != null) {
+					outstanding.cancel();
+				}
+			}
+			origListener.handleEvent(event);
+		}
+	}
+
 	/**
 	 * God, I would never think that to keep unbind synchronous in
 	 * an asynchronous enviroment would be so funny. Here is the replacement
@@ -339,6 +339,19 @@ public class TCPIPConnection extends Connection {
 	 * @see java.net.Socket
 	 */
 	public void send(ByteBuffer data) throws IOException {
+		send(data.getBuffer(), 0, data.length());
+	}
+
+	/**
+	 * Sends the part of the array over the connection, without copying
+	 * the data.
+	 *
+	 * @param data the array with the data to send
+	 * @param offset the start of the data in the array
+	 * @param length the number of bytes to send
+	 * @see Connection#send(byte[],int,int)
+	 */
+	public void send(byte[] data, int offset, int length) throws IOException {
 		debug.enter(DCOM, this, "send");
 		IOException exception = null;
 
@@ -349,8 +362,8 @@ public class TCPIPConnection extends Connection {
 		if (connType == CONN_CLIENT) {
 			try {
 				try {
-					outputStream.write(data.getBuffer(), 0, data.length());
-					debug.write(DCOM, "sent " + data.length() + " bytes to " + address + " on port " + port);
+					outputStream.write(data, offset, length);
+					debug.write(DCOM, "sent " + length + " bytes to " + address + " on port " + port);
 				} catch (IOException e) {
 					debug.write("IOException sending data " + e);
 					exception = e;
@@ -483,15 +496,20 @@ public class TCPIPConnection extends Connection {
 		IOException exception = null;
 
 		Connection newConn = null;
-		if (connType == CONN_SERVER) {
+		// the listening socket can be closed from another thread
+		// to stop the accepting, take a local copy of it
+		ServerSocket listeningSocket = receiverSocket;
+		if ((connType == CONN_SERVER) && (listeningSocket == null)) {
+			debug.write(DCOMD, "Not listening, the connection has been closed.");
+		} else if (connType == CONN_SERVER) {
 			try {
-				receiverSocket.setSoTimeout((int) getReceiveTimeout());
+				listeningSocket.setSoTimeout((int) getReceiveTimeout());
 			} catch (SocketException e) {
 				// don't care, we're just setting the timeout
 			}
 			Socket acceptedSocket = null;
 			try {
-				acceptedSocket = receiverSocket.accept();
+				acceptedSocket = listeningSocket.accept();
 			} catch (IOException e) {
 				debug.write(DCOMD, "Exception accepting socket (timeout?)" + e);
 			}
@@ -13,6 +13,7 @@ package org.smpp;
 import java.io.IOException;
 
 import org.smpp.pdu.*;
+import org.smpp.util.ByteBuffer;
 
 /**
  * Class <code>Transmitter</code> transmits PDUs over connection.
@@ -33,6 +34,29 @@ public class Transmitter extends SmppObject {
 	 */
 	private Connection connection = null;
 
+	/**
+	 * The time (as returned by <code>Data.getCurrentTime</code>) when
+	 * the last PDU was sent over the connection, zero if none was sent yet.
+	 * @see #getLastSendTime()
+	 */
+	private volatile long lastSendTime = 0;
+
+	/**
+	 * PDUs up to this size are encoded into the reused
+	 * <code>sendBuffer</code>, bigger ones into a buffer of their own.
+	 */
+	private static final int MAX_REUSED_BUFFER_SIZE = 16 * 1024;
+
+	/** The initial size of the reused <code>sendBuffer</code>. */
+	private static final int INITIAL_BUFFER_SIZE = 512;
+
+	/**
+	 * The buffer the PDUs are encoded to before sending, reused
+	 * for all the PDUs sent; guarded by the transmitter's lock.
+	 * @see #send(PDU)
+	 */
+	private byte[] sendBuffer = null;
+
 	/**
 	 * Default constructor made protected as it's not desirable to
 	 * allow creation of <code>Transmitter</code> without providing 
@@ -54,7 +78,9 @@ public class Transmitter extends SmppObject {
 
 	/**
 	 * Assigns unique sequence number to PDU, if necessary, and sends its
-	 * data over connection.
+	 * data over connection. The PDU is encoded in one pass into a buffer
+	 * reused for the following PDUs; concurrent sends are serialised
+	 * so the PDUs are never interleaved on the connection.
 	 *
 	 * @param pdu the PDU to send
 	 *
@@ -66,13 +92,40 @@ public class Transmitter extends SmppObject {
 		pdu.assignSequenceNumber();
 		try {
 			debug.write(DCOM, "going to send pdu's data over connection");
-			connection.send(pdu.getData());
+			synchronized (this) {
+				// built once for PDUs which don't encode their body directly
+				ByteBuffer fallbackBody = pdu.getFallbackBody();
+				int length = pdu.getEncodedLength(fallbackBody);
+				byte[] buffer;
+				if (length > MAX_REUSED_BUFFER_SIZE) {
+					buffer = new byte[length];
+				} else {
+					if ((sendBuffer == null) || (sendBuffer.length < length)) {
+						sendBuffer = new byte[Math.max(length, INITIAL_BUFFER_SIZE)];
+					}
+					buffer = sendBuffer;
+				}
+				pdu.encode(buffer, 0, fallbackBody);
+				connection.send(buffer, 0, length);
+			}
+			lastSendTime = Data.getCurrentTime();
 			debug.write(DCOM, "successfully sent pdu's data over connection");
 		} finally {
 			debug.exit(DCOM, this);
 		}
 	}
 
+	/**
+	 * Returns the time when the last PDU was successfully sent, zero
+	 * if none was sent yet.
+	 *
+	 * @return the time of the last send in milliseconds
+	 * @see Data#getCurrentTime()
+	 */
+	public long getLastSendTime() {
+		return lastSendTime;
+	}
+
 }
 /*
  * $Log: not supported by cvs2svn $
@@ -85,6 +85,26 @@ public class Address extends ByteData {
 		return addressBuf;
 	}
 
+	/**
+	 * Sets the default ton, npi and address, keeps the max length
+	 * of the address.
+	 */
+	public void reset() {
+		ton = Data.getDefaultTon();
+		npi = Data.getDefaultNpi();
+		address = Data.DFLT_ADDR;
+	}
+
+	public int getEncodedLength() {
+		return 2 + getCStringLength(getAddress());
+	}
+
+	public int encode(byte[] dest, int offset) {
+		dest[offset++] = getTon();
+		dest[offset++] = getNpi();
+		return encodeCString(getAddress(), dest, offset);
+	}
+
 	public void setTon(byte ton) {
 		this.ton = ton;
 	}
@@ -115,8 +135,8 @@ public class Address extends ByteData {
 		// The address is by default encoded with Data.ENC_ASCII
 		// Create a new string with the given encoding
 		try {
-			byte[] bytes = address.getBytes(Data.ENC_ASCII);
-			String newAddress = new String(bytes, encoding);
+			byte[] bytes = CharsetRegistry.encodeAscii(address);
+			String newAddress = CharsetRegistry.decode(bytes, 0, bytes.length, encoding);
 			return newAddress;
 		} catch(UnsupportedEncodingException uee) {
 			// just return the address as it is
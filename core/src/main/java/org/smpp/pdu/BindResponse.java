@@ -24,12 +24,19 @@ public abstract class BindResponse extends Response {
 	private String systemId = Data.DFLT_SYSID;
 
 	// optional parameters
-	private TLVByte scInterfaceVersion = new TLVByte(Data.OPT_PAR_SC_IF_VER);
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			Response.optionalTable,
+			new TLV[] {
+				new TLVByte(Data.OPT_PAR_SC_IF_VER)
+			});
 
 	public BindResponse(int commandId) {
 		super(commandId);
+	}
 
-		registerOptional(scInterfaceVersion);
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
 	}
 
 	public void setBody(ByteBuffer buffer)
@@ -57,15 +64,15 @@ public abstract class BindResponse extends Response {
 	}
 
 	public boolean hasScInterfaceVersion() {
-		return scInterfaceVersion.hasValue();
+		return hasOptional(Data.OPT_PAR_SC_IF_VER);
 	}
 
 	public void setScInterfaceVersion(byte value) {
-		scInterfaceVersion.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SC_IF_VER)).setValue(value);
 	}
 
 	public byte getScInterfaceVersion() throws ValueNotSetException {
-		return scInterfaceVersion.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SC_IF_VER)).getValue();
 	}
 
 	public String debugString() {
@@ -11,8 +11,6 @@
 package org.smpp.pdu;
 
 import java.io.UnsupportedEncodingException;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
 
 import org.smpp.Data;
 import org.smpp.SmppObject;
@@ -34,19 +32,6 @@ import org.smpp.util.*;
  * @see #getData()
  */
 public abstract class ByteData extends SmppObject {
-	/**
-	 * Defines a format of part of the smpp defined date format
-	 * which is parseable by Java SimpleDateFormat parser.
-	 * The rest (nnp) is parsed 'manually'.
-	 */
-	private static final String SMPP_TIME_DATE_FORMAT = "yyMMddHHmmss";
-
-	/**
-	 * The formatter object used for checking if the format of the datetime
-	 * string is correct.
-	 */
-	private static SimpleDateFormat dateFormatter;
-
 	/**
 	 * Controls checking of the date-time format in the library.
 	 * If this variable to is set to <code>true</code> the library will check if
@@ -59,16 +44,6 @@ public abstract class ByteData extends SmppObject {
 	 */
 	private static boolean libraryCheckDateFormat = true;
 
-	/**
-	 * Static initialiser initialises the <code>dateFormatter</code>
-	 * with format specified for SMPP Date/Time format and sets
-	 * other formatter parameters.
-	 */
-	static {
-		dateFormatter = new SimpleDateFormat(SMPP_TIME_DATE_FORMAT);
-		dateFormatter.setLenient(false);
-	}
-
 	/**
 	* This abstract method should parse the buffer with binary data
 	* passed as parameter into member variables.
@@ -105,6 +80,63 @@ public abstract class ByteData extends SmppObject {
 	public ByteData() {
 	}
 
+	/**
+	 * Returns the number of bytes <code>encode</code> writes, i.e. the
+	 * length of the buffer returned by <code>getData</code>.
+	 * This default implementation creates the data using <code>getData</code>;
+	 * derived classes override it together with <code>encode</code>
+	 * to compute the length from their fields.
+	 *
+	 * @return the length of the binary representation
+	 * @see #encode(byte[],int)
+	 */
+	public int getEncodedLength() throws ValueNotSetException {
+		ByteBuffer data = getData();
+		return data == null ? 0 : data.length();
+	}
+
+	/**
+	 * Writes the binary representation of the object, the same as
+	 * returned by <code>getData</code>, to the array starting at the offset.
+	 * This default implementation copies the result of <code>getData</code>;
+	 * derived classes override it to write their fields directly.
+	 *
+	 * @param dest the destination array, must have enough space
+	 *             as reported by <code>getEncodedLength</code>
+	 * @param offset where to start writing
+	 * @return the offset after the written data
+	 * @see #getEncodedLength()
+	 * @see #getData()
+	 */
+	public int encode(byte[] dest, int offset) throws ValueNotSetException {
+		return encodeBytes(getData(), dest, offset);
+	}
+
+	/**
+	 * Writes the binary representation of the object to the NIO buffer
+	 * at its position and advances the position.
+	 *
+	 * @param dest the destination buffer
+	 * @exception java.nio.BufferOverflowException if there isn't enough
+	 *            space remaining in the buffer
+	 * @see #encode(byte[],int)
+	 */
+	public void encode(java.nio.ByteBuffer dest) throws ValueNotSetException {
+		int length = getEncodedLength();
+		if (dest.remaining() < length) {
+			throw new java.nio.BufferOverflowException();
+		}
+		if (dest.hasArray()) {
+			int start = dest.arrayOffset() + dest.position();
+			int end = encode(dest.array(), start);
+			dest.position(dest.position() + (end - start));
+		} else {
+			byte[] data = new byte[length];
+			encode(data, 0);
+			dest.put(data);
+		}
+	}
+
 	/**
 	 * Checks if the length of string is less or equal than the provided
 	 * maximum.
@@ -168,7 +200,7 @@ public abstract class ByteData extends SmppObject {
 	 */
 	protected static void checkString(String string, int min, int max, String encoding)
 		throws WrongLengthOfStringException, UnsupportedEncodingException {
-		byte[] stringBytes = string.getBytes(encoding);
+		byte[] stringBytes = CharsetRegistry.encode(string, encoding);
 		int length = stringBytes == null ? 0 : stringBytes.length;
 		checkString(min, length, max);
 	}
@@ -237,52 +269,7 @@ public abstract class ByteData extends SmppObject {
 			// i.e. no date provided or don't check the format
 			return;
 		}
-		char locTime = dateStr.charAt(dateStr.length() - 1);
-		if ("+-R".lastIndexOf(locTime) == -1) {
-			// i.e. the locTime isn't one of the possible values
-			throw new WrongDateFormatException(
-				dateStr,
-				"time difference relation indicator incorrect; " + "should be +, - or R and is " + locTime);
-		}
-		int formatLen = SMPP_TIME_DATE_FORMAT.length();
-		String dateJavaStr = dateStr.substring(0, formatLen);
-		synchronized (dateFormatter) {
-			try {
-				if (locTime == 'R') {
-					// check relative date
-					// won't check date validity just if it's all number it
-					Long.parseLong(dateJavaStr);
-				} else {
-					// check absolute dates
-					dateFormatter.parse(dateJavaStr);
-				}
-			} catch (ParseException e) {
-				debug.write("Exception parsing absolute date " + dateStr + " " + e);
-				throw new WrongDateFormatException(dateStr, "format of absolute date-time incorrect");
-			} catch (NumberFormatException e) {
-				debug.write("Exception parsing relative date " + dateStr + " " + e);
-				throw new WrongDateFormatException(dateStr, "format of relative date-time incorrect");
-			}
-		}
-		String tenthsOfSecStr = dateStr.substring(formatLen, formatLen + 1);
-		try {
-			Integer.parseInt(tenthsOfSecStr);
-		} catch (NumberFormatException e) {
-			throw new WrongDateFormatException(dateStr, "non-numeric tenths of seconds " + tenthsOfSecStr);
-		}
-		String timeDiffStr = dateStr.substring(formatLen + 1, formatLen + 3);
-		int timeDiff = 0;
-		try {
-			timeDiff = Integer.parseInt(timeDiffStr);
-		} catch (NumberFormatException e) {
-			throw new WrongDateFormatException(dateStr, "non-numeric time difference " + timeDiffStr);
-		}
-		if ((timeDiff < 0) || (timeDiff > 48)) {
-			// defined in SMPP v3.4 sect. 7.1.1
-			throw new WrongDateFormatException(
-				dateStr,
-				"time difference is incorrect; " + "should be between 00-48 and is " + timeDiffStr);
-		}
+		SmppTime.check(dateStr);
 	}
 
 	/**
@@ -370,6 +357,88 @@ public abstract class ByteData extends SmppObject {
 		}
 	}
 
+	/**
+	 * Writes the short to the array in network byte order.
+	 * @return the offset after the written data
+	 */
+	protected static int encodeShort(short value, byte[] dest, int offset) {
+		dest[offset] = (byte) (value >>> 8);
+		dest[offset + 1] = (byte) value;
+		return offset + 2;
+	}
+
+	/**
+	 * Writes the int to the array in network byte order.
+	 * @return the offset after the written data
+	 */
+	protected static int encodeInt(int value, byte[] dest, int offset) {
+		dest[offset] = (byte) (value >>> 24);
+		dest[offset + 1] = (byte) (value >>> 16);
+		dest[offset + 2] = (byte) (value >>> 8);
+		dest[offset + 3] = (byte) value;
+		return offset + 4;
+	}
+
+	/**
+	 * Returns the length of the string encoded as ASCII c-string including
+	 * the terminating zero, as appended by <code>ByteBuffer.appendCString</code>.
+	 * @see #encodeCString(String,byte[],int)
+	 */
+	protected static int getCStringLength(String string) {
+		if (string == null) {
+			return 1;
+		}
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) >= 0x80) {
+				return asciiBytes(string).length + 1;
+			}
+		}
+		return length + 1;
+	}
+
+	/**
+	 * Writes the string encoded as ASCII c-string including
+	 * the terminating zero, the same as <code>ByteBuffer.appendCString</code>.
+	 * @return the offset after the written data
+	 */
+	protected static int encodeCString(String string, byte[] dest, int offset) {
+		if (string != null) {
+			int length = string.length();
+			for (int i = 0; i < length; i++) {
+				char c = string.charAt(i);
+				if (c >= 0x80) {
+					// non ascii chars are replaced by the encoder
+					byte[] bytes = asciiBytes(string);
+					System.arraycopy(bytes, 0, dest, offset, bytes.length);
+					offset += bytes.length;
+					dest[offset] = 0;
+					return offset + 1;
+				}
+				dest[offset + i] = (byte) c;
+			}
+			offset += length;
+		}
+		dest[offset] = 0;
+		return offset + 1;
+	}
+
+	private static byte[] asciiBytes(String string) {
+		return CharsetRegistry.encodeAscii(string);
+	}
+
+	/**
+	 * Writes the bytes of the buffer to the array.
+	 * @return the offset after the written data
+	 */
+	protected static int encodeBytes(ByteBuffer data, byte[] dest, int offset) {
+		int length = data == null ? 0 : data.length();
+		if (length > 0) {
+			System.arraycopy(data.getBuffer(), 0, dest, offset, length);
+		}
+		return offset + length;
+	}
+
 	/**
 	 * Returns human readable version of the data carried by the object.
 	 * Derived classes should override this method with possible inclusion
@@ -30,101 +30,69 @@ public class DataSM extends Request {
 	private byte dataCoding = Data.DFLT_DATA_CODING;
 
 	// optional parameters
-	private TLVShort userMessageReference = new TLVShort(Data.OPT_PAR_USER_MSG_REF);
-	private TLVShort sourcePort = new TLVShort(Data.OPT_PAR_SRC_PORT);
-	private TLVByte sourceAddrSubunit = new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
-	private TLVByte sourceNetworkType = new TLVByte(Data.OPT_PAR_SRC_NW_TYPE);
-	private TLVByte sourceBearerType = new TLVByte(Data.OPT_PAR_SRC_BEAR_TYPE);
-	private TLVByte sourceTelematicsId = new TLVByte(Data.OPT_PAR_SRC_TELE_ID);
-	private TLVShort destinationPort = new TLVShort(Data.OPT_PAR_DST_PORT);
-	private TLVByte destAddrSubunit = new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT);
-	private TLVByte destNetworkType = new TLVByte(Data.OPT_PAR_DST_NW_TYPE);
-	private TLVByte destBearerType = new TLVByte(Data.OPT_PAR_DST_BEAR_TYPE);
-	private TLVShort destTelematicsId = new TLVShort(Data.OPT_PAR_DST_TELE_ID);
-	private TLVShort sarMsgRefNum = new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM);
-	private TLVUByte sarTotalSegments = new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG);
-	private TLVUByte sarSegmentSeqnum = new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM);
-	private TLVByte moreMsgsToSend = new TLVByte(Data.OPT_PAR_MORE_MSGS);
-	private TLVInt qosTimeToLive = new TLVInt(Data.OPT_PAR_QOS_TIME_TO_LIVE);
-	private TLVByte payloadType = new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE);
-	private TLVOctets messagePayload =
-		new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX);
-	private TLVByte setDpf = new TLVByte(Data.OPT_PAR_SET_DPF);
-	private TLVString receiptedMessageId =
-		new TLVString(Data.OPT_PAR_RECP_MSG_ID, Data.OPT_PAR_RECP_MSG_ID_MIN, Data.OPT_PAR_RECP_MSG_ID_MAX);
-	// 1-
-	private TLVByte messageState = new TLVByte(Data.OPT_PAR_MSG_STATE);
-	private TLVOctets networkErrorCode =
-		new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX);
-	// exactly 3
-	private TLVByte privacyIndicator = new TLVByte(Data.OPT_PAR_PRIV_IND);
-	private TLVOctets callbackNum =
-		new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX);
-	// 4-19
-	private TLVByte callbackNumPresInd = new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
-	private TLVOctets callbackNumAtag =
-		new TLVOctets(
-			Data.OPT_PAR_CALLBACK_NUM_ATAG,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX);
-	// 1-65
-	private TLVOctets sourceSubaddress =
-		new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX);
-	// 2-23
-	private TLVOctets destSubaddress =
-		new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX);
-	private TLVByte userResponseCode = new TLVByte(Data.OPT_PAR_USER_RESP_CODE);
-	private TLVByte displayTime = new TLVByte(Data.OPT_PAR_DISPLAY_TIME);
-	private TLVShort smsSignal = new TLVShort(Data.OPT_PAR_SMS_SIGNAL);
-	private TLVByte msValidity = new TLVByte(Data.OPT_PAR_MS_VALIDITY);
-	private TLVByte msMsgWaitFacilities = new TLVByte(Data.OPT_PAR_MSG_WAIT); // bit mask
-	private TLVByte numberOfMessages = new TLVByte(Data.OPT_PAR_NUM_MSGS);
-	private TLVEmpty alertOnMsgDelivery = new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
-	private TLVByte languageIndicator = new TLVByte(Data.OPT_PAR_LANG_IND);
-	private TLVByte itsReplyType = new TLVByte(Data.OPT_PAR_ITS_REPLY_TYPE);
-	private TLVShort itsSessionInfo = new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO);
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			new TLV[] {
+				new TLVShort(Data.OPT_PAR_USER_MSG_REF),
+				new TLVShort(Data.OPT_PAR_SRC_PORT),
+				new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT),
+				new TLVByte(Data.OPT_PAR_SRC_NW_TYPE),
+				new TLVByte(Data.OPT_PAR_SRC_BEAR_TYPE),
+				new TLVByte(Data.OPT_PAR_SRC_TELE_ID),
+				new TLVShort(Data.OPT_PAR_DST_PORT),
+				new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT),
+				new TLVByte(Data.OPT_PAR_DST_NW_TYPE),
+				new TLVByte(Data.OPT_PAR_DST_BEAR_TYPE),
+				new TLVShort(Data.OPT_PAR_DST_TELE_ID),
+				new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM),
+				new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG),
+				new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM),
+				new TLVByte(Data.OPT_PAR_MORE_MSGS),
+				new TLVInt(Data.OPT_PAR_QOS_TIME_TO_LIVE),
+				new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE),
+				new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX),
+				new TLVByte(Data.OPT_PAR_SET_DPF),
+				new TLVString(Data.OPT_PAR_RECP_MSG_ID, Data.OPT_PAR_RECP_MSG_ID_MIN, Data.OPT_PAR_RECP_MSG_ID_MAX), // 1-
+				new TLVByte(Data.OPT_PAR_MSG_STATE),
+				new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX), // exactly 3
+				new TLVByte(Data.OPT_PAR_PRIV_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX), // 4-19
+				new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM_ATAG, Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN, Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX), // 1-65
+				new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX), // 2-23
+				new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX),
+				new TLVByte(Data.OPT_PAR_USER_RESP_CODE),
+				new TLVByte(Data.OPT_PAR_DISPLAY_TIME),
+				new TLVShort(Data.OPT_PAR_SMS_SIGNAL),
+				new TLVByte(Data.OPT_PAR_MS_VALIDITY),
+				new TLVByte(Data.OPT_PAR_MSG_WAIT), // bit mask
+				new TLVByte(Data.OPT_PAR_NUM_MSGS),
+				new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY),
+				new TLVByte(Data.OPT_PAR_LANG_IND),
+				new TLVByte(Data.OPT_PAR_ITS_REPLY_TYPE),
+				new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO)
+			});
 
 	public DataSM() {
 		super(Data.DATA_SM);
+	}
+
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
+	}
+
+	protected boolean canDecodeLazily() {
+		return true;
+	}
 
-		registerOptional(userMessageReference);
-		registerOptional(sourcePort);
-		registerOptional(sourceAddrSubunit);
-		registerOptional(sourceNetworkType);
-		registerOptional(sourceBearerType);
-		registerOptional(sourceTelematicsId);
-		registerOptional(destinationPort);
-		registerOptional(destAddrSubunit);
-		registerOptional(destNetworkType);
-		registerOptional(destBearerType);
-		registerOptional(destTelematicsId);
-		registerOptional(sarMsgRefNum);
-		registerOptional(sarTotalSegments);
-		registerOptional(sarSegmentSeqnum);
-		registerOptional(moreMsgsToSend);
-		registerOptional(qosTimeToLive);
-		registerOptional(payloadType);
-		registerOptional(messagePayload);
-		registerOptional(setDpf);
-		registerOptional(receiptedMessageId);
-		registerOptional(messageState);
-		registerOptional(networkErrorCode);
-		registerOptional(privacyIndicator);
-		registerOptional(callbackNum);
-		registerOptional(callbackNumPresInd);
-		registerOptional(callbackNumAtag);
-		registerOptional(sourceSubaddress);
-		registerOptional(destSubaddress);
-		registerOptional(userResponseCode);
-		registerOptional(displayTime);
-		registerOptional(smsSignal);
-		registerOptional(msValidity);
-		registerOptional(msMsgWaitFacilities);
-		registerOptional(numberOfMessages);
-		registerOptional(alertOnMsgDelivery);
-		registerOptional(languageIndicator);
-		registerOptional(itsReplyType);
-		registerOptional(itsSessionInfo);
+	public void reset() {
+		super.reset();
+		serviceType = Data.DFLT_SRVTYPE;
+		sourceAddr.reset();
+		destAddr.reset();
+		esmClass = Data.DFLT_ESM_CLASS;
+		registeredDelivery = Data.DFLT_REG_DELIVERY;
+		dataCoding = Data.DFLT_DATA_CODING;
 	}
 
 	protected Response createResponse() {
@@ -142,22 +110,38 @@ public class DataSM extends Request {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		buffer.appendCString(getServiceType());
-		buffer.appendBuffer(getSourceAddr().getData());
-		buffer.appendBuffer(getDestAddr().getData());
-		buffer.appendByte(getEsmClass());
-		buffer.appendByte(getRegisteredDelivery());
-		buffer.appendByte(getDataCoding());
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		ensureDecoded();
+		return getCStringLength(getServiceType())
+			+ getSourceAddr().getEncodedLength()
+			+ getDestAddr().getEncodedLength()
+			+ 3;
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		ensureDecoded();
+		offset = encodeCString(getServiceType(), dest, offset);
+		offset = getSourceAddr().encode(dest, offset);
+		offset = getDestAddr().encode(dest, offset);
+		dest[offset++] = getEsmClass();
+		dest[offset++] = getRegisteredDelivery();
+		dest[offset++] = getDataCoding();
+		return offset;
 	}
 
 	public void setServiceType(String value) throws WrongLengthOfStringException {
+		ensureDecoded();
 		checkCString(value, Data.SM_SRVTYPE_LEN);
 		serviceType = value;
 	}
 
 	public void setSourceAddr(Address value) {
+		ensureDecoded();
 		sourceAddr = value;
 	}
 	public void setSourceAddr(String address) throws WrongLengthOfStringException {
@@ -168,6 +152,7 @@ public class DataSM extends Request {
 	}
 
 	public void setDestAddr(Address value) {
+		ensureDecoded();
 		destAddr = value;
 	}
 	public void setDestAddr(String address) throws WrongLengthOfStringException {
@@ -178,419 +163,431 @@ public class DataSM extends Request {
 	}
 
 	public void setEsmClass(byte value) {
+		ensureDecoded();
 		esmClass = value;
 	}
 	public void setRegisteredDelivery(byte value) {
+		ensureDecoded();
 		registeredDelivery = value;
 	}
 	public void setDataCoding(byte value) {
+		ensureDecoded();
 		dataCoding = value;
 	}
 
 	public String getServiceType() {
+		ensureDecoded();
 		return serviceType;
 	}
 	public Address getSourceAddr() {
+		ensureDecoded();
 		return sourceAddr;
 	}
 	public Address getDestAddr() {
+		ensureDecoded();
 		return destAddr;
 	}
 	public byte getEsmClass() {
+		ensureDecoded();
 		return esmClass;
 	}
 	public byte getRegisteredDelivery() {
+		ensureDecoded();
 		return registeredDelivery;
 	}
 	public byte getDataCoding() {
+		ensureDecoded();
 		return dataCoding;
 	}
 
 	public boolean hasUserMessageReference() {
-		return userMessageReference.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_MSG_REF);
 	}
 	public boolean hasSourcePort() {
-		return sourcePort.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_PORT);
 	}
 	public boolean hasSourceAddrSubunit() {
-		return sourceAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
 	}
 	public boolean hasSourceNetworkType() {
-		return sourceNetworkType.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_NW_TYPE);
 	}
 	public boolean hasSourceBearerType() {
-		return sourceBearerType.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_BEAR_TYPE);
 	}
 	public boolean hasSourceTelematicsId() {
-		return sourceTelematicsId.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_TELE_ID);
 	}
 	public boolean hasDestinationPort() {
-		return destinationPort.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_PORT);
 	}
 	public boolean hasDestAddrSubunit() {
-		return destAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT);
 	}
 	public boolean hasDestNetworkType() {
-		return destNetworkType.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_NW_TYPE);
 	}
 	public boolean hasDestBearerType() {
-		return destBearerType.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_BEAR_TYPE);
 	}
 	public boolean hasDestTelematicsId() {
-		return destTelematicsId.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_TELE_ID);
 	}
 	public boolean hasSarMsgRefNum() {
-		return sarMsgRefNum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_MSG_REF_NUM);
 	}
 	public boolean hasSarTotalSegments() {
-		return sarTotalSegments.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_TOT_SEG);
 	}
 	public boolean hasSarSegmentSeqnum() {
-		return sarSegmentSeqnum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_SEG_SNUM);
 	}
 	public boolean hasMoreMsgsToSend() {
-		return moreMsgsToSend.hasValue();
+		return hasOptional(Data.OPT_PAR_MORE_MSGS);
 	}
 	public boolean hasQosTimeToLive() {
-		return qosTimeToLive.hasValue();
+		return hasOptional(Data.OPT_PAR_QOS_TIME_TO_LIVE);
 	}
 	public boolean hasPayloadType() {
-		return payloadType.hasValue();
+		return hasOptional(Data.OPT_PAR_PAYLOAD_TYPE);
 	}
 	public boolean hasMessagePayload() {
-		return messagePayload.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_PAYLOAD);
 	}
 	public boolean hasSetDpf() {
-		return setDpf.hasValue();
+		return hasOptional(Data.OPT_PAR_SET_DPF);
 	}
 	public boolean hasReceiptedMessageId() {
-		return receiptedMessageId.hasValue();
+		return hasOptional(Data.OPT_PAR_RECP_MSG_ID);
 	}
 	public boolean hasMessageState() {
-		return messageState.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_STATE);
 	}
 	public boolean hasNetworkErrorCode() {
-		return networkErrorCode.hasValue();
+		return hasOptional(Data.OPT_PAR_NW_ERR_CODE);
 	}
 	public boolean hasPrivacyIndicator() {
-		return privacyIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_PRIV_IND);
 	}
 	public boolean hasCallbackNum() {
-		return callbackNum.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM);
 	}
 	public boolean hasCallbackNumPresInd() {
-		return callbackNumPresInd.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
 	}
 	public boolean hasCallbackNumAtag() {
-		return callbackNumAtag.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG);
 	}
 	public boolean hasSourceSubaddress() {
-		return sourceSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_SUBADDR);
 	}
 	public boolean hasDestSubaddress() {
-		return destSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_DEST_SUBADDR);
 	}
 	public boolean hasUserResponseCode() {
-		return userResponseCode.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_RESP_CODE);
 	}
 	public boolean hasDisplayTime() {
-		return displayTime.hasValue();
+		return hasOptional(Data.OPT_PAR_DISPLAY_TIME);
 	}
 	public boolean hasSmsSignal() {
-		return smsSignal.hasValue();
+		return hasOptional(Data.OPT_PAR_SMS_SIGNAL);
 	}
 	public boolean hasMsValidity() {
-		return msValidity.hasValue();
+		return hasOptional(Data.OPT_PAR_MS_VALIDITY);
 	}
 	public boolean hasMsMsgWaitFacilities() {
-		return msMsgWaitFacilities.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_WAIT);
 	}
 	public boolean hasNumberOfMessages() {
-		return numberOfMessages.hasValue();
+		return hasOptional(Data.OPT_PAR_NUM_MSGS);
 	}
 	public boolean hasAlertOnMsgDelivery() {
-		return alertOnMsgDelivery.hasValue();
+		return hasOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
 	}
 	public boolean hasLanguageIndicator() {
-		return languageIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_LANG_IND);
 	}
 	public boolean hasItsReplyType() {
-		return itsReplyType.hasValue();
+		return hasOptional(Data.OPT_PAR_ITS_REPLY_TYPE);
 	}
 	public boolean hasItsSessionInfo() {
-		return itsSessionInfo.hasValue();
+		return hasOptional(Data.OPT_PAR_ITS_SESSION_INFO);
 	}
 
 	public void setUserMessageReference(short value) {
-		userMessageReference.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_USER_MSG_REF)).setValue(value);
 	}
 	public void setSourcePort(short value) {
-		sourcePort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SRC_PORT)).setValue(value);
 	}
 	public void setSourceAddrSubunit(byte value) {
-		sourceAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setSourceNetworkType(byte value) {
-		sourceNetworkType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_NW_TYPE)).setValue(value);
 	}
 	public void setSourceBearerType(byte value) {
-		sourceBearerType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_BEAR_TYPE)).setValue(value);
 	}
 	public void setSourceTelematicsId(byte value) {
-		sourceTelematicsId.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_TELE_ID)).setValue(value);
 	}
 	public void setDestinationPort(short value) {
-		destinationPort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_DST_PORT)).setValue(value);
 	}
 	public void setDestAddrSubunit(byte value) {
-		destAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setDestNetworkType(byte value) {
-		destNetworkType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DST_NW_TYPE)).setValue(value);
 	}
 	public void setDestBearerType(byte value) {
-		destBearerType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DST_BEAR_TYPE)).setValue(value);
 	}
 	public void setDestTelematicsId(short value) {
-		destTelematicsId.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_DST_TELE_ID)).setValue(value);
 	}
 	public void setSarMsgRefNum(short value) {
-		sarMsgRefNum.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).setValue(value);
 	}
 	public void setSarTotalSegments(short value) throws IntegerOutOfRangeException {
-		sarTotalSegments.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_TOT_SEG)).setValue(value);
 	}
 	public void setSarSegmentSeqnum(short value) throws IntegerOutOfRangeException {
-		sarSegmentSeqnum.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_SEG_SNUM)).setValue(value);
 	}
 	public void setMoreMsgsToSend(byte value) {
-		moreMsgsToSend.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MORE_MSGS)).setValue(value);
 	}
 	public void setQosTimeToLive(int value) {
-		qosTimeToLive.setValue(value);
+		((TLVInt) createOptional(Data.OPT_PAR_QOS_TIME_TO_LIVE)).setValue(value);
 	}
 	public void setPayloadType(byte value) {
-		payloadType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PAYLOAD_TYPE)).setValue(value);
 	}
 	public void setMessagePayload(ByteBuffer value) {
-		messagePayload.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_MSG_PAYLOAD)).setValue(value);
 	}
 	public void setSetDpf(byte value) {
-		setDpf.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SET_DPF)).setValue(value);
 	}
 	public void setReceiptedMessageId(String value) throws WrongLengthException {
-		receiptedMessageId.setValue(value);
+		((TLVString) createOptional(Data.OPT_PAR_RECP_MSG_ID)).setValue(value);
 	}
 	public void setMessageState(byte value) {
-		messageState.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MSG_STATE)).setValue(value);
 	}
 	public void setNetworkErrorCode(ByteBuffer value) {
-		networkErrorCode.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_NW_ERR_CODE)).setValue(value);
 	}
 	public void setPrivacyIndicator(byte value) {
-		privacyIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PRIV_IND)).setValue(value);
 	}
 	public void setCallbackNum(ByteBuffer value) {
-		callbackNum.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM)).setValue(value);
 	}
 	public void setCallbackNumPresInd(byte value) {
-		callbackNumPresInd.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).setValue(value);
 	}
 	public void setCallbackNumAtag(ByteBuffer value) {
-		callbackNumAtag.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).setValue(value);
 	}
 	public void setSourceSubaddress(ByteBuffer value) {
-		sourceSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_SRC_SUBADDR)).setValue(value);
 	}
 	public void setDestSubaddress(ByteBuffer value) {
-		destSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_DEST_SUBADDR)).setValue(value);
 	}
 	public void setUserResponseCode(byte value) {
-		userResponseCode.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_USER_RESP_CODE)).setValue(value);
 	}
 	public void setDisplayTime(byte value) {
-		displayTime.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DISPLAY_TIME)).setValue(value);
 	}
 	public void setSmsSignal(short value) {
-		smsSignal.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SMS_SIGNAL)).setValue(value);
 	}
 	public void setMsValidity(byte value) {
-		msValidity.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MS_VALIDITY)).setValue(value);
 	}
 	public void setMsMsgWaitFacilities(byte value) {
-		msMsgWaitFacilities.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MSG_WAIT)).setValue(value);
 	}
 	public void setNumberOfMessages(byte value) {
-		numberOfMessages.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_NUM_MSGS)).setValue(value);
 	}
 	public void setAlertOnMsgDelivery(boolean value) {
-		alertOnMsgDelivery.setValue(value);
+		((TLVEmpty) createOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).setValue(value);
 	}
 	public void setLanguageIndicator(byte value) {
-		languageIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_LANG_IND)).setValue(value);
 	}
 	public void setItsReplyType(byte value) {
-		itsReplyType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_ITS_REPLY_TYPE)).setValue(value);
 	}
 	public void setItsSessionInfo(short value) {
-		itsSessionInfo.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_ITS_SESSION_INFO)).setValue(value);
 	}
 
 	public short getUserMessageReference() throws ValueNotSetException {
-		return userMessageReference.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_USER_MSG_REF)).getValue();
 	}
 
 	public short getSourcePort() throws ValueNotSetException {
-		return sourcePort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SRC_PORT)).getValue();
 	}
 
 	public byte getSourceAddrSubunit() throws ValueNotSetException {
-		return sourceAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).getValue();
 	}
 
 	public byte getSourceNetworkType() throws ValueNotSetException {
-		return sourceNetworkType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_NW_TYPE)).getValue();
 	}
 
 	public byte getSourceBearerType() throws ValueNotSetException {
-		return sourceBearerType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_BEAR_TYPE)).getValue();
 	}
 
 	public byte getSourceTelematicsId() throws ValueNotSetException {
-		return sourceTelematicsId.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_TELE_ID)).getValue();
 	}
 
 	public short getDestinationPort() throws ValueNotSetException {
-		return destinationPort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_DST_PORT)).getValue();
 	}
 
 	public byte getDestAddrSubunit() throws ValueNotSetException {
-		return destAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).getValue();
 	}
 
 	public byte getDestNetworkType() throws ValueNotSetException {
-		return destNetworkType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DST_NW_TYPE)).getValue();
 	}
 
 	public byte getDestBearerType() throws ValueNotSetException {
-		return destBearerType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DST_BEAR_TYPE)).getValue();
 	}
 
 	public short getDestTelematicsId() throws ValueNotSetException {
-		return destTelematicsId.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_DST_TELE_ID)).getValue();
 	}
 
 	public short getSarMsgRefNum() throws ValueNotSetException {
-		return sarMsgRefNum.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).getValue();
 	}
 
 	public short getSarTotalSegments() throws ValueNotSetException {
-		return sarTotalSegments.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_TOT_SEG)).getValue();
 	}
 
 	public short getSarSegmentSeqnum() throws ValueNotSetException {
-		return sarSegmentSeqnum.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_SEG_SNUM)).getValue();
 	}
 
 	public byte getMoreMsgsToSend() throws ValueNotSetException {
-		return moreMsgsToSend.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MORE_MSGS)).getValue();
 	}
 
 	public int getQosTimeToLive() throws ValueNotSetException {
-		return qosTimeToLive.getValue();
+		return ((TLVInt) requireOptional(Data.OPT_PAR_QOS_TIME_TO_LIVE)).getValue();
 	}
 
 	public byte getPayloadType() throws ValueNotSetException {
-		return payloadType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PAYLOAD_TYPE)).getValue();
 	}
 
 	public ByteBuffer getMessagePayload() throws ValueNotSetException {
-		return messagePayload.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_MSG_PAYLOAD)).getValue();
 	}
 
 	public byte getSetDpf() throws ValueNotSetException {
-		return setDpf.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SET_DPF)).getValue();
 	}
 
 	public String getReceiptedMessageId() throws ValueNotSetException {
-		return receiptedMessageId.getValue();
+		return ((TLVString) requireOptional(Data.OPT_PAR_RECP_MSG_ID)).getValue();
 	}
 
 	public byte getMessageState() throws ValueNotSetException {
-		return messageState.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MSG_STATE)).getValue();
 	}
 
 	public ByteBuffer getNetworkErrorCode() throws ValueNotSetException {
-		return networkErrorCode.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_NW_ERR_CODE)).getValue();
 	}
 
 	public byte getPrivacyIndicator() throws ValueNotSetException {
-		return privacyIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PRIV_IND)).getValue();
 	}
 
 	public ByteBuffer callbackNum() throws ValueNotSetException {
-		return callbackNum.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM)).getValue();
 	}
 
 	public byte getCallbackNumPresInd() throws ValueNotSetException {
-		return callbackNumPresInd.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).getValue();
 	}
 
 	public ByteBuffer getCallbackNumAtag() throws ValueNotSetException {
-		return callbackNumAtag.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).getValue();
 	}
 
 	public ByteBuffer getSourceSubaddress() throws ValueNotSetException {
-		return sourceSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_SRC_SUBADDR)).getValue();
 	}
 
 	public ByteBuffer getDestSubaddress() throws ValueNotSetException {
-		return destSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_DEST_SUBADDR)).getValue();
 	}
 
 	public byte getUserResponseCode() throws ValueNotSetException {
-		return userResponseCode.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_USER_RESP_CODE)).getValue();
 	}
 
 	public byte getDisplayTime() throws ValueNotSetException {
-		return displayTime.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DISPLAY_TIME)).getValue();
 	}
 
 	public short getSmsSignal() throws ValueNotSetException {
-		return smsSignal.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SMS_SIGNAL)).getValue();
 	}
 
 	public byte getMsValidity() throws ValueNotSetException {
-		return msValidity.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MS_VALIDITY)).getValue();
 	}
 
 	public byte getMsMsgWaitFacilities() throws ValueNotSetException {
-		return msMsgWaitFacilities.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MSG_WAIT)).getValue();
 	}
 
 	public byte getNumberOfMessages() throws ValueNotSetException {
-		return numberOfMessages.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_NUM_MSGS)).getValue();
 	}
 
 	public boolean getAlertOnMsgDelivery() throws ValueNotSetException {
-		return alertOnMsgDelivery.getValue();
+		return ((TLVEmpty) requireOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).getValue();
 	}
 
 	public byte getLanguageIndicator() throws ValueNotSetException {
-		return languageIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_LANG_IND)).getValue();
 	}
 
 	public byte getItsReplyType() throws ValueNotSetException {
-		return itsReplyType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_ITS_REPLY_TYPE)).getValue();
 	}
 
 	public short getItsSessionInfo() throws ValueNotSetException {
-		return itsSessionInfo.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_ITS_SESSION_INFO)).getValue();
 	}
 
 	public String debugString() {
 		String dbgs = "(data: ";
 		dbgs += super.debugString();
+		if (!isDecoded()) {
+			return dbgs + ") ";
+		}
 		dbgs += getSourceAddr().debugString();
 		dbgs += " ";
 		dbgs += getDestAddr().debugString();
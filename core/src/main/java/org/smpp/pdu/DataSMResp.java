@@ -25,21 +25,22 @@ public class DataSMResp extends Response {
 	private String messageId = Data.DFLT_MSGID;
 
 	// optional parameters
-	private TLVByte deliveryFailureReason = new TLVByte(Data.OPT_PAR_DEL_FAIL_RSN);
-	private TLVOctets networkErrorCode =
-		new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX);
-	// exactly 3
-	private TLVString additionalStatusInfoText =
-		new TLVString(Data.OPT_PAR_ADD_STAT_INFO, Data.OPT_PAR_ADD_STAT_INFO_MIN, Data.OPT_PAR_ADD_STAT_INFO_MAX);
-	private TLVByte dpfResult = new TLVByte(Data.OPT_PAR_DPF_RES);
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			Response.optionalTable,
+			new TLV[] {
+				new TLVByte(Data.OPT_PAR_DEL_FAIL_RSN),
+				new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX), // exactly 3
+				new TLVString(Data.OPT_PAR_ADD_STAT_INFO, Data.OPT_PAR_ADD_STAT_INFO_MIN, Data.OPT_PAR_ADD_STAT_INFO_MAX),
+				new TLVByte(Data.OPT_PAR_DPF_RES)
+			});
 
 	public DataSMResp() {
 		super(Data.DATA_SM_RESP);
+	}
 
-		registerOptional(deliveryFailureReason);
-		registerOptional(networkErrorCode);
-		registerOptional(additionalStatusInfoText);
-		registerOptional(dpfResult);
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
 	}
 
 	public void setBody(ByteBuffer buffer)
@@ -48,9 +49,17 @@ public class DataSMResp extends Response {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		buffer.appendCString(messageId);
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		return getCStringLength(messageId);
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		return encodeCString(messageId, dest, offset);
 	}
 
 	public void setMessageId(String value) throws WrongLengthOfStringException {
@@ -63,45 +72,45 @@ public class DataSMResp extends Response {
 	}
 
 	public boolean hasDeliveryFailureReason() {
-		return deliveryFailureReason.hasValue();
+		return hasOptional(Data.OPT_PAR_DEL_FAIL_RSN);
 	}
 	public boolean hasNetworkErrorCode() {
-		return networkErrorCode.hasValue();
+		return hasOptional(Data.OPT_PAR_NW_ERR_CODE);
 	}
 	public boolean hasAdditionalStatusInfoText() {
-		return additionalStatusInfoText.hasValue();
+		return hasOptional(Data.OPT_PAR_ADD_STAT_INFO);
 	}
 	public boolean hasDpfResult() {
-		return dpfResult.hasValue();
+		return hasOptional(Data.OPT_PAR_DPF_RES);
 	}
 
 	public void setDeliveryFailureReason(byte value) {
-		deliveryFailureReason.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DEL_FAIL_RSN)).setValue(value);
 	}
 	public void setNetworkErrorCode(ByteBuffer value) {
-		networkErrorCode.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_NW_ERR_CODE)).setValue(value);
 	}
 	public void setAdditionalStatusInfoText(String value) throws WrongLengthException {
-		additionalStatusInfoText.setValue(value);
+		((TLVString) createOptional(Data.OPT_PAR_ADD_STAT_INFO)).setValue(value);
 	}
 	public void setDpfResult(byte value) {
-		dpfResult.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DPF_RES)).setValue(value);
 	}
 
 	public byte getDeliveryFailureReason() throws ValueNotSetException {
-		return deliveryFailureReason.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DEL_FAIL_RSN)).getValue();
 	}
 
 	public ByteBuffer getNetworkErrorCode() throws ValueNotSetException {
-		return networkErrorCode.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_NW_ERR_CODE)).getValue();
 	}
 
 	public String getAdditionalStatusInfoText() throws ValueNotSetException {
-		return additionalStatusInfoText.getValue();
+		return ((TLVString) requireOptional(Data.OPT_PAR_ADD_STAT_INFO)).getValue();
 	}
 
 	public byte getDpfResult() throws ValueNotSetException {
-		return dpfResult.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DPF_RES)).getValue();
 	}
 
 	public String debugString() {
@@ -40,70 +40,57 @@ public class DeliverSM extends Request {
 	private ShortMessage shortMessage = new ShortMessage(Data.SM_MSG_LEN);
 
 	// optional parameters
-	private TLVShort userMessageReference = new TLVShort(Data.OPT_PAR_USER_MSG_REF);
-	private TLVShort sourcePort = new TLVShort(Data.OPT_PAR_SRC_PORT);
-	//private TLVByte   sourceAddrSubunit     = new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
-	private TLVShort destinationPort = new TLVShort(Data.OPT_PAR_DST_PORT);
-	//private TLVByte   destAddrSubunit       = new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT);
-	private TLVShort sarMsgRefNum = new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM);
-	private TLVUByte sarTotalSegments = new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG);
-	private TLVUByte sarSegmentSeqnum = new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM);
-	//private TLVByte   moreMsgsToSend        = new TLVByte(Data.OPT_PAR_MORE_MSGS);
-	private TLVByte payloadType = new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE);
-	private TLVOctets messagePayload =
-		new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX);
-	private TLVByte privacyIndicator = new TLVByte(Data.OPT_PAR_PRIV_IND);
-	private TLVOctets callbackNum =
-		new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX);
-	// 4-19
-	//private TLVByte   callbackNumPresInd    = new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
-	//private TLVOctets callbackNumAtag       = new TLVOctets(Data.OPT_PAR_CALLBACK_NUM_ATAG,Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN,Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX); // 1-65
-	private TLVOctets sourceSubaddress =
-		new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX);
-	// 2-23
-	private TLVOctets destSubaddress =
-		new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX);
-	private TLVByte userResponseCode = new TLVByte(Data.OPT_PAR_USER_RESP_CODE);
-	//private TLVByte   displayTime           = new TLVByte(Data.OPT_PAR_DISPLAY_TIME);
-	//private TLVShort  smsSignal             = new TLVShort(Data.OPT_PAR_SMS_SIGNAL);
-	//private TLVByte   msValidity            = new TLVByte(Data.OPT_PAR_MS_VALIDITY);
-	//private TLVByte   msMsgWaitFacilities   = new TLVByte(Data.OPT_PAR_MSG_WAIT); // bit mask
-	//private TLVByte   numberOfMessages      = new TLVByte(Data.OPT_PAR_NUM_MSGS);
-	//private TLVEmpty  alertOnMsgDelivery    = new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
-	private TLVByte languageIndicator = new TLVByte(Data.OPT_PAR_LANG_IND);
-	//private TLVByte   itsReplyType          = new TLVByte(Data.OPT_PAR_ITS_REPLY_TYPE);
-	private TLVShort itsSessionInfo = new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO);
-	//private TLVByte   ussdServiceOp         = new TLVByte(Data.OPT_PAR_USSD_SER_OP);
-
-	private TLVOctets networkErrorCode =
-		new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX);
-	// exactly 3
-	private TLVByte messageState = new TLVByte(Data.OPT_PAR_MSG_STATE);
-	private TLVString receiptedMessageId =
-		new TLVString(Data.OPT_PAR_RECP_MSG_ID, Data.OPT_PAR_RECP_MSG_ID_MIN, Data.OPT_PAR_RECP_MSG_ID_MAX);
-	// 1-
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			new TLV[] {
+				new TLVShort(Data.OPT_PAR_USER_MSG_REF),
+				new TLVShort(Data.OPT_PAR_SRC_PORT),
+				new TLVShort(Data.OPT_PAR_DST_PORT),
+				new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM),
+				new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG),
+				new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM),
+				new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE),
+				new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX),
+				new TLVByte(Data.OPT_PAR_PRIV_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX), // 4-19
+				new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX), // 2-23
+				new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX),
+				new TLVByte(Data.OPT_PAR_USER_RESP_CODE),
+				new TLVByte(Data.OPT_PAR_LANG_IND),
+				new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO),
+				new TLVOctets(Data.OPT_PAR_NW_ERR_CODE, Data.OPT_PAR_NW_ERR_CODE_MIN, Data.OPT_PAR_NW_ERR_CODE_MAX), // exactly 3
+				new TLVByte(Data.OPT_PAR_MSG_STATE),
+				new TLVString(Data.OPT_PAR_RECP_MSG_ID, Data.OPT_PAR_RECP_MSG_ID_MIN, Data.OPT_PAR_RECP_MSG_ID_MAX) // 1-
+			});
 
 	public DeliverSM() {
 		super(Data.DELIVER_SM);
+	}
+
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
+	}
+
+	protected boolean canDecodeLazily() {
+		return true;
+	}
 
-		registerOptional(userMessageReference);
-		registerOptional(sourcePort);
-		registerOptional(destinationPort);
-		registerOptional(sarMsgRefNum);
-		registerOptional(sarTotalSegments);
-		registerOptional(sarSegmentSeqnum);
-		registerOptional(payloadType);
-		registerOptional(messagePayload);
-		registerOptional(privacyIndicator);
-		registerOptional(callbackNum);
-		registerOptional(sourceSubaddress);
-		registerOptional(destSubaddress);
-		registerOptional(userResponseCode);
-		registerOptional(languageIndicator);
-		registerOptional(itsSessionInfo);
-		registerOptional(networkErrorCode);
-		registerOptional(messageState);
-		registerOptional(receiptedMessageId);
+	public void reset() {
+		super.reset();
+		serviceType = Data.DFLT_SRVTYPE;
+		sourceAddr.reset();
+		destAddr.reset();
+		esmClass = Data.DFLT_ESM_CLASS;
+		protocolId = Data.DFLT_PROTOCOLID;
+		priorityFlag = Data.DFLT_PRIORITY_FLAG;
+		scheduleDeliveryTime = Data.DFLT_SCHEDULE;
+		validityPeriod = Data.DFLT_VALIDITY;
+		registeredDelivery = Data.DFLT_REG_DELIVERY;
+		replaceIfPresentFlag = Data.DFTL_REPLACE_IFP;
+		dataCoding = Data.DFLT_DATA_CODING;
+		smDefaultMsgId = Data.DFLT_DFLTMSGID;
+		smLength = Data.DFLT_MSG_LEN;
+		shortMessage.reset();
 	}
 
 	protected Response createResponse() {
@@ -133,25 +120,43 @@ public class DeliverSM extends Request {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		buffer.appendCString(getServiceType());
-		buffer.appendBuffer(getSourceAddr().getData());
-		buffer.appendBuffer(getDestAddr().getData());
-		buffer.appendByte(getEsmClass());
-		buffer.appendByte(getProtocolId());
-		buffer.appendByte(getPriorityFlag());
-		buffer.appendCString(getScheduleDeliveryTime());
-		buffer.appendCString(getValidityPeriod());
-		buffer.appendByte(getRegisteredDelivery());
-		buffer.appendByte(getReplaceIfPresentFlag());
-		buffer.appendByte(getDataCoding());
-		buffer.appendByte(getSmDefaultMsgId());
-		buffer.appendByte(encodeUnsigned(getSmLength()));
-		buffer.appendBuffer(shortMessage.getData());
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		ensureDecoded();
+		return getCStringLength(getServiceType())
+			+ getSourceAddr().getEncodedLength()
+			+ getDestAddr().getEncodedLength()
+			+ 3
+			+ getCStringLength(getScheduleDeliveryTime())
+			+ getCStringLength(getValidityPeriod())
+			+ 5
+			+ shortMessage.getEncodedLength();
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		ensureDecoded();
+		offset = encodeCString(getServiceType(), dest, offset);
+		offset = getSourceAddr().encode(dest, offset);
+		offset = getDestAddr().encode(dest, offset);
+		dest[offset++] = getEsmClass();
+		dest[offset++] = getProtocolId();
+		dest[offset++] = getPriorityFlag();
+		offset = encodeCString(getScheduleDeliveryTime(), dest, offset);
+		offset = encodeCString(getValidityPeriod(), dest, offset);
+		dest[offset++] = getRegisteredDelivery();
+		dest[offset++] = getReplaceIfPresentFlag();
+		dest[offset++] = getDataCoding();
+		dest[offset++] = getSmDefaultMsgId();
+		dest[offset++] = encodeUnsigned(getSmLength());
+		return shortMessage.encode(dest, offset);
 	}
 
 	public void setServiceType(String value) throws WrongLengthOfStringException {
+		ensureDecoded();
 		checkCString(value, Data.SM_SRVTYPE_LEN);
 		serviceType = value;
 	}
@@ -171,22 +176,26 @@ public class DeliverSM extends Request {
 	//}
 
 	public void setShortMessage(String value) throws WrongLengthOfStringException {
+		ensureDecoded();
 		shortMessage.setMessage(value);
 		setSmLength((short) shortMessage.getLength());
 	}
 
 	public void setShortMessage(String value, String encoding)
 		throws WrongLengthOfStringException, UnsupportedEncodingException {
+		ensureDecoded();
 		shortMessage.setMessage(value, encoding);
 		setSmLength((short) shortMessage.getLength());
 	}
 
 	public void setShortMessageData(ByteBuffer buffer) throws PDUException, NotEnoughDataInByteBufferException, TerminatingZeroNotFoundException {
+		ensureDecoded();
 		setSmLength((short) buffer.length());
 		shortMessage.setData(buffer);
 	}
 
 	public void setSourceAddr(Address value) {
+		ensureDecoded();
 		sourceAddr = value;
 	}
 	public void setSourceAddr(String address) throws WrongLengthOfStringException {
@@ -197,6 +206,7 @@ public class DeliverSM extends Request {
 	}
 
 	public void setDestAddr(Address value) {
+		ensureDecoded();
 		destAddr = value;
 	}
 	public void setDestAddr(String address) throws WrongLengthOfStringException {
@@ -207,20 +217,25 @@ public class DeliverSM extends Request {
 	}
 
 	public void setEsmClass(byte value) {
+		ensureDecoded();
 		esmClass = value;
 	}
 	public void setProtocolId(byte value) {
+		ensureDecoded();
 		protocolId = value;
 	}
 	public void setPriorityFlag(byte value) {
+		ensureDecoded();
 		priorityFlag = value;
 	}
 	public void setRegisteredDelivery(byte value) {
+		ensureDecoded();
 		registeredDelivery = value;
 	}
 	//not used in deliver_sm
 	//public void setReplaceIfPresentFlag(byte value)   { replaceIfPresentFlag = value; }
 	public void setDataCoding(byte value) {
+		ensureDecoded();
 		dataCoding = value;
 	}
 	//not used in deliver_sm
@@ -231,239 +246,258 @@ public class DeliverSM extends Request {
 	}
 
 	public String getServiceType() {
+		ensureDecoded();
 		return serviceType;
 	}
 	public String getScheduleDeliveryTime() {
+		ensureDecoded();
 		return scheduleDeliveryTime;
 	}
 	public String getValidityPeriod() {
+		ensureDecoded();
 		return validityPeriod;
 	}
 	public String getShortMessage() {
+		ensureDecoded();
 		return shortMessage.getMessage();
 	}
 	public String getShortMessage(String encoding) throws UnsupportedEncodingException {
+		ensureDecoded();
 		return shortMessage.getMessage(encoding);
 	}
 	public ByteBuffer getShortMessageData() {
+		ensureDecoded();
 		return shortMessage.getData();
 	}
 	public Address getSourceAddr() {
+		ensureDecoded();
 		return sourceAddr;
 	}
 	public Address getDestAddr() {
+		ensureDecoded();
 		return destAddr;
 	}
 	public byte getEsmClass() {
+		ensureDecoded();
 		return esmClass;
 	}
 	public byte getProtocolId() {
+		ensureDecoded();
 		return protocolId;
 	}
 	public byte getPriorityFlag() {
+		ensureDecoded();
 		return priorityFlag;
 	}
 	public byte getRegisteredDelivery() {
+		ensureDecoded();
 		return registeredDelivery;
 	}
 	public byte getReplaceIfPresentFlag() {
+		ensureDecoded();
 		return replaceIfPresentFlag;
 	}
 	public byte getDataCoding() {
+		ensureDecoded();
 		return dataCoding;
 	}
 	public byte getSmDefaultMsgId() {
+		ensureDecoded();
 		return smDefaultMsgId;
 	}
 	public short getSmLength() {
+		ensureDecoded();
 		return smLength;
 	}
 
 	public boolean hasUserMessageReference() {
-		return userMessageReference.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_MSG_REF);
 	}
 	public boolean hasSourcePort() {
-		return sourcePort.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_PORT);
 	}
 	public boolean hasDestinationPort() {
-		return destinationPort.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_PORT);
 	}
 	public boolean hasSarMsgRefNum() {
-		return sarMsgRefNum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_MSG_REF_NUM);
 	}
 	public boolean hasSarTotalSegments() {
-		return sarTotalSegments.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_TOT_SEG);
 	}
 	public boolean hasSarSegmentSeqnum() {
-		return sarSegmentSeqnum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_SEG_SNUM);
 	}
 	public boolean hasPayloadType() {
-		return payloadType.hasValue();
+		return hasOptional(Data.OPT_PAR_PAYLOAD_TYPE);
 	}
 	public boolean hasMessagePayload() {
-		return messagePayload.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_PAYLOAD);
 	}
 	public boolean hasPrivacyIndicator() {
-		return privacyIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_PRIV_IND);
 	}
 	public boolean hasCallbackNum() {
-		return callbackNum.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM);
 	}
 	public boolean hasSourceSubaddress() {
-		return sourceSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_SUBADDR);
 	}
 	public boolean hasDestSubaddress() {
-		return destSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_DEST_SUBADDR);
 	}
 	public boolean hasUserResponseCode() {
-		return userResponseCode.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_RESP_CODE);
 	}
 	public boolean hasLanguageIndicator() {
-		return languageIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_LANG_IND);
 	}
 	public boolean hasItsSessionInfo() {
-		return itsSessionInfo.hasValue();
+		return hasOptional(Data.OPT_PAR_ITS_SESSION_INFO);
 	}
 	public boolean hasNetworkErrorCode() {
-		return networkErrorCode.hasValue();
+		return hasOptional(Data.OPT_PAR_NW_ERR_CODE);
 	}
 	public boolean hasMessageState() {
-		return messageState.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_STATE);
 	}
 	public boolean hasReceiptedMessageId() {
-		return receiptedMessageId.hasValue();
+		return hasOptional(Data.OPT_PAR_RECP_MSG_ID);
 	}
 
 	public void setUserMessageReference(short value) {
-		userMessageReference.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_USER_MSG_REF)).setValue(value);
 	}
 	public void setSourcePort(short value) {
-		sourcePort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SRC_PORT)).setValue(value);
 	}
 	public void setDestinationPort(short value) {
-		destinationPort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_DST_PORT)).setValue(value);
 	}
 	public void setSarMsgRefNum(short value) {
-		sarMsgRefNum.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).setValue(value);
 	}
 	public void setSarTotalSegments(short value) throws IntegerOutOfRangeException {
-		sarTotalSegments.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_TOT_SEG)).setValue(value);
 	}
 	public void setSarSegmentSeqnum(short value) throws IntegerOutOfRangeException {
-		sarSegmentSeqnum.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_SEG_SNUM)).setValue(value);
 	}
 	public void setPayloadType(byte value) {
-		payloadType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PAYLOAD_TYPE)).setValue(value);
 	}
 	public void setMessagePayload(ByteBuffer value) {
-		messagePayload.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_MSG_PAYLOAD)).setValue(value);
 	}
 	public void setPrivacyIndicator(byte value) {
-		privacyIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PRIV_IND)).setValue(value);
 	}
 	public void setCallbackNum(ByteBuffer value) {
-		callbackNum.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM)).setValue(value);
 	}
 	public void setSourceSubaddress(ByteBuffer value) {
-		sourceSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_SRC_SUBADDR)).setValue(value);
 	}
 	public void setDestSubaddress(ByteBuffer value) {
-		destSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_DEST_SUBADDR)).setValue(value);
 	}
 	public void setUserResponseCode(byte value) {
-		userResponseCode.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_USER_RESP_CODE)).setValue(value);
 	}
 	public void setLanguageIndicator(byte value) {
-		languageIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_LANG_IND)).setValue(value);
 	}
 	public void setItsSessionInfo(short value) {
-		itsSessionInfo.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_ITS_SESSION_INFO)).setValue(value);
 	}
 	public void setNetworkErrorCode(ByteBuffer value) {
-		networkErrorCode.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_NW_ERR_CODE)).setValue(value);
 	}
 	public void setMessageState(byte value) {
-		messageState.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MSG_STATE)).setValue(value);
 	}
 	public void setReceiptedMessageId(String value) throws WrongLengthException {
-		receiptedMessageId.setValue(value);
+		((TLVString) createOptional(Data.OPT_PAR_RECP_MSG_ID)).setValue(value);
 	}
 
 	public short getUserMessageReference() throws ValueNotSetException {
-		return userMessageReference.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_USER_MSG_REF)).getValue();
 	}
 
 	public short getSourcePort() throws ValueNotSetException {
-		return sourcePort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SRC_PORT)).getValue();
 	}
 
 	public short getDestinationPort() throws ValueNotSetException {
-		return destinationPort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_DST_PORT)).getValue();
 	}
 
 	public short getSarMsgRefNum() throws ValueNotSetException {
-		return sarMsgRefNum.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).getValue();
 	}
 
 	public short getSarTotalSegments() throws ValueNotSetException {
-		return sarTotalSegments.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_TOT_SEG)).getValue();
 	}
 
 	public short getSarSegmentSeqnum() throws ValueNotSetException {
-		return sarSegmentSeqnum.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_SEG_SNUM)).getValue();
 	}
 
 	public byte getPayloadType() throws ValueNotSetException {
-		return payloadType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PAYLOAD_TYPE)).getValue();
 	}
 
 	public ByteBuffer getMessagePayload() throws ValueNotSetException {
-		return messagePayload.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_MSG_PAYLOAD)).getValue();
 	}
 
 	public byte getPrivacyIndicator() throws ValueNotSetException {
-		return privacyIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PRIV_IND)).getValue();
 	}
 
 	public ByteBuffer callbackNum() throws ValueNotSetException {
-		return callbackNum.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM)).getValue();
 	}
 
 	public ByteBuffer getSourceSubaddress() throws ValueNotSetException {
-		return sourceSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_SRC_SUBADDR)).getValue();
 	}
 
 	public ByteBuffer getDestSubaddress() throws ValueNotSetException {
-		return destSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_DEST_SUBADDR)).getValue();
 	}
 
 	public byte getUserResponseCode() throws ValueNotSetException {
-		return userResponseCode.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_USER_RESP_CODE)).getValue();
 	}
 
 	public byte getLanguageIndicator() throws ValueNotSetException {
-		return languageIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_LANG_IND)).getValue();
 	}
 
 	public short getItsSessionInfo() throws ValueNotSetException {
-		return itsSessionInfo.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_ITS_SESSION_INFO)).getValue();
 	}
 
 	public ByteBuffer getNetworkErrorCode() throws ValueNotSetException {
-		return networkErrorCode.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_NW_ERR_CODE)).getValue();
 	}
 
 	public byte getMessageState() throws ValueNotSetException {
-		return messageState.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MSG_STATE)).getValue();
 	}
 
 	public String getReceiptedMessageId() throws ValueNotSetException {
-		return receiptedMessageId.getValue();
+		return ((TLVString) requireOptional(Data.OPT_PAR_RECP_MSG_ID)).getValue();
 	}
 
 	public String debugString() {
 		String dbgs = "(deliver: ";
 		dbgs += super.debugString();
+		if (!isDecoded()) {
+			return dbgs + ") ";
+		}
 		dbgs += getSourceAddr().debugString();
 		dbgs += " ";
 		dbgs += getDestAddr().debugString();
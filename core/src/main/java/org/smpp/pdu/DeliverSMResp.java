@@ -30,9 +30,17 @@ public class DeliverSMResp extends Response {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		buffer.appendCString(messageId);
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		return getCStringLength(messageId);
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		return encodeCString(messageId, dest, offset);
 	}
 
 	public void setMessageId(String value) throws WrongLengthOfStringException {
@@ -0,0 +1,534 @@
+package org.smpp.pdu;
+
+import java.util.TimeZone;
+
+import org.smpp.Data;
+import org.smpp.util.ByteBuffer;
+import org.smpp.util.NotEnoughDataInByteBufferException;
+import org.smpp.util.TerminatingZeroNotFoundException;
+
+/**
+ * Delivery receipt in the format of the SMPP 3.4 specification,
+ * appendix B:
+ * <pre>
+ * id:IIIIIIIIII sub:SSS dlvrd:DDD submit date:YYMMDDhhmm done date:YYMMDDhhmm stat:DDDDDDD err:E text:...
+ * </pre>
+ * The receipt is parsed directly from the octets of the
+ * <code>short_message</code> and built directly into them, the fields
+ * are kept as primitive values and no strings are created unless
+ * the message id or the text is requested as a string. One instance
+ * can be reused for any number of receipts, but it isn't thread safe.
+ * <p>
+ * The state is one of the <code>Data.SM_STATE_</code> constants,
+ * the dates are in milliseconds since the epoch, converted
+ * in the time zone set by <code>setTimeZone</code>. Fields which aren't
+ * present in the receipt are <code>NOT_SET</code>.
+ */
+public class DeliveryReceipt {
+	/**
+	 * Value of the fields not present in the receipt.
+	 */
+	public static final int NOT_SET = -1;
+
+	/**
+	 * Maximal length of the text copied to the receipt.
+	 */
+	public static final int MAX_TEXT_LENGTH = 20;
+
+	private static final int ID = 0;
+	private static final int SUB = 1;
+	private static final int DLVRD = 2;
+	private static final int SUBMIT_DATE = 3;
+	private static final int DONE_DATE = 4;
+	private static final int STAT = 5;
+	private static final int ERR = 6;
+	private static final int TEXT = 7;
+
+	private static final byte[][] KEYS = {
+		ascii("id:"), ascii("sub:"), ascii("dlvrd:"), ascii("submit date:"),
+		ascii("done date:"), ascii("stat:"), ascii("err:"), ascii("text:")
+	};
+
+	/**
+	 * The names of the states indexed by the <code>Data.SM_STATE_</code> constants.
+	 */
+	private static final byte[][] STATES = {
+		null, ascii("ENROUTE"), ascii("DELIVRD"), ascii("EXPIRED"), ascii("DELETED"),
+		ascii("UNDELIV"), ascii("ACCEPTD"), ascii("UNKNOWN"), ascii("REJECTD")
+	};
+
+	private static final int DATE_LENGTH = 10;
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+	private byte[] messageId = new byte[Data.SM_MSGID_LEN];
+	private int messageIdLength = 0;
+	private String messageIdString = null;
+	private int submitted;
+	private int delivered;
+	private long submitDate;
+	private long doneDate;
+	private int state;
+	private int error;
+	private byte[] text = new byte[MAX_TEXT_LENGTH];
+	private int textLength = 0;
+	private TimeZone timeZone = TimeZone.getDefault();
+
+	public DeliveryReceipt() {
+		clear();
+	}
+
+	private static byte[] ascii(String s) {
+		byte[] bytes = new byte[s.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) s.charAt(i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Clears all the fields.
+	 */
+	public void clear() {
+		messageIdLength = 0;
+		messageIdString = null;
+		submitted = NOT_SET;
+		delivered = NOT_SET;
+		submitDate = NOT_SET;
+		doneDate = NOT_SET;
+		state = NOT_SET;
+		error = NOT_SET;
+		textLength = 0;
+	}
+
+	/**
+	 * Parses the receipt from the <code>short_message</code> of the PDU,
+	 * or from its <code>message_payload</code> if the short message
+	 * is empty. The message id and the state missing in the text are
+	 * taken from the <code>receipted_message_id</code> and
+	 * <code>message_state</code> optional parameters.
+	 *
+	 * @return if the PDU contains the message id
+	 */
+	public boolean parse(DeliverSM deliver) {
+		clear();
+		byte[] data = deliver.getShortMessageData().getBuffer();
+		if ((data == null) || (data.length == 0)) {
+			try {
+				data = deliver.hasMessagePayload() ? deliver.getMessagePayload().getBuffer() : null;
+			} catch (ValueNotSetException e) {
+				data = null;
+			}
+		}
+		if (data != null) {
+			parse(data, 0, data.length);
+		}
+		try {
+			if ((messageIdLength == 0) && deliver.hasReceiptedMessageId()) {
+				setMessageId(deliver.getReceiptedMessageId());
+			}
+			if ((state == NOT_SET) && deliver.hasMessageState()) {
+				state = deliver.getMessageState();
+			}
+		} catch (ValueNotSetException e) {
+			// checked by has
+		}
+		return messageIdLength > 0;
+	}
+
+	/**
+	 * Parses the receipt from the text. The keys are case insensitive,
+	 * unknown keys and malformed values are ignored.
+	 *
+	 * @return if the text contains the message id
+	 */
+	public boolean parse(byte[] data, int offset, int length) {
+		clear();
+		int end = offset + length;
+		int pos = offset;
+		while (pos < end) {
+			if (data[pos] == ' ') {
+				pos++;
+				continue;
+			}
+			int key = matchKey(data, pos, end);
+			if (key == NOT_SET) {
+				pos = skipValue(data, pos, end);
+				continue;
+			}
+			int start = pos + KEYS[key].length;
+			pos = key == TEXT ? end : skipValue(data, start, end);
+			setField(key, data, start, pos);
+		}
+		return messageIdLength > 0;
+	}
+
+	private static int matchKey(byte[] data, int pos, int end) {
+		for (int key = 0; key < KEYS.length; key++) {
+			byte[] name = KEYS[key];
+			if (pos + name.length > end) {
+				continue;
+			}
+			int i = 0;
+			while ((i < name.length) && (toLowerCase(data[pos + i]) == name[i])) {
+				i++;
+			}
+			if (i == name.length) {
+				return key;
+			}
+		}
+		return NOT_SET;
+	}
+
+	private static int toLowerCase(byte b) {
+		return (b >= 'A') && (b <= 'Z') ? b + ('a' - 'A') : b;
+	}
+
+	private static int skipValue(byte[] data, int pos, int end) {
+		while ((pos < end) && (data[pos] != ' ')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private void setField(int key, byte[] data, int start, int end) {
+		int length = end - start;
+		switch (key) {
+		case ID:
+			if (length > messageId.length) {
+				messageId = new byte[length];
+			}
+			System.arraycopy(data, start, messageId, 0, length);
+			messageIdLength = length;
+			break;
+		case SUB:
+			submitted = parseNumber(data, start, end);
+			break;
+		case DLVRD:
+			delivered = parseNumber(data, start, end);
+			break;
+		case SUBMIT_DATE:
+			submitDate = parseDate(data, start, end);
+			break;
+		case DONE_DATE:
+			doneDate = parseDate(data, start, end);
+			break;
+		case STAT:
+			state = parseState(data, start, end);
+			break;
+		case ERR:
+			error = parseNumber(data, start, end);
+			break;
+		case TEXT:
+			textLength = Math.min(length, text.length);
+			System.arraycopy(data, start, text, 0, textLength);
+			break;
+		}
+	}
+
+	private static int parseNumber(byte[] data, int start, int end) {
+		if ((start == end) || (end - start > 9)) {
+			return NOT_SET;
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = data[i] - '0';
+			if ((digit < 0) || (digit > 9)) {
+				return NOT_SET;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static int parseState(byte[] data, int start, int end) {
+		for (int state = 1; state < STATES.length; state++) {
+			byte[] name = STATES[state];
+			if (name.length != end - start) {
+				continue;
+			}
+			int i = 0;
+			while ((i < name.length) && (data[start + i] == name[i])) {
+				i++;
+			}
+			if (i == name.length) {
+				return state;
+			}
+		}
+		return NOT_SET;
+	}
+
+	/**
+	 * Parses YYMMDDhhmm, optionally followed by ss.
+	 */
+	private long parseDate(byte[] data, int start, int end) {
+		int length = end - start;
+		if ((length != DATE_LENGTH) && (length != DATE_LENGTH + 2)) {
+			return NOT_SET;
+		}
+		int year = parseNumber(data, start, start + 2);
+		int month = parseNumber(data, start + 2, start + 4);
+		int day = parseNumber(data, start + 4, start + 6);
+		int hour = parseNumber(data, start + 6, start + 8);
+		int minute = parseNumber(data, start + 8, start + 10);
+		int second = length == DATE_LENGTH ? 0 : parseNumber(data, start + 10, end);
+		if ((year < 0) || (month < 1) || (month > 12) || (day < 1) || (day > 31)
+			|| (hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59)) {
+			return NOT_SET;
+		}
+		long local = SmppTime.daysFromCivil(2000 + year, month, day) * MILLIS_PER_DAY
+			+ (hour * 60 + minute) * MILLIS_PER_MINUTE + second * 1000L;
+		return local - timeZone.getOffset(local - timeZone.getRawOffset());
+	}
+
+	/**
+	 * Returns the length of the receipt text in octets.
+	 */
+	public int getEncodedLength() {
+		return KEYS[ID].length + messageIdLength
+			+ 1 + KEYS[SUB].length + 3
+			+ 1 + KEYS[DLVRD].length + 3
+			+ 1 + KEYS[SUBMIT_DATE].length + DATE_LENGTH
+			+ 1 + KEYS[DONE_DATE].length + DATE_LENGTH
+			+ 1 + KEYS[STAT].length + 7
+			+ 1 + KEYS[ERR].length + 3
+			+ 1 + KEYS[TEXT].length + textLength;
+	}
+
+	/**
+	 * Writes the receipt text to the array. Fields which aren't set
+	 * are written as zeros, the state as <code>UNKNOWN</code>.
+	 *
+	 * @return the offset after the receipt
+	 */
+	public int encode(byte[] dest, int offset) {
+		offset = putKey(ID, dest, offset);
+		System.arraycopy(messageId, 0, dest, offset, messageIdLength);
+		offset += messageIdLength;
+		dest[offset++] = ' ';
+		offset = putNumber(dest, putKey(SUB, dest, offset), submitted, 3);
+		dest[offset++] = ' ';
+		offset = putNumber(dest, putKey(DLVRD, dest, offset), delivered, 3);
+		dest[offset++] = ' ';
+		offset = putDate(dest, putKey(SUBMIT_DATE, dest, offset), submitDate);
+		dest[offset++] = ' ';
+		offset = putDate(dest, putKey(DONE_DATE, dest, offset), doneDate);
+		dest[offset++] = ' ';
+		offset = putKey(STAT, dest, offset);
+		byte[] name = STATES[(state > 0) && (state < STATES.length) ? state : Data.SM_STATE_INVALID];
+		System.arraycopy(name, 0, dest, offset, name.length);
+		offset += name.length;
+		dest[offset++] = ' ';
+		offset = putNumber(dest, putKey(ERR, dest, offset), error, 3);
+		dest[offset++] = ' ';
+		offset = putKey(TEXT, dest, offset);
+		System.arraycopy(text, 0, dest, offset, textLength);
+		return offset + textLength;
+	}
+
+	/**
+	 * Sets the receipt as the <code>short_message</code> of the PDU,
+	 * marks the PDU as a delivery receipt in its <code>esm_class</code>
+	 * and sets the <code>receipted_message_id</code> and
+	 * <code>message_state</code> optional parameters.
+	 */
+	public void write(DeliverSM deliver) throws PDUException {
+		byte[] data = new byte[getEncodedLength()];
+		encode(data, 0);
+		deliver.setEsmClass((byte) Data.SM_SMSC_DLV_RCPT_TYPE);
+		try {
+			deliver.setShortMessageData(new ByteBuffer(data));
+		} catch (NotEnoughDataInByteBufferException e) {
+			throw new PDUException(e.getMessage());
+		} catch (TerminatingZeroNotFoundException e) {
+			throw new PDUException(e.getMessage());
+		}
+		if (messageIdLength > 0) {
+			deliver.setReceiptedMessageId(getMessageId());
+		}
+		if (state != NOT_SET) {
+			deliver.setMessageState((byte) state);
+		}
+	}
+
+	private static int putKey(int key, byte[] dest, int offset) {
+		System.arraycopy(KEYS[key], 0, dest, offset, KEYS[key].length);
+		return offset + KEYS[key].length;
+	}
+
+	private static int putNumber(byte[] dest, int offset, int value, int digits) {
+		if (value < 0) {
+			value = 0;
+		}
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			dest[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + digits;
+	}
+
+	private int putDate(byte[] dest, int offset, long millis) {
+		if (millis == NOT_SET) {
+			return putNumber(dest, offset, 0, DATE_LENGTH);
+		}
+		long local = millis + timeZone.getOffset(millis);
+		long days = local / MILLIS_PER_DAY;
+		long millisOfDay = local % MILLIS_PER_DAY;
+		if (millisOfDay < 0) {
+			days--;
+			millisOfDay += MILLIS_PER_DAY;
+		}
+		int date = SmppTime.civilFromDays(days);
+		int minuteOfDay = (int) (millisOfDay / MILLIS_PER_MINUTE);
+		offset = putNumber(dest, offset, date / 10000 % 100, 2);
+		offset = putNumber(dest, offset, (date / 100) % 100, 2);
+		offset = putNumber(dest, offset, date % 100, 2);
+		offset = putNumber(dest, offset, minuteOfDay / 60, 2);
+		return putNumber(dest, offset, minuteOfDay % 60, 2);
+	}
+
+	/**
+	 * Returns the message id, the string is created on the first call
+	 * after the receipt was parsed.
+	 */
+	public String getMessageId() {
+		if ((messageIdString == null) && (messageIdLength > 0)) {
+			char[] chars = new char[messageIdLength];
+			for (int i = 0; i < messageIdLength; i++) {
+				chars[i] = (char) (messageId[i] & 0xff);
+			}
+			messageIdString = new String(chars);
+		}
+		return messageIdString;
+	}
+
+	/**
+	 * Copies the octets of the message id to the array, so the id can be
+	 * looked up without creating a string.
+	 *
+	 * @return the length of the message id
+	 * @see #getMessageIdLength()
+	 */
+	public int getMessageId(byte[] dest, int offset) {
+		System.arraycopy(messageId, 0, dest, offset, messageIdLength);
+		return messageIdLength;
+	}
+
+	/** Returns the length of the message id in octets. */
+	public int getMessageIdLength() {
+		return messageIdLength;
+	}
+
+	/**
+	 * Returns if the message id of the receipt equals the id,
+	 * without creating a string.
+	 */
+	public boolean isMessageId(CharSequence id) {
+		if (id.length() != messageIdLength) {
+			return false;
+		}
+		for (int i = 0; i < messageIdLength; i++) {
+			if (id.charAt(i) != (char) (messageId[i] & 0xff)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void setMessageId(String id) {
+		int length = id.length();
+		if (length > messageId.length) {
+			messageId = new byte[length];
+		}
+		for (int i = 0; i < length; i++) {
+			char ch = id.charAt(i);
+			messageId[i] = (byte) (ch <= 0xff ? ch : '?');
+		}
+		messageIdLength = length;
+		messageIdString = id;
+	}
+
+	/**
+	 * Returns the text, i.e. the beginning of the original message.
+	 */
+	public String getText() {
+		char[] chars = new char[textLength];
+		for (int i = 0; i < textLength; i++) {
+			chars[i] = (char) (text[i] & 0xff);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Sets the text, up to <code>MAX_TEXT_LENGTH</code> characters of the
+	 * original message encoded in Latin-1; characters out of Latin-1 are
+	 * replaced by '?'.
+	 */
+	public void setText(CharSequence value) {
+		textLength = value == null ? 0 : Math.min(value.length(), text.length);
+		for (int i = 0; i < textLength; i++) {
+			char ch = value.charAt(i);
+			text[i] = (byte) (ch <= 0xff ? ch : '?');
+		}
+	}
+
+	public int getSubmitted() {
+		return submitted;
+	}
+
+	public void setSubmitted(int submitted) {
+		this.submitted = submitted;
+	}
+
+	public int getDelivered() {
+		return delivered;
+	}
+
+	public void setDelivered(int delivered) {
+		this.delivered = delivered;
+	}
+
+	public long getSubmitDate() {
+		return submitDate;
+	}
+
+	public void setSubmitDate(long submitDate) {
+		this.submitDate = submitDate;
+	}
+
+	public long getDoneDate() {
+		return doneDate;
+	}
+
+	public void setDoneDate(long doneDate) {
+		this.doneDate = doneDate;
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	public void setState(int state) {
+		this.state = state;
+	}
+
+	public int getError() {
+		return error;
+	}
+
+	public void setError(int error) {
+		this.error = error;
+	}
+
+	public TimeZone getTimeZone() {
+		return timeZone;
+	}
+
+	/**
+	 * Sets the time zone of the dates in the receipt text,
+	 * the default time zone by default.
+	 */
+	public void setTimeZone(TimeZone timeZone) {
+		this.timeZone = timeZone;
+	}
+}
@@ -19,6 +19,7 @@ import org.smpp.Data;
 import org.smpp.pdu.tlv.TLV;
 import org.smpp.pdu.tlv.TLVException;
 import org.smpp.pdu.tlv.TLVOctets;
+import org.smpp.pdu.tlv.TLVTable;
 import org.smpp.util.*;
 
 /**
@@ -109,31 +110,41 @@ public abstract class PDU extends ByteData {
 	 *
 	 * @see #checkHeader()
 	 * @see #setHeader(ByteBuffer)
-	 * @see #getHeader()
+	 * @see #encode(byte[],int)
 	 */
 	private PDUHeader header = null;
 
 	/**
-	 * This contains all optional parameters defined for particular
-	 * concrete PDU. E.g. for submit_sm class <code>SubmitSM</code>
-	 * puts  here all it's possible optional parameters. It is used
-	 * to build a byte buffer from optional parameters as well as
-	 * fill them from a buffer.
+	 * The optional parameters of the PDU which were set or received,
+	 * indexed as in the PDU class's <code>TLVTable</code>; the other
+	 * elements are null. Created only when the first optional
+	 * parameter is set or received.
 	 *
-	 * @see #registerOptional(TLV)
+	 * @see #getOptionalTable()
+	 * @see #createOptional(short)
 	 * @see TLV
 	 */
-	private Vector<TLV> optionalParameters = new Vector<TLV>(10, 2);
+	private TLV[] optionalParameters = null;
+
+	/**
+	 * Optional parameters registered by derived classes with
+	 * <code>registerOptional</code> which aren't in the class's table.
+	 * Null if there are none.
+	 *
+	 * @see #registerOptional(TLV)
+	 */
+	private Vector<TLV> registeredOptionalParameters = null;
 
 	/**
 	 * Contains optional parameters which aren't defined in the SMPP spec.
+	 * Null until some is set or received.
 	 *
 	 * @see #setExtraOptional(TLV)
 	 * @see #setExtraOptional(short,ByteBuffer)
 	 * @see #getExtraOptional(short)
 	 * @see #registerExtraOptional(TLV)
 	 */
-	private Vector<TLV> extraOptionalParameters = new Vector<TLV>(1, 1);
+	private Vector<TLV> extraOptionalParameters = null;
 
 	/**
 	 * This indicates what stage was reached when parsing byte buffer
@@ -164,6 +175,36 @@ public abstract class PDU extends ByteData {
 	 */
 	private Dictionary<Object, Object> applicationSpecificInfo = null;
 
+	/**
+	 * The pool the PDU was borrowed from, null if the PDU wasn't created
+	 * by a <code>PDUPool</code>.
+	 *
+	 * @see #release()
+	 * @see PDUPool
+	 */
+	PDUPool pool = null;
+
+	/**
+	 * If the pooled PDU is currently in its pool, i.e. it was released
+	 * and not borrowed again.
+	 */
+	boolean inPool = false;
+
+	/**
+	 * The pool's record of the borrowed PDU used for leak detection,
+	 * only set when the pool runs in debug mode.
+	 */
+	PDUPool.Borrowed borrowed = null;
+
+	/**
+	 * The mandatory and optional part of a received PDU which wasn't
+	 * parsed yet, null if there is nothing to parse.
+	 *
+	 * @see #setData(ByteBuffer,boolean)
+	 * @see #ensureDecoded()
+	 */
+	private byte[] undecodedBody = null;
+
 	/**
 	 * Default constructor, what else.
 	 */
@@ -380,41 +421,391 @@ public abstract class PDU extends ByteData {
 		}
 	}
 
+	/**
+	 * Parses the binary buffer the same way as <code>setData(ByteBuffer)</code>
+	 * if <code>lazy</code> is false. Otherwise only the header is parsed and
+	 * the rest of the PDU is kept as is until the body or any optional
+	 * parameter is accessed for the first time. Until then, encoding of
+	 * the PDU reuses the received bytes, so a PDU which is only forwarded
+	 * or responded to is never parsed.
+	 * <p>
+	 * As the body isn't parsed, a PDU with malformed body isn't rejected,
+	 * it's found out when the body is decoded: the parsed fields are then
+	 * left as they were set when the error occured and <code>getValid</code>
+	 * returns the phase which was correct last. PDUs which don't support
+	 * lazy decoding (see <code>canDecodeLazily</code>) are always parsed
+	 * at once.
+	 *
+	 * @param buffer the buffer containg the PDU binary data
+	 * @param lazy   if parsing of the body should be postponed
+	 * @see #setData(ByteBuffer)
+	 * @see #canDecodeLazily()
+	 * @see #isDecoded()
+	 */
+	public void setData(ByteBuffer buffer, boolean lazy) throws InvalidPDUException, PDUException {
+		if (!lazy || !canDecodeLazily()) {
+			setData(buffer);
+			return;
+		}
+		try {
+			setValid(VALID_NONE);
+			setHeader(buffer.removeBytes(Data.PDU_HEADER_SIZE));
+			setValid(VALID_HEADER);
+			int bodyLength = getCommandLength() - Data.PDU_HEADER_SIZE;
+			if (bodyLength < 0) {
+				throw new InvalidPDUException(this, "The command_length is smaller than the size of the header.");
+			}
+			undecodedBody = bodyLength == 0 ? new byte[0] : buffer.removeBytes(bodyLength).getBuffer();
+		} catch (NotEnoughDataInByteBufferException e) {
+			throw new InvalidPDUException(this, e);
+		}
+	}
+
+	/**
+	 * Returns if the derived class supports lazy decoding, i.e. calls
+	 * <code>ensureDecoded</code> before accessing its mandatory parameters.
+	 * False by default.
+	 *
+	 * @see #setData(ByteBuffer,boolean)
+	 * @see #ensureDecoded()
+	 */
+	protected boolean canDecodeLazily() {
+		return false;
+	}
+
+	/**
+	 * Sets the binary body (mandatory and optional parameters) of a PDU
+	 * which supports lazy decoding as if it was received; it's sent
+	 * as it is and parsed only if its parameters are accessed.
+	 *
+	 * @see SubmitSMTemplate#createSubmitSM(CharSequence,byte[][])
+	 */
+	void setEncodedBody(byte[] body) {
+		if (!canDecodeLazily()) {
+			throw new IllegalStateException(getClass().getName() + " can't be decoded lazily");
+		}
+		undecodedBody = body;
+	}
+
+	/**
+	 * Returns false if the PDU was received with lazy decoding and its
+	 * body wasn't parsed yet.
+	 *
+	 * @see #setData(ByteBuffer,boolean)
+	 */
+	public boolean isDecoded() {
+		return undecodedBody == null;
+	}
+
+	/**
+	 * Parses the body and the optional parameters of a lazily decoded PDU
+	 * if they weren't parsed yet. Derived classes supporting lazy decoding
+	 * call it before every access to their mandatory parameters; the
+	 * optional parameters call it in <code>PDU</code>.
+	 * Like the rest of the PDU, it isn't thread safe.
+	 *
+	 * @see #setData(ByteBuffer,boolean)
+	 */
+	protected final void ensureDecoded() {
+		if (undecodedBody != null) {
+			decodeBody();
+		}
+	}
+
+	private void decodeBody() {
+		try {
+			decode();
+		} catch (PDUException e) {
+			event.write(e, "PDU.ensureDecoded() the body of the PDU is invalid " + debugString());
+		}
+	}
+
+	/**
+	 * Parses the body and the optional parameters of a PDU received with
+	 * lazy decoding now, e.g. by another thread than the one which received
+	 * the PDU. Unlike parsing on access, a malformed body is reported
+	 * by exception the same way as by <code>setData(ByteBuffer)</code>.
+	 * Does nothing if the PDU was already decoded.
+	 *
+	 * @exception InvalidPDUException the body is shorter than its parameters
+	 * @exception PDUException a parameter of the body is invalid
+	 * @see #setData(ByteBuffer,boolean)
+	 */
+	public void decode() throws InvalidPDUException, PDUException {
+		if (undecodedBody == null) {
+			return;
+		}
+		ByteBuffer buffer = new ByteBuffer(undecodedBody);
+		// cleared first as the setters used by setBody check it as well
+		undecodedBody = null;
+		try {
+			setBody(buffer);
+			setValid(VALID_BODY);
+			if (buffer.length() > 0) {
+				try {
+					setOptionalBody(buffer);
+				} catch (Exception e) {
+					debug.write(DPDU, "Parsing optional parameters failed: " + e.getMessage());
+				}
+			}
+			setValid(VALID_ALL);
+		} catch (NotEnoughDataInByteBufferException e) {
+			throw new InvalidPDUException(this, e);
+		} catch (TerminatingZeroNotFoundException e) {
+			throw new InvalidPDUException(this, e);
+		} catch (PDUException e) {
+			e.setPDU(this);
+			throw e;
+		} catch (Exception e) {
+			throw new InvalidPDUException(this, e);
+		}
+	}
+
 	/**
 	 * Construct the binary PDU for sending to SMSC.
-	 * First creates the mandatory part using <code>getBody</code> method,
-	 * which has to be implemented in the derived classes (if they 
-	 * represent PDU with body), then creates the optional part of the PDU
-	 * using <code>getOptionalBody</code>, which is common for all PDUs.
-	 * Calculates the size of the PDU and then creates the header using
-	 * <code>getHeader</code> and returns the full binary PDU.
+	 * The size of the PDU is calculated first from the mandatory part
+	 * (<code>getEncodedBodyLength</code> or <code>getBody</code> for
+	 * PDUs which don't encode their body directly) and from the optional
+	 * parameters which are set; then the header, body and optional
+	 * parameters are written to one array of that size.
+	 * @see #encode(byte[],int)
 	 * @see #getBody()
-	 * @see #getOptionalBody(Vector)
-	 * @see #getHeader()
 	 * @see #setData(ByteBuffer)
 	 */
 	public ByteBuffer getData() throws ValueNotSetException {
-		// prepare all body
-		ByteBuffer bodyBuf = new ByteBuffer();
-		bodyBuf.appendBuffer(getBody());
-		bodyBuf.appendBuffer(getOptionalBody());
-		// get its size and add size of the header; set the result as length
-		setCommandLength(bodyBuf.length() + Data.PDU_HEADER_SIZE);
-		ByteBuffer pduBuf = getHeader();
-		pduBuf.appendBuffer(bodyBuf);
+		if (undecodedBody != null) {
+			byte[] data = new byte[Data.PDU_HEADER_SIZE + undecodedBody.length];
+			encode(data, 0);
+			return new ByteBuffer(data);
+		}
+		ByteBuffer body = null;
+		int bodyLength = getEncodedBodyLength();
+		if (bodyLength < 0) {
+			body = getBody();
+			bodyLength = body == null ? 0 : body.length();
+		}
+		byte[] data = new byte[Data.PDU_HEADER_SIZE + bodyLength + getEncodedOptionalLength()];
+		encode(data, 0, body, bodyLength);
+		ByteBuffer pduBuf = new ByteBuffer(data);
 		if (debug.active(DPDU)) {
 			debug.write(DPDU, "PDU.getData() build up data " + pduBuf.getHexDump());
 		}
 		return pduBuf;
 	}
 
+	/**
+	 * Returns the length of the binary PDU, i.e. the command length
+	 * the PDU will have when encoded.
+	 * @see #encode(byte[],int)
+	 */
+	public int getEncodedLength() throws ValueNotSetException {
+		return getEncodedLength((ByteBuffer) null);
+	}
+
+	/**
+	 * Returns the length of the binary PDU with the body returned by
+	 * <code>getFallbackBody</code>, so it isn't built again.
+	 *
+	 * @param fallbackBody the result of <code>getFallbackBody</code>
+	 * @see #encode(byte[],int,ByteBuffer)
+	 */
+	public int getEncodedLength(ByteBuffer fallbackBody) throws ValueNotSetException {
+		if (undecodedBody != null) {
+			return Data.PDU_HEADER_SIZE + undecodedBody.length;
+		}
+		int bodyLength;
+		if (fallbackBody != null) {
+			bodyLength = fallbackBody.length();
+		} else {
+			bodyLength = getEncodedBodyLength();
+			if (bodyLength < 0) {
+				ByteBuffer body = getBody();
+				bodyLength = body == null ? 0 : body.length();
+			}
+		}
+		return Data.PDU_HEADER_SIZE + bodyLength + getEncodedOptionalLength();
+	}
+
+	/**
+	 * Returns the body built by <code>getBody</code> if the PDU doesn't
+	 * encode its body directly, otherwise null. The body can be passed
+	 * to <code>getEncodedLength(ByteBuffer)</code> and
+	 * <code>encode(byte[],int,ByteBuffer)</code> so it's built only once
+	 * for both.
+	 */
+	public ByteBuffer getFallbackBody() throws ValueNotSetException {
+		if ((undecodedBody != null) || (getEncodedBodyLength() >= 0)) {
+			return null;
+		}
+		ByteBuffer body = getBody();
+		return body == null ? new ByteBuffer() : body;
+	}
+
+	/**
+	 * Writes the binary PDU to the array in one pass, without creating
+	 * intermediate buffers for PDUs which encode their body directly.
+	 * Sets the command length of the PDU. A lazily decoded PDU which
+	 * wasn't decoded yet is written with the received body.
+	 *
+	 * @param dest the array with at least <code>getEncodedLength</code>
+	 *             bytes available from the offset
+	 * @param offset where to start writing
+	 * @return the offset after the PDU
+	 * @see #getEncodedLength()
+	 */
+	public int encode(byte[] dest, int offset) throws ValueNotSetException {
+		return encode(dest, offset, (ByteBuffer) null);
+	}
+
+	/**
+	 * Writes the binary PDU to the array with the body returned by
+	 * <code>getFallbackBody</code>, so it isn't built again.
+	 *
+	 * @param fallbackBody the result of <code>getFallbackBody</code>
+	 * @see #getEncodedLength(ByteBuffer)
+	 */
+	public int encode(byte[] dest, int offset, ByteBuffer fallbackBody) throws ValueNotSetException {
+		byte[] undecoded = undecodedBody;
+		if (undecoded != null) {
+			setCommandLength(Data.PDU_HEADER_SIZE + undecoded.length);
+			int pos = header.encode(dest, offset);
+			System.arraycopy(undecoded, 0, dest, pos, undecoded.length);
+			return pos + undecoded.length;
+		}
+		if (fallbackBody != null) {
+			return encode(dest, offset, fallbackBody, fallbackBody.length());
+		}
+		ByteBuffer body = null;
+		int bodyLength = getEncodedBodyLength();
+		if (bodyLength < 0) {
+			body = getBody();
+			bodyLength = body == null ? 0 : body.length();
+		}
+		return encode(dest, offset, body, bodyLength);
+	}
+
+	/**
+	 * Writes the PDU either with the provided <code>body</code> or, if it's
+	 * null, with <code>encodeBody</code>.
+	 */
+	private int encode(byte[] dest, int offset, ByteBuffer body, int bodyLength) throws ValueNotSetException {
+		int length = Data.PDU_HEADER_SIZE + bodyLength + getEncodedOptionalLength();
+		setCommandLength(length);
+		int pos = header.encode(dest, offset);
+		if (body != null) {
+			pos = encodeBytes(body, dest, pos);
+		} else if (bodyLength > 0) {
+			pos = encodeBody(dest, pos);
+		}
+		pos = encodeOptional(dest, pos);
+		if (pos - offset != length) {
+			throw new IllegalStateException(
+				"Encoded " + (pos - offset) + " bytes instead of " + length + " for " + getClass().getName());
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the length of the encoded mandatory parameters if
+	 * the derived class implements <code>encodeBody</code>, otherwise -1
+	 * and <code>getBody</code> is used for encoding.
+	 * @see #encodeBody(byte[],int)
+	 */
+	protected int getEncodedBodyLength() throws ValueNotSetException {
+		return -1;
+	}
+
+	/**
+	 * Writes the mandatory parameters of the PDU to the array, the same data
+	 * as returned by <code>getBody</code>. Derived classes override it
+	 * together with <code>getEncodedBodyLength</code>.
+	 * @return the offset after the body
+	 * @see #getEncodedBodyLength()
+	 */
+	protected int encodeBody(byte[] dest, int offset) throws ValueNotSetException {
+		return encodeBytes(getBody(), dest, offset);
+	}
+
+
+	/**
+	 * Resets the PDU to the state it had after construction so the object
+	 * can be reused: clears the header fields except the command id,
+	 * unsets all optional parameters, removes the extra optional
+	 * parameters and the application specific info. Derived classes
+	 * reset their mandatory parameters as well if they keep references
+	 * to other objects.
+	 * <p>
+	 * Used by <code>PDUPool</code> before a PDU is parsed again, but can
+	 * be used by the application as well.
+	 *
+	 * @see PDUPool
+	 */
+	public void reset() {
+		checkHeader();
+		header.setCommandLength(0);
+		header.setCommandStatus(0);
+		header.setSequenceNumber(1);
+		sequenceNumberChanged = false;
+		// the TLV objects are kept for the reuse of the PDU
+		if (optionalParameters != null) {
+			for (int i = 0; i < optionalParameters.length; i++) {
+				if (optionalParameters[i] != null) {
+					optionalParameters[i].reset();
+				}
+			}
+		}
+		if (registeredOptionalParameters != null) {
+			int size = registeredOptionalParameters.size();
+			for (int i = 0; i < size; i++) {
+				registeredOptionalParameters.get(i).reset();
+			}
+		}
+		if (extraOptionalParameters != null) {
+			extraOptionalParameters.removeAllElements();
+		}
+		applicationSpecificInfo = null;
+		undecodedBody = null;
+		valid = VALID_ALL;
+	}
+
+	/**
+	 * Returns the PDU to the pool it was borrowed from. The application
+	 * calls it when it finished processing of a PDU received by a
+	 * <code>Receiver</code> which uses a <code>PDUPool</code>; the PDU
+	 * mustn't be used after that. Does nothing if the PDU wasn't created
+	 * by a pool, so it can be called regardless if pooling is enabled.
+	 *
+	 * @see PDUPool#release(PDU)
+	 * @see #isPooled()
+	 */
+	public void release() {
+		PDUPool pool = this.pool;
+		if (pool != null) {
+			pool.release(this);
+		}
+	}
+
+	/**
+	 * Returns if the PDU was created by a <code>PDUPool</code> and should
+	 * be released after processing.
+	 *
+	 * @see #release()
+	 */
+	public boolean isPooled() {
+		return pool != null;
+	}
+
 	/** Sets if the PDU contains correctly formated data.  */
 	public void setValid(byte valid) {
 		this.valid = valid;
 	}
 
-	/** Returns if the PDU contains correctly formated data. */
+	/**
+	 * Returns if the PDU contains correctly formated data.
+	 * Decodes a lazily decoded PDU.
+	 */
 	public byte getValid() {
+		ensureDecoded();
 		return valid;
 	}
 
@@ -452,17 +843,13 @@ public abstract class PDU extends ByteData {
 		sequenceNumberChanged = true;
 	}
 
-	/** Creates the binary PDU header from the header fields of the PDU. */
-	private ByteBuffer getHeader() {
-		checkHeader();
-		return header.getData();
-	}
-
 	/**
 	 * Parses the binary buffer and obtains all optional parameters
 	 * which the buffer contains, sets the optional parameter fields.
-	 * The optional parameter fields which the PDU can contain must be
-	 * registered by the derived class using <code>registerOptional</code>.
+	 * The optional parameters which the PDU can contain are given
+	 * by the derived class in <code>getOptionalTable</code> (or registered
+	 * using <code>registerOptional</code>); the TLV object is created
+	 * only for the parameters actually present in the buffer.
 	 * Or there can be extra optional parameters with application/smsc specific tags,
 	 * which aren't defined in the SMPP specification.
 	 * The optional parameters defined in SMPP are accessible using appropriate
@@ -474,7 +861,7 @@ public abstract class PDU extends ByteData {
 	 * @exception UnexpectedOptionalParameterException if the optional
 	 *            parameter read from the buffer cna't be contained
 	 *            int this PDU
-	 * @see #getOptionalBody()
+	 * @see #encodeOptional(byte[],int)
 	 * @see #getExtraOptional(short)
 	 * @see TLV
 	 */
@@ -489,7 +876,7 @@ public abstract class PDU extends ByteData {
 			// we prepare buffer with one parameter
 			tlvHeader = buffer.readBytes(Data.TLV_HEADER_SIZE);
 			tag = tlvHeader.removeShort();
-			tlv = findOptional(optionalParameters, tag);
+			tlv = findOptional(tag);
 			if (tlv == null) {
 				// ok, got extra optional parameter not defined in SMPP spec
 				// will keep it as octets
@@ -503,55 +890,191 @@ public abstract class PDU extends ByteData {
 	}
 
 	/**
-	 * Creates buffer with all the optional parameters which have set
+	 * Returns the length of all the optional parameters which have set
 	 * their value, both from the optional parameters defined in SMPP
 	 * and extra optional parameters.
-	 * @see #setOptionalBody(ByteBuffer)
-	 * @see TLV#hasValue()
-	 * @see TLV#getData()
-	 * @see TLV
+	 * @see #encodeOptional(byte[],int)
 	 */
-	private ByteBuffer getOptionalBody() throws ValueNotSetException {
-		ByteBuffer optBody = new ByteBuffer();
-		optBody.appendBuffer(getOptionalBody(optionalParameters));
-		optBody.appendBuffer(getOptionalBody(extraOptionalParameters));
-		return optBody;
+	private int getEncodedOptionalLength() throws ValueNotSetException {
+		int length = 0;
+		if (optionalParameters != null) {
+			for (int i = 0; i < optionalParameters.length; i++) {
+				if (optionalParameters[i] != null) {
+					length += optionalParameters[i].getEncodedLength();
+				}
+			}
+		}
+		length += getEncodedLength(registeredOptionalParameters);
+		length += getEncodedLength(extraOptionalParameters);
+		return length;
+	}
+
+	private static int getEncodedLength(Vector<TLV> optionalParameters) throws ValueNotSetException {
+		int length = 0;
+		if (optionalParameters != null) {
+			int size = optionalParameters.size();
+			TLV tlv;
+			for (int i = 0; i < size; i++) {
+				tlv = optionalParameters.get(i);
+				if (tlv != null) {
+					length += tlv.getEncodedLength();
+				}
+			}
+		}
+		return length;
 	}
 
 	/**
-	 * Creates buffer with all the optional parameters contained in 
-	 * the <code>optionalParameters</code> list which have set
-	 * their value. For getting data of the optional parameter calls
-	 * a method <code>getData</code> of the <code>TLV</code> class.
+	 * Writes all the optional parameters which have set their value,
+	 * the ones defined for the PDU first, then the extra ones.
 	 * @see #setOptionalBody(ByteBuffer)
-	 * @see TLV#hasValue()
-	 * @see TLV#getData()
-	 * @see TLV
+	 * @see TLV#encode(byte[],int)
 	 */
-	private ByteBuffer getOptionalBody(Vector<TLV> optionalParameters) throws ValueNotSetException {
-		ByteBuffer optBody = new ByteBuffer();
-		int size = optionalParameters.size();
+	private int encodeOptional(byte[] dest, int offset) throws ValueNotSetException {
+		if (optionalParameters != null) {
+			for (int i = 0; i < optionalParameters.length; i++) {
+				if (optionalParameters[i] != null) {
+					offset = optionalParameters[i].encode(dest, offset);
+				}
+			}
+		}
+		offset = encodeOptional(registeredOptionalParameters, dest, offset);
+		return encodeOptional(extraOptionalParameters, dest, offset);
+	}
+
+	private static int encodeOptional(Vector<TLV> optionalParameters, byte[] dest, int offset)
+		throws ValueNotSetException {
+		if (optionalParameters != null) {
+			int size = optionalParameters.size();
+			TLV tlv;
+			for (int i = 0; i < size; i++) {
+				tlv = optionalParameters.get(i);
+				if (tlv != null) {
+					offset = tlv.encode(dest, offset);
+				}
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the table of the optional parameters defined for the PDU class.
+	 * Derived classes which can carry optional parameters override
+	 * this method and return a table shared by all their instances,
+	 * the TLV objects are then created only when set or received.
+	 * Returns null, i.e. no optional parameters.
+	 *
+	 * @see TLVTable
+	 * @see #createOptional(short)
+	 */
+	protected TLVTable getOptionalTable() {
+		return null;
+	}
+
+	/**
+	 * Returns the TLV of the optional parameter with the tag for setting
+	 * its value, creates the TLV if it wasn't set yet.
+	 *
+	 * @param tag the tag of the optional parameter from the PDU's table
+	 *            or one registered with <code>registerOptional</code>
+	 * @exception IllegalArgumentException if the PDU can't carry the tag
+	 * @see #getOptionalTable()
+	 */
+	protected TLV createOptional(short tag) {
+		ensureDecoded();
+		TLVTable table = getOptionalTable();
+		int index = table == null ? -1 : table.indexOf(tag);
+		if (index >= 0) {
+			if (optionalParameters == null) {
+				optionalParameters = new TLV[table.size()];
+			}
+			TLV tlv = optionalParameters[index];
+			if (tlv == null) {
+				tlv = table.create(index);
+				optionalParameters[index] = tlv;
+			}
+			return tlv;
+		}
+		TLV tlv = findRegisteredOptional(tag);
+		if (tlv == null) {
+			throw new IllegalArgumentException(
+				"Optional parameter " + Integer.toHexString(tag) + " not defined for " + getClass().getName());
+		}
+		return tlv;
+	}
+
+	/**
+	 * Returns the TLV of the optional parameter with the tag if the
+	 * parameter has a value, null otherwise. Doesn't return extra
+	 * optional parameters.
+	 *
+	 * @param tag the tag of the optional parameter
+	 * @see #getExtraOptional(short)
+	 */
+	public TLV getOptional(short tag) {
+		ensureDecoded();
 		TLV tlv = null;
-		for (int i = 0; i < size; i++) {
-			tlv = optionalParameters.get(i);
-			if ((tlv != null) && tlv.hasValue()) {
-				optBody.appendBuffer(tlv.getData());
+		TLVTable table = getOptionalTable();
+		int index = table == null ? -1 : table.indexOf(tag);
+		if (index >= 0) {
+			if (optionalParameters != null) {
+				tlv = optionalParameters[index];
 			}
+		} else {
+			tlv = findRegisteredOptional(tag);
+		}
+		return ((tlv != null) && tlv.hasValue()) ? tlv : null;
+	}
+
+	/**
+	 * Returns the TLV of the optional parameter with the tag for getting
+	 * its value.
+	 *
+	 * @param tag the tag of the optional parameter
+	 * @exception ValueNotSetException if the parameter wasn't set
+	 */
+	protected TLV requireOptional(short tag) throws ValueNotSetException {
+		TLV tlv = getOptional(tag);
+		if (tlv == null) {
+			throw new ValueNotSetException();
 		}
-		return optBody;
+		return tlv;
+	}
+
+	/**
+	 * Returns if the optional parameter with the tag was set or received.
+	 *
+	 * @param tag the tag of the optional parameter
+	 */
+	protected boolean hasOptional(short tag) {
+		return getOptional(tag) != null;
 	}
 
 	/**
 	 * Registeres a TLV as an optional parameter which can be containd in
-	 * the PDU. Derived classes are expected that they will define appropriate
-	 * TLVs and register them using this method. Only registered TLVs
-	 * can be read as optional parameters from binary PDU received from SMSC.
+	 * the PDU. This is the way the optional parameters were defined
+	 * before <code>getOptionalTable</code>; as the TLV is kept by the
+	 * instance, the table should be preferred. If the tag is in the table,
+	 * the TLV is used instead of one created from the table.
 	 * @param tlv the TLV to be registered as an optional parameter
+	 * @see #getOptionalTable()
 	 * @see TLV
 	 */
 	protected void registerOptional(TLV tlv) {
 		if (tlv != null) {
-			optionalParameters.add(tlv);
+			TLVTable table = getOptionalTable();
+			int index = table == null ? -1 : table.indexOf(tlv.getTag());
+			if (index >= 0) {
+				if (optionalParameters == null) {
+					optionalParameters = new TLV[table.size()];
+				}
+				optionalParameters[index] = tlv;
+			} else {
+				if (registeredOptionalParameters == null) {
+					registeredOptionalParameters = new Vector<TLV>(1, 1);
+				}
+				registeredOptionalParameters.add(tlv);
+			}
 		}
 	}
 
@@ -567,17 +1090,42 @@ public abstract class PDU extends ByteData {
 	 */
 	protected void registerExtraOptional(TLV tlv) {
 		if (tlv != null) {
+			if (extraOptionalParameters == null) {
+				extraOptionalParameters = new Vector<TLV>(1, 1);
+			}
 			extraOptionalParameters.add(tlv);
 		}
 	}
 
 	/**
-	 * Searches for registered or extra TLV with the given TLV tag.
-	 * Returns the found TLV or null if not found. Used when parsing
-	 * the optional part of the binary PDU data.
+	 * Searches for the TLV for the optional parameter with the given tag
+	 * defined for the PDU, creating it if it's in the PDU's table.
+	 * Returns null if the PDU doesn't define the parameter.
+	 * Used when parsing the optional part of the binary PDU data.
 	 * @param tag the tag of the TLV required
 	 * @return the found TLV
 	 * @see #setOptionalBody(ByteBuffer)
+	 * @see #getOptionalTable()
+	 * @see #registerOptional(TLV)
+	 */
+	private TLV findOptional(short tag) {
+		TLVTable table = getOptionalTable();
+		if ((table != null) && (table.indexOf(tag) >= 0)) {
+			return createOptional(tag);
+		}
+		return findRegisteredOptional(tag);
+	}
+
+	/** Searches for the TLV registered with <code>registerOptional</code>. */
+	private TLV findRegisteredOptional(short tag) {
+		return registeredOptionalParameters == null ? null : findOptional(registeredOptionalParameters, tag);
+	}
+
+	/**
+	 * Searches for TLV with the given TLV tag in the list.
+	 * Returns the found TLV or null if not found.
+	 * @param tag the tag of the TLV required
+	 * @return the found TLV
 	 * @see #registerOptional(TLV)
 	 * @see #registerExtraOptional(TLV)
 	 * @see TLV
@@ -602,7 +1150,7 @@ public abstract class PDU extends ByteData {
 	 * adds it to the list.
 	 */
 	private void replaceExtraOptional(TLV tlv) {
-		int size = extraOptionalParameters.size();
+		int size = extraOptionalParameters == null ? 0 : extraOptionalParameters.size();
 		TLV existing = null;
 		short tlvTag = tlv.getTag();
 		for (int i = 0; i < size; i++) {
@@ -619,6 +1167,7 @@ public abstract class PDU extends ByteData {
 	 * Sets the extra optional parameter.
 	 */
 	public void setExtraOptional(TLV tlv) {
+		ensureDecoded();
 		replaceExtraOptional(tlv);
 	}
 
@@ -636,6 +1185,10 @@ public abstract class PDU extends ByteData {
 	 * tag; if not found returns null.
 	 */
 	public TLV getExtraOptional(short tag) {
+		ensureDecoded();
+		if (extraOptionalParameters == null) {
+			return null;
+		}
 		TLV tlv = findOptional(extraOptionalParameters, tag);
 		return tlv;
 	}
@@ -758,6 +1311,50 @@ public abstract class PDU extends ByteData {
 	 * @see #createPDU(int)
 	 */
 	public static final PDU createPDU(ByteBuffer buffer)
+		throws
+			HeaderIncompleteException,
+			MessageIncompleteException,
+			UnknownCommandIdException,
+			InvalidPDUException,
+			TLVException,
+			PDUException {
+		return createPDU(buffer, null);
+	}
+
+	/**
+	 * Same as <code>createPDU(ByteBuffer)</code>, only the instance of
+	 * the PDU is borrowed from the <code>pool</code> instead of being
+	 * created. The returned PDU should be released after it's processed.
+	 * If the buffer can't be parsed, the borrowed instance is given up
+	 * as it can be still referenced from the thrown exception.
+	 *
+	 * @param buffer the buffer with the PDU
+	 * @param pool the pool to borrow the PDU from; if null, new
+	 *             instance is created
+	 * @see #createPDU(ByteBuffer)
+	 * @see #release()
+	 */
+	public static final PDU createPDU(ByteBuffer buffer, PDUPool pool)
+		throws
+			HeaderIncompleteException,
+			MessageIncompleteException,
+			UnknownCommandIdException,
+			InvalidPDUException,
+			TLVException,
+			PDUException {
+		return createPDU(buffer, pool, false);
+	}
+
+	/**
+	 * Same as <code>createPDU(ByteBuffer,PDUPool)</code>, optionally
+	 * with lazy decoding of the PDU's body.
+	 *
+	 * @param buffer the buffer with the PDU
+	 * @param pool the pool to borrow the PDU from, can be null
+	 * @param lazy if only the header should be parsed now
+	 * @see #setData(ByteBuffer,boolean)
+	 */
+	public static final PDU createPDU(ByteBuffer buffer, PDUPool pool, boolean lazy)
 		throws
 			HeaderIncompleteException,
 			MessageIncompleteException,
@@ -785,7 +1382,7 @@ public abstract class PDU extends ByteData {
 			// Receiver must wait for more data
 			throw new MessageIncompleteException();
 		}
-		PDU pdu = createPDU(header.getCommandId());
+		PDU pdu = pool == null ? createPDU(header.getCommandId()) : pool.borrow(header.getCommandId());
 		if (pdu != null) {
 			// paolo@bulksms.com: more consistent & safe to remove whatever we plan
 			// to read from the buffer here already - stops problems with our parsing,
@@ -795,7 +1392,14 @@ public abstract class PDU extends ByteData {
 			try {
 				thisMessageBuffer = buffer.removeBuffer(header.getCommandLength());
 			} catch (NotEnoughDataInByteBufferException e) {} // can't fail
-			pdu.setData(thisMessageBuffer);
+			try {
+				pdu.setData(thisMessageBuffer, lazy);
+			} catch (PDUException e) {
+				if (pool != null) {
+					pool.discard(pdu);
+				}
+				throw e;
+			}
 			return pdu;
 		} else {
 			// if not found, throw
@@ -828,6 +1432,9 @@ public abstract class PDU extends ByteData {
 			// (in simple cases :-)
 			dbgs += "[" + (sequenceNumber + 1) + "]";
 		}
+		if (undecodedBody != null) {
+			dbgs += " (" + undecodedBody.length + " bytes not decoded)";
+		}
 		dbgs += ") ";
 		return dbgs;
 	}
@@ -853,9 +1460,27 @@ public abstract class PDU extends ByteData {
 
 	/** Returns debug string of all optional parameters. */
 	protected String debugStringOptional() {
+		Vector<TLV> optional = new Vector<TLV>();
+		if (optionalParameters != null) {
+			for (int i = 0; i < optionalParameters.length; i++) {
+				if (optionalParameters[i] != null) {
+					optional.add(optionalParameters[i]);
+				}
+			}
+		}
+		if (registeredOptionalParameters != null) {
+			optional.addAll(registeredOptionalParameters);
+		}
 		String dbgs = "";
-		dbgs += debugStringOptional("opt", optionalParameters);
-		dbgs += debugStringOptional("extraopt", extraOptionalParameters);
+		TLVTable table = getOptionalTable();
+		if ((table != null) && (table.size() > 0) && optional.isEmpty()) {
+			dbgs += "(opt: ) ";
+		} else {
+			dbgs += debugStringOptional("opt", optional);
+		}
+		if (extraOptionalParameters != null) {
+			dbgs += debugStringOptional("extraopt", extraOptionalParameters);
+		}
 		return dbgs;
 	}
 
@@ -10,6 +10,7 @@
  */
 package org.smpp.pdu;
 
+import org.smpp.Data;
 import org.smpp.util.ByteBuffer;
 import org.smpp.util.NotEnoughDataInByteBufferException;
 
@@ -32,6 +33,17 @@ public class PDUHeader extends ByteData {
 		return buffer;
 	}
 
+	public int getEncodedLength() {
+		return Data.PDU_HEADER_SIZE;
+	}
+
+	public int encode(byte[] dest, int offset) {
+		offset = encodeInt(getCommandLength(), dest, offset);
+		offset = encodeInt(getCommandId(), dest, offset);
+		offset = encodeInt(getCommandStatus(), dest, offset);
+		return encodeInt(getSequenceNumber(), dest, offset);
+	}
+
 	public void setData(ByteBuffer buffer) throws NotEnoughDataInByteBufferException {
 		commandLength = buffer.removeInt();
 		commandId = buffer.removeInt();
@@ -70,6 +82,47 @@ public class PDUHeader extends ByteData {
 	public void setSequenceNumber(int seqNr) {
 		sequenceNumber = seqNr;
 	}
+
+	/**
+	 * Sets the fields from the binary PDU starting at the offset,
+	 * which must contain at least the whole header.
+	 */
+	public void setData(byte[] data, int offset) {
+		commandLength = getCommandLength(data, offset);
+		commandId = getCommandId(data, offset);
+		commandStatus = getCommandStatus(data, offset);
+		sequenceNumber = getSequenceNumber(data, offset);
+	}
+
+	// The fields of the header of a binary PDU starting at the offset,
+	// for code handling PDUs without decoding them.
+
+	public static int getCommandLength(byte[] data, int offset) {
+		return decodeInt(data, offset);
+	}
+
+	public static int getCommandId(byte[] data, int offset) {
+		return decodeInt(data, offset + 4);
+	}
+
+	public static int getCommandStatus(byte[] data, int offset) {
+		return decodeInt(data, offset + 8);
+	}
+
+	public static int getSequenceNumber(byte[] data, int offset) {
+		return decodeInt(data, offset + 12);
+	}
+
+	public static void setSequenceNumber(byte[] data, int offset, int sequenceNumber) {
+		encodeInt(sequenceNumber, data, offset + 12);
+	}
+
+	private static int decodeInt(byte[] data, int offset) {
+		return ((data[offset] & 0xff) << 24)
+			| ((data[offset + 1] & 0xff) << 16)
+			| ((data[offset + 2] & 0xff) << 8)
+			| (data[offset + 3] & 0xff);
+	}
 }
 /*
  * $Log: not supported by cvs2svn $
@@ -0,0 +1,293 @@
+package org.smpp.pdu;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.smpp.SmppObject;
+
+/**
+ * Pool of reusable PDU instances. Creation of the big PDUs like
+ * <code>SubmitSM</code> or <code>DeliverSM</code> allocates the
+ * addresses, the short message and all the optional parameters the PDU
+ * can carry; with a pool the instances are parsed again and again
+ * instead.
+ * <p>
+ * Pooling is opt-in: the pool is set to a receiver with
+ * <code>ReceiverBase.setPDUPool</code> (usually one pool per session)
+ * and then all the PDUs received are borrowed from the pool.
+ * The application must call <code>PDU.release()</code> when it finished
+ * processing of a received PDU; the PDU is then reset and kept for
+ * the next PDU with the same command id. A released PDU mustn't be used
+ * anymore, not even referenced from a response or another PDU.
+ * A PDU which is never released is simply garbage collected, the pool
+ * creates a new one when it's empty.
+ * <p>
+ * In debug mode the pool checks the use of the PDUs: releasing a PDU
+ * which isn't borrowed throws <code>IllegalStateException</code> and
+ * borrowed PDUs which were garbage collected without being released
+ * are reported as leaks together with the stack trace of the place
+ * where they were borrowed. Debug mode is slower and allocates
+ * for each borrowed PDU, so it's meant for testing.
+ * Outside of the debug mode a double release of a PDU which is
+ * still in the pool is ignored and reported to the event log.
+ *
+ * @see PDU#release()
+ * @see PDU#reset()
+ * @see PDU#createPDU(org.smpp.util.ByteBuffer,PDUPool)
+ */
+public class PDUPool extends SmppObject {
+	/** Default max number of kept instances per command id. */
+	public static final int DEFAULT_MAX_PER_TYPE = 64;
+
+	/**
+	 * Number of slots for command ids, request and response ids are
+	 * folded to the same index range of size <code>ID_SLOTS/2</code>.
+	 */
+	private static final int ID_SLOTS = 1024;
+
+	private final int maxPerType;
+	private final boolean debugMode;
+	private final AtomicReferenceArray<Stack> stacks = new AtomicReferenceArray<Stack>(ID_SLOTS);
+	private final AtomicInteger createdCount = new AtomicInteger();
+	private final AtomicInteger reusedCount = new AtomicInteger();
+
+	// leak detection, debug mode only
+	private final ReferenceQueue<PDU> collected = new ReferenceQueue<PDU>();
+	private final ConcurrentHashMap<Borrowed, Boolean> outstanding = new ConcurrentHashMap<Borrowed, Boolean>();
+	private final AtomicInteger leakCount = new AtomicInteger();
+
+	/**
+	 * Creates a pool keeping at most <code>DEFAULT_MAX_PER_TYPE</code>
+	 * instances of each PDU type, not in debug mode.
+	 */
+	public PDUPool() {
+		this(DEFAULT_MAX_PER_TYPE, false);
+	}
+
+	/**
+	 * Creates a pool.
+	 *
+	 * @param maxPerType max count of released instances kept for one
+	 *                   command id, the others are left to the garbage
+	 *                   collector
+	 * @param debugMode  if the use of the borrowed PDUs is checked
+	 */
+	public PDUPool(int maxPerType, boolean debugMode) {
+		if (maxPerType <= 0) {
+			throw new IllegalArgumentException("maxPerType must be positive: " + maxPerType);
+		}
+		this.maxPerType = maxPerType;
+		this.debugMode = debugMode;
+	}
+
+	/**
+	 * Returns an instance of the PDU with the command id, either
+	 * one released before or a new one.
+	 *
+	 * @param commandId the command id of the PDU
+	 * @return the PDU or null if the command id is unknown
+	 * @see PDUFactory#createPDU(int)
+	 */
+	public PDU borrow(int commandId) {
+		if (debugMode) {
+			checkLeaks();
+		}
+		Stack stack = getStack(commandId);
+		PDU pdu = stack.pop();
+		if (pdu == null) {
+			pdu = PDUFactory.createPDU(commandId);
+			if (pdu == null) {
+				return null;
+			}
+			pdu.pool = this;
+			stack.pduClass = pdu.getClass();
+			createdCount.incrementAndGet();
+		} else {
+			reusedCount.incrementAndGet();
+		}
+		if (debugMode) {
+			Borrowed borrowed = new Borrowed(pdu, collected);
+			outstanding.put(borrowed, Boolean.TRUE);
+			pdu.borrowed = borrowed;
+		}
+		return pdu;
+	}
+
+	/**
+	 * Resets the PDU and keeps it for reuse. Usually called as
+	 * <code>pdu.release()</code>.
+	 *
+	 * @param pdu the PDU borrowed from this pool
+	 * @exception IllegalArgumentException if the PDU wasn't borrowed
+	 *            from this pool
+	 * @exception IllegalStateException in debug mode if the PDU isn't
+	 *            borrowed, i.e. was already released
+	 */
+	public void release(PDU pdu) {
+		if (pdu.pool != this) {
+			throw new IllegalArgumentException("The PDU doesn't belong to this pool: " + pdu.debugString());
+		}
+		if (debugMode) {
+			Borrowed borrowed = pdu.borrowed;
+			if ((borrowed == null) || (outstanding.remove(borrowed) == null)) {
+				throw new IllegalStateException("The PDU was already released: " + pdu.debugString());
+			}
+			pdu.borrowed = null;
+			borrowed.clear();
+		} else if (pdu.inPool) {
+			event.write("PDUPool: ignoring repeated release of " + pdu.debugString());
+			return;
+		}
+		int commandId = pdu.getCommandId();
+		pdu.reset();
+		getStack(commandId).push(pdu);
+	}
+
+	/**
+	 * Gives up a borrowed PDU without returning it to the pool, e.g.
+	 * because it's still referenced from an exception. The PDU behaves
+	 * as not pooled afterwards.
+	 *
+	 * @param pdu the PDU borrowed from this pool
+	 */
+	public void discard(PDU pdu) {
+		if (pdu.pool != this) {
+			return;
+		}
+		Borrowed borrowed = pdu.borrowed;
+		if (borrowed != null) {
+			outstanding.remove(borrowed);
+			borrowed.clear();
+			pdu.borrowed = null;
+		}
+		pdu.pool = null;
+	}
+
+	/**
+	 * Reports the borrowed PDUs garbage collected without being released
+	 * since the last check. Only works in debug mode; called on every
+	 * borrow, so it's needed only for checking from tests.
+	 *
+	 * @return the total number of leaks detected by the pool
+	 */
+	public int checkLeaks() {
+		Borrowed borrowed;
+		while ((borrowed = (Borrowed) collected.poll()) != null) {
+			if (outstanding.remove(borrowed) != null) {
+				leakCount.incrementAndGet();
+				event.write(borrowed.trace, "PDUPool: PDU garbage collected without being released");
+			}
+		}
+		return leakCount.get();
+	}
+
+	/** Returns the number of leaks detected so far, debug mode only. */
+	public int getLeakCount() {
+		return leakCount.get();
+	}
+
+	/** Returns the number of the PDUs currently borrowed, debug mode only. */
+	public int getBorrowedCount() {
+		return outstanding.size();
+	}
+
+	/** Returns the number of the PDUs released and kept for the command id. */
+	public int getAvailableCount(int commandId) {
+		return getStack(commandId).size();
+	}
+
+	/** Returns how many PDUs had to be created by the pool. */
+	public int getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/** Returns how many times a released PDU was reused. */
+	public int getReusedCount() {
+		return reusedCount.get();
+	}
+
+	/** Returns if the pool checks the use of the PDUs. */
+	public boolean isDebugMode() {
+		return debugMode;
+	}
+
+	private Stack getStack(int commandId) {
+		int index = (commandId & (ID_SLOTS / 2 - 1)) | (commandId < 0 ? ID_SLOTS / 2 : 0);
+		Stack stack = stacks.get(index);
+		if ((stack == null) || (stack.commandId != commandId)) {
+			Stack created = new Stack(commandId);
+			if ((stack == null) && stacks.compareAndSet(index, null, created)) {
+				return created;
+			}
+			stack = stacks.get(index);
+			if (stack.commandId != commandId) {
+				// command id outside of the SMPP ranges colliding with another one,
+				// not worth pooling
+				return created;
+			}
+		}
+		return stack;
+	}
+
+	/**
+	 * Released instances of one command id.
+	 */
+	private class Stack {
+		final int commandId;
+		volatile Class<?> pduClass = null;
+		private PDU[] items = null;
+		private int size = 0;
+
+		Stack(int commandId) {
+			this.commandId = commandId;
+		}
+
+		synchronized PDU pop() {
+			if (size == 0) {
+				return null;
+			}
+			PDU pdu = items[--size];
+			items[size] = null;
+			pdu.inPool = false;
+			return pdu;
+		}
+
+		synchronized void push(PDU pdu) {
+			if (pdu.inPool) {
+				event.write("PDUPool: ignoring repeated release of " + pdu.debugString());
+				return;
+			}
+			if (pdu.getClass() != pduClass) {
+				// the command id was changed, e.g. response carrying generic_nack
+				pdu.pool = null;
+				return;
+			}
+			if (items == null) {
+				items = new PDU[maxPerType];
+			}
+			if (size < items.length) {
+				pdu.inPool = true;
+				items[size++] = pdu;
+			}
+		}
+
+		synchronized int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Record of a borrowed PDU in debug mode. Enqueued by the garbage
+	 * collector if the PDU wasn't released.
+	 */
+	static class Borrowed extends WeakReference<PDU> {
+		final Exception trace = new Exception("PDU borrowed here");
+
+		Borrowed(PDU pdu, ReferenceQueue<PDU> queue) {
+			super(pdu, queue);
+		}
+	}
+}
@@ -10,7 +10,11 @@
  */
 package org.smpp.pdu;
 
+import org.smpp.Data;
 import org.smpp.pdu.PDU;
+import org.smpp.pdu.tlv.TLV;
+import org.smpp.pdu.tlv.TLVByte;
+import org.smpp.pdu.tlv.TLVTable;
 
 /**
  * Represents a PDU response. All classes which are used as SMPP response are
@@ -26,6 +30,17 @@ public abstract class Response extends PDU {
 	 */
 	private Request originalRequest = null;
 
+	/**
+	 * The optional parameters any response can carry. Responses with
+	 * their own optional parameters use it as the parent of their table.
+	 * @see PDU#getOptionalTable()
+	 */
+	protected static final TLVTable optionalTable =
+		new TLVTable(
+			new TLV[] {
+				new TLVByte(Data.OPT_PAR_CONGESTION_STATE)
+			});
+
 	/** Create a request PDU with default parameters. */
 	public Response() {
 	}
@@ -64,6 +79,39 @@ public abstract class Response extends PDU {
 		return true;
 	}
 
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
+	}
+
+	public void reset() {
+		super.reset();
+		originalRequest = null;
+	}
+
+	public boolean hasCongestionState() {
+		return hasOptional(Data.OPT_PAR_CONGESTION_STATE);
+	}
+
+	/**
+	 * Sets the <code>congestion_state</code> of SMPP 5.0, the load of
+	 * the sender of the response from 0 (idle) to 100 (congested).
+	 *
+	 * @exception IntegerOutOfRangeException if the value isn't 0 to 100
+	 */
+	public void setCongestionState(int value) throws IntegerOutOfRangeException {
+		checkRange(Data.OPT_PAR_CONGESTION_STATE_MIN, value, Data.OPT_PAR_CONGESTION_STATE_MAX);
+		((TLVByte) createOptional(Data.OPT_PAR_CONGESTION_STATE)).setValue((byte) value);
+	}
+
+	/**
+	 * Returns the <code>congestion_state</code> reported by the peer.
+	 * Values above 100 sent by the peer are returned as 100.
+	 */
+	public int getCongestionState() throws ValueNotSetException {
+		int value = decodeUnsigned(((TLVByte) requireOptional(Data.OPT_PAR_CONGESTION_STATE)).getValue());
+		return Math.min(value, Data.OPT_PAR_CONGESTION_STATE_MAX);
+	}
+
 	/**
 	 * Sets the original <code>Request</code> which this <code>Response</code>
 	 * was created from.
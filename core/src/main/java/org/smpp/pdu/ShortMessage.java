@@ -13,7 +13,10 @@ package org.smpp.pdu;
 import java.io.UnsupportedEncodingException;
 
 import org.smpp.Data;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.charset.Gsm7BitTransliterator;
 import org.smpp.util.ByteBuffer;
+import org.smpp.util.CharsetRegistry;
 import org.smpp.util.NotEnoughDataInByteBufferException;
 import org.smpp.util.TerminatingZeroNotFoundException;
 
@@ -22,6 +25,20 @@ import org.smpp.util.TerminatingZeroNotFoundException;
  * Can contain an ordinary data message or a message containing data encoded
  * in one of the Java supported encodings, including multibyte.
  * On Java encodings see <a href="http://java.sun.com/j2se/1.3/docs/guide/intl/encoding.doc.html">Supported encodings</a>
+ * <p>
+ * Besides the Java encodings, <code>Data.ENC_GSM7BIT_PACKED</code> can be
+ * used for the GSM 7-bit alphabet packed 8 characters to 7 octets; the
+ * message is packed and unpacked directly without the unpacked octets.
+ * Messages with user data header should be packed with
+ * <code>Gsm7BitPackedCodec.encodeUserData</code> and set as data.
+ * <p>
+ * A message set with the default encoding and a transliterator by
+ * <code>setMessageTransliterated(String,Gsm7BitTransliterator)</code>
+ * has the characters out of the GSM 7-bit alphabet replaced by the
+ * transliterator instead of '?'.
+ *
+ * @see Gsm7BitPackedCodec
+ * @see Gsm7BitTransliterator
  * 
  * @author Logica Mobile Networks SMPP Open Source Team
  * @version $Revision: 1.4 $
@@ -50,6 +67,12 @@ public class ShortMessage extends ByteData {
 	 */
 	String encoding = null;
 
+	/**
+	 * The count of the characters replaced by the transliterator
+	 * when the message was set.
+	 */
+	int substitutions = 0;
+
 	/**
 	 * The length of the message data.
 	 */
@@ -117,6 +140,29 @@ public class ShortMessage extends ByteData {
 		return buffer;
 	}
 
+	public int getEncodedLength() {
+		return messageData == null ? 0 : messageData.length;
+	}
+
+	public int encode(byte[] dest, int offset) {
+		if (messageData == null) {
+			return offset;
+		}
+		System.arraycopy(messageData, 0, dest, offset, messageData.length);
+		return offset + messageData.length;
+	}
+
+	/**
+	 * Clears the message to the state after construction.
+	 */
+	public void reset() {
+		message = null;
+		encoding = null;
+		messageData = null;
+		length = 0;
+		substitutions = 0;
+	}
+
 	/**
 	 * Sets the message a new value. Default encoding <code>Data.ENC_GSM7BIT</code>
 	 * is used.
@@ -125,6 +171,32 @@ public class ShortMessage extends ByteData {
 	 *            too short or long
 	 */
 	public void setMessage(String message) throws WrongLengthOfStringException {
+		setMessageTransliterated(message, null);
+	}
+
+	/**
+	 * Sets the message a new value with the default encoding
+	 * <code>Data.ENC_GSM7BIT</code>, transliterating the characters which
+	 * aren't in the GSM 7-bit alphabet first.
+	 * @param message the message
+	 * @param transliterator the transliterator, <code>null</code> if
+	 *        the message shouldn't be transliterated
+	 * @exception WrongLengthOfStringException thrown when the message
+	 *            too short or long
+	 * @see #getSubstitutionCount()
+	 */
+	public void setMessageTransliterated(String message, Gsm7BitTransliterator transliterator)
+		throws WrongLengthOfStringException {
+		int count = 0;
+		if ((transliterator != null) && (message != null) && !Gsm7BitTransliterator.isEncodable(message)) {
+			StringBuilder transliterated = new StringBuilder(message.length() + 8);
+			count = transliterator.transliterate(message, transliterated);
+			if (count > 0) {
+				message = transliterated.toString();
+			} else {
+				count = 0;
+			}
+		}
 		try {
 			setMessage(message, Data.ENC_GSM7BIT);
 		} catch (UnsupportedEncodingException e) {
@@ -134,6 +206,7 @@ public class ShortMessage extends ByteData {
 				// ascii always supported
 			}
 		}
+		substitutions = count;
 	}
 
 	/**
@@ -147,15 +220,17 @@ public class ShortMessage extends ByteData {
 	 */
 	public void setMessage(String message, String encoding)
 		throws WrongLengthOfStringException, UnsupportedEncodingException {
-		checkString(message, minLength, maxLength, encoding);
 		if (message != null) {
+			byte[] messageData;
 			try {
-				messageData = message.getBytes(encoding);
+				messageData = encodeMessage(message, encoding);
 			} catch (UnsupportedEncodingException e) {
 				debug.write("encoding " + encoding + " not supported. Exception " + e);
 				event.write(e, "encoding " + encoding + " not supported");
 				throw e; // re-throw
 			}
+			checkString(minLength, messageData.length, maxLength);
+			this.messageData = messageData;
 			this.message = message;
 			this.length = messageData.length;
 			this.encoding = encoding;
@@ -165,6 +240,16 @@ public class ShortMessage extends ByteData {
 			this.encoding = encoding;
 			this.length = 0;
 		}
+		this.substitutions = 0;
+	}
+
+	/**
+	 * Returns the count of the characters replaced by the transliterator
+	 * when the message was set by
+	 * <code>setMessageTransliterated(String,Gsm7BitTransliterator)</code>.
+	 */
+	public int getSubstitutionCount() {
+		return substitutions;
 	}
 
 	/**
@@ -175,7 +260,7 @@ public class ShortMessage extends ByteData {
 	 *            available for the Java Runtime system
 	 */
 	public void setEncoding(String encoding) throws UnsupportedEncodingException {
-		message = new String(messageData, encoding);
+		message = decodeMessage(messageData, encoding);
 		this.encoding = encoding;
 	}
 
@@ -214,12 +299,12 @@ public class ShortMessage extends ByteData {
 				// if the required encoding is the same as current encoding
 				// or if the encoding haven't been set yet
 				if (this.message == null) {
-					this.message = new String(messageData, encoding);
+					this.message = decodeMessage(messageData, encoding);
 				}
 				message = this.message;
 			} else {
 				if (encoding != null) {
-					message = new String(messageData, encoding);
+					message = decodeMessage(messageData, encoding);
 				} else {
 					message = new String(messageData);
 				}
@@ -228,6 +313,28 @@ public class ShortMessage extends ByteData {
 		return message;
 	}
 
+	/**
+	 * Converts the message to octets, packs it for
+	 * <code>Data.ENC_GSM7BIT_PACKED</code>.
+	 */
+	private static byte[] encodeMessage(String message, String encoding) throws UnsupportedEncodingException {
+		if (Data.ENC_GSM7BIT_PACKED.equals(encoding)) {
+			return Gsm7BitPackedCodec.encode(message);
+		}
+		return CharsetRegistry.encode(message, encoding);
+	}
+
+	/**
+	 * Converts the octets to the message, unpacks them for
+	 * <code>Data.ENC_GSM7BIT_PACKED</code>.
+	 */
+	private static String decodeMessage(byte[] messageData, String encoding) throws UnsupportedEncodingException {
+		if (Data.ENC_GSM7BIT_PACKED.equals(encoding)) {
+			return Gsm7BitPackedCodec.decode(messageData, 0, messageData.length, 0);
+		}
+		return CharsetRegistry.decode(messageData, 0, messageData.length, encoding);
+	}
+
 	/** Returns the length of the message in octets. */
 	public int getLength() {
 		return messageData.length;
@@ -240,13 +347,10 @@ public class ShortMessage extends ByteData {
 
 	/** Returns if the encoding provided is supported by the Java Runtime system. */
 	public static boolean encodingSupported(String encoding) {
-		boolean supported = true;
-		try {
-			"SMPP".getBytes(encoding);
-		} catch (UnsupportedEncodingException e) {
-			supported = false;
+		if (Data.ENC_GSM7BIT_PACKED.equals(encoding)) {
+			return true;
 		}
-		return supported;
+		return CharsetRegistry.isSupported(encoding);
 	}
 
 	public String debugString() {
@@ -0,0 +1,356 @@
+package org.smpp.pdu;
+
+/**
+ * Time in the SMPP format of <code>schedule_delivery_time</code> and
+ * <code>validity_period</code>, see SMPP 3.4 specification, section 7.1.1:
+ * <pre>
+ * YYMMDDhhmmsstnnp
+ * </pre>
+ * where <code>t</code> are tenths of second, <code>nn</code> the difference
+ * between the local time and UTC in quarters of an hour and <code>p</code>
+ * is '+' or '-' for absolute time and 'R' for time relative
+ * to the current time of the SMSC.
+ * <p>
+ * The parser and the formatter are written by hand, they don't use
+ * <code>SimpleDateFormat</code> and don't take any lock; the validation
+ * by <code>check</code> creates no objects. Years are interpreted
+ * as 2000-2099. Instances are immutable.
+ * <p>
+ * Relative times are converted to milliseconds by adding the years and
+ * months to the calendar date of the base time in UTC, the days and the rest
+ * as fixed durations.
+ */
+public final class SmppTime {
+	/** The length of the time string. */
+	public static final int LENGTH = 16;
+
+	/** Maximal difference from UTC in quarters of an hour. */
+	public static final int MAX_UTC_OFFSET = 48;
+
+	private static final long MILLIS_PER_SECOND = 1000L;
+	private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+	private static final long MILLIS_PER_QUARTER = 15 * MILLIS_PER_MINUTE;
+	private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+	private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	private static final int[] DAYS_IN_MONTH = { 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	private final int year;
+	private final int month;
+	private final int day;
+	private final int hour;
+	private final int minute;
+	private final int second;
+	private final int tenths;
+	private final int utcOffset;
+	private final boolean relative;
+
+	private SmppTime(int year, int month, int day, int hour, int minute, int second, int tenths, int utcOffset, boolean relative) {
+		this.year = year;
+		this.month = month;
+		this.day = day;
+		this.hour = hour;
+		this.minute = minute;
+		this.second = second;
+		this.tenths = tenths;
+		this.utcOffset = utcOffset;
+		this.relative = relative;
+	}
+
+	/**
+	 * Parses the time.
+	 *
+	 * @exception WrongDateFormatException if the time isn't valid
+	 */
+	public static SmppTime parse(CharSequence time) throws WrongDateFormatException {
+		check(time);
+		int utcOffset = digits(time, 13, 2);
+		boolean relative = time.charAt(15) == 'R';
+		if (time.charAt(15) == '-') {
+			utcOffset = -utcOffset;
+		}
+		return new SmppTime(
+			digits(time, 0, 2),
+			digits(time, 2, 2),
+			digits(time, 4, 2),
+			digits(time, 6, 2),
+			digits(time, 8, 2),
+			digits(time, 10, 2),
+			digits(time, 12, 1),
+			utcOffset,
+			relative);
+	}
+
+	/**
+	 * Checks if the time has the valid format; no objects are created unless
+	 * the time is invalid.
+	 *
+	 * @exception WrongDateFormatException if the time isn't valid
+	 */
+	public static void check(CharSequence time) throws WrongDateFormatException {
+		if ((time == null) || (time.length() != LENGTH)) {
+			throw new WrongDateFormatException(String.valueOf(time));
+		}
+		char indicator = time.charAt(15);
+		if ((indicator != '+') && (indicator != '-') && (indicator != 'R')) {
+			throw new WrongDateFormatException(
+				time.toString(),
+				"time difference relation indicator incorrect; " + "should be +, - or R and is " + indicator);
+		}
+		for (int i = 0; i < 15; i++) {
+			char ch = time.charAt(i);
+			if ((ch < '0') || (ch > '9')) {
+				throw new WrongDateFormatException(time.toString(), "non-numeric character " + ch + " at " + i);
+			}
+		}
+		int utcOffset = digits(time, 13, 2);
+		if (utcOffset > MAX_UTC_OFFSET) {
+			throw new WrongDateFormatException(
+				time.toString(),
+				"time difference is incorrect; " + "should be between 00-48 and is " + utcOffset);
+		}
+		if (indicator == 'R') {
+			// any number of relative units is valid
+			return;
+		}
+		int year = digits(time, 0, 2);
+		int month = digits(time, 2, 2);
+		int day = digits(time, 4, 2);
+		if ((month < 1) || (month > 12) || (day < 1) || (day > daysInMonth(2000 + year, month))
+			|| (digits(time, 6, 2) > 23) || (digits(time, 8, 2) > 59) || (digits(time, 10, 2) > 59)) {
+			throw new WrongDateFormatException(time.toString(), "format of absolute date-time incorrect");
+		}
+	}
+
+	/**
+	 * Creates absolute time of the instant expressed in the local time
+	 * differing from UTC by the offset.
+	 *
+	 * @param millis    milliseconds since the epoch
+	 * @param utcOffset the difference of the local time from UTC in
+	 *                  quarters of an hour, -48 to 48
+	 */
+	public static SmppTime absolute(long millis, int utcOffset) {
+		if ((utcOffset < -MAX_UTC_OFFSET) || (utcOffset > MAX_UTC_OFFSET)) {
+			throw new IllegalArgumentException("UTC offset out of range: " + utcOffset);
+		}
+		long local = millis + utcOffset * MILLIS_PER_QUARTER;
+		long days = floorDiv(local, MILLIS_PER_DAY);
+		long millisOfDay = local - days * MILLIS_PER_DAY;
+		int date = civilFromDays(days);
+		int year = date / 10000;
+		if ((year < 2000) || (year > 2099)) {
+			throw new IllegalArgumentException("Year out of range: " + year);
+		}
+		return new SmppTime(
+			year - 2000,
+			(date / 100) % 100,
+			date % 100,
+			(int) (millisOfDay / MILLIS_PER_HOUR),
+			(int) (millisOfDay / MILLIS_PER_MINUTE % 60),
+			(int) (millisOfDay / MILLIS_PER_SECOND % 60),
+			(int) (millisOfDay / 100 % 10),
+			utcOffset,
+			false);
+	}
+
+	/**
+	 * Creates relative time of the duration. The duration is expressed
+	 * in days and smaller units, so it can be at most 99 days, 23 hours,
+	 * 59 minutes and 59.9 seconds.
+	 *
+	 * @param millis the duration in milliseconds
+	 */
+	public static SmppTime relative(long millis) {
+		if ((millis < 0) || (millis >= 100 * MILLIS_PER_DAY)) {
+			throw new IllegalArgumentException("Relative time out of range: " + millis);
+		}
+		return new SmppTime(
+			0,
+			0,
+			(int) (millis / MILLIS_PER_DAY),
+			(int) (millis / MILLIS_PER_HOUR % 24),
+			(int) (millis / MILLIS_PER_MINUTE % 60),
+			(int) (millis / MILLIS_PER_SECOND % 60),
+			(int) (millis / 100 % 10),
+			0,
+			true);
+	}
+
+	/**
+	 * Returns the instant in milliseconds since the epoch.
+	 *
+	 * @param now the current time used as the base of relative time
+	 */
+	public long toMillis(long now) {
+		if (relative) {
+			long days = floorDiv(now, MILLIS_PER_DAY);
+			long millisOfDay = now - days * MILLIS_PER_DAY;
+			int date = civilFromDays(days);
+			int months = (date / 100) % 100 - 1 + month + 12 * year;
+			int y = date / 10000 + months / 12;
+			int m = months % 12 + 1;
+			int d = Math.min(date % 100, daysInMonth(y, m));
+			return (daysFromCivil(y, m, d) + day) * MILLIS_PER_DAY + millisOfDay + getTimeOfDayMillis();
+		}
+		return daysFromCivil(2000 + year, month, day) * MILLIS_PER_DAY + getTimeOfDayMillis()
+			- utcOffset * MILLIS_PER_QUARTER;
+	}
+
+	/**
+	 * Returns the duration of relative time from now in milliseconds,
+	 * or the time remaining until absolute time.
+	 */
+	public long getDurationMillis(long now) {
+		return toMillis(now) - now;
+	}
+
+	private long getTimeOfDayMillis() {
+		return hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + tenths * 100L;
+	}
+
+	/**
+	 * Writes the time as 16 ASCII octets.
+	 *
+	 * @return the offset after the time
+	 */
+	public int format(byte[] dest, int offset) {
+		offset = putDigits(dest, offset, year, 2);
+		offset = putDigits(dest, offset, month, 2);
+		offset = putDigits(dest, offset, day, 2);
+		offset = putDigits(dest, offset, hour, 2);
+		offset = putDigits(dest, offset, minute, 2);
+		offset = putDigits(dest, offset, second, 2);
+		offset = putDigits(dest, offset, tenths, 1);
+		offset = putDigits(dest, offset, Math.abs(utcOffset), 2);
+		dest[offset] = (byte) (relative ? 'R' : (utcOffset < 0 ? '-' : '+'));
+		return offset + 1;
+	}
+
+	private static int putDigits(byte[] dest, int offset, int value, int count) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			dest[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + count;
+	}
+
+	/**
+	 * Returns the time in the SMPP format.
+	 */
+	public String toString() {
+		byte[] bytes = new byte[LENGTH];
+		format(bytes, 0);
+		char[] chars = new char[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			chars[i] = (char) bytes[i];
+		}
+		return new String(chars);
+	}
+
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SmppTime)) {
+			return false;
+		}
+		SmppTime other = (SmppTime) obj;
+		return (year == other.year) && (month == other.month) && (day == other.day) && (hour == other.hour)
+			&& (minute == other.minute) && (second == other.second) && (tenths == other.tenths)
+			&& (utcOffset == other.utcOffset) && (relative == other.relative);
+	}
+
+	public int hashCode() {
+		return ((((year * 13 + month) * 32 + day) * 24 + hour) * 60 + minute) * 600 + second * 10 + tenths
+			+ utcOffset * 31 + (relative ? 1 : 0);
+	}
+
+	public boolean isRelative() {
+		return relative;
+	}
+
+	/** Returns the two-digit year, or the number of years of relative time. */
+	public int getYear() {
+		return year;
+	}
+
+	public int getMonth() {
+		return month;
+	}
+
+	public int getDay() {
+		return day;
+	}
+
+	public int getHour() {
+		return hour;
+	}
+
+	public int getMinute() {
+		return minute;
+	}
+
+	public int getSecond() {
+		return second;
+	}
+
+	public int getTenths() {
+		return tenths;
+	}
+
+	/**
+	 * Returns the difference of the local time from UTC in quarters
+	 * of an hour, negative west of UTC; zero for relative time.
+	 */
+	public int getUtcOffset() {
+		return utcOffset;
+	}
+
+	private static int digits(CharSequence time, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			value = value * 10 + (time.charAt(i) - '0');
+		}
+		return value;
+	}
+
+	private static long floorDiv(long value, long divisor) {
+		long quotient = value / divisor;
+		return (value % divisor < 0) ? quotient - 1 : quotient;
+	}
+
+	static int daysInMonth(int year, int month) {
+		if ((month == 2) && ((year % 4 != 0) || ((year % 100 == 0) && (year % 400 != 0)))) {
+			return 28;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	/**
+	 * Returns the number of days since 1970-01-01 of the date
+	 * in the proleptic Gregorian calendar.
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * Returns the date of the day since 1970-01-01 as
+	 * <code>year * 10000 + month * 100 + day</code>.
+	 */
+	static int civilFromDays(long days) {
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+}
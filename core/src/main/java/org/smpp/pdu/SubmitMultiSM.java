@@ -39,65 +39,39 @@ public class SubmitMultiSM extends Request {
 	private ShortMessage shortMessage = new ShortMessage(Data.SM_MSG_LEN);
 
 	// optional parameters
-	private TLVShort userMessageReference = new TLVShort(Data.OPT_PAR_USER_MSG_REF);
-	private TLVShort sourcePort = new TLVShort(Data.OPT_PAR_SRC_PORT);
-	private TLVByte sourceAddrSubunit = new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
-	private TLVShort destinationPort = new TLVShort(Data.OPT_PAR_DST_PORT);
-	private TLVByte destAddrSubunit = new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT);
-	private TLVShort sarMsgRefNum = new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM);
-	private TLVUByte sarTotalSegments = new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG);
-	private TLVUByte sarSegmentSeqnum = new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM);
-	private TLVByte payloadType = new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE);
-	private TLVOctets messagePayload =
-		new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX);
-	private TLVByte privacyIndicator = new TLVByte(Data.OPT_PAR_PRIV_IND);
-	private TLVOctets callbackNum =
-		new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX);
-	// 4-19
-	private TLVByte callbackNumPresInd = new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
-	private TLVOctets callbackNumAtag =
-		new TLVOctets(
-			Data.OPT_PAR_CALLBACK_NUM_ATAG,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX);
-	// 1-65
-	private TLVOctets sourceSubaddress =
-		new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX);
-	// 2-23
-	private TLVOctets destSubaddress =
-		new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX);
-	private TLVByte displayTime = new TLVByte(Data.OPT_PAR_DISPLAY_TIME);
-	private TLVShort smsSignal = new TLVShort(Data.OPT_PAR_SMS_SIGNAL);
-	private TLVByte msValidity = new TLVByte(Data.OPT_PAR_MS_VALIDITY);
-	private TLVByte msMsgWaitFacilities = new TLVByte(Data.OPT_PAR_MSG_WAIT); // bit mask
-	private TLVEmpty alertOnMsgDelivery = new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
-	private TLVByte languageIndicator = new TLVByte(Data.OPT_PAR_LANG_IND);
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			new TLV[] {
+				new TLVShort(Data.OPT_PAR_USER_MSG_REF),
+				new TLVShort(Data.OPT_PAR_SRC_PORT),
+				new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT),
+				new TLVShort(Data.OPT_PAR_DST_PORT),
+				new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT),
+				new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM),
+				new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG),
+				new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM),
+				new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE),
+				new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX),
+				new TLVByte(Data.OPT_PAR_PRIV_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX), // 4-19
+				new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM_ATAG, Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN, Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX), // 1-65
+				new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX), // 2-23
+				new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX),
+				new TLVByte(Data.OPT_PAR_DISPLAY_TIME),
+				new TLVShort(Data.OPT_PAR_SMS_SIGNAL),
+				new TLVByte(Data.OPT_PAR_MS_VALIDITY),
+				new TLVByte(Data.OPT_PAR_MSG_WAIT), // bit mask
+				new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY),
+				new TLVByte(Data.OPT_PAR_LANG_IND)
+			});
 
 	public SubmitMultiSM() {
 		super(Data.SUBMIT_MULTI);
+	}
 
-		registerOptional(userMessageReference);
-		registerOptional(sourcePort);
-		registerOptional(sourceAddrSubunit);
-		registerOptional(destinationPort);
-		registerOptional(destAddrSubunit);
-		registerOptional(sarMsgRefNum);
-		registerOptional(sarTotalSegments);
-		registerOptional(sarSegmentSeqnum);
-		registerOptional(payloadType);
-		registerOptional(messagePayload);
-		registerOptional(privacyIndicator);
-		registerOptional(callbackNum);
-		registerOptional(callbackNumPresInd);
-		registerOptional(callbackNumAtag);
-		registerOptional(sourceSubaddress);
-		registerOptional(destSubaddress);
-		registerOptional(displayTime);
-		registerOptional(smsSignal);
-		registerOptional(msValidity);
-		registerOptional(msMsgWaitFacilities);
-		registerOptional(alertOnMsgDelivery);
-		registerOptional(languageIndicator);
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
 	}
 
 	protected Response createResponse() {
@@ -281,225 +255,225 @@ public class SubmitMultiSM extends Request {
 	}
 
 	public boolean hasUserMessageReference() {
-		return userMessageReference.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_MSG_REF);
 	}
 	public boolean hasSourcePort() {
-		return sourcePort.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_PORT);
 	}
 	public boolean hasSourceAddrSubunit() {
-		return sourceAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
 	}
 	public boolean hasDestinationPort() {
-		return destinationPort.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_PORT);
 	}
 	public boolean hasDestAddrSubunit() {
-		return destAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT);
 	}
 	public boolean hasSarMsgRefNum() {
-		return sarMsgRefNum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_MSG_REF_NUM);
 	}
 	public boolean hasSarTotalSegments() {
-		return sarTotalSegments.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_TOT_SEG);
 	}
 	public boolean hasSarSegmentSeqnum() {
-		return sarSegmentSeqnum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_SEG_SNUM);
 	}
 	public boolean hasPayloadType() {
-		return payloadType.hasValue();
+		return hasOptional(Data.OPT_PAR_PAYLOAD_TYPE);
 	}
 	public boolean hasMessagePayload() {
-		return messagePayload.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_PAYLOAD);
 	}
 	public boolean hasPrivacyIndicator() {
-		return privacyIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_PRIV_IND);
 	}
 	public boolean hasCallbackNum() {
-		return callbackNum.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM);
 	}
 	public boolean hasCallbackNumPresInd() {
-		return callbackNumPresInd.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
 	}
 	public boolean hasCallbackNumAtag() {
-		return callbackNumAtag.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG);
 	}
 	public boolean hasSourceSubaddress() {
-		return sourceSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_SUBADDR);
 	}
 	public boolean hasDestSubaddress() {
-		return destSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_DEST_SUBADDR);
 	}
 	public boolean hasDisplayTime() {
-		return displayTime.hasValue();
+		return hasOptional(Data.OPT_PAR_DISPLAY_TIME);
 	}
 	public boolean hasSmsSignal() {
-		return smsSignal.hasValue();
+		return hasOptional(Data.OPT_PAR_SMS_SIGNAL);
 	}
 	public boolean hasMsValidity() {
-		return msValidity.hasValue();
+		return hasOptional(Data.OPT_PAR_MS_VALIDITY);
 	}
 	public boolean hasMsMsgWaitFacilities() {
-		return msMsgWaitFacilities.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_WAIT);
 	}
 	public boolean hasAlertOnMsgDelivery() {
-		return alertOnMsgDelivery.hasValue();
+		return hasOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
 	}
 	public boolean hasLanguageIndicator() {
-		return languageIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_LANG_IND);
 	}
 
 	public void setUserMessageReference(short value) {
-		userMessageReference.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_USER_MSG_REF)).setValue(value);
 	}
 	public void setSourcePort(short value) {
-		sourcePort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SRC_PORT)).setValue(value);
 	}
 	public void setSourceAddrSubunit(byte value) {
-		sourceAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setDestinationPort(short value) {
-		destinationPort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_DST_PORT)).setValue(value);
 	}
 	public void setDestAddrSubunit(byte value) {
-		destAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setSarMsgRefNum(short value) {
-		sarMsgRefNum.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).setValue(value);
 	}
 	public void setSarTotalSegments(short value) throws IntegerOutOfRangeException {
-		sarTotalSegments.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_TOT_SEG)).setValue(value);
 	}
 	public void setSarSegmentSeqnum(short value) throws IntegerOutOfRangeException {
-		sarSegmentSeqnum.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_SEG_SNUM)).setValue(value);
 	}
 	public void setPayloadType(byte value) {
-		payloadType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PAYLOAD_TYPE)).setValue(value);
 	}
 	public void setMessagePayload(ByteBuffer value) {
-		messagePayload.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_MSG_PAYLOAD)).setValue(value);
 	}
 	public void setPrivacyIndicator(byte value) {
-		privacyIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PRIV_IND)).setValue(value);
 	}
 	public void setCallbackNum(ByteBuffer value) {
-		callbackNum.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM)).setValue(value);
 	}
 	public void setCallbackNumPresInd(byte value) {
-		callbackNumPresInd.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).setValue(value);
 	}
 	public void setCallbackNumAtag(ByteBuffer value) {
-		callbackNumAtag.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).setValue(value);
 	}
 	public void setSourceSubaddress(ByteBuffer value) {
-		sourceSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_SRC_SUBADDR)).setValue(value);
 	}
 	public void setDestSubaddress(ByteBuffer value) {
-		destSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_DEST_SUBADDR)).setValue(value);
 	}
 	public void setDisplayTime(byte value) {
-		displayTime.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DISPLAY_TIME)).setValue(value);
 	}
 	public void setSmsSignal(short value) {
-		smsSignal.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SMS_SIGNAL)).setValue(value);
 	}
 	public void setMsValidity(byte value) {
-		msValidity.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MS_VALIDITY)).setValue(value);
 	}
 	public void setMsMsgWaitFacilities(byte value) {
-		msMsgWaitFacilities.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MSG_WAIT)).setValue(value);
 	}
 	public void setAlertOnMsgDelivery(boolean value) {
-		alertOnMsgDelivery.setValue(value);
+		((TLVEmpty) createOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).setValue(value);
 	}
 	public void setLanguageIndicator(byte value) {
-		languageIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_LANG_IND)).setValue(value);
 	}
 
 	public short getUserMessageReference() throws ValueNotSetException {
-		return userMessageReference.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_USER_MSG_REF)).getValue();
 	}
 
 	public short getSourcePort() throws ValueNotSetException {
-		return sourcePort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SRC_PORT)).getValue();
 	}
 
 	public byte getSourceAddrSubunit() throws ValueNotSetException {
-		return sourceAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).getValue();
 	}
 
 	public short getDestinationPort() throws ValueNotSetException {
-		return destinationPort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_DST_PORT)).getValue();
 	}
 
 	public byte getDestAddrSubunit() throws ValueNotSetException {
-		return destAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).getValue();
 	}
 
 	public short getSarMsgRefNum() throws ValueNotSetException {
-		return sarMsgRefNum.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).getValue();
 	}
 
 	public short getSarTotalSegments() throws ValueNotSetException {
-		return sarTotalSegments.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_TOT_SEG)).getValue();
 	}
 
 	public short getSarSegmentSeqnum() throws ValueNotSetException {
-		return sarSegmentSeqnum.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_SEG_SNUM)).getValue();
 	}
 
 	public byte getPayloadType() throws ValueNotSetException {
-		return payloadType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PAYLOAD_TYPE)).getValue();
 	}
 
 	public ByteBuffer getMessagePayload() throws ValueNotSetException {
-		return messagePayload.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_MSG_PAYLOAD)).getValue();
 	}
 
 	public byte getPrivacyIndicator() throws ValueNotSetException {
-		return privacyIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PRIV_IND)).getValue();
 	}
 
 	public ByteBuffer callbackNum() throws ValueNotSetException {
-		return callbackNum.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM)).getValue();
 	}
 
 	public byte getCallbackNumPresInd() throws ValueNotSetException {
-		return callbackNumPresInd.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).getValue();
 	}
 
 	public ByteBuffer getCallbackNumAtag() throws ValueNotSetException {
-		return callbackNumAtag.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).getValue();
 	}
 
 	public ByteBuffer getSourceSubaddress() throws ValueNotSetException {
-		return sourceSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_SRC_SUBADDR)).getValue();
 	}
 
 	public ByteBuffer getDestSubaddress() throws ValueNotSetException {
-		return destSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_DEST_SUBADDR)).getValue();
 	}
 
 	public byte getDisplayTime() throws ValueNotSetException {
-		return displayTime.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DISPLAY_TIME)).getValue();
 	}
 
 	public short getSmsSignal() throws ValueNotSetException {
-		return smsSignal.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SMS_SIGNAL)).getValue();
 	}
 
 	public byte getMsValidity() throws ValueNotSetException {
-		return msValidity.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MS_VALIDITY)).getValue();
 	}
 
 	public byte getMsMsgWaitFacilities() throws ValueNotSetException {
-		return msMsgWaitFacilities.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MSG_WAIT)).getValue();
 	}
 
 	public boolean getAlertOnMsgDelivery() throws ValueNotSetException {
-		return alertOnMsgDelivery.getValue();
+		return ((TLVEmpty) requireOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).getValue();
 	}
 
 	public byte getLanguageIndicator() throws ValueNotSetException {
-		return languageIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_LANG_IND)).getValue();
 	}
 
 	public String debugString() {
@@ -13,6 +13,7 @@ package org.smpp.pdu;
 import java.io.UnsupportedEncodingException;
 
 import org.smpp.Data;
+import org.smpp.charset.Gsm7BitTransliterator;
 import org.smpp.pdu.Request;
 import org.smpp.pdu.ValueNotSetException;
 import org.smpp.pdu.tlv.*;
@@ -40,77 +41,67 @@ public class SubmitSM extends Request {
 	private ShortMessage shortMessage = new ShortMessage(Data.SM_MSG_LEN);
 
 	// optional parameters
-	private TLVShort userMessageReference = new TLVShort(Data.OPT_PAR_USER_MSG_REF);
-	private TLVShort sourcePort = new TLVShort(Data.OPT_PAR_SRC_PORT);
-	private TLVByte sourceAddrSubunit = new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
-	private TLVShort destinationPort = new TLVShort(Data.OPT_PAR_DST_PORT);
-	private TLVByte destAddrSubunit = new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT);
-	private TLVShort sarMsgRefNum = new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM);
-	private TLVUByte sarTotalSegments = new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG);
-	private TLVUByte sarSegmentSeqnum = new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM);
-	private TLVByte moreMsgsToSend = new TLVByte(Data.OPT_PAR_MORE_MSGS);
-	private TLVByte payloadType = new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE);
-	private TLVOctets messagePayload =
-		new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX);
-	private TLVByte privacyIndicator = new TLVByte(Data.OPT_PAR_PRIV_IND);
-	private TLVOctets callbackNum =
-		new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX);
-	// 4-19
-	private TLVByte callbackNumPresInd = new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
-	private TLVOctets callbackNumAtag =
-		new TLVOctets(
-			Data.OPT_PAR_CALLBACK_NUM_ATAG,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN,
-			Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX);
-	// 1-65
-	private TLVOctets sourceSubaddress =
-		new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX);
-	// 2-23
-	private TLVOctets destSubaddress =
-		new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX);
-	private TLVByte userResponseCode = new TLVByte(Data.OPT_PAR_USER_RESP_CODE);
-	private TLVByte displayTime = new TLVByte(Data.OPT_PAR_DISPLAY_TIME);
-	private TLVShort smsSignal = new TLVShort(Data.OPT_PAR_SMS_SIGNAL);
-	private TLVByte msValidity = new TLVByte(Data.OPT_PAR_MS_VALIDITY);
-	private TLVByte msMsgWaitFacilities = new TLVByte(Data.OPT_PAR_MSG_WAIT); // bit mask
-	private TLVByte numberOfMessages = new TLVByte(Data.OPT_PAR_NUM_MSGS);
-	private TLVEmpty alertOnMsgDelivery = new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
-	private TLVByte languageIndicator = new TLVByte(Data.OPT_PAR_LANG_IND);
-	private TLVByte itsReplyType = new TLVByte(Data.OPT_PAR_ITS_REPLY_TYPE);
-	private TLVShort itsSessionInfo = new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO);
-	private TLVByte ussdServiceOp = new TLVByte(Data.OPT_PAR_USSD_SER_OP);
+	private static final TLVTable optionalTable =
+		new TLVTable(
+			new TLV[] {
+				new TLVShort(Data.OPT_PAR_USER_MSG_REF),
+				new TLVShort(Data.OPT_PAR_SRC_PORT),
+				new TLVByte(Data.OPT_PAR_SRC_ADDR_SUBUNIT),
+				new TLVShort(Data.OPT_PAR_DST_PORT),
+				new TLVByte(Data.OPT_PAR_DST_ADDR_SUBUNIT),
+				new TLVShort(Data.OPT_PAR_SAR_MSG_REF_NUM),
+				new TLVUByte(Data.OPT_PAR_SAR_TOT_SEG),
+				new TLVUByte(Data.OPT_PAR_SAR_SEG_SNUM),
+				new TLVByte(Data.OPT_PAR_MORE_MSGS),
+				new TLVByte(Data.OPT_PAR_PAYLOAD_TYPE),
+				new TLVOctets(Data.OPT_PAR_MSG_PAYLOAD, Data.OPT_PAR_MSG_PAYLOAD_MIN, Data.OPT_PAR_MSG_PAYLOAD_MAX),
+				new TLVByte(Data.OPT_PAR_PRIV_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM, Data.OPT_PAR_CALLBACK_NUM_MIN, Data.OPT_PAR_CALLBACK_NUM_MAX), // 4-19
+				new TLVByte(Data.OPT_PAR_CALLBACK_NUM_PRES_IND),
+				new TLVOctets(Data.OPT_PAR_CALLBACK_NUM_ATAG, Data.OPT_PAR_CALLBACK_NUM_ATAG_MIN, Data.OPT_PAR_CALLBACK_NUM_ATAG_MAX), // 1-65
+				new TLVOctets(Data.OPT_PAR_SRC_SUBADDR, Data.OPT_PAR_SRC_SUBADDR_MIN, Data.OPT_PAR_SRC_SUBADDR_MAX), // 2-23
+				new TLVOctets(Data.OPT_PAR_DEST_SUBADDR, Data.OPT_PAR_DEST_SUBADDR_MIN, Data.OPT_PAR_DEST_SUBADDR_MAX),
+				new TLVByte(Data.OPT_PAR_USER_RESP_CODE),
+				new TLVByte(Data.OPT_PAR_DISPLAY_TIME),
+				new TLVShort(Data.OPT_PAR_SMS_SIGNAL),
+				new TLVByte(Data.OPT_PAR_MS_VALIDITY),
+				new TLVByte(Data.OPT_PAR_MSG_WAIT), // bit mask
+				new TLVByte(Data.OPT_PAR_NUM_MSGS),
+				new TLVEmpty(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY),
+				new TLVByte(Data.OPT_PAR_LANG_IND),
+				new TLVByte(Data.OPT_PAR_ITS_REPLY_TYPE),
+				new TLVShort(Data.OPT_PAR_ITS_SESSION_INFO),
+				new TLVByte(Data.OPT_PAR_USSD_SER_OP)
+			});
 
 	public SubmitSM() {
 		super(Data.SUBMIT_SM);
+	}
+
+	protected TLVTable getOptionalTable() {
+		return optionalTable;
+	}
+
+	protected boolean canDecodeLazily() {
+		return true;
+	}
 
-		registerOptional(userMessageReference);
-		registerOptional(sourcePort);
-		registerOptional(sourceAddrSubunit);
-		registerOptional(destinationPort);
-		registerOptional(destAddrSubunit);
-		registerOptional(sarMsgRefNum);
-		registerOptional(sarTotalSegments);
-		registerOptional(sarSegmentSeqnum);
-		registerOptional(moreMsgsToSend);
-		registerOptional(payloadType);
-		registerOptional(messagePayload);
-		registerOptional(privacyIndicator);
-		registerOptional(callbackNum);
-		registerOptional(callbackNumPresInd);
-		registerOptional(callbackNumAtag);
-		registerOptional(sourceSubaddress);
-		registerOptional(destSubaddress);
-		registerOptional(userResponseCode);
-		registerOptional(displayTime);
-		registerOptional(smsSignal);
-		registerOptional(msValidity);
-		registerOptional(msMsgWaitFacilities);
-		registerOptional(numberOfMessages);
-		registerOptional(alertOnMsgDelivery);
-		registerOptional(languageIndicator);
-		registerOptional(itsReplyType);
-		registerOptional(itsSessionInfo);
-		registerOptional(ussdServiceOp);
+	public void reset() {
+		super.reset();
+		serviceType = Data.DFLT_SRVTYPE;
+		sourceAddr.reset();
+		destAddr.reset();
+		esmClass = Data.DFLT_ESM_CLASS;
+		protocolId = Data.DFLT_PROTOCOLID;
+		priorityFlag = Data.DFLT_PRIORITY_FLAG;
+		scheduleDeliveryTime = Data.DFLT_SCHEDULE;
+		validityPeriod = Data.DFLT_VALIDITY;
+		registeredDelivery = Data.DFLT_REG_DELIVERY;
+		replaceIfPresentFlag = Data.DFTL_REPLACE_IFP;
+		dataCoding = Data.DFLT_DATA_CODING;
+		smDefaultMsgId = Data.DFLT_DFLTMSGID;
+		smLength = Data.DFLT_MSG_LEN;
+		shortMessage.reset();
 	}
 
 	protected Response createResponse() {
@@ -136,25 +127,43 @@ public class SubmitSM extends Request {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		buffer.appendCString(getServiceType());
-		buffer.appendBuffer(getSourceAddr().getData());
-		buffer.appendBuffer(getDestAddr().getData());
-		buffer.appendByte(getEsmClass());
-		buffer.appendByte(getProtocolId());
-		buffer.appendByte(getPriorityFlag());
-		buffer.appendCString(getScheduleDeliveryTime());
-		buffer.appendCString(getValidityPeriod());
-		buffer.appendByte(getRegisteredDelivery());
-		buffer.appendByte(getReplaceIfPresentFlag());
-		buffer.appendByte(getDataCoding());
-		buffer.appendByte(getSmDefaultMsgId());
-		buffer.appendByte(encodeUnsigned(getSmLength()));
-		buffer.appendBuffer(shortMessage.getData());
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		ensureDecoded();
+		return getCStringLength(getServiceType())
+			+ getSourceAddr().getEncodedLength()
+			+ getDestAddr().getEncodedLength()
+			+ 3
+			+ getCStringLength(getScheduleDeliveryTime())
+			+ getCStringLength(getValidityPeriod())
+			+ 5
+			+ shortMessage.getEncodedLength();
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		ensureDecoded();
+		offset = encodeCString(getServiceType(), dest, offset);
+		offset = getSourceAddr().encode(dest, offset);
+		offset = getDestAddr().encode(dest, offset);
+		dest[offset++] = getEsmClass();
+		dest[offset++] = getProtocolId();
+		dest[offset++] = getPriorityFlag();
+		offset = encodeCString(getScheduleDeliveryTime(), dest, offset);
+		offset = encodeCString(getValidityPeriod(), dest, offset);
+		dest[offset++] = getRegisteredDelivery();
+		dest[offset++] = getReplaceIfPresentFlag();
+		dest[offset++] = getDataCoding();
+		dest[offset++] = getSmDefaultMsgId();
+		dest[offset++] = encodeUnsigned(getSmLength());
+		return shortMessage.encode(dest, offset);
 	}
 
 	public void setServiceType(String value) throws WrongLengthOfStringException {
+		ensureDecoded();
 		try {
 			checkCString(value, Data.SM_SRVTYPE_LEN);
 		} catch (WrongLengthOfStringException e) {
@@ -165,6 +174,7 @@ public class SubmitSM extends Request {
 	}
 
 	public void setScheduleDeliveryTime(String value) throws WrongDateFormatException {
+		ensureDecoded();
 		try {
 			checkDate(value);
 		} catch (WrongDateFormatException e) {
@@ -175,6 +185,7 @@ public class SubmitSM extends Request {
 	}
 
 	public void setValidityPeriod(String value) throws WrongDateFormatException {
+		ensureDecoded();
 		try {
 			checkDate(value);
 		} catch (WrongDateFormatException e) {
@@ -186,22 +197,39 @@ public class SubmitSM extends Request {
 
 	public void setShortMessageData(ByteBuffer value)
 		throws PDUException, NotEnoughDataInByteBufferException, TerminatingZeroNotFoundException {
+		ensureDecoded();
 		shortMessage.setData(value);
 		setSmLength((short) shortMessage.getLength());
 	}
 
 	public void setShortMessage(String value) throws WrongLengthOfStringException {
+		ensureDecoded();
 		shortMessage.setMessage(value);
 		setSmLength((short) shortMessage.getLength());
 	}
 
 	public void setShortMessage(String value, String encoding)
 		throws WrongLengthOfStringException, UnsupportedEncodingException {
+		ensureDecoded();
 		shortMessage.setMessage(value, encoding);
 		setSmLength((short) shortMessage.getLength());
 	}
 
+	/**
+	 * Sets the message with the default encoding, transliterating
+	 * the characters which aren't in the GSM 7-bit alphabet.
+	 *
+	 * @see ShortMessage#setMessageTransliterated(String,Gsm7BitTransliterator)
+	 */
+	public void setShortMessageTransliterated(String value, Gsm7BitTransliterator transliterator)
+		throws WrongLengthOfStringException {
+		ensureDecoded();
+		shortMessage.setMessageTransliterated(value, transliterator);
+		setSmLength((short) shortMessage.getLength());
+	}
+
 	public void setSourceAddr(Address value) {
+		ensureDecoded();
 		sourceAddr = value;
 	}
 	public void setSourceAddr(String address) throws WrongLengthOfStringException {
@@ -212,6 +240,7 @@ public class SubmitSM extends Request {
 	}
 
 	public void setDestAddr(Address value) {
+		ensureDecoded();
 		destAddr = value;
 	}
 	public void setDestAddr(String address) throws WrongLengthOfStringException {
@@ -222,24 +251,31 @@ public class SubmitSM extends Request {
 	}
 
 	public void setEsmClass(byte value) {
+		ensureDecoded();
 		esmClass = value;
 	}
 	public void setProtocolId(byte value) {
+		ensureDecoded();
 		protocolId = value;
 	}
 	public void setPriorityFlag(byte value) {
+		ensureDecoded();
 		priorityFlag = value;
 	}
 	public void setRegisteredDelivery(byte value) {
+		ensureDecoded();
 		registeredDelivery = value;
 	}
 	public void setReplaceIfPresentFlag(byte value) {
+		ensureDecoded();
 		replaceIfPresentFlag = value;
 	}
 	public void setDataCoding(byte value) {
+		ensureDecoded();
 		dataCoding = value;
 	}
 	public void setSmDefaultMsgId(byte value) {
+		ensureDecoded();
 		smDefaultMsgId = value;
 	}
 	// setSmLength() is private as it's set to length of the message
@@ -248,339 +284,358 @@ public class SubmitSM extends Request {
 	}
 
 	public String getServiceType() {
+		ensureDecoded();
 		return serviceType;
 	}
 	public String getScheduleDeliveryTime() {
+		ensureDecoded();
 		return scheduleDeliveryTime;
 	}
 	public String getValidityPeriod() {
+		ensureDecoded();
 		return validityPeriod;
 	}
 	public String getShortMessage() {
+		ensureDecoded();
 		return shortMessage.getMessage();
 	}
 	public String getShortMessage(String encoding) throws UnsupportedEncodingException {
+		ensureDecoded();
 		return shortMessage.getMessage(encoding);
 	}
 	public ByteBuffer getShortMessageData() {
+		ensureDecoded();
 		return shortMessage.getData();
 	}
 	public Address getSourceAddr() {
+		ensureDecoded();
 		return sourceAddr;
 	}
 	public Address getDestAddr() {
+		ensureDecoded();
 		return destAddr;
 	}
 	public byte getEsmClass() {
+		ensureDecoded();
 		return esmClass;
 	}
 	public byte getProtocolId() {
+		ensureDecoded();
 		return protocolId;
 	}
 	public byte getPriorityFlag() {
+		ensureDecoded();
 		return priorityFlag;
 	}
 	public byte getRegisteredDelivery() {
+		ensureDecoded();
 		return registeredDelivery;
 	}
 	public byte getReplaceIfPresentFlag() {
+		ensureDecoded();
 		return replaceIfPresentFlag;
 	}
 	public byte getDataCoding() {
+		ensureDecoded();
 		return dataCoding;
 	}
 	public byte getSmDefaultMsgId() {
+		ensureDecoded();
 		return smDefaultMsgId;
 	}
 	public short getSmLength() {
+		ensureDecoded();
 		return smLength;
 	}
 
 	public boolean hasUserMessageReference() {
-		return userMessageReference.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_MSG_REF);
 	}
 	public boolean hasSourcePort() {
-		return sourcePort.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_PORT);
 	}
 	public boolean hasSourceAddrSubunit() {
-		return sourceAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT);
 	}
 	public boolean hasDestinationPort() {
-		return destinationPort.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_PORT);
 	}
 	public boolean hasDestAddrSubunit() {
-		return destAddrSubunit.hasValue();
+		return hasOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT);
 	}
 	public boolean hasSarMsgRefNum() {
-		return sarMsgRefNum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_MSG_REF_NUM);
 	}
 	public boolean hasSarTotalSegments() {
-		return sarTotalSegments.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_TOT_SEG);
 	}
 	public boolean hasSarSegmentSeqnum() {
-		return sarSegmentSeqnum.hasValue();
+		return hasOptional(Data.OPT_PAR_SAR_SEG_SNUM);
 	}
 	public boolean hasMoreMsgsToSend() {
-		return moreMsgsToSend.hasValue();
+		return hasOptional(Data.OPT_PAR_MORE_MSGS);
 	}
 	public boolean hasPayloadType() {
-		return payloadType.hasValue();
+		return hasOptional(Data.OPT_PAR_PAYLOAD_TYPE);
 	}
 	public boolean hasMessagePayload() {
-		return messagePayload.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_PAYLOAD);
 	}
 	public boolean hasPrivacyIndicator() {
-		return privacyIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_PRIV_IND);
 	}
 	public boolean hasCallbackNum() {
-		return callbackNum.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM);
 	}
 	public boolean hasCallbackNumPresInd() {
-		return callbackNumPresInd.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND);
 	}
 	public boolean hasCallbackNumAtag() {
-		return callbackNumAtag.hasValue();
+		return hasOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG);
 	}
 	public boolean hasSourceSubaddress() {
-		return sourceSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_SRC_SUBADDR);
 	}
 	public boolean hasDestSubaddress() {
-		return destSubaddress.hasValue();
+		return hasOptional(Data.OPT_PAR_DEST_SUBADDR);
 	}
 	public boolean hasUserResponseCode() {
-		return userResponseCode.hasValue();
+		return hasOptional(Data.OPT_PAR_USER_RESP_CODE);
 	}
 	public boolean hasDisplayTime() {
-		return displayTime.hasValue();
+		return hasOptional(Data.OPT_PAR_DISPLAY_TIME);
 	}
 	public boolean hasSmsSignal() {
-		return smsSignal.hasValue();
+		return hasOptional(Data.OPT_PAR_SMS_SIGNAL);
 	}
 	public boolean hasMsValidity() {
-		return msValidity.hasValue();
+		return hasOptional(Data.OPT_PAR_MS_VALIDITY);
 	}
 	public boolean hasMsMsgWaitFacilities() {
-		return msMsgWaitFacilities.hasValue();
+		return hasOptional(Data.OPT_PAR_MSG_WAIT);
 	}
 	public boolean hasNumberOfMessages() {
-		return numberOfMessages.hasValue();
+		return hasOptional(Data.OPT_PAR_NUM_MSGS);
 	}
 	public boolean hasAlertOnMsgDelivery() {
-		return alertOnMsgDelivery.hasValue();
+		return hasOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY);
 	}
 	public boolean hasLanguageIndicator() {
-		return languageIndicator.hasValue();
+		return hasOptional(Data.OPT_PAR_LANG_IND);
 	}
 	public boolean hasItsReplyType() {
-		return itsReplyType.hasValue();
+		return hasOptional(Data.OPT_PAR_ITS_REPLY_TYPE);
 	}
 	public boolean hasItsSessionInfo() {
-		return itsSessionInfo.hasValue();
+		return hasOptional(Data.OPT_PAR_ITS_SESSION_INFO);
 	}
 	public boolean hasUssdServiceOp() {
-		return ussdServiceOp.hasValue();
+		return hasOptional(Data.OPT_PAR_USSD_SER_OP);
 	}
 
 	public void setUserMessageReference(short value) {
-		userMessageReference.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_USER_MSG_REF)).setValue(value);
 	}
 	public void setSourcePort(short value) {
-		sourcePort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SRC_PORT)).setValue(value);
 	}
 	public void setSourceAddrSubunit(byte value) {
-		sourceAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setDestinationPort(short value) {
-		destinationPort.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_DST_PORT)).setValue(value);
 	}
 	public void setDestAddrSubunit(byte value) {
-		destAddrSubunit.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).setValue(value);
 	}
 	public void setSarMsgRefNum(short value) {
-		sarMsgRefNum.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).setValue(value);
 	}
 	public void setSarTotalSegments(short value) throws IntegerOutOfRangeException {
-		sarTotalSegments.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_TOT_SEG)).setValue(value);
 	}
 	public void setSarSegmentSeqnum(short value) throws IntegerOutOfRangeException {
-		sarSegmentSeqnum.setValue(value);
+		((TLVUByte) createOptional(Data.OPT_PAR_SAR_SEG_SNUM)).setValue(value);
 	}
 	public void setMoreMsgsToSend(byte value) {
-		moreMsgsToSend.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MORE_MSGS)).setValue(value);
 	}
 	public void setPayloadType(byte value) {
-		payloadType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PAYLOAD_TYPE)).setValue(value);
 	}
 	public void setMessagePayload(ByteBuffer value) {
-		messagePayload.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_MSG_PAYLOAD)).setValue(value);
 	}
 	public void setPrivacyIndicator(byte value) {
-		privacyIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_PRIV_IND)).setValue(value);
 	}
 	public void setCallbackNum(ByteBuffer value) {
-		callbackNum.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM)).setValue(value);
 	}
 	public void setCallbackNumPresInd(byte value) {
-		callbackNumPresInd.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).setValue(value);
 	}
 	public void setCallbackNumAtag(ByteBuffer value) {
-		callbackNumAtag.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).setValue(value);
 	}
 	public void setSourceSubaddress(ByteBuffer value) {
-		sourceSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_SRC_SUBADDR)).setValue(value);
 	}
 	public void setDestSubaddress(ByteBuffer value) {
-		destSubaddress.setValue(value);
+		((TLVOctets) createOptional(Data.OPT_PAR_DEST_SUBADDR)).setValue(value);
 	}
 	public void setUserResponseCode(byte value) {
-		userResponseCode.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_USER_RESP_CODE)).setValue(value);
 	}
 	public void setDisplayTime(byte value) {
-		displayTime.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_DISPLAY_TIME)).setValue(value);
 	}
 	public void setSmsSignal(short value) {
-		smsSignal.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_SMS_SIGNAL)).setValue(value);
 	}
 	public void setMsValidity(byte value) {
-		msValidity.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MS_VALIDITY)).setValue(value);
 	}
 	public void setMsMsgWaitFacilities(byte value) {
-		msMsgWaitFacilities.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_MSG_WAIT)).setValue(value);
 	}
 	public void setNumberOfMessages(byte value) {
-		numberOfMessages.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_NUM_MSGS)).setValue(value);
 	}
 	public void setAlertOnMsgDelivery(boolean value) {
-		alertOnMsgDelivery.setValue(value);
+		((TLVEmpty) createOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).setValue(value);
 	}
 	public void setLanguageIndicator(byte value) {
-		languageIndicator.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_LANG_IND)).setValue(value);
 	}
 	public void setItsReplyType(byte value) {
-		itsReplyType.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_ITS_REPLY_TYPE)).setValue(value);
 	}
 	public void setItsSessionInfo(short value) {
-		itsSessionInfo.setValue(value);
+		((TLVShort) createOptional(Data.OPT_PAR_ITS_SESSION_INFO)).setValue(value);
 	}
 	public void setUssdServiceOp(byte value) {
-		ussdServiceOp.setValue(value);
+		((TLVByte) createOptional(Data.OPT_PAR_USSD_SER_OP)).setValue(value);
 	}
 
 	public short getUserMessageReference() throws ValueNotSetException {
-		return userMessageReference.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_USER_MSG_REF)).getValue();
 	}
 
 	public short getSourcePort() throws ValueNotSetException {
-		return sourcePort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SRC_PORT)).getValue();
 	}
 
 	public byte getSourceAddrSubunit() throws ValueNotSetException {
-		return sourceAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_SRC_ADDR_SUBUNIT)).getValue();
 	}
 
 	public short getDestinationPort() throws ValueNotSetException {
-		return destinationPort.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_DST_PORT)).getValue();
 	}
 
 	public byte getDestAddrSubunit() throws ValueNotSetException {
-		return destAddrSubunit.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DST_ADDR_SUBUNIT)).getValue();
 	}
 
 	public short getSarMsgRefNum() throws ValueNotSetException {
-		return sarMsgRefNum.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SAR_MSG_REF_NUM)).getValue();
 	}
 
 	public short getSarTotalSegments() throws ValueNotSetException {
-		return sarTotalSegments.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_TOT_SEG)).getValue();
 	}
 
 	public short getSarSegmentSeqnum() throws ValueNotSetException {
-		return sarSegmentSeqnum.getValue();
+		return ((TLVUByte) requireOptional(Data.OPT_PAR_SAR_SEG_SNUM)).getValue();
 	}
 
 	public byte getMoreMsgsToSend() throws ValueNotSetException {
-		return moreMsgsToSend.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MORE_MSGS)).getValue();
 	}
 
 	public byte getPayloadType() throws ValueNotSetException {
-		return payloadType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PAYLOAD_TYPE)).getValue();
 	}
 
 	public ByteBuffer getMessagePayload() throws ValueNotSetException {
-		return messagePayload.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_MSG_PAYLOAD)).getValue();
 	}
 
 	public byte getPrivacyIndicator() throws ValueNotSetException {
-		return privacyIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_PRIV_IND)).getValue();
 	}
 
 	public ByteBuffer callbackNum() throws ValueNotSetException {
-		return callbackNum.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM)).getValue();
 	}
 
 	public byte getCallbackNumPresInd() throws ValueNotSetException {
-		return callbackNumPresInd.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_CALLBACK_NUM_PRES_IND)).getValue();
 	}
 
 	public ByteBuffer getCallbackNumAtag() throws ValueNotSetException {
-		return callbackNumAtag.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_CALLBACK_NUM_ATAG)).getValue();
 	}
 
 	public ByteBuffer getSourceSubaddress() throws ValueNotSetException {
-		return sourceSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_SRC_SUBADDR)).getValue();
 	}
 
 	public ByteBuffer getDestSubaddress() throws ValueNotSetException {
-		return destSubaddress.getValue();
+		return ((TLVOctets) requireOptional(Data.OPT_PAR_DEST_SUBADDR)).getValue();
 	}
 
 	public byte getUserResponseCode() throws ValueNotSetException {
-		return userResponseCode.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_USER_RESP_CODE)).getValue();
 	}
 
 	public byte getDisplayTime() throws ValueNotSetException {
-		return displayTime.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_DISPLAY_TIME)).getValue();
 	}
 
 	public short getSmsSignal() throws ValueNotSetException {
-		return smsSignal.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_SMS_SIGNAL)).getValue();
 	}
 
 	public byte getMsValidity() throws ValueNotSetException {
-		return msValidity.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MS_VALIDITY)).getValue();
 	}
 
 	public byte getMsMsgWaitFacilities() throws ValueNotSetException {
-		return msMsgWaitFacilities.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_MSG_WAIT)).getValue();
 	}
 
 	public byte getNumberOfMessages() throws ValueNotSetException {
-		return numberOfMessages.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_NUM_MSGS)).getValue();
 	}
 
 	public boolean getAlertOnMsgDelivery() throws ValueNotSetException {
-		return alertOnMsgDelivery.getValue();
+		return ((TLVEmpty) requireOptional(Data.OPT_PAR_ALERT_ON_MSG_DELIVERY)).getValue();
 	}
 
 	public byte getLanguageIndicator() throws ValueNotSetException {
-		return languageIndicator.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_LANG_IND)).getValue();
 	}
 
 	public byte getItsReplyType() throws ValueNotSetException {
-		return itsReplyType.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_ITS_REPLY_TYPE)).getValue();
 	}
 
 	public short getItsSessionInfo() throws ValueNotSetException {
-		return itsSessionInfo.getValue();
+		return ((TLVShort) requireOptional(Data.OPT_PAR_ITS_SESSION_INFO)).getValue();
 	}
 
 	public byte getUssdServiceOp() throws ValueNotSetException {
-		return ussdServiceOp.getValue();
+		return ((TLVByte) requireOptional(Data.OPT_PAR_USSD_SER_OP)).getValue();
 	}
 
 	public String debugString() {
 		String dbgs = "(submit: ";
 		dbgs += super.debugString();
+		if (!isDecoded()) {
+			return dbgs + ") ";
+		}
 		dbgs += getSourceAddr().debugString();
 		dbgs += " ";
 		dbgs += getDestAddr().debugString();
@@ -47,9 +47,20 @@ public class SubmitSMResp extends Response {
 	}
 
 	public ByteBuffer getBody() {
-		ByteBuffer buffer = new ByteBuffer();
-		if (getCommandStatus() == 0) buffer.appendCString(messageId);
-		return buffer;
+		byte[] body = new byte[getEncodedBodyLength()];
+		encodeBody(body, 0);
+		return new ByteBuffer(body);
+	}
+
+	protected int getEncodedBodyLength() {
+		return getCommandStatus() == 0 ? getCStringLength(messageId) : 0;
+	}
+
+	protected int encodeBody(byte[] dest, int offset) {
+		if (getCommandStatus() == 0) {
+			offset = encodeCString(messageId, dest, offset);
+		}
+		return offset;
 	}
 
 	public void setMessageId(String value) throws WrongLengthOfStringException {
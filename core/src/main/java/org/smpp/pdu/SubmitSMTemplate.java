@@ -0,0 +1,237 @@
+package org.smpp.pdu;
+
+import java.io.UnsupportedEncodingException;
+
+import org.smpp.Data;
+import org.smpp.util.CharsetRegistry;
+
+/**
+ * Pre-encoded <code>submit_sm</code> for sending many messages which differ
+ * only in the destination address and in a few variable parts of the text,
+ * e.g. bulk campaigns. The prototype is validated and encoded once; each
+ * message is then produced by copying the encoded prototype and writing
+ * the sequence number, the destination address and the values of the
+ * variables in place, with the lengths fixed up, without creating and
+ * validating the PDU's parameters:
+ * <pre>
+ * SubmitSM prototype = new SubmitSM();
+ * prototype.setSourceAddr("Shop");
+ * prototype.setShortMessage("Your code is {}.");
+ * SubmitSMTemplate template = new SubmitSMTemplate(prototype, "{}", Data.ENC_ASCII);
+ * ...
+ * session.submit(template.createSubmitSM("420600111222", template.encodeValue("4711")));
+ * </pre>
+ * The variables are the occurrences of the placeholder in the short message
+ * of the prototype. A message in <code>message_payload</code> and all the
+ * other parameters are sent as they were in the prototype.
+ * <p>
+ * The template is immutable and can be shared by threads.
+ *
+ * @see #encode(byte[],int,int,CharSequence,byte[][])
+ * @see #createSubmitSM(CharSequence,byte[][])
+ */
+public class SubmitSMTemplate {
+	private static final byte[][] NO_VALUES = new byte[0][];
+
+	/** The encoded body of the prototype. */
+	private final byte[] body;
+
+	private final int destAddrOffset;
+	private final int destAddrEnd;
+	private final int smLengthOffset;
+	private final int smEnd;
+
+	/** Offsets of the placeholders within the body. */
+	private final int[] variables;
+	private final int placeholderLength;
+	private final String encoding;
+
+	/**
+	 * Creates a template without variables.
+	 */
+	public SubmitSMTemplate(SubmitSM prototype) throws ValueNotSetException {
+		this(prototype, (byte[]) null, null);
+	}
+
+	/**
+	 * Creates a template whose short message contains variables.
+	 *
+	 * @param prototype   the message with the parameters shared by all
+	 *                    the messages, its destination address is replaced
+	 * @param placeholder marks the variables in the short message
+	 * @param encoding    the encoding of the short message of the prototype,
+	 *                    used for the placeholder and <code>encodeValue</code>
+	 * @exception UnsupportedEncodingException if the encoding isn't supported
+	 */
+	public SubmitSMTemplate(SubmitSM prototype, String placeholder, String encoding)
+		throws ValueNotSetException, UnsupportedEncodingException {
+		this(prototype, CharsetRegistry.encode(placeholder, encoding), encoding);
+	}
+
+	private SubmitSMTemplate(SubmitSM prototype, byte[] marker, String encoding) throws ValueNotSetException {
+		int bodyLength = prototype.getEncodedLength() - Data.PDU_HEADER_SIZE;
+		byte[] data = new byte[Data.PDU_HEADER_SIZE + bodyLength];
+		prototype.encode(data, 0);
+		body = new byte[bodyLength];
+		System.arraycopy(data, Data.PDU_HEADER_SIZE, body, 0, bodyLength);
+
+		int pos = skipCString(0); // service_type
+		pos = skipCString(pos + 2); // source ton, npi, address
+		destAddrOffset = pos + 2;
+		destAddrEnd = skipCString(destAddrOffset) - 1;
+		pos = skipCString(destAddrEnd + 1 + 3); // esm_class, protocol_id, priority_flag, schedule
+		pos = skipCString(pos); // validity_period
+		smLengthOffset = pos + 4;
+		smEnd = smLengthOffset + 1 + (body[smLengthOffset] & 0xff);
+
+		this.encoding = encoding;
+		if ((marker == null) || (marker.length == 0)) {
+			variables = new int[0];
+			placeholderLength = 0;
+			return;
+		}
+		placeholderLength = marker.length;
+		int[] found = new int[(smEnd - smLengthOffset) / marker.length];
+		int count = 0;
+		for (int i = smLengthOffset + 1; i + marker.length <= smEnd;) {
+			if (matches(i, marker)) {
+				found[count++] = i;
+				i += marker.length;
+			} else {
+				i++;
+			}
+		}
+		variables = new int[count];
+		System.arraycopy(found, 0, variables, 0, count);
+	}
+
+	private int skipCString(int pos) {
+		while (body[pos] != 0) {
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	private boolean matches(int pos, byte[] marker) {
+		for (int i = 0; i < marker.length; i++) {
+			if (body[pos + i] != marker[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the number of placeholders in the short message. */
+	public int getVariableCount() {
+		return variables.length;
+	}
+
+	/**
+	 * Encodes the text of a variable with the encoding of the template.
+	 */
+	public byte[] encodeValue(String value) throws UnsupportedEncodingException {
+		return CharsetRegistry.encode(value, encoding);
+	}
+
+	/**
+	 * Returns the length of the message body with the destination address
+	 * and the values, without the PDU header.
+	 */
+	public int getEncodedBodyLength(CharSequence destAddr, byte[]... values) {
+		if (values == null) {
+			values = NO_VALUES;
+		}
+		if (values.length != variables.length) {
+			throw new IllegalArgumentException(
+				"The template has " + variables.length + " variables, got " + values.length + " values");
+		}
+		int length = body.length - (destAddrEnd - destAddrOffset) + destAddr.length();
+		for (int i = 0; i < values.length; i++) {
+			length += values[i].length - placeholderLength;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the complete binary <code>submit_sm</code> with the sequence
+	 * number, destination address and values of the variables.
+	 *
+	 * @param dest           the array with enough space for the PDU
+	 * @param offset         where to start writing
+	 * @param sequenceNumber the sequence number of the PDU
+	 * @param destAddr       the destination address, ton and npi
+	 *                       are from the prototype
+	 * @param values         the encoded values of the variables in the order
+	 *                       of the placeholders in the text
+	 * @return the offset after the PDU
+	 * @exception WrongLengthOfStringException if the address or the short
+	 *            message would be too long
+	 * @see #getEncodedBodyLength(CharSequence,byte[][])
+	 */
+	public int encode(byte[] dest, int offset, int sequenceNumber, CharSequence destAddr, byte[]... values)
+		throws WrongLengthOfStringException {
+		int length = Data.PDU_HEADER_SIZE + getEncodedBodyLength(destAddr, values);
+		int pos = ByteData.encodeInt(length, dest, offset);
+		pos = ByteData.encodeInt(Data.SUBMIT_SM, dest, pos);
+		pos = ByteData.encodeInt(Data.ESME_ROK, dest, pos);
+		pos = ByteData.encodeInt(sequenceNumber, dest, pos);
+		return encodeBody(dest, pos, destAddr, values);
+	}
+
+	/**
+	 * Returns a <code>SubmitSM</code> carrying the encoded body, for sending
+	 * through a <code>Session</code>. The PDU is sent as it is, the body is
+	 * parsed only if its parameters are accessed.
+	 *
+	 * @see #encode(byte[],int,int,CharSequence,byte[][])
+	 */
+	public SubmitSM createSubmitSM(CharSequence destAddr, byte[]... values) throws WrongLengthOfStringException {
+		byte[] encoded = new byte[getEncodedBodyLength(destAddr, values)];
+		encodeBody(encoded, 0, destAddr, values);
+		SubmitSM submit = new SubmitSM();
+		submit.setEncodedBody(encoded);
+		return submit;
+	}
+
+	private int encodeBody(byte[] dest, int offset, CharSequence destAddr, byte[][] values)
+		throws WrongLengthOfStringException {
+		if (values == null) {
+			values = NO_VALUES;
+		}
+		int addrLength = destAddr.length();
+		if (addrLength >= Data.SM_ADDR_LEN) {
+			throw new WrongLengthOfStringException(0, Data.SM_ADDR_LEN - 1, addrLength);
+		}
+		System.arraycopy(body, 0, dest, offset, destAddrOffset);
+		int pos = offset + destAddrOffset;
+		for (int i = 0; i < addrLength; i++) {
+			char c = destAddr.charAt(i);
+			dest[pos++] = c < 0x80 ? (byte) c : (byte) '?';
+		}
+		int length = smLengthOffset - destAddrEnd;
+		System.arraycopy(body, destAddrEnd, dest, pos, length);
+		pos += length;
+		int smLengthPos = pos++;
+		int smStart = pos;
+		int from = smLengthOffset + 1;
+		for (int i = 0; i < variables.length; i++) {
+			length = variables[i] - from;
+			System.arraycopy(body, from, dest, pos, length);
+			pos += length;
+			System.arraycopy(values[i], 0, dest, pos, values[i].length);
+			pos += values[i].length;
+			from = variables[i] + placeholderLength;
+		}
+		length = smEnd - from;
+		System.arraycopy(body, from, dest, pos, length);
+		pos += length;
+		int smLength = pos - smStart;
+		if (smLength > Data.SM_MSG_LEN) {
+			throw new WrongLengthOfStringException(0, Data.SM_MSG_LEN, smLength);
+		}
+		dest[smLengthPos] = (byte) smLength;
+		length = body.length - smEnd;
+		System.arraycopy(body, smEnd, dest, pos, length);
+		return pos + length;
+	}
+}
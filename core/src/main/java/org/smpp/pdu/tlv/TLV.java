@@ -10,6 +10,7 @@
  */
 package org.smpp.pdu.tlv;
 
+import org.smpp.Data;
 import org.smpp.pdu.ByteData;
 import org.smpp.pdu.ValueNotSetException;
 import org.smpp.pdu.tlv.WrongLengthException;
@@ -36,7 +37,7 @@ import org.smpp.util.NotEnoughDataInByteBufferException;
  * @see TLVShort
  * @see TLVString
  */
-public abstract class TLV extends ByteData {
+public abstract class TLV extends ByteData implements Cloneable {
 	/** The tag of the instance of TLV as defined in SMPP v3.4 */
 	private short tag = 0;
 
@@ -129,17 +130,61 @@ public abstract class TLV extends ByteData {
 	 */
 	public int getLength() throws ValueNotSetException {
 		if (hasValue()) {
-			ByteBuffer valueBuf = getValueData();
-			if (valueBuf != null) {
-				return valueBuf.length();
-			} else {
-				return 0;
-			}
+			return getValueLength();
 		} else {
 			return 0;
 		}
 	}
 
+	/**
+	 * Returns the length of the binary value. This default implementation
+	 * uses <code>getValueData</code>; derived classes can override it
+	 * together with <code>encodeValue</code> to avoid creating the buffer.
+	 *
+	 * @see #encodeValue(byte[],int)
+	 */
+	protected int getValueLength() throws ValueNotSetException {
+		ByteBuffer valueBuf = getValueData();
+		return valueBuf == null ? 0 : valueBuf.length();
+	}
+
+	/**
+	 * Writes the binary value to the array at the offset and returns
+	 * the offset after it. This default implementation copies
+	 * the result of <code>getValueData</code>.
+	 *
+	 * @see #getValueLength()
+	 */
+	protected int encodeValue(byte[] dest, int offset) throws ValueNotSetException {
+		return encodeBytes(getValueData(), dest, offset);
+	}
+
+	/**
+	 * Returns the length of tag, length and value, zero if the value
+	 * isn't set, as the TLV isn't encoded then.
+	 */
+	public int getEncodedLength() throws ValueNotSetException {
+		return hasValue() ? Data.TLV_HEADER_SIZE + getValueLength() : 0;
+	}
+
+	/**
+	 * Writes tag, length and the value to the array; writes nothing
+	 * if the value isn't set.
+	 */
+	public int encode(byte[] dest, int offset) throws ValueNotSetException {
+		if (!hasValue()) {
+			return offset;
+		}
+		int length = getValueLength();
+		offset = encodeShort(getTag(), dest, offset);
+		offset = encodeShort(encodeUnsigned(length), dest, offset);
+		int end = encodeValue(dest, offset);
+		if (end - offset != length) {
+			throw new IllegalStateException("TLV " + Integer.toHexString(getTag()) + " encoded length differs");
+		}
+		return end;
+	}
+
 	/**
 	 * Overwrites <code>ByteData</code>'s <code>setData</code> and parses
 	 * tag, length and the binary data value from the buffer. For parsing the 
@@ -174,6 +219,32 @@ public abstract class TLV extends ByteData {
 		valueIsSet = true;
 	}
 
+	/**
+	 * Creates a new TLV of the same type, tag and length limits as this one
+	 * without any value. Used to create optional parameters of a PDU
+	 * from the prototypes only when they are set or received.
+	 *
+	 * @see TLVTable
+	 */
+	public TLV createEmpty() {
+		try {
+			TLV tlv = (TLV) clone();
+			tlv.reset();
+			return tlv;
+		} catch (CloneNotSupportedException e) {
+			throw new Error("TLV is cloneable");
+		}
+	}
+
+	/**
+	 * Clears the value so the TLV looks as if it was never set;
+	 * used when a PDU is reset for reuse.
+	 * Derived classes holding references should release them.
+	 */
+	public void reset() {
+		valueIsSet = false;
+	}
+
 	/** Returns if the value has been set. */
 	public boolean hasValue() {
 		return valueIsSet;
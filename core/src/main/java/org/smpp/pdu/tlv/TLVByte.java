@@ -45,6 +45,15 @@ public class TLVByte extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return 1;
+	}
+
+	protected int encodeValue(byte[] dest, int offset) throws ValueNotSetException {
+		dest[offset] = getValue();
+		return offset + 1;
+	}
+
 	protected ByteBuffer getValueData() throws ValueNotSetException {
 		ByteBuffer valueBuf = new ByteBuffer();
 		valueBuf.appendByte(getValue());
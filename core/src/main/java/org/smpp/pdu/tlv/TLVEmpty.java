@@ -35,6 +35,14 @@ public class TLVEmpty extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return 0;
+	}
+
+	protected int encodeValue(byte[] dest, int offset) {
+		return offset;
+	}
+
 	public ByteBuffer getValueData() {
 		// nothing, just present or not
 		return null;
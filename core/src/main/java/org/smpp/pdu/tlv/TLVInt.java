@@ -45,6 +45,14 @@ public class TLVInt extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return 4;
+	}
+
+	protected int encodeValue(byte[] dest, int offset) throws ValueNotSetException {
+		return encodeInt(getValue(), dest, offset);
+	}
+
 	protected ByteBuffer getValueData() throws ValueNotSetException {
 		ByteBuffer valueBuf = new ByteBuffer();
 		valueBuf.appendInt(getValue());
@@ -45,6 +45,11 @@ public class TLVOctets extends TLV {
 		setValueData(p_value);
 	}
 
+	public void reset() {
+		super.reset();
+		value = null;
+	}
+
 	protected void setValueData(ByteBuffer buffer) throws TLVException {
 		checkLength(buffer);
 		if (buffer != null) {
@@ -67,6 +72,14 @@ public class TLVOctets extends TLV {
 		return valueBuf;
 	}
 
+	protected int getValueLength() {
+		return value == null ? 0 : value.length();
+	}
+
+	protected int encodeValue(byte[] dest, int offset) {
+		return encodeBytes(value, dest, offset);
+	}
+
 	public void setValue(ByteBuffer p_value) {
 		if (p_value != null) {
 			try {
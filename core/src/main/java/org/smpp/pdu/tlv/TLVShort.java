@@ -45,6 +45,14 @@ public class TLVShort extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return 2;
+	}
+
+	protected int encodeValue(byte[] dest, int offset) throws ValueNotSetException {
+		return encodeShort(getValue(), dest, offset);
+	}
+
 	protected ByteBuffer getValueData() throws ValueNotSetException {
 		ByteBuffer valueBuf = new ByteBuffer();
 		valueBuf.appendShort(getValue());
@@ -44,6 +44,11 @@ public class TLVString extends TLV {
 		setValue(value);
 	}
 
+	public void reset() {
+		super.reset();
+		value = null;
+	}
+
 	public void setValueData(ByteBuffer buffer) throws TLVException {
 		checkLength(buffer);
 		if (buffer != null) {
@@ -60,6 +65,14 @@ public class TLVString extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return getCStringLength(value);
+	}
+
+	protected int encodeValue(byte[] dest, int offset) {
+		return encodeCString(value, dest, offset);
+	}
+
 	public ByteBuffer getValueData() throws ValueNotSetException {
 		ByteBuffer valueBuf = new ByteBuffer();
 		valueBuf.appendCString(getValue());
@@ -0,0 +1,101 @@
+package org.smpp.pdu.tlv;
+
+/**
+ * The optional parameters a PDU class can carry. The table is created
+ * once per PDU class from prototypes of the TLVs; each PDU instance then
+ * only creates TLVs for the parameters which were set or received.
+ * <p>
+ * Each parameter has its index in the table (the order in which
+ * the prototypes were given, parameters of the parent table first),
+ * the tags are looked up in an open addressing hash table keyed
+ * by the primitive tag.
+ *
+ * @see org.smpp.pdu.PDU#getOptionalTable()
+ * @see TLV#createEmpty()
+ */
+public class TLVTable {
+	private final TLV[] prototypes;
+	private final short[] keys;
+	private final int[] indexes; // index + 1, 0 means empty slot
+	private final int mask;
+
+	/**
+	 * Creates the table of the optional parameters.
+	 *
+	 * @param prototypes the TLVs of the parameters, their values aren't used
+	 */
+	public TLVTable(TLV[] prototypes) {
+		this(null, prototypes);
+	}
+
+	/**
+	 * Creates the table of the optional parameters of a PDU class
+	 * derived from a class with optional parameters.
+	 *
+	 * @param parent     the table of the parent class, can be null
+	 * @param prototypes the TLVs of the added parameters
+	 */
+	public TLVTable(TLVTable parent, TLV[] prototypes) {
+		int parentSize = parent == null ? 0 : parent.size();
+		this.prototypes = new TLV[parentSize + prototypes.length];
+		if (parent != null) {
+			System.arraycopy(parent.prototypes, 0, this.prototypes, 0, parentSize);
+		}
+		System.arraycopy(prototypes, 0, this.prototypes, parentSize, prototypes.length);
+		int capacity = 8;
+		while (capacity < 2 * this.prototypes.length) {
+			capacity <<= 1;
+		}
+		keys = new short[capacity];
+		indexes = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < this.prototypes.length; i++) {
+			short tag = this.prototypes[i].getTag();
+			if (indexOf(tag) >= 0) {
+				throw new IllegalArgumentException("Duplicate optional parameter tag " + Integer.toHexString(tag));
+			}
+			int slot = slot(tag);
+			while (indexes[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = tag;
+			indexes[slot] = i + 1;
+		}
+	}
+
+	private int slot(short tag) {
+		int h = tag & 0xffff;
+		return (h ^ (h >>> 5) ^ (h >>> 10)) & mask;
+	}
+
+	/**
+	 * Returns the index of the parameter with the tag, -1 if the table
+	 * doesn't contain the tag.
+	 */
+	public int indexOf(short tag) {
+		int slot = slot(tag);
+		int index;
+		while ((index = indexes[slot]) != 0) {
+			if (keys[slot] == tag) {
+				return index - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/** Returns the number of parameters in the table. */
+	public int size() {
+		return prototypes.length;
+	}
+
+	/** Returns the tag of the parameter with the index. */
+	public short getTag(int index) {
+		return prototypes[index].getTag();
+	}
+
+	/** Creates new TLV without value for the parameter with the index. */
+	public TLV create(int index) {
+		return prototypes[index].createEmpty();
+	}
+}
@@ -56,6 +56,15 @@ public class TLVUByte extends TLV {
 		markValueSet();
 	}
 
+	protected int getValueLength() {
+		return 1;
+	}
+
+	protected int encodeValue(byte[] dest, int offset) throws ValueNotSetException {
+		dest[offset] = encodeUnsigned(getValue());
+		return offset + 1;
+	}
+
 	/**
 	 * Creates byt buffer containing one unsigned byte.
 	 * @return the byte buffer with one unsingned byte
@@ -0,0 +1,369 @@
+package org.smpp.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.smpp.Data;
+import org.smpp.ResponseTimeoutEvent;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.TimeoutException;
+import org.smpp.WrongSessionStateException;
+import org.smpp.pdu.CancelSM;
+import org.smpp.pdu.DataSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.QuerySM;
+import org.smpp.pdu.ReplaceSM;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitMultiSM;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.ValueNotSetException;
+
+/**
+ * Limits the number of requests sent without a response, adapting the
+ * limit (the window) to the load of the SMSC. Requests are sent through
+ * the window and the application's listener is wrapped so the responses
+ * of asynchronous requests are observed:
+ * <pre>
+ * AdaptiveWindow window = new AdaptiveWindow();
+ * session.bind(request, window.wrap(listener));
+ * ...
+ * window.submit(session, submitSM); // waits while the window is full
+ * </pre>
+ * The window grows by one per window of responses while the SMSC reports
+ * <code>congestion_state</code> below the optimum and the response latency
+ * is stable; it's kept while the congestion is in the optimum range and
+ * shrinks when the SMSC is nearing congestion or the smoothed latency rises
+ * over <code>latencyTolerance</code> times the base (lowest recent) latency.
+ * It's halved when the SMSC is congested, throttles the ESME or the response
+ * doesn't come in time. The window shrinks at most once per window of
+ * responses, as the responses to the requests already sent don't reflect
+ * the smaller window yet. Responses without <code>congestion_state</code>,
+ * e.g. from SMPP 3.4 SMSCs, are judged by the latency only.
+ * An asynchronous session should have a response timeout set, otherwise
+ * a request whose response never comes keeps its room in the window.
+ * <p>
+ * The default thresholds follow the ranges suggested by SMPP 5.0:
+ * 80 to 89 is the optimum load, 90 to 99 nearing congestion.
+ *
+ * @see Response#getCongestionState()
+ * @see Session#setResponseTimeout(long)
+ */
+public class AdaptiveWindow extends SmppObject {
+	public static final int DEFAULT_INITIAL_WINDOW = 10;
+	public static final int DEFAULT_MIN_WINDOW = 1;
+	public static final int DEFAULT_MAX_WINDOW = 1000;
+
+	/** The lowest <code>congestion_state</code> considered optimum load. */
+	public static final int DEFAULT_OPTIMUM_CONGESTION = 80;
+
+	/** The lowest <code>congestion_state</code> considered nearing congestion. */
+	public static final int DEFAULT_HIGH_CONGESTION = 90;
+
+	public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+	/** The factor the window is shrunk by when the load is high. */
+	private static final double SHRINK = 0.875;
+
+	/** The factor the window is shrunk by when the SMSC is overloaded. */
+	private static final double BACK_OFF = 0.5;
+
+	private final int minWindow;
+	private final int maxWindow;
+	private int optimumCongestion = DEFAULT_OPTIMUM_CONGESTION;
+	private int highCongestion = DEFAULT_HIGH_CONGESTION;
+	private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+
+	/** The window; fractional, as it grows by 1/window per response. */
+	private double window;
+	private int outstanding = 0;
+
+	/** Responses to come before the window can shrink again. */
+	private int holdOff = 0;
+
+	private double smoothedLatency = -1;
+	private double baseLatency = -1;
+	private int congestionState = -1;
+	private long decreaseCount = 0;
+
+	/** Send times of the asynchronous requests keyed by sequence number. */
+	private final ConcurrentHashMap<Integer, Long> inFlight = new ConcurrentHashMap<Integer, Long>();
+
+	private class WindowListener extends SmppObject implements ServerPDUEventListener {
+		private final ServerPDUEventListener listener;
+
+		WindowListener(ServerPDUEventListener listener) {
+			this.listener = listener;
+		}
+
+		public void handleEvent(ServerPDUEvent received) {
+			PDU pdu = received.getPDU();
+			if ((pdu != null) && pdu.isResponse() && !inFlight.isEmpty()) {
+				Long sent = inFlight.remove(new Integer(pdu.getSequenceNumber()));
+				if (sent != null) {
+					if (received instanceof ResponseTimeoutEvent) {
+						timedOut();
+					} else {
+						responded((Response) pdu, System.currentTimeMillis() - sent.longValue());
+					}
+				}
+			}
+			listener.handleEvent(received);
+		}
+	}
+
+	/**
+	 * Creates a window with the default sizes.
+	 */
+	public AdaptiveWindow() {
+		this(DEFAULT_INITIAL_WINDOW, DEFAULT_MIN_WINDOW, DEFAULT_MAX_WINDOW);
+	}
+
+	/**
+	 * Creates a window.
+	 *
+	 * @param initialWindow the window before any response arrives
+	 * @param minWindow     the window never shrinks below
+	 * @param maxWindow     the window never grows above
+	 */
+	public AdaptiveWindow(int initialWindow, int minWindow, int maxWindow) {
+		if ((minWindow < 1) || (minWindow > initialWindow) || (initialWindow > maxWindow)) {
+			throw new IllegalArgumentException(
+				"Invalid window " + initialWindow + " min=" + minWindow + " max=" + maxWindow);
+		}
+		this.window = initialWindow;
+		this.minWindow = minWindow;
+		this.maxWindow = maxWindow;
+	}
+
+	/**
+	 * Sets the <code>congestion_state</code> thresholds: below
+	 * <code>optimum</code> the window grows, from <code>high</code>
+	 * it shrinks.
+	 */
+	public synchronized void setCongestionThresholds(int optimum, int high) {
+		if ((optimum < 0) || (optimum > high) || (high > Data.OPT_PAR_CONGESTION_STATE_MAX)) {
+			throw new IllegalArgumentException("Invalid thresholds " + optimum + ", " + high);
+		}
+		this.optimumCongestion = optimum;
+		this.highCongestion = high;
+	}
+
+	/**
+	 * Sets how many times the smoothed latency can exceed the base latency
+	 * before the window shrinks.
+	 */
+	public synchronized void setLatencyTolerance(double latencyTolerance) {
+		if (latencyTolerance < 1) {
+			throw new IllegalArgumentException("Invalid latency tolerance " + latencyTolerance);
+		}
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	/** Returns the current number of requests which can be outstanding. */
+	public synchronized int getWindow() {
+		return (int) window;
+	}
+
+	/** Returns the number of requests sent and not answered. */
+	public synchronized int getOutstandingCount() {
+		return outstanding;
+	}
+
+	/** Returns the smoothed response latency in milliseconds, -1 if unknown. */
+	public synchronized long getLatency() {
+		return Math.round(smoothedLatency);
+	}
+
+	/** Returns the last <code>congestion_state</code> reported, -1 if none. */
+	public synchronized int getCongestionState() {
+		return congestionState;
+	}
+
+	/** Returns how many times the window was shrunk. */
+	public synchronized long getDecreaseCount() {
+		return decreaseCount;
+	}
+
+	/**
+	 * Waits until the window has room for another request and takes it.
+	 * Each successful call must be matched by <code>responded</code>,
+	 * <code>timedOut</code> or <code>release</code>.
+	 *
+	 * @param timeout the time to wait in milliseconds, 0 waits forever
+	 * @return false if the window was still full after the timeout
+	 */
+	public synchronized boolean acquire(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (outstanding >= (int) window) {
+			if (timeout <= 0) {
+				wait();
+			} else {
+				long left = deadline - System.currentTimeMillis();
+				if (left <= 0) {
+					return false;
+				}
+				wait(left);
+			}
+		}
+		outstanding++;
+		return true;
+	}
+
+	/**
+	 * Returns the room taken by a request which wasn't sent.
+	 */
+	public synchronized void release() {
+		if (outstanding > 0) {
+			outstanding--;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns the room taken by the request of the response and adapts
+	 * the window to the response's status, <code>congestion_state</code>
+	 * and latency.
+	 *
+	 * @param response the response received
+	 * @param latency  the time between sending the request and receiving
+	 *                 the response in milliseconds
+	 */
+	public synchronized void responded(Response response, long latency) {
+		release();
+		int status = response.getCommandStatus();
+		if ((status == Data.ESME_RTHROTTLED) || (status == Data.ESME_RMSGQFUL)) {
+			congestionState = -1;
+			decrease(BACK_OFF);
+			return;
+		}
+		sample(latency);
+		boolean latencyRising = smoothedLatency > Math.max(baseLatency, 1) * latencyTolerance;
+		congestionState = -1;
+		if (response.hasCongestionState()) {
+			try {
+				congestionState = response.getCongestionState();
+			} catch (ValueNotSetException e) {
+				// checked by hasCongestionState
+			}
+		}
+		if (congestionState >= Data.OPT_PAR_CONGESTION_STATE_MAX) {
+			decrease(BACK_OFF);
+		} else if ((congestionState >= highCongestion) || latencyRising) {
+			decrease(SHRINK);
+		} else {
+			if (holdOff > 0) {
+				holdOff--;
+			}
+			if (congestionState < optimumCongestion) {
+				window = Math.min(window + 1 / window, maxWindow);
+			}
+		}
+	}
+
+	/**
+	 * Returns the room taken by a request whose response didn't come
+	 * in time and halves the window.
+	 */
+	public synchronized void timedOut() {
+		release();
+		decrease(BACK_OFF);
+	}
+
+	private void sample(long latency) {
+		if (smoothedLatency < 0) {
+			smoothedLatency = latency;
+			baseLatency = latency;
+			return;
+		}
+		smoothedLatency += (latency - smoothedLatency) / 8;
+		// the base drifts up slowly so a lasting change of the path is followed
+		if (latency < baseLatency) {
+			baseLatency = latency;
+		} else {
+			baseLatency += (latency - baseLatency) / 256;
+		}
+	}
+
+	private void decrease(double factor) {
+		if (holdOff > 0) {
+			holdOff--;
+			return;
+		}
+		window = Math.max(window * factor, minWindow);
+		holdOff = outstanding;
+		decreaseCount++;
+		debug.write(DUTL, "adaptive window: shrunk to " + (int) window);
+	}
+
+	/**
+	 * Waits for room in the window and sends the request through the session.
+	 * If the session is synchronous, the response is observed and returned,
+	 * otherwise the response is observed by the listener returned by
+	 * <code>wrap</code> and null is returned.
+	 *
+	 * @exception InterruptedIOException if interrupted while waiting
+	 */
+	public Response submit(Session session, Request request)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		try {
+			acquire(0);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted waiting for the window");
+		}
+		request.assignSequenceNumber();
+		Integer sequenceNumber = new Integer(request.getSequenceNumber());
+		long sent = System.currentTimeMillis();
+		inFlight.put(sequenceNumber, new Long(sent));
+		Response response = null;
+		boolean done = false;
+		try {
+			response = send(session, request);
+			done = true;
+		} finally {
+			if (!done && (inFlight.remove(sequenceNumber) != null)) {
+				release();
+			}
+		}
+		// if asynchronous, the listener will see the response
+		if (!session.isAsynchronous() && (inFlight.remove(sequenceNumber) != null)) {
+			if (response != null) {
+				responded(response, System.currentTimeMillis() - sent);
+			} else {
+				timedOut();
+			}
+		}
+		return response;
+	}
+
+	private static Response send(Session session, Request request)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		if (request instanceof SubmitSM) {
+			return session.submit((SubmitSM) request);
+		} else if (request instanceof DataSM) {
+			return session.data((DataSM) request);
+		} else if (request instanceof SubmitMultiSM) {
+			return session.submitMulti((SubmitMultiSM) request);
+		} else if (request instanceof QuerySM) {
+			return session.query((QuerySM) request);
+		} else if (request instanceof CancelSM) {
+			return session.cancel((CancelSM) request);
+		} else if (request instanceof ReplaceSM) {
+			return session.replace((ReplaceSM) request);
+		}
+		throw new PDUException("Can't send " + request.getClass().getName() + " through the window");
+	}
+
+	/**
+	 * Returns the listener which observes the responses of asynchronous
+	 * requests and passes all the events to the listener.
+	 */
+	public ServerPDUEventListener wrap(ServerPDUEventListener listener) {
+		return new WindowListener(listener);
+	}
+}
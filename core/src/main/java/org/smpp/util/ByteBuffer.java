@@ -139,8 +139,10 @@ public class ByteBuffer extends SmppObject {
 	private void appendString0(String string, boolean isCString, String encoding) throws UnsupportedEncodingException {
 		if ((string != null) && (string.length() > 0)) {
 			byte[] stringBuf = null;
-			if (encoding != null) {
-				stringBuf = string.getBytes(encoding);
+			if (Data.ENC_ASCII.equals(encoding)) {
+				stringBuf = CharsetRegistry.encodeAscii(string);
+			} else if (encoding != null) {
+				stringBuf = CharsetRegistry.encode(string, encoding);
 			} else {
 				stringBuf = string.getBytes();
 			}
@@ -262,10 +264,10 @@ public class ByteBuffer extends SmppObject {
 			String result = null;
 			if (zeroPos > 0) {
 				try {
-					if (encoding != null) {
-						result = new String(buffer, 0, zeroPos, encoding);
+					if ((encoding != null) && !Data.ENC_ASCII.equals(encoding)) {
+						result = CharsetRegistry.decode(buffer, 0, zeroPos, encoding);
 					} else {
-						result = new String(buffer, 0, zeroPos, Data.ENC_ASCII);
+						result = CharsetRegistry.decodeAscii(buffer, 0, zeroPos);
 					}
 				} catch (UnsupportedEncodingException e) {
 					debug.write("Unsupported encoding exception " + e);
@@ -295,8 +297,10 @@ public class ByteBuffer extends SmppObject {
 		String result = null;
 		if (len > 0) {
 			try {
-				if (encoding != null) {
-					result = new String(buffer, 0, size, encoding);
+				if (Data.ENC_ASCII.equals(encoding)) {
+					result = CharsetRegistry.decodeAscii(buffer, 0, size);
+				} else if (encoding != null) {
+					result = CharsetRegistry.decode(buffer, 0, size, encoding);
 				} else {
 					result = new String(buffer, 0, size);
 				}
@@ -0,0 +1,249 @@
+package org.smpp.util;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversion of strings to octets and back with cached charsets.
+ * <p>
+ * <code>String.getBytes(String)</code> and <code>new String(byte[], String)</code>
+ * look the charset up by its name on every call. The registry resolves
+ * each encoding name, or <code>data_coding</code>, to a <code>Charset</code>
+ * once and keeps an encoder and a decoder per charset and thread, which are
+ * reused together with per-thread buffers. Malformed and unmappable
+ * characters are replaced, the same as by the <code>String</code> methods.
+ * <p>
+ * ASCII, used for all c-strings of the PDUs, has a fast path which
+ * doesn't use the charset at all.
+ *
+ * @see DataCodingCharsetHandler
+ */
+public class CharsetRegistry {
+	/** The charset of <code>Data.ENC_ASCII</code>. */
+	public static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final char ASCII_REPLACEMENT = '\uFFFD';
+
+	private static final Map<String, Charset> charsets = new ConcurrentHashMap<String, Charset>();
+
+	private static final ThreadLocal<Coders> coders = new ThreadLocal<Coders>() {
+		protected Coders initialValue() {
+			return new Coders();
+		}
+	};
+
+	/**
+	 * The encoders, decoders and buffers of one thread.
+	 */
+	private static class Coders {
+		final Map<Charset, CharsetEncoder> encoders = new HashMap<Charset, CharsetEncoder>();
+		final Map<Charset, CharsetDecoder> decoders = new HashMap<Charset, CharsetDecoder>();
+		java.nio.ByteBuffer bytes = java.nio.ByteBuffer.allocate(256);
+		CharBuffer chars = CharBuffer.allocate(256);
+
+		CharsetEncoder getEncoder(Charset charset) {
+			CharsetEncoder encoder = encoders.get(charset);
+			if (encoder == null) {
+				encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				encoders.put(charset, encoder);
+			}
+			return encoder;
+		}
+
+		CharsetDecoder getDecoder(Charset charset) {
+			CharsetDecoder decoder = decoders.get(charset);
+			if (decoder == null) {
+				decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				decoders.put(charset, decoder);
+			}
+			return decoder;
+		}
+	}
+
+	private CharsetRegistry() {
+	}
+
+	/**
+	 * Returns the charset of the encoding name, either the canonical
+	 * name or an alias, e.g. the Java names in <code>Data.ENC_</code>.
+	 *
+	 * @exception UnsupportedEncodingException if the charset isn't available
+	 */
+	public static Charset getCharset(String encoding) throws UnsupportedEncodingException {
+		Charset charset = charsets.get(encoding);
+		if (charset == null) {
+			try {
+				charset = Charset.forName(encoding);
+			} catch (IllegalCharsetNameException e) {
+				throw new UnsupportedEncodingException(encoding);
+			} catch (UnsupportedCharsetException e) {
+				throw new UnsupportedEncodingException(encoding);
+			}
+			charsets.put(encoding, charset);
+		}
+		return charset;
+	}
+
+	/**
+	 * Returns the charset of the <code>data_coding</code> as given
+	 * by <code>DataCodingCharsetHandler</code>, ASCII if it isn't available.
+	 */
+	public static Charset getCharset(byte dataCoding) {
+		try {
+			return getCharset(DataCodingCharsetHandler.getCharsetName(dataCoding));
+		} catch (UnsupportedEncodingException e) {
+			return ASCII;
+		}
+	}
+
+	/** Returns if the encoding is available. */
+	public static boolean isSupported(String encoding) {
+		try {
+			getCharset(encoding);
+			return true;
+		} catch (UnsupportedEncodingException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts the string to octets in the encoding.
+	 *
+	 * @exception UnsupportedEncodingException if the charset isn't available
+	 */
+	public static byte[] encode(String string, String encoding) throws UnsupportedEncodingException {
+		return encode(string, getCharset(encoding));
+	}
+
+	/**
+	 * Converts the string to octets in the charset.
+	 */
+	public static byte[] encode(CharSequence string, Charset charset) {
+		if (ASCII.equals(charset)) {
+			return encodeAscii(string);
+		}
+		Coders threadCoders = coders.get();
+		CharsetEncoder encoder = threadCoders.getEncoder(charset);
+		int capacity = (int) (string.length() * encoder.maxBytesPerChar()) + 4;
+		if (threadCoders.bytes.capacity() < capacity) {
+			threadCoders.bytes = java.nio.ByteBuffer.allocate(capacity);
+		}
+		java.nio.ByteBuffer bytes = threadCoders.bytes;
+		bytes.clear();
+		encoder.reset();
+		CharBuffer chars = CharBuffer.wrap(string);
+		CoderResult result = encoder.encode(chars, bytes, true);
+		if (result.isUnderflow()) {
+			result = encoder.flush(bytes);
+		}
+		if (!result.isUnderflow()) {
+			// the capacity is enough for all the known charsets
+			try {
+				java.nio.ByteBuffer encoded = encoder.reset().encode(CharBuffer.wrap(string));
+				byte[] data = new byte[encoded.remaining()];
+				encoded.get(data);
+				return data;
+			} catch (CharacterCodingException e) {
+				throw new Error("Encoder replaces malformed input");
+			}
+		}
+		byte[] data = new byte[bytes.position()];
+		System.arraycopy(bytes.array(), 0, data, 0, data.length);
+		return data;
+	}
+
+	/**
+	 * Converts the octets in the encoding to a string.
+	 *
+	 * @exception UnsupportedEncodingException if the charset isn't available
+	 */
+	public static String decode(byte[] data, int offset, int length, String encoding)
+		throws UnsupportedEncodingException {
+		return decode(data, offset, length, getCharset(encoding));
+	}
+
+	/**
+	 * Converts the octets in the charset to a string.
+	 */
+	public static String decode(byte[] data, int offset, int length, Charset charset) {
+		if (ASCII.equals(charset)) {
+			return decodeAscii(data, offset, length);
+		}
+		Coders threadCoders = coders.get();
+		CharsetDecoder decoder = threadCoders.getDecoder(charset);
+		int capacity = (int) (length * decoder.maxCharsPerByte()) + 4;
+		if (threadCoders.chars.capacity() < capacity) {
+			threadCoders.chars = CharBuffer.allocate(capacity);
+		}
+		CharBuffer chars = threadCoders.chars;
+		chars.clear();
+		decoder.reset();
+		CoderResult result = decoder.decode(java.nio.ByteBuffer.wrap(data, offset, length), chars, true);
+		if (result.isUnderflow()) {
+			result = decoder.flush(chars);
+		}
+		if (!result.isUnderflow()) {
+			try {
+				return decoder.reset().decode(java.nio.ByteBuffer.wrap(data, offset, length)).toString();
+			} catch (CharacterCodingException e) {
+				throw new Error("Decoder replaces malformed input");
+			}
+		}
+		return new String(chars.array(), 0, chars.position());
+	}
+
+	/**
+	 * Converts the string to ASCII octets, characters out of ASCII
+	 * and surrogate pairs are replaced by '?'.
+	 */
+	public static byte[] encodeAscii(CharSequence string) {
+		int length = string.length();
+		byte[] data = new byte[length];
+		int pos = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = string.charAt(i);
+			if (ch < 0x80) {
+				data[pos++] = (byte) ch;
+			} else {
+				data[pos++] = '?';
+				if (Character.isHighSurrogate(ch) && (i + 1 < length) && Character.isLowSurrogate(string.charAt(i + 1))) {
+					i++;
+				}
+			}
+		}
+		if (pos < length) {
+			byte[] result = new byte[pos];
+			System.arraycopy(data, 0, result, 0, pos);
+			return result;
+		}
+		return data;
+	}
+
+	/**
+	 * Converts ASCII octets to a string, octets out of ASCII are replaced
+	 * by U+FFFD.
+	 */
+	public static String decodeAscii(byte[] data, int offset, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			byte b = data[offset + i];
+			chars[i] = b >= 0 ? (char) b : ASCII_REPLACEMENT;
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,432 @@
+package org.smpp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.smpp.Data;
+
+/**
+ * Store correlating message ids from <code>submit_sm_resp</code> with
+ * the application's data until the delivery receipt arrives.
+ * <p>
+ * The entries are kept out of the Java heap, in a direct buffer or in
+ * a memory-mapped file, so millions of them cost no garbage collection.
+ * The store is a linear probing hash table with slots of fixed size:
+ * each holds a message id of at most <code>maxKeyLength</code> octets,
+ * its expiry time and a payload of <code>payloadSize</code> octets
+ * chosen by the application, e.g. an internal message id. Removed
+ * entries are filled by shifting the following entries back, so there
+ * are no deleted markers. Entries older than their time to live are
+ * treated as missing and are removed by <code>purge</code>, which is
+ * also called when the store is full, but only once an entry may have
+ * expired, so a store full of live entries refuses new ones at once.
+ * <p>
+ * Lookups and removals don't create any objects; the receipt path can
+ * use the octets of <code>DeliveryReceipt</code>:
+ * <pre>
+ * int length = receipt.getMessageId(key, 0);
+ * if (store.remove(key, 0, length, payload, 0)) {
+ *     ...
+ * }
+ * </pre>
+ * A store backed by a file keeps the entries over a restart if it's
+ * reopened with the same parameters. All the methods are synchronized.
+ *
+ * @see org.smpp.pdu.DeliveryReceipt#getMessageId(byte[],int)
+ */
+public class CorrelationStore {
+	/** Default maximal length of message id, as given by SMPP. */
+	public static final int DEFAULT_MAX_KEY_LENGTH = Data.SM_MSGID_LEN;
+
+	private static final int MAGIC = 0x534d4343;
+	private static final int HEADER_SIZE = 32;
+
+	private static final int USED = 0;
+	private static final int KEY_LENGTH = 1;
+	private static final int HASH = 2;
+	private static final int EXPIRY = 6;
+	private static final int KEY = 14;
+
+	private final java.nio.ByteBuffer buffer;
+	private final int slots;
+	private final int mask;
+	private final int maxEntries;
+	private final int maxKeyLength;
+	private final int payloadSize;
+	private final int slotSize;
+	private final byte[] scratch;
+
+	private int size = 0;
+	private long expiredCount = 0;
+
+	/**
+	 * No entry expires before this time; it's lower than the actual
+	 * earliest expiry after the entry expiring first was removed
+	 * or replaced.
+	 */
+	private long nextExpiry = Long.MAX_VALUE;
+
+	/**
+	 * Creates a store in a direct buffer with the default maximal key length.
+	 *
+	 * @param capacity    the number of entries the store holds
+	 * @param payloadSize the size of the payload of the entries in octets
+	 */
+	public CorrelationStore(int capacity, int payloadSize) {
+		this(capacity, DEFAULT_MAX_KEY_LENGTH, payloadSize);
+	}
+
+	/**
+	 * Creates a store in a direct buffer.
+	 *
+	 * @param capacity     the number of entries the store holds
+	 * @param maxKeyLength the maximal length of the message ids in octets
+	 * @param payloadSize  the size of the payload of the entries in octets
+	 */
+	public CorrelationStore(int capacity, int maxKeyLength, int payloadSize) {
+		this.maxKeyLength = maxKeyLength;
+		this.payloadSize = payloadSize;
+		this.slotSize = KEY + maxKeyLength + payloadSize;
+		this.slots = tableSize(capacity, maxKeyLength, slotSize);
+		this.mask = slots - 1;
+		this.maxEntries = capacity;
+		this.scratch = new byte[maxKeyLength];
+		this.buffer = java.nio.ByteBuffer.allocateDirect(HEADER_SIZE + slots * slotSize);
+	}
+
+	/**
+	 * Opens a store in a memory-mapped file. If the file was created
+	 * with the same parameters, its entries are kept, otherwise it's
+	 * cleared.
+	 *
+	 * @param file         the file of the store
+	 * @param capacity     the number of entries the store holds
+	 * @param maxKeyLength the maximal length of the message ids in octets
+	 * @param payloadSize  the size of the payload of the entries in octets
+	 * @exception IOException if the file can't be mapped
+	 */
+	public CorrelationStore(File file, int capacity, int maxKeyLength, int payloadSize) throws IOException {
+		this.maxKeyLength = maxKeyLength;
+		this.payloadSize = payloadSize;
+		this.slotSize = KEY + maxKeyLength + payloadSize;
+		this.slots = tableSize(capacity, maxKeyLength, slotSize);
+		this.mask = slots - 1;
+		this.maxEntries = capacity;
+		this.scratch = new byte[maxKeyLength];
+		int length = HEADER_SIZE + slots * slotSize;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		MappedByteBuffer mapped;
+		try {
+			boolean fresh = raf.length() == 0;
+			boolean compatible = raf.length() == length;
+			mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			compatible = compatible && (mapped.getInt(0) == MAGIC) && (mapped.getInt(4) == slots)
+				&& (mapped.getInt(8) == maxKeyLength) && (mapped.getInt(12) == payloadSize);
+			if (compatible) {
+				for (int i = 0; i < slots; i++) {
+					int pos = HEADER_SIZE + i * slotSize;
+					if (mapped.get(pos + USED) != 0) {
+						size++;
+						nextExpiry = Math.min(nextExpiry, mapped.getLong(pos + EXPIRY));
+					}
+				}
+			} else {
+				// a new file is filled with zeros already
+				for (int i = 0; !fresh && (i < length); i++) {
+					mapped.put(i, (byte) 0);
+				}
+				mapped.putInt(0, MAGIC);
+				mapped.putInt(4, slots);
+				mapped.putInt(8, maxKeyLength);
+				mapped.putInt(12, payloadSize);
+			}
+		} finally {
+			raf.close();
+		}
+		this.buffer = mapped;
+	}
+
+	private static int tableSize(int capacity, int maxKeyLength, int slotSize) {
+		if ((capacity < 1) || (maxKeyLength < 1) || (maxKeyLength > 255) || (slotSize <= KEY + maxKeyLength)) {
+			throw new IllegalArgumentException("Invalid capacity or sizes");
+		}
+		// at most 3/4 full
+		long wanted = (long) capacity * 4 / 3 + 1;
+		long slots = Long.highestOneBit(wanted);
+		if (slots < wanted) {
+			slots <<= 1;
+		}
+		if (HEADER_SIZE + slots * slotSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Capacity " + capacity + " too big for one store");
+		}
+		return (int) slots;
+	}
+
+	/**
+	 * Adds the entry or replaces the entry with the same message id.
+	 *
+	 * @param messageId the message id, characters are taken as octets
+	 * @param payload   the array with <code>payloadSize</code> octets
+	 *                  of the payload
+	 * @param offset    the offset of the payload in the array
+	 * @param ttl       how long to keep the entry in milliseconds,
+	 *                  0 to keep it until it's removed
+	 * @return <code>false</code> if the store is full
+	 */
+	public synchronized boolean put(CharSequence messageId, byte[] payload, int offset, long ttl) {
+		int length = toScratch(messageId);
+		return put(scratch, 0, length, payload, offset, ttl);
+	}
+
+	/**
+	 * Adds the entry or replaces the entry with the same message id.
+	 *
+	 * @see #put(CharSequence,byte[],int,long)
+	 */
+	public synchronized boolean put(byte[] key, int keyOffset, int keyLength, byte[] payload, int offset, long ttl) {
+		checkKey(keyLength);
+		long now = System.currentTimeMillis();
+		int hash = hash(key, keyOffset, keyLength);
+		int slot = find(key, keyOffset, keyLength, hash);
+		if (slot < 0) {
+			// nothing to purge before the earliest expiry
+			if ((size >= maxEntries) && ((now < nextExpiry) || (purge(now) == 0))) {
+				return false;
+			}
+			slot = hash & mask;
+			while (buffer.get(position(slot) + USED) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			size++;
+		}
+		int pos = position(slot);
+		buffer.put(pos + USED, (byte) 1);
+		buffer.put(pos + KEY_LENGTH, (byte) keyLength);
+		buffer.putInt(pos + HASH, hash);
+		long expiry = ttl > 0 ? now + ttl : Long.MAX_VALUE;
+		buffer.putLong(pos + EXPIRY, expiry);
+		nextExpiry = Math.min(nextExpiry, expiry);
+		for (int i = 0; i < keyLength; i++) {
+			buffer.put(pos + KEY + i, key[keyOffset + i]);
+		}
+		pos += KEY + maxKeyLength;
+		for (int i = 0; i < payloadSize; i++) {
+			buffer.put(pos + i, payload[offset + i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the payload of the entry with the message id to the array.
+	 *
+	 * @return <code>false</code> if there's no such entry or it expired
+	 */
+	public synchronized boolean get(CharSequence messageId, byte[] payload, int offset) {
+		int length = toScratch(messageId);
+		return get(scratch, 0, length, payload, offset);
+	}
+
+	/**
+	 * Copies the payload of the entry with the message id to the array.
+	 *
+	 * @see #get(CharSequence,byte[],int)
+	 */
+	public synchronized boolean get(byte[] key, int keyOffset, int keyLength, byte[] payload, int offset) {
+		int slot = findLive(key, keyOffset, keyLength);
+		if (slot < 0) {
+			return false;
+		}
+		copyPayload(slot, payload, offset);
+		return true;
+	}
+
+	/**
+	 * Removes the entry with the message id and copies its payload
+	 * to the array.
+	 *
+	 * @param payload the array for the payload, can be <code>null</code>
+	 * @return <code>false</code> if there's no such entry or it expired
+	 */
+	public synchronized boolean remove(CharSequence messageId, byte[] payload, int offset) {
+		int length = toScratch(messageId);
+		return remove(scratch, 0, length, payload, offset);
+	}
+
+	/**
+	 * Removes the entry with the message id and copies its payload
+	 * to the array.
+	 *
+	 * @see #remove(CharSequence,byte[],int)
+	 */
+	public synchronized boolean remove(byte[] key, int keyOffset, int keyLength, byte[] payload, int offset) {
+		int slot = findLive(key, keyOffset, keyLength);
+		if (slot < 0) {
+			return false;
+		}
+		if (payload != null) {
+			copyPayload(slot, payload, offset);
+		}
+		delete(slot);
+		return true;
+	}
+
+	/**
+	 * Removes the expired entries.
+	 *
+	 * @return the number of entries removed
+	 */
+	public synchronized int purge() {
+		return purge(System.currentTimeMillis());
+	}
+
+	private int purge(long now) {
+		int removed = 0;
+		long earliest = Long.MAX_VALUE;
+		int slot = 0;
+		while (slot < slots) {
+			int pos = position(slot);
+			if (buffer.get(pos + USED) == 0) {
+				slot++;
+				continue;
+			}
+			long expiry = buffer.getLong(pos + EXPIRY);
+			if (expiry <= now) {
+				// the slot is filled by a following entry, check it again
+				delete(slot);
+				removed++;
+			} else {
+				earliest = Math.min(earliest, expiry);
+				slot++;
+			}
+		}
+		nextExpiry = earliest;
+		expiredCount += removed;
+		return removed;
+	}
+
+	/** Returns the number of entries including the expired ones not purged yet. */
+	public synchronized int size() {
+		return size;
+	}
+
+	/** Returns the number of entries the store holds. */
+	public int getCapacity() {
+		return maxEntries;
+	}
+
+	/** Returns the number of entries removed by <code>purge</code>. */
+	public synchronized long getExpiredCount() {
+		return expiredCount;
+	}
+
+	/**
+	 * Writes the entries of a store backed by a file to the disk.
+	 */
+	public synchronized void force() {
+		if (buffer instanceof MappedByteBuffer) {
+			((MappedByteBuffer) buffer).force();
+		}
+	}
+
+	private int position(int slot) {
+		return HEADER_SIZE + slot * slotSize;
+	}
+
+	private void checkKey(int keyLength) {
+		if ((keyLength < 0) || (keyLength > maxKeyLength)) {
+			throw new IllegalArgumentException("Invalid message id length " + keyLength);
+		}
+	}
+
+	private int toScratch(CharSequence messageId) {
+		int length = messageId.length();
+		checkKey(length);
+		for (int i = 0; i < length; i++) {
+			scratch[i] = (byte) messageId.charAt(i);
+		}
+		return length;
+	}
+
+	private static int hash(byte[] key, int offset, int length) {
+		int hash = 0x811c9dc5;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ (key[i] & 0xff)) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Returns the slot with the key, -1 if there's none.
+	 */
+	private int find(byte[] key, int offset, int length, int hash) {
+		int slot = hash & mask;
+		while (true) {
+			int pos = position(slot);
+			if (buffer.get(pos + USED) == 0) {
+				return -1;
+			}
+			if ((buffer.getInt(pos + HASH) == hash) && (buffer.get(pos + KEY_LENGTH) == (byte) length)
+				&& keyEquals(pos + KEY, key, offset, length)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int findLive(byte[] key, int offset, int length) {
+		checkKey(length);
+		int slot = find(key, offset, length, hash(key, offset, length));
+		if ((slot >= 0) && (buffer.getLong(position(slot) + EXPIRY) <= System.currentTimeMillis())) {
+			return -1;
+		}
+		return slot;
+	}
+
+	private boolean keyEquals(int pos, byte[] key, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(pos + i) != key[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void copyPayload(int slot, byte[] payload, int offset) {
+		int pos = position(slot) + KEY + maxKeyLength;
+		for (int i = 0; i < payloadSize; i++) {
+			payload[offset + i] = buffer.get(pos + i);
+		}
+	}
+
+	/**
+	 * Empties the slot and moves back the following entries which
+	 * would not be found otherwise.
+	 */
+	private void delete(int slot) {
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (buffer.get(position(next) + USED) != 0) {
+			int home = buffer.getInt(position(next) + HASH) & mask;
+			// move the entry if its home isn't cyclically within (hole, next]
+			boolean movable = hole <= next ? (home <= hole) || (home > next) : (home <= hole) && (home > next);
+			if (movable) {
+				copySlot(next, hole);
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		buffer.put(position(hole) + USED, (byte) 0);
+		size--;
+	}
+
+	private void copySlot(int from, int to) {
+		int src = position(from);
+		int dest = position(to);
+		for (int i = 0; i < slotSize; i++) {
+			buffer.put(dest + i, buffer.get(src + i));
+		}
+	}
+}
@@ -40,4 +40,20 @@ public class DataCodingCharsetHandler {
 		String encoding = DATA_CODING_CHARSET.get(dataCoding);
 		return encoding != null ? encoding : defaultEncoding;
 	}
+
+	/**
+	 * Return the correct charset given the <code>data_coding</code> parameter,
+	 * with the GSM 7-bit alphabet either packed or unpacked. Which one is used
+	 * isn't given by the <code>data_coding</code>, it must be agreed with the SMSC.
+	 * If none is found it defaults to the GSM 7-bit alphabet.
+	 *
+	 * @param dataCoding
+	 * @param packed if <code>Data.ENC_GSM7BIT_PACKED</code> is returned
+	 *               instead of <code>Data.ENC_GSM7BIT</code>
+	 * @return encoding name
+	 */
+	public static String getCharsetName(byte dataCoding, boolean packed) {
+		String encoding = getCharsetName(dataCoding);
+		return packed && Data.ENC_GSM7BIT.equals(encoding) ? Data.ENC_GSM7BIT_PACKED : encoding;
+	}
 }
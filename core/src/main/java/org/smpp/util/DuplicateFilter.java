@@ -0,0 +1,240 @@
+package org.smpp.util;
+
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.pdu.Address;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.ValueNotSetException;
+
+/**
+ * Listener which suppresses <code>deliver_sm</code> PDUs retransmitted by
+ * the SMSC, e.g. because the response was late. It's put in front of the
+ * application's listener when binding:
+ * <pre>
+ * session.bind(request, new DuplicateFilter(session, listener));
+ * </pre>
+ * A <code>deliver_sm</code> is a duplicate if one with the same source
+ * and destination addresses, short message or message payload
+ * and <code>receipted_message_id</code> was received within the window.
+ * The PDUs are compared by a 64-bit hash of these fields only.
+ * Duplicates are acknowledged by the filter and don't reach the listener;
+ * all the other PDUs are passed unchanged.
+ * <p>
+ * The hashes are kept in two open addressing tables of primitive
+ * <code>long</code>s: new hashes go to the current table, which becomes
+ * the previous one after half the window or when it's half full, so
+ * a PDU is remembered for at least half the window and at most the whole
+ * window, and the memory is bounded by the capacity.
+ * <p>
+ * A PDU is remembered when it arrives, so a retransmission is suppressed
+ * even if the listener didn't respond to the original.
+ *
+ * @see #setWindow(long)
+ */
+public class DuplicateFilter extends SmppObject implements ServerPDUEventListener {
+	/** Default time in milliseconds a PDU is remembered for. */
+	public static final long DEFAULT_WINDOW = 60000;
+
+	/** Default number of PDUs remembered in each half of the window. */
+	public static final int DEFAULT_CAPACITY = 65536;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Session session;
+	private final ServerPDUEventListener listener;
+	private long window = DEFAULT_WINDOW;
+	private int maxEntries;
+
+	/** The tables, guarded by this filter; zero marks a free slot. */
+	private long[] current;
+	private long[] previous;
+	private int currentSize = 0;
+	private long rotated = System.currentTimeMillis();
+	private long duplicateCount = 0;
+
+	/**
+	 * Creates a filter with the default capacity.
+	 *
+	 * @see #DuplicateFilter(Session,ServerPDUEventListener,int)
+	 */
+	public DuplicateFilter(Session session, ServerPDUEventListener listener) {
+		this(session, listener, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a filter passing the PDUs which aren't duplicates to the listener.
+	 *
+	 * @param session  the session used to acknowledge the duplicates,
+	 *                 if null, <code>acknowledge</code> must be overridden
+	 * @param listener the listener of the application
+	 * @param capacity how many PDUs are remembered in each half of the window
+	 */
+	public DuplicateFilter(Session session, ServerPDUEventListener listener, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		this.session = session;
+		this.listener = listener;
+		int size = Integer.highestOneBit(capacity) << 1;
+		if (size < capacity * 2) {
+			size <<= 1;
+		}
+		this.maxEntries = size / 2;
+		this.current = new long[size];
+		this.previous = new long[size];
+	}
+
+	/**
+	 * Sets how long the PDUs are remembered.
+	 */
+	public synchronized void setWindow(long window) {
+		this.window = window;
+	}
+
+	public synchronized long getWindow() {
+		return window;
+	}
+
+	/** Returns the number of duplicates suppressed. */
+	public synchronized long getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	public void handleEvent(ServerPDUEvent received) {
+		PDU pdu = received.getPDU();
+		if (pdu instanceof DeliverSM) {
+			if (isDuplicate(hash((DeliverSM) pdu), System.currentTimeMillis())) {
+				debug.write(DUTL, "duplicate filter: suppressed " + pdu.debugString());
+				acknowledge(received, (DeliverSM) pdu);
+				return;
+			}
+		}
+		listener.handleEvent(received);
+	}
+
+	/**
+	 * Responds to the duplicate PDU. Override if the filter was created
+	 * without session.
+	 */
+	protected void acknowledge(ServerPDUEvent received, Request duplicate) {
+		try {
+			session.respond(duplicate.getResponse());
+		} catch (Exception e) {
+			event.write(e, "duplicate filter: acknowledging duplicate");
+		}
+	}
+
+	/**
+	 * Returns if the hash was seen within the window and remembers it.
+	 */
+	synchronized boolean isDuplicate(long hash, long now) {
+		if (hash == 0) {
+			hash = 1;
+		}
+		if (now - rotated >= window) {
+			// nothing in either table is in the window
+			clear(previous);
+			clear(current);
+			currentSize = 0;
+			rotated = now;
+		} else if ((now - rotated >= window / 2) || (currentSize >= maxEntries)) {
+			long[] table = previous;
+			previous = current;
+			current = table;
+			clear(current);
+			currentSize = 0;
+			rotated = now;
+		}
+		if (contains(previous, hash)) {
+			duplicateCount++;
+			return true;
+		}
+		int mask = current.length - 1;
+		int i = spread(hash) & mask;
+		while (current[i] != 0) {
+			if (current[i] == hash) {
+				duplicateCount++;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		current[i] = hash;
+		currentSize++;
+		return false;
+	}
+
+	private static boolean contains(long[] table, long hash) {
+		int mask = table.length - 1;
+		int i = spread(hash) & mask;
+		while (table[i] != 0) {
+			if (table[i] == hash) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	private static int spread(long hash) {
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	private static void clear(long[] table) {
+		java.util.Arrays.fill(table, 0L);
+	}
+
+	/**
+	 * Returns the FNV-1a hash of the fields identifying the PDU.
+	 */
+	static long hash(DeliverSM deliver) {
+		long hash = FNV_OFFSET;
+		hash = hash(hash, deliver.getSourceAddr());
+		hash = hash(hash, deliver.getDestAddr());
+		byte[] message = deliver.getShortMessageData().getBuffer();
+		if ((message == null || message.length == 0) && deliver.hasMessagePayload()) {
+			try {
+				message = deliver.getMessagePayload().getBuffer();
+			} catch (ValueNotSetException e) {
+				// checked by hasMessagePayload
+			}
+		}
+		if (message != null) {
+			for (int i = 0; i < message.length; i++) {
+				hash = (hash ^ (message[i] & 0xff)) * FNV_PRIME;
+			}
+		}
+		hash = (hash ^ 0x100) * FNV_PRIME;
+		if (deliver.hasReceiptedMessageId()) {
+			try {
+				hash = hash(hash, deliver.getReceiptedMessageId());
+			} catch (ValueNotSetException e) {
+				// checked by hasReceiptedMessageId
+			}
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, Address address) {
+		if (address == null) {
+			return (hash ^ 0x100) * FNV_PRIME;
+		}
+		hash = (hash ^ (address.getTon() & 0xff)) * FNV_PRIME;
+		hash = (hash ^ (address.getNpi() & 0xff)) * FNV_PRIME;
+		return hash(hash, address.getAddress());
+	}
+
+	private static long hash(long hash, String string) {
+		if (string != null) {
+			for (int i = 0; i < string.length(); i++) {
+				hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+			}
+		}
+		// separates the fields, no character is mixed as 0x10000
+		return (hash ^ 0x10000) * FNV_PRIME;
+	}
+}
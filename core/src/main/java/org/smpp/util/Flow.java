@@ -0,0 +1,68 @@
+package org.smpp.util;
+
+/**
+ * Interfaces of the Reactive Streams protocol, declared the same way as in
+ * <code>java.util.concurrent.Flow</code> which isn't available before
+ * Java 9; adapting them to the Java 9 or Reactive Streams interfaces is
+ * a matter of delegating each method.
+ * <p>
+ * A <code>Publisher</code> passes items to a <code>Subscriber</code> only
+ * as many as the subscriber requested through its
+ * <code>Subscription</code>, so a slow subscriber slows down the source
+ * instead of items being buffered.
+ *
+ * @see org.smpp.PDUPublisher
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * Source of items passed to subscribers on their demand.
+	 *
+	 * @param <T> the type of the items
+	 */
+	public static interface Publisher<T> {
+		/**
+		 * Adds the subscriber; its <code>onSubscribe</code> is called
+		 * with a new subscription, or <code>onError</code> if the
+		 * subscription is refused.
+		 */
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receiver of the items. The methods are called serially, never
+	 * concurrently, for one subscription.
+	 *
+	 * @param <T> the type of the items
+	 */
+	public static interface Subscriber<T> {
+		/** Called first, with the subscription to request the items through. */
+		public void onSubscribe(Subscription subscription);
+
+		/** Called with the next item, at most as many times as requested. */
+		public void onNext(T item);
+
+		/** Called when the publisher failed, no other method is called afterwards. */
+		public void onError(Throwable throwable);
+
+		/** Called when there are no more items, no other method is called afterwards. */
+		public void onComplete();
+	}
+
+	/**
+	 * Link between a publisher and a subscriber.
+	 */
+	public static interface Subscription {
+		/**
+		 * Adds <code>n</code> items to the demand of the subscriber.
+		 * Values less than one are reported by <code>onError</code>.
+		 */
+		public void request(long n);
+
+		/** Stops passing items to the subscriber, eventually. */
+		public void cancel();
+	}
+}
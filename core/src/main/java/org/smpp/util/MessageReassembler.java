@@ -0,0 +1,518 @@
+package org.smpp.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.smpp.Connection;
+import org.smpp.Data;
+import org.smpp.Receiver;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.pdu.DataSM;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.ValueNotSetException;
+
+/**
+ * Listener which reassembles concatenated messages received in several
+ * <code>deliver_sm</code> or <code>data_sm</code> PDUs before passing them
+ * to another listener. It is put in front of the application's listener
+ * when binding:
+ * <pre>
+ * session.bind(request, new MessageReassembler(session, listener));
+ * </pre>
+ * Segments are recognised by the concatenation information element
+ * with 8-bit or 16-bit reference number in the user data header
+ * (the UDHI flag set in the <code>esm_class</code>) or by the
+ * <code>sar_</code> optional parameters. Segments of one message are
+ * grouped by the source address, the destination address, the reference
+ * number and the number of segments. When the last segment arrives,
+ * the listener gets one <code>AssembledEvent</code> with the first segment
+ * and the concatenated user data of all the segments without the user data
+ * headers. All the other PDUs are passed to the listener unchanged.
+ * If the SMSC packs the GSM 7-bit default alphabet, the segments with
+ * the default <code>data_coding</code> are unpacked, so their fill bits
+ * and padding are dropped, and the message is packed again from its
+ * first octet.
+ * <p>
+ * The segments are acknowledged by the reassembler as they arrive, so the
+ * listener must not respond to the PDU of an <code>AssembledEvent</code>.
+ * Until a message is complete only the user data of its segments and the
+ * encoded first segment are kept. The memory used by all incomplete messages
+ * is limited; when the limit is exceeded, the least recently
+ * updated messages are dropped. Messages which aren't completed in time are
+ * dropped as well.
+ *
+ * @see #setMaxBufferedBytes(int)
+ * @see #setTimeout(long)
+ * @see #setPacked(boolean)
+ */
+public class MessageReassembler extends SmppObject implements ServerPDUEventListener {
+	/**
+	 * Default time in milliseconds to wait for the missing segments.
+	 */
+	public static final long DEFAULT_TIMEOUT = 120000;
+
+	/**
+	 * Default limit of the memory used by incomplete messages in bytes.
+	 */
+	public static final int DEFAULT_MAX_BUFFERED_BYTES = 1024 * 1024;
+
+	private static final int IEI_CONCAT_8BIT = 0x00;
+	private static final int IEI_CONCAT_16BIT = 0x08;
+
+	private final Session session;
+	private final ServerPDUEventListener listener;
+	private TimingWheel timingWheel = TimingWheel.getSharedInstance();
+	private long timeout = DEFAULT_TIMEOUT;
+	private int maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+	private boolean packed = false;
+
+	/**
+	 * Incomplete messages in the order of the last update, guarded by itself.
+	 */
+	private final LinkedHashMap<String, Group> groups = new LinkedHashMap<String, Group>(16, 0.75f, true);
+	private int bufferedBytes = 0;
+	private long assembledCount = 0;
+	private long timeoutCount = 0;
+	private long evictedCount = 0;
+
+	/**
+	 * Event passed to the listener when all segments of a message arrived.
+	 * The PDU of the event is the first segment.
+	 */
+	public static class AssembledEvent extends ServerPDUEvent {
+		private static final long serialVersionUID = -2739217398232795012L;
+
+		private final byte[] message;
+		private final int segmentCount;
+
+		public AssembledEvent(Receiver source, Connection connection, PDU pdu, byte[] message, int segmentCount) {
+			super(source, connection, pdu);
+			this.message = message;
+			this.segmentCount = segmentCount;
+		}
+
+		/**
+		 * Returns the user data of all the segments without their user data
+		 * headers, to be decoded according to the <code>data_coding</code>
+		 * of the first segment.
+		 */
+		public byte[] getMessage() {
+			return message;
+		}
+
+		public int getSegmentCount() {
+			return segmentCount;
+		}
+	}
+
+	/**
+	 * The segment information of a received PDU.
+	 */
+	private static class Segment {
+		int reference;
+		int total;
+		int seqnum;
+		byte[] userData;
+		int headerLength = 0;
+		boolean septets = false;
+	}
+
+	/**
+	 * Segments of one message received so far.
+	 */
+	private class Group extends TimingWheel.Timeout {
+		final String key;
+		final byte[][] parts;
+		byte[] first = null;
+		boolean septets = false;
+		int received = 0;
+		int size = 0;
+
+		Group(String key, int total) {
+			this.key = key;
+			this.parts = new byte[total][];
+		}
+
+		protected void expired() {
+			synchronized (groups) {
+				if (groups.get(key) != this) {
+					return;
+				}
+				remove(this);
+				timeoutCount++;
+			}
+			debug.write(DUTL, "reassembler: message " + key + " timed out with " + received + " of " + parts.length + " segments");
+		}
+	}
+
+	/**
+	 * Creates a reassembler passing the messages to the listener.
+	 *
+	 * @param session  the session used to acknowledge the segments,
+	 *                 if null, <code>acknowledge</code> must be overridden
+	 * @param listener the listener of the application
+	 */
+	public MessageReassembler(Session session, ServerPDUEventListener listener) {
+		this.session = session;
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets how long to wait for the missing segments of a message
+	 * after its first segment arrived.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the limit of the memory used by incomplete messages, counted as
+	 * the length of the user data of their segments plus the length
+	 * of their encoded first segments.
+	 */
+	public void setMaxBufferedBytes(int maxBufferedBytes) {
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	public int getMaxBufferedBytes() {
+		return maxBufferedBytes;
+	}
+
+	/**
+	 * Sets if the SMSC packs the GSM 7-bit alphabet, i.e. 160 characters
+	 * in 140 octets, or sends one character per octet. The default is unpacked.
+	 */
+	public void setPacked(boolean packed) {
+		this.packed = packed;
+	}
+
+	public boolean isPacked() {
+		return packed;
+	}
+
+	/**
+	 * Sets the timing wheel used for the timeouts, the shared instance by default.
+	 */
+	public void setTimingWheel(TimingWheel timingWheel) {
+		this.timingWheel = timingWheel;
+	}
+
+	public void handleEvent(ServerPDUEvent event) {
+		PDU pdu = event.getPDU();
+		Segment segment = pdu == null ? null : getSegment(pdu, packed);
+		if (segment == null) {
+			listener.handleEvent(event);
+			return;
+		}
+		byte[] first = null;
+		if (segment.seqnum == 1) {
+			try {
+				first = pdu.getData().getBuffer();
+			} catch (ValueNotSetException e) {
+				listener.handleEvent(event);
+				return;
+			}
+		}
+		acknowledge(event, (Request) pdu);
+		String key = getKey(pdu, segment);
+		Group complete = null;
+		synchronized (groups) {
+			Group group = groups.get(key);
+			if (group == null) {
+				group = new Group(key, segment.total);
+				groups.put(key, group);
+				timingWheel.schedule(group, timeout);
+			}
+			int index = segment.seqnum - 1;
+			if (group.parts[index] != null) {
+				debug.write(DUTL, "reassembler: duplicate segment " + segment.seqnum + " of message " + key);
+				return;
+			}
+			group.parts[index] = segment.userData;
+			group.septets |= segment.septets;
+			group.received++;
+			if (first != null) {
+				group.first = first;
+			}
+			int size = segment.userData.length + (first == null ? 0 : first.length);
+			group.size += size;
+			bufferedBytes += size;
+			if (group.received == group.parts.length) {
+				remove(group);
+				assembledCount++;
+				complete = group;
+			} else {
+				evict();
+			}
+		}
+		if (complete != null) {
+			deliver(event, complete);
+		}
+	}
+
+	/**
+	 * Acknowledges a received segment. The default implementation sends
+	 * the default response to the segment through the session.
+	 */
+	protected void acknowledge(ServerPDUEvent received, Request segment) {
+		try {
+			session.respond(segment.getResponse());
+		} catch (Exception e) {
+			event.write(e, "reassembler: acknowledging segment");
+		}
+	}
+
+	private void deliver(ServerPDUEvent received, Group group) {
+		int length = 0;
+		for (int i = 0; i < group.parts.length; i++) {
+			length += group.parts[i].length;
+		}
+		byte[] message = new byte[length];
+		int offset = 0;
+		for (int i = 0; i < group.parts.length; i++) {
+			System.arraycopy(group.parts[i], 0, message, offset, group.parts[i].length);
+			offset += group.parts[i].length;
+		}
+		if (group.septets) {
+			message = pack(message);
+		}
+		PDU first;
+		try {
+			first = PDU.createPDU(new ByteBuffer(group.first));
+		} catch (PDUException e) {
+			event.write(e, "reassembler: parsing the first segment");
+			return;
+		}
+		listener.handleEvent(
+			new AssembledEvent(received.getReceiver(), received.getConnection(), first, message, group.parts.length));
+	}
+
+	/**
+	 * Drops the least recently updated messages until the buffered bytes fit
+	 * into the limit. Called with the lock held.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Group>> entries = groups.entrySet().iterator();
+		while ((bufferedBytes > maxBufferedBytes) && entries.hasNext()) {
+			Group group = entries.next().getValue();
+			entries.remove();
+			group.cancel();
+			bufferedBytes -= group.size;
+			evictedCount++;
+			debug.write(DUTL, "reassembler: message " + group.key + " evicted with " + group.received + " of " + group.parts.length + " segments");
+		}
+	}
+
+	/**
+	 * Called with the lock held.
+	 */
+	private void remove(Group group) {
+		groups.remove(group.key);
+		group.cancel();
+		bufferedBytes -= group.size;
+	}
+
+	private static String getKey(PDU pdu, Segment segment) {
+		String source;
+		String dest;
+		if (pdu instanceof DeliverSM) {
+			source = ((DeliverSM) pdu).getSourceAddr().getAddress();
+			dest = ((DeliverSM) pdu).getDestAddr().getAddress();
+		} else {
+			source = ((DataSM) pdu).getSourceAddr().getAddress();
+			dest = ((DataSM) pdu).getDestAddr().getAddress();
+		}
+		return source + "/" + dest + "/" + segment.reference + "/" + segment.total;
+	}
+
+	/**
+	 * Returns the segment information of the PDU or null if it isn't
+	 * a segment of a concatenated message.
+	 */
+	private static Segment getSegment(PDU pdu, boolean packed) {
+		byte esmClass;
+		byte dataCoding;
+		byte[] userData;
+		Segment segment;
+		try {
+			if (pdu instanceof DeliverSM) {
+				DeliverSM deliver = (DeliverSM) pdu;
+				esmClass = deliver.getEsmClass();
+				dataCoding = deliver.getDataCoding();
+				userData = deliver.hasMessagePayload()
+					? deliver.getMessagePayload().getBuffer()
+					: deliver.getShortMessageData().getBuffer();
+				segment = new Segment();
+				if (deliver.hasSarMsgRefNum() && deliver.hasSarTotalSegments() && deliver.hasSarSegmentSeqnum()) {
+					segment.reference = deliver.getSarMsgRefNum() & 0xffff;
+					segment.total = deliver.getSarTotalSegments();
+					segment.seqnum = deliver.getSarSegmentSeqnum();
+				}
+			} else if (pdu instanceof DataSM) {
+				DataSM data = (DataSM) pdu;
+				esmClass = data.getEsmClass();
+				dataCoding = data.getDataCoding();
+				userData = data.hasMessagePayload() ? data.getMessagePayload().getBuffer() : null;
+				segment = new Segment();
+				if (data.hasSarMsgRefNum() && data.hasSarTotalSegments() && data.hasSarSegmentSeqnum()) {
+					segment.reference = data.getSarMsgRefNum() & 0xffff;
+					segment.total = data.getSarTotalSegments();
+					segment.seqnum = data.getSarSegmentSeqnum();
+				}
+			} else {
+				return null;
+			}
+		} catch (PDUException e) {
+			return null;
+		}
+		if (userData == null) {
+			userData = new byte[0];
+		}
+		segment.userData = userData;
+		if ((esmClass & Data.SM_UDH_GSM) != 0) {
+			if (!parseHeader(segment)) {
+				return null;
+			}
+		}
+		if ((segment.total < 2) || (segment.seqnum < 1) || (segment.seqnum > segment.total)) {
+			return null;
+		}
+		if (packed && (dataCoding == MessageSegmenter.DATA_CODING_DEFAULT)) {
+			segment.userData = unpack(segment.userData, Gsm7BitPackedCodec.getFillBits(segment.headerLength));
+			segment.septets = true;
+		}
+		return segment;
+	}
+
+	/**
+	 * Finds the concatenation information element in the user data header
+	 * and strips the header from the user data.
+	 */
+	private static boolean parseHeader(Segment segment) {
+		byte[] data = segment.userData;
+		if (data.length == 0) {
+			return false;
+		}
+		int headerLength = (data[0] & 0xff) + 1;
+		if (headerLength > data.length) {
+			return false;
+		}
+		int offset = 1;
+		while (offset + 2 <= headerLength) {
+			int iei = data[offset] & 0xff;
+			int length = data[offset + 1] & 0xff;
+			offset += 2;
+			if (offset + length > headerLength) {
+				return false;
+			}
+			if ((iei == IEI_CONCAT_8BIT) && (length == 3)) {
+				segment.reference = data[offset] & 0xff;
+				segment.total = data[offset + 1] & 0xff;
+				segment.seqnum = data[offset + 2] & 0xff;
+			} else if ((iei == IEI_CONCAT_16BIT) && (length == 4)) {
+				segment.reference = ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+				segment.total = data[offset + 2] & 0xff;
+				segment.seqnum = data[offset + 3] & 0xff;
+			}
+			offset += length;
+		}
+		byte[] userData = new byte[data.length - headerLength];
+		System.arraycopy(data, headerLength, userData, 0, userData.length);
+		segment.userData = userData;
+		segment.headerLength = headerLength;
+		return true;
+	}
+
+	/**
+	 * Unpacks the septets of a segment to one per octet without the
+	 * carriage return the sender padded the last octet with.
+	 */
+	private static byte[] unpack(byte[] data, int fillBits) {
+		int count = Gsm7BitPackedCodec.getSeptetCount(data.length, fillBits);
+		byte[] septets = new byte[count];
+		Gsm7BitPackedCodec.unpack(data, 0, count, fillBits, septets, 0);
+		if ((count > 0) && ((data.length * 8 - fillBits) % 7 == 0) && (septets[count - 1] == Gsm7BitPackedCodec.CR)) {
+			byte[] unpadded = new byte[count - 1];
+			System.arraycopy(septets, 0, unpadded, 0, unpadded.length);
+			septets = unpadded;
+		}
+		return septets;
+	}
+
+	/**
+	 * Packs the septets of the assembled message, padding the last octet
+	 * with a carriage return if 7 bits are left in it.
+	 */
+	private static byte[] pack(byte[] septets) {
+		int count = septets.length;
+		if ((count * 7) % 8 == 1) {
+			byte[] padded = new byte[count + 1];
+			System.arraycopy(septets, 0, padded, 0, count);
+			padded[count] = Gsm7BitPackedCodec.CR;
+			septets = padded;
+			count++;
+		}
+		byte[] data = new byte[Gsm7BitPackedCodec.getPackedLength(count, 0)];
+		Gsm7BitPackedCodec.pack(septets, 0, count, data, 0, 0);
+		return data;
+	}
+
+	/**
+	 * Returns the number of messages waiting for more segments.
+	 */
+	public int getPendingCount() {
+		synchronized (groups) {
+			return groups.size();
+		}
+	}
+
+	/**
+	 * Returns the memory used by the messages waiting for more segments.
+	 */
+	public int getBufferedBytes() {
+		synchronized (groups) {
+			return bufferedBytes;
+		}
+	}
+
+	/**
+	 * Returns the number of messages passed to the listener.
+	 */
+	public long getAssembledCount() {
+		synchronized (groups) {
+			return assembledCount;
+		}
+	}
+
+	/**
+	 * Returns the number of incomplete messages dropped because
+	 * the missing segments didn't arrive in time.
+	 */
+	public long getTimeoutCount() {
+		synchronized (groups) {
+			return timeoutCount;
+		}
+	}
+
+	/**
+	 * Returns the number of incomplete messages dropped because
+	 * of the limit of the buffered bytes.
+	 */
+	public long getEvictedCount() {
+		synchronized (groups) {
+			return evictedCount;
+		}
+	}
+}
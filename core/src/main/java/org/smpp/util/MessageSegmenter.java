@@ -0,0 +1,385 @@
+package org.smpp.util;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.smpp.Data;
+import org.smpp.charset.Gsm7BitCharset;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.charset.Gsm7BitTransliterator;
+import org.smpp.pdu.Address;
+import org.smpp.pdu.IntegerOutOfRangeException;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.WrongLengthOfStringException;
+
+/**
+ * Splits a text into <code>submit_sm</code> PDUs. The encoding is chosen
+ * from the allowed ones so that the text needs the fewest PDUs, preferring
+ * the GSM 7-bit default alphabet, then Latin-1 and then UCS2 if the counts
+ * are equal. Segments never split an escape sequence of the GSM 7-bit
+ * alphabet or a surrogate pair. If a transliterator is set, the text
+ * is transliterated before the encoding is chosen.
+ * <p>
+ * The segments are concatenated using a user data header with 8-bit
+ * or 16-bit reference numbers, the <code>sar_</code> optional parameters,
+ * or the whole text is sent in the <code>message_payload</code> parameter.
+ * <p>
+ * The settings should be made before the segmenter is shared, segmenting
+ * itself is thread safe.
+ */
+public class MessageSegmenter {
+	/** Concatenation using a user data header with 8-bit reference number. */
+	public static final int CONCAT_UDH8 = 1;
+	/** Concatenation using a user data header with 16-bit reference number. */
+	public static final int CONCAT_UDH16 = 2;
+	/** Concatenation using the <code>sar_</code> optional parameters. */
+	public static final int CONCAT_SAR = 3;
+	/** The text is sent in one PDU in the <code>message_payload</code> parameter. */
+	public static final int CONCAT_PAYLOAD = 4;
+
+	/** The <code>data_coding</code> of the GSM 7-bit default alphabet. */
+	public static final byte DATA_CODING_DEFAULT = 0x00;
+	/** The <code>data_coding</code> of Latin-1 (ISO-8859-1). */
+	public static final byte DATA_CODING_LATIN1 = 0x03;
+	/** The <code>data_coding</code> of UCS2. */
+	public static final byte DATA_CODING_UCS2 = 0x08;
+
+	/** The maximal number of segments of a concatenated message. */
+	public static final int MAX_SEGMENTS = 255;
+
+	private static final int UDH8_LENGTH = 6;
+	private static final int UDH16_LENGTH = 7;
+
+	private static final Charset GSM7 = Charset.forName(Data.ENC_GSM7BIT);
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	private static final Charset UCS2 = Charset.forName("UTF-16BE");
+
+	private int concatenation = CONCAT_UDH8;
+	private boolean packed = false;
+	private Gsm7BitTransliterator transliterator = null;
+	private boolean latin1Allowed = false;
+	private boolean ucs2Allowed = true;
+	private int maxLength = 140;
+	private String serviceType = Data.DFLT_SRVTYPE;
+	private byte registeredDelivery = Data.DFLT_REG_DELIVERY;
+
+	private final AtomicInteger referenceNumber = new AtomicInteger(new java.util.Random().nextInt());
+
+	/**
+	 * The encoding and the segment boundaries chosen for a text.
+	 */
+	private static class Plan {
+		final byte dataCoding;
+		final int[] ends;
+
+		Plan(byte dataCoding, int[] ends) {
+			this.dataCoding = dataCoding;
+			this.ends = ends;
+		}
+	}
+
+	/**
+	 * Sets how the segments are concatenated, one of the <code>CONCAT_</code>
+	 * constants. The default is <code>CONCAT_UDH8</code>.
+	 */
+	public void setConcatenation(int concatenation) {
+		if ((concatenation < CONCAT_UDH8) || (concatenation > CONCAT_PAYLOAD)) {
+			throw new IllegalArgumentException("Unknown concatenation " + concatenation);
+		}
+		this.concatenation = concatenation;
+	}
+
+	public int getConcatenation() {
+		return concatenation;
+	}
+
+	/**
+	 * Sets if the SMSC expects the GSM 7-bit alphabet packed, i.e. 160 characters
+	 * in 140 octets, or one character per octet. The default is unpacked.
+	 */
+	public void setPacked(boolean packed) {
+		this.packed = packed;
+	}
+
+	public boolean isPacked() {
+		return packed;
+	}
+
+	/**
+	 * Sets the transliterator replacing the characters out of the GSM 7-bit
+	 * alphabet, <code>null</code> if the text shouldn't be transliterated.
+	 */
+	public void setTransliterator(Gsm7BitTransliterator transliterator) {
+		this.transliterator = transliterator;
+	}
+
+	public Gsm7BitTransliterator getTransliterator() {
+		return transliterator;
+	}
+
+	/** Sets if Latin-1 can be used, not all SMSCs and handsets support it. */
+	public void setLatin1Allowed(boolean latin1Allowed) {
+		this.latin1Allowed = latin1Allowed;
+	}
+
+	public boolean isLatin1Allowed() {
+		return latin1Allowed;
+	}
+
+	/**
+	 * Sets if UCS2 can be used. If it can't, characters not in the
+	 * allowed alphabets are replaced.
+	 */
+	public void setUcs2Allowed(boolean ucs2Allowed) {
+		this.ucs2Allowed = ucs2Allowed;
+	}
+
+	public boolean isUcs2Allowed() {
+		return ucs2Allowed;
+	}
+
+	/**
+	 * Sets the maximal length of the <code>short_message</code> in octets
+	 * including the user data header. The default is 140.
+	 */
+	public void setMaxLength(int maxLength) {
+		if ((maxLength <= UDH16_LENGTH + 4) || (maxLength > Data.SM_MSG_LEN)) {
+			throw new IllegalArgumentException("Invalid maximal length " + maxLength);
+		}
+		this.maxLength = maxLength;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public void setServiceType(String serviceType) {
+		this.serviceType = serviceType;
+	}
+
+	public String getServiceType() {
+		return serviceType;
+	}
+
+	public void setRegisteredDelivery(byte registeredDelivery) {
+		this.registeredDelivery = registeredDelivery;
+	}
+
+	public byte getRegisteredDelivery() {
+		return registeredDelivery;
+	}
+
+	/**
+	 * Returns the <code>data_coding</code> which would be used for the text.
+	 */
+	public byte getDataCoding(String text) throws WrongLengthOfStringException {
+		return plan(transliterate(text)).dataCoding;
+	}
+
+	/**
+	 * Returns the number of PDUs the text would be sent in.
+	 */
+	public int countSegments(String text) throws WrongLengthOfStringException {
+		return plan(transliterate(text)).ends.length;
+	}
+
+	/**
+	 * Creates the PDUs for the text. The addresses are shared by all the PDUs.
+	 *
+	 * @param text   the text of the message
+	 * @param source the source address
+	 * @param dest   the destination address
+	 * @return the PDUs in the order of the segments
+	 * @throws WrongLengthOfStringException if the text needs more than
+	 *         <code>MAX_SEGMENTS</code> segments or doesn't fit into
+	 *         the <code>message_payload</code>
+	 */
+	public List<SubmitSM> segment(String text, Address source, Address dest) throws PDUException {
+		text = transliterate(text);
+		Plan plan = plan(text);
+		int count = plan.ends.length;
+		int reference = referenceNumber.incrementAndGet() & (concatenation == CONCAT_UDH8 ? 0xff : 0xffff);
+		List<SubmitSM> pdus = new ArrayList<SubmitSM>(count);
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int end = plan.ends[i];
+			SubmitSM submit = new SubmitSM();
+			submit.setServiceType(serviceType);
+			submit.setSourceAddr(source);
+			submit.setDestAddr(dest);
+			submit.setRegisteredDelivery(registeredDelivery);
+			submit.setDataCoding(plan.dataCoding);
+			byte[] udh = null;
+			if ((count > 1) && (concatenation == CONCAT_UDH8)) {
+				udh = new byte[] { 5, 0, 3, (byte) reference, (byte) count, (byte) (i + 1)};
+			} else if ((count > 1) && (concatenation == CONCAT_UDH16)) {
+				udh = new byte[] { 6, 8, 4, (byte) (reference >> 8), (byte) reference, (byte) count, (byte) (i + 1)};
+			}
+			byte[] data = encode(text, start, end, plan.dataCoding, udh);
+			if (concatenation == CONCAT_PAYLOAD) {
+				submit.setMessagePayload(new ByteBuffer(data));
+			} else {
+				setShortMessageData(submit, data);
+			}
+			if (udh != null) {
+				submit.setEsmClass((byte) Data.SM_UDH_GSM);
+			} else if ((count > 1) && (concatenation == CONCAT_SAR)) {
+				setSar(submit, reference, count, i + 1);
+			}
+			pdus.add(submit);
+			start = end;
+		}
+		return pdus;
+	}
+
+	private String transliterate(String text) {
+		return transliterator == null ? text : transliterator.transliterate(text);
+	}
+
+	private static void setShortMessageData(SubmitSM submit, byte[] data) throws PDUException {
+		try {
+			submit.setShortMessageData(new ByteBuffer(data));
+		} catch (NotEnoughDataInByteBufferException e) {
+			throw new PDUException(e.getMessage());
+		} catch (TerminatingZeroNotFoundException e) {
+			throw new PDUException(e.getMessage());
+		}
+	}
+
+	private static void setSar(SubmitSM submit, int reference, int count, int seqnum)
+		throws IntegerOutOfRangeException {
+		submit.setSarMsgRefNum((short) reference);
+		submit.setSarTotalSegments((short) count);
+		submit.setSarSegmentSeqnum((short) seqnum);
+	}
+
+	private byte[] encode(String text, int start, int end, byte dataCoding, byte[] udh) {
+		CharBuffer chars = CharBuffer.wrap(text, start, end);
+		if ((dataCoding == DATA_CODING_DEFAULT) && packed) {
+			return Gsm7BitPackedCodec.encodeUserData(udh, chars);
+		}
+		Charset charset = dataCoding == DATA_CODING_UCS2 ? UCS2 : (dataCoding == DATA_CODING_LATIN1 ? LATIN1 : GSM7);
+		byte[] encoded = CharsetRegistry.encode(chars, charset);
+		if (udh == null) {
+			return encoded;
+		}
+		byte[] data = new byte[udh.length + encoded.length];
+		System.arraycopy(udh, 0, data, 0, udh.length);
+		System.arraycopy(encoded, 0, data, udh.length, encoded.length);
+		return data;
+	}
+
+	private Plan plan(String text) throws WrongLengthOfStringException {
+		boolean gsm7 = true;
+		boolean latin1 = latin1Allowed;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (gsm7 && (Gsm7BitCharset.getSeptetCount(ch) == 0)) {
+				gsm7 = false;
+			}
+			if (ch > 0xff) {
+				latin1 = false;
+			}
+		}
+		Plan best = null;
+		if (gsm7 || !(latin1 || ucs2Allowed)) {
+			best = plan(text, DATA_CODING_DEFAULT);
+		}
+		if (latin1) {
+			best = cheaper(best, plan(text, DATA_CODING_LATIN1));
+		}
+		if (ucs2Allowed) {
+			best = cheaper(best, plan(text, DATA_CODING_UCS2));
+		}
+		return best;
+	}
+
+	private static Plan cheaper(Plan best, Plan plan) {
+		return (best == null) || (plan.ends.length < best.ends.length) ? plan : best;
+	}
+
+	/**
+	 * Splits the text into as few segments as possible in the encoding.
+	 * The capacities are in septets for the GSM 7-bit alphabet and in octets
+	 * otherwise.
+	 */
+	private Plan plan(String text, byte dataCoding) throws WrongLengthOfStringException {
+		boolean septets = (dataCoding == DATA_CODING_DEFAULT) && packed;
+		int singleCapacity;
+		int capacity;
+		if (concatenation == CONCAT_PAYLOAD) {
+			singleCapacity = septets
+				? Gsm7BitPackedCodec.getSeptetCount(Data.OPT_PAR_MSG_PAYLOAD_MAX, 0)
+				: Data.OPT_PAR_MSG_PAYLOAD_MAX;
+			capacity = 0;
+		} else {
+			int udhLength = concatenation == CONCAT_UDH8 ? UDH8_LENGTH : (concatenation == CONCAT_UDH16 ? UDH16_LENGTH : 0);
+			singleCapacity = septets ? maxLength * 8 / 7 : maxLength;
+			capacity = septets ? (maxLength - udhLength) * 8 / 7 : maxLength - udhLength;
+		}
+		int length = text.length();
+		int total = 0;
+		for (int i = 0; i < length; i++) {
+			int units = getUnits(text, i, dataCoding);
+			if (units == 4) {
+				i++;
+			}
+			total += units;
+		}
+		if (total <= singleCapacity) {
+			return new Plan(dataCoding, new int[] { length });
+		}
+		if (concatenation == CONCAT_PAYLOAD) {
+			throw new WrongLengthOfStringException(0, singleCapacity, total);
+		}
+		List<Integer> ends = new ArrayList<Integer>();
+		int used = 0;
+		for (int i = 0; i < length; i++) {
+			int units = getUnits(text, i, dataCoding);
+			if (units == 4) {
+				// a surrogate pair stays in one segment
+				i++;
+			}
+			if (used + units > capacity) {
+				ends.add(units == 4 ? i - 1 : i);
+				used = 0;
+			}
+			used += units;
+		}
+		ends.add(length);
+		if (ends.size() > MAX_SEGMENTS) {
+			throw new WrongLengthOfStringException(0, MAX_SEGMENTS, ends.size());
+		}
+		int[] result = new int[ends.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ends.get(i);
+		}
+		return new Plan(dataCoding, result);
+	}
+
+	/**
+	 * Returns the units the character at the index takes in the encoding,
+	 * 4 for a surrogate pair in UCS2.
+	 */
+	private static int getUnits(String text, int index, byte dataCoding) {
+		char ch = text.charAt(index);
+		switch (dataCoding) {
+		case DATA_CODING_UCS2:
+			if (Character.isHighSurrogate(ch)
+				&& (index + 1 < text.length())
+				&& Character.isLowSurrogate(text.charAt(index + 1))) {
+				return 4;
+			}
+			return 2;
+		case DATA_CODING_LATIN1:
+			return 1;
+		default:
+			// replaced characters take one septet
+			return Math.max(1, Gsm7BitCharset.getSeptetCount(ch));
+		}
+	}
+}
@@ -0,0 +1,740 @@
+package org.smpp.util;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.smpp.ResponseTimeoutEvent;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.TimeoutException;
+import org.smpp.WrongSessionStateException;
+import org.smpp.pdu.DataSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitMultiSM;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.ValueNotSetException;
+
+/**
+ * Write-ahead journal of outbound requests, so the requests which were
+ * sent but not answered aren't lost when the process dies.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files in a directory.
+ * Each request is appended encoded before it's sent, and a record with
+ * the command status is appended when its response arrives. Appending
+ * doesn't wait for the disk; <code>commit</code> does, and concurrent
+ * commits are grouped so one flush of the segment makes the records
+ * of all the waiting threads durable.
+ * <p>
+ * When the journal is opened, the requests without a response record are
+ * recovered and can be sent again by <code>replay</code>. The delivery is at
+ * least once: a request whose response arrived just before the crash, or
+ * whose response record wasn't flushed yet, is sent again.
+ * <p>
+ * Requests are sent through the journal and the application's listener is
+ * wrapped so the responses of asynchronous requests are recorded:
+ * <pre>
+ * OutboundJournal journal = new OutboundJournal(new File("journal"));
+ * session.bind(request, journal.wrap(listener));
+ * journal.replay(session);
+ * ...
+ * journal.submit(session, submitSM);
+ * </pre>
+ * Segments whose requests were all answered are deleted. If there are
+ * more than <code>maxSegments</code> segments, the unanswered requests of
+ * the oldest segment are copied to the current segment so the oldest can
+ * be deleted as well.
+ *
+ * @see #commit()
+ * @see #replay(Session)
+ */
+public class OutboundJournal extends SmppObject {
+	/** Default size of a segment file in bytes. */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/** Default number of segments kept before unanswered requests are copied. */
+	public static final int DEFAULT_MAX_SEGMENTS = 4;
+
+	private static final String PREFIX = "journal-";
+	private static final String SUFFIX = ".log";
+
+	private static final byte TYPE_REQUEST = 1;
+	private static final byte TYPE_RESPONSE = 2;
+
+	// length (4), type (1), id (8), crc (4)
+	private static final int HEADER_SIZE = 17;
+
+	/**
+	 * A request without response. The encoded request is read from the
+	 * segment when it's needed.
+	 */
+	public class Entry {
+		final long id;
+		Segment segment;
+		int offset;
+		int length;
+
+		Entry(long id, Segment segment, int offset, int length) {
+			this.id = id;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/** Returns the id the journal assigned to the request. */
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * Decodes the request from the journal.
+		 */
+		public Request getRequest() throws PDUException {
+			byte[] data = read(this);
+			try {
+				return (Request) PDU.createPDU(new ByteBuffer(data));
+			} catch (ClassCastException e) {
+				throw new PDUException("Not a request in the journal entry " + id);
+			}
+		}
+	}
+
+	private static class Segment {
+		final long index;
+		final File file;
+		MappedByteBuffer buffer;
+		int position = 0;
+		int live = 0;
+
+		/** If a commit is flushing the segment outside of the lock. */
+		boolean pinned = false;
+
+		/** If the segment should be released once it isn't pinned. */
+		boolean released = false;
+
+		/** If the file should be deleted when the segment is released. */
+		boolean deleted = false;
+
+		Segment(long index, File file, MappedByteBuffer buffer) {
+			this.index = index;
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+
+	/**
+	 * Records the responses of the requests sent asynchronously through
+	 * the journal before passing the events to the application's listener.
+	 */
+	private class JournalingListener extends SmppObject implements ServerPDUEventListener {
+		private final ServerPDUEventListener listener;
+
+		JournalingListener(ServerPDUEventListener listener) {
+			this.listener = listener;
+		}
+
+		public void handleEvent(ServerPDUEvent received) {
+			PDU pdu = received.getPDU();
+			if ((pdu != null) && pdu.isResponse() && !inFlight.isEmpty()) {
+				Long id = inFlight.remove(new Integer(pdu.getSequenceNumber()));
+				// a timed out request stays in the journal
+				if ((id != null) && !(received instanceof ResponseTimeoutEvent)) {
+					try {
+						acknowledge(id.longValue(), pdu.getCommandStatus());
+					} catch (IOException e) {
+						event.write(e, "recording response to journal entry " + id);
+					}
+				}
+			}
+			listener.handleEvent(received);
+		}
+	}
+
+	private final File directory;
+	private final int segmentSize;
+	private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private Segment current;
+
+	/** Requests without response in the order of their ids. */
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>();
+
+	/** Ids of the requests sent through the journal keyed by sequence number. */
+	private final ConcurrentHashMap<Integer, Long> inFlight = new ConcurrentHashMap<Integer, Long>();
+
+	private final CRC32 crc = new CRC32();
+	private final byte[] header = new byte[HEADER_SIZE];
+	private long lastId = 0;
+	private long written = 0;
+	private long durable = 0;
+	private boolean syncing = false;
+	private boolean closed = false;
+	private long syncCount = 0;
+
+	/**
+	 * Opens the journal in the directory with the default segment size.
+	 *
+	 * @see #OutboundJournal(File,int)
+	 */
+	public OutboundJournal(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the journal in the directory, which is created if it doesn't
+	 * exist, and recovers the requests without response.
+	 *
+	 * @param directory   the directory of the segment files
+	 * @param segmentSize the size of new segment files in bytes; a request
+	 *                    must fit into one segment
+	 * @exception IOException if the segments can't be read or created
+	 */
+	public OutboundJournal(File directory, int segmentSize) throws IOException {
+		if (segmentSize < 1024) {
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create journal directory " + directory);
+		}
+		recover();
+		written = durable = position(current);
+		compact();
+	}
+
+	private void recover() throws IOException {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+			}
+		});
+		Arrays.sort(files);
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			long index = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), 16);
+			Segment segment = new Segment(index, files[i], map(files[i], (int) files[i].length()));
+			scan(segment);
+			segments.add(segment);
+		}
+		if (segments.isEmpty()) {
+			current = createSegment(0);
+		} else {
+			current = segments.getLast();
+		}
+		debug.write("journal " + directory + " recovered " + entries.size() + " requests");
+	}
+
+	/**
+	 * Reads the records of the segment up to the first invalid one,
+	 * which is where the writing stopped.
+	 */
+	private void scan(Segment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		int limit = buffer.capacity();
+		int pos = 0;
+		byte[] data = new byte[256];
+		while (pos + HEADER_SIZE <= limit) {
+			int length = buffer.getInt(pos);
+			byte type = buffer.get(pos + 4);
+			if (((type != TYPE_REQUEST) && (type != TYPE_RESPONSE)) || (length < 0)
+				|| (length > limit - pos - HEADER_SIZE)) {
+				break;
+			}
+			long id = buffer.getLong(pos + 5);
+			if (data.length < length) {
+				data = new byte[length];
+			}
+			java.nio.ByteBuffer payload = buffer.duplicate();
+			payload.position(pos + HEADER_SIZE);
+			payload.get(data, 0, length);
+			if (buffer.getInt(pos + 13) != checksum(length, type, id, data, 0, length)) {
+				debug.write("journal record at " + pos + " of " + segment.file + " is incomplete");
+				break;
+			}
+			Long key = new Long(id);
+			if (type == TYPE_REQUEST) {
+				Entry entry = entries.get(key);
+				if (entry != null) {
+					// copied from an older segment
+					entry.segment.live--;
+					entry.segment = segment;
+					entry.offset = pos + HEADER_SIZE;
+				} else {
+					entries.put(key, new Entry(id, segment, pos + HEADER_SIZE, length));
+				}
+				segment.live++;
+			} else {
+				Entry entry = entries.remove(key);
+				if (entry != null) {
+					entry.segment.live--;
+				}
+			}
+			lastId = Math.max(lastId, id);
+			pos += HEADER_SIZE + length;
+		}
+		segment.position = pos;
+		erase(segment);
+	}
+
+	/**
+	 * Zeroes the segment after its last valid record. The pages may have
+	 * been written out of order before a crash, so valid records of
+	 * the interrupted writing can follow the torn one; if they were kept,
+	 * a later recovery could find them again after the new records,
+	 * and an old response could acknowledge a new request with its id.
+	 */
+	private void erase(Segment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		int limit = buffer.capacity();
+		int pos = segment.position;
+		while ((pos < limit) && (buffer.get(pos) == 0)) {
+			pos++;
+		}
+		if (pos == limit) {
+			return;
+		}
+		debug.write("erasing journal " + segment.file + " after " + segment.position);
+		for (pos = segment.position; pos < limit; pos++) {
+			buffer.put(pos, (byte) 0);
+		}
+		buffer.force();
+	}
+
+	private int checksum(int length, byte type, long id, byte[] data, int offset, int count) {
+		header[0] = (byte) (length >>> 24);
+		header[1] = (byte) (length >>> 16);
+		header[2] = (byte) (length >>> 8);
+		header[3] = (byte) length;
+		header[4] = type;
+		for (int i = 0; i < 8; i++) {
+			header[5 + i] = (byte) (id >>> (56 - 8 * i));
+		}
+		crc.reset();
+		crc.update(header, 0, 13);
+		crc.update(data, offset, count);
+		return (int) crc.getValue();
+	}
+
+	private Segment createSegment(long index) throws IOException {
+		File file = new File(directory, PREFIX + hex(index) + SUFFIX);
+		Segment segment = new Segment(index, file, map(file, segmentSize));
+		segments.add(segment);
+		return segment;
+	}
+
+	private static String hex(long index) {
+		String hex = Long.toHexString(index);
+		return "0000000000000000".substring(hex.length()) + hex;
+	}
+
+	/**
+	 * Releases the mapping of the segment at once instead of when the buffer
+	 * is collected, which can be much later, so the segment's memory and
+	 * file are released. Java has no API for it, so the cleaner of the
+	 * buffer is called by reflection; if that fails, the mapping is left
+	 * to the garbage collector.
+	 */
+	private void unmap(Segment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		segment.buffer = null;
+		if (buffer == null) {
+			return;
+		}
+		try {
+			try {
+				// Java 9 and later
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException e) {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			debug.write("can't unmap journal segment " + segment.file + ": " + e);
+		}
+	}
+
+	private static MappedByteBuffer map(File file, int size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// the mapping stays valid after the channel is closed
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the position in the journal, growing with the segment index
+	 * and the position in the segment.
+	 */
+	private static long position(Segment segment) {
+		return (segment.index << 32) + segment.position;
+	}
+
+	/**
+	 * Appends the request to the journal. The record isn't durable until
+	 * <code>commit</code> returns.
+	 *
+	 * @return the id of the journal entry
+	 * @exception ValueNotSetException if the request can't be encoded
+	 * @exception IOException if the request is too long or the journal
+	 *            can't be written
+	 */
+	public long append(Request request) throws ValueNotSetException, IOException {
+		byte[] data = new byte[request.getEncodedLength()];
+		request.encode(data, 0);
+		synchronized (this) {
+			long id = ++lastId;
+			Segment segment = write(TYPE_REQUEST, id, data, 0, data.length);
+			entries.put(new Long(id), new Entry(id, segment, segment.position - data.length, data.length));
+			segment.live++;
+			if ((segments.size() > 1) && ((segments.getFirst().live == 0) || (segments.size() > maxSegments))) {
+				compact();
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Records the response to the request; the entry won't be recovered
+	 * any more. Records are made durable by the next <code>commit</code>
+	 * or when the segment is full, not immediately.
+	 *
+	 * @param id            the id of the entry
+	 * @param commandStatus the status of the response
+	 */
+	public synchronized void acknowledge(long id, int commandStatus) throws IOException {
+		Entry entry = entries.remove(new Long(id));
+		if (entry == null) {
+			return;
+		}
+		byte[] status = {
+			(byte) (commandStatus >>> 24), (byte) (commandStatus >>> 16), (byte) (commandStatus >>> 8), (byte) commandStatus
+		};
+		write(TYPE_RESPONSE, id, status, 0, status.length);
+		entry.segment.live--;
+	}
+
+	/**
+	 * Writes the record to the current segment, starting a new segment
+	 * if it doesn't fit. Called with the lock held.
+	 */
+	private Segment write(byte type, long id, byte[] data, int offset, int length) throws IOException {
+		if (closed) {
+			throw new IOException("Journal closed");
+		}
+		if (HEADER_SIZE + length > segmentSize) {
+			throw new IOException("Request of " + length + " bytes too long for the journal");
+		}
+		if (current.position + HEADER_SIZE + length > current.buffer.capacity()) {
+			roll();
+		}
+		int checksum = checksum(length, type, id, data, offset, length);
+		MappedByteBuffer buffer = current.buffer;
+		int pos = current.position;
+		java.nio.ByteBuffer record = buffer.duplicate();
+		record.position(pos);
+		// a record torn by a crash fails the checksum
+		record.put(header, 0, 13);
+		record.putInt(checksum);
+		record.put(data, offset, length);
+		current.position = pos + HEADER_SIZE + length;
+		written = position(current);
+		return current;
+	}
+
+	/**
+	 * Flushes the full segment and starts the next one.
+	 */
+	private void roll() throws IOException {
+		current.buffer.force();
+		syncCount++;
+		durable = Math.max(durable, position(current));
+		current = createSegment(current.index + 1);
+		written = position(current);
+		notifyAll();
+	}
+
+	/**
+	 * Waits until all the records appended so far are on the disk.
+	 * If another thread is flushing the segment, the thread waits for it
+	 * and flushes the records appended in the meantime with one more flush,
+	 * so concurrent commits share flushes.
+	 *
+	 * @exception InterruptedIOException if the thread is interrupted
+	 */
+	public void commit() throws IOException {
+		Segment segment;
+		MappedByteBuffer buffer;
+		long target;
+		synchronized (this) {
+			long requested = written;
+			while (syncing && (durable < requested)) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for journal commit");
+				}
+			}
+			if (durable >= requested) {
+				return;
+			}
+			syncing = true;
+			segment = current;
+			// compaction or close can't release the segment being flushed
+			segment.pinned = true;
+			buffer = segment.buffer;
+			target = written;
+		}
+		boolean flushed = false;
+		try {
+			buffer.force();
+			flushed = true;
+		} finally {
+			synchronized (this) {
+				syncing = false;
+				segment.pinned = false;
+				if (segment.released) {
+					release(segment, segment.deleted);
+				}
+				if (flushed) {
+					syncCount++;
+					durable = Math.max(durable, target);
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Appends and commits the request and sends it through the session.
+	 * If the session is synchronous, the response is recorded when it's
+	 * returned; otherwise it's recorded by the listener returned
+	 * by <code>wrap</code>. If the request can't be sent, it stays
+	 * in the journal.
+	 *
+	 * @return the response for synchronous session, <code>null</code> otherwise
+	 * @see Session#submit(SubmitSM)
+	 */
+	public Response submit(Session session, Request request)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		long id = append(request);
+		commit();
+		request.assignSequenceNumber();
+		return send(session, request, id);
+	}
+
+	/**
+	 * Sends all the recovered requests again with new sequence numbers.
+	 * Requests being sent through the journal at the moment are skipped.
+	 *
+	 * @return the number of requests sent
+	 */
+	public int replay(Session session)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		List<Entry> pending = getPendingEntries();
+		int count = 0;
+		for (Iterator<Entry> i = pending.iterator(); i.hasNext();) {
+			Entry entry = i.next();
+			if (inFlight.containsValue(new Long(entry.getId()))) {
+				continue;
+			}
+			Request request = entry.getRequest();
+			request.assignSequenceNumber(true);
+			send(session, request, entry.getId());
+			count++;
+		}
+		return count;
+	}
+
+	private Response send(Session session, Request request, long id)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		Integer sequenceNumber = new Integer(request.getSequenceNumber());
+		inFlight.put(sequenceNumber, new Long(id));
+		Response response = null;
+		boolean sent = false;
+		try {
+			if (request instanceof SubmitSM) {
+				response = session.submit((SubmitSM) request);
+			} else if (request instanceof DataSM) {
+				response = session.data((DataSM) request);
+			} else if (request instanceof SubmitMultiSM) {
+				response = session.submitMulti((SubmitMultiSM) request);
+			} else {
+				throw new PDUException("Can't journal " + request.getClass().getName());
+			}
+			sent = true;
+		} finally {
+			if (!sent) {
+				inFlight.remove(sequenceNumber);
+			}
+		}
+		if ((response != null) && (inFlight.remove(sequenceNumber) != null)) {
+			acknowledge(id, response.getCommandStatus());
+		}
+		return response;
+	}
+
+	/**
+	 * Returns the listener which records the responses of asynchronous
+	 * requests and passes all the events to the listener.
+	 */
+	public ServerPDUEventListener wrap(ServerPDUEventListener listener) {
+		return new JournalingListener(listener);
+	}
+
+	/**
+	 * Returns the requests without response in the order they were appended.
+	 */
+	public synchronized List<Entry> getPendingEntries() {
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	private synchronized byte[] read(Entry entry) {
+		if (closed) {
+			throw new IllegalStateException("Journal closed");
+		}
+		byte[] data = new byte[entry.length];
+		java.nio.ByteBuffer payload = entry.segment.buffer.duplicate();
+		payload.position(entry.offset);
+		payload.get(data);
+		return data;
+	}
+
+	/**
+	 * Deletes the oldest segments whose requests were all answered.
+	 * While there are more than <code>maxSegments</code> segments, the
+	 * requests without response are copied from the oldest segment to the
+	 * current one and the oldest segment is deleted.
+	 */
+	public synchronized void compact() throws IOException {
+		while (segments.size() > 1) {
+			Segment oldest = segments.getFirst();
+			if (oldest.live > 0) {
+				if (segments.size() <= maxSegments) {
+					break;
+				}
+				relocate(oldest);
+			}
+			segments.removeFirst();
+			release(oldest, true);
+		}
+	}
+
+	/**
+	 * Unmaps the segment removed from the journal and deletes its file;
+	 * if a commit is flushing the segment, it's done when the flush ends.
+	 * Called with the lock held.
+	 */
+	private void release(Segment segment, boolean delete) {
+		if (segment.pinned) {
+			segment.released = true;
+			segment.deleted = delete;
+			return;
+		}
+		segment.released = false;
+		unmap(segment);
+		if (delete && !segment.file.delete()) {
+			debug.write("can't delete journal segment " + segment.file);
+		}
+	}
+
+	/**
+	 * Copies the requests without response from the segment to the current
+	 * one and makes the copies durable.
+	 */
+	private void relocate(Segment segment) throws IOException {
+		for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();) {
+			Entry entry = i.next();
+			if (entry.segment == segment) {
+				byte[] data = read(entry);
+				Segment target = write(TYPE_REQUEST, entry.id, data, 0, data.length);
+				segment.live--;
+				target.live++;
+				entry.segment = target;
+				entry.offset = target.position - data.length;
+			}
+		}
+		current.buffer.force();
+		syncCount++;
+		durable = Math.max(durable, written);
+	}
+
+	/**
+	 * Sets the number of segments kept before the requests without
+	 * response are copied from the oldest one. Default is
+	 * <code>DEFAULT_MAX_SEGMENTS</code>.
+	 */
+	public synchronized void setMaxSegments(int maxSegments) {
+		if (maxSegments < 2) {
+			throw new IllegalArgumentException("At least two segments needed: " + maxSegments);
+		}
+		this.maxSegments = maxSegments;
+	}
+
+	public synchronized int getMaxSegments() {
+		return maxSegments;
+	}
+
+	/** Returns the number of requests without response. */
+	public synchronized int getPendingCount() {
+		return entries.size();
+	}
+
+	/** Returns the number of segment files. */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/** Returns how many times a segment was flushed to the disk. */
+	public synchronized long getSyncCount() {
+		return syncCount;
+	}
+
+	/**
+	 * Flushes and closes the journal. The recovered entries can't be read
+	 * after the journal is closed.
+	 */
+	public synchronized void close() {
+		if (!closed) {
+			current.buffer.force();
+			closed = true;
+			for (Iterator<Segment> i = segments.iterator(); i.hasNext();) {
+				release(i.next(), false);
+			}
+			segments.clear();
+			entries.clear();
+			inFlight.clear();
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package org.smpp.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.smpp.Data;
+import org.smpp.ResponseTimeoutEvent;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.TimeoutException;
+import org.smpp.pdu.Address;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+
+/**
+ * Sends the messages of a session at the rates the networks behind the
+ * SMSC accept. Each <code>submit_sm</code> is classified by the longest
+ * prefix of its destination address; every class has its own queue and
+ * token bucket, so a class which reached its rate or was throttled doesn't
+ * hold back the messages of the other classes. The messages without a
+ * matching prefix belong to the default class, which isn't limited unless
+ * its rate is set.
+ * <pre>
+ * OutboundScheduler scheduler = new OutboundScheduler(session);
+ * session.bind(request, scheduler.wrap(listener));
+ * scheduler.addClass("operator-a", 50, 10, 0);
+ * scheduler.addPrefix("42060", "operator-a");
+ * scheduler.start();
+ * ...
+ * scheduler.submit(submitSM); // false if the queue of the class is full
+ * </pre>
+ * The scheduler's thread sends the message of the class with the highest
+ * priority which has a message and a token, taking turns among the classes
+ * of the same priority. A class whose message was rejected with
+ * <code>ESME_RTHROTTLED</code>, or couldn't be sent, pauses for the
+ * throttle pause; the message which couldn't be sent is sent again then.
+ * With an asynchronous session the responses are passed to the
+ * application's listener. A synchronous session works too, but the thread
+ * waits for each response, so the messages are sent one per round trip,
+ * and the responses are used only to find out the throttled classes.
+ *
+ * @see PrefixTrie
+ */
+public class OutboundScheduler extends ProcessingThread {
+	/** The name of the class of the messages without a matching prefix. */
+	public static final String DEFAULT_CLASS = "default";
+
+	/** Default number of messages queued per class at most. */
+	public static final int DEFAULT_MAX_QUEUE_DEPTH = 10000;
+
+	/** Default time in milliseconds a throttled class doesn't send. */
+	public static final long DEFAULT_THROTTLE_PAUSE = 1000;
+
+	/** The longest time in milliseconds the thread waits without a check. */
+	private static final long MAX_WAIT = 100;
+
+	/**
+	 * Messages to the destinations with the class's prefixes, their queue
+	 * and rate. The state is guarded by the scheduler.
+	 */
+	public class TrafficClass {
+		private final String name;
+		private final int priority;
+		private final LinkedList<SubmitSM> queue = new LinkedList<SubmitSM>();
+		private double rate;
+		private int burst;
+		private double tokens;
+		private long refilled = System.nanoTime();
+		private long pausedUntil = 0;
+		private long sentCount = 0;
+		private long throttledCount = 0;
+		private long rateWindowStart = System.nanoTime();
+		private long rateWindowCount = 0;
+		private long measuredRate = 0;
+
+		TrafficClass(String name, double rate, int burst, int priority) {
+			checkRate(rate, burst);
+			this.name = name;
+			this.rate = rate;
+			this.burst = burst;
+			this.tokens = burst;
+			this.priority = priority;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		/** Returns the messages per second allowed, 0 if unlimited. */
+		public double getRate() {
+			synchronized (OutboundScheduler.this) {
+				return rate;
+			}
+		}
+
+		/** Returns the number of messages which can be sent at once. */
+		public int getBurst() {
+			synchronized (OutboundScheduler.this) {
+				return burst;
+			}
+		}
+
+		/**
+		 * Changes the rate, e.g. as agreed with the operator.
+		 *
+		 * @param rate  the messages per second, 0 for unlimited
+		 * @param burst the messages which can be sent at once
+		 */
+		public void setRate(double rate, int burst) {
+			checkRate(rate, burst);
+			synchronized (OutboundScheduler.this) {
+				this.rate = rate;
+				this.burst = burst;
+				tokens = Math.min(tokens, burst);
+				OutboundScheduler.this.notifyAll();
+			}
+		}
+
+		/** Returns the number of messages waiting in the queue. */
+		public int getQueueDepth() {
+			synchronized (OutboundScheduler.this) {
+				return queue.size();
+			}
+		}
+
+		/** Returns the number of messages sent. */
+		public long getSentCount() {
+			synchronized (OutboundScheduler.this) {
+				return sentCount;
+			}
+		}
+
+		/** Returns the number of messages rejected with <code>ESME_RTHROTTLED</code>. */
+		public long getThrottledCount() {
+			synchronized (OutboundScheduler.this) {
+				return throttledCount;
+			}
+		}
+
+		/** Returns the messages sent in the last full second. */
+		public long getMeasuredRate() {
+			synchronized (OutboundScheduler.this) {
+				countSent(System.nanoTime(), 0);
+				return measuredRate;
+			}
+		}
+
+		/**
+		 * Returns in how many nanoseconds the class can send, 0 if now.
+		 */
+		long nanosUntilReady(long now) {
+			if (now < pausedUntil) {
+				return pausedUntil - now;
+			}
+			if (rate <= 0) {
+				return 0;
+			}
+			refill(now);
+			return tokens >= 1 ? 0 : (long) ((1 - tokens) * 1000000000L / rate) + 1;
+		}
+
+		private void refill(long now) {
+			tokens = Math.min(burst, tokens + (now - refilled) * rate / 1000000000L);
+			refilled = now;
+		}
+
+		void sent(long now) {
+			if (rate > 0) {
+				tokens--;
+			}
+			sentCount++;
+			countSent(now, 1);
+		}
+
+		private void countSent(long now, int count) {
+			long elapsed = now - rateWindowStart;
+			if (elapsed >= 1000000000L) {
+				// a window without any send in between measures zero
+				measuredRate = elapsed < 2000000000L ? rateWindowCount : 0;
+				rateWindowStart = now;
+				rateWindowCount = 0;
+			}
+			rateWindowCount += count;
+		}
+
+		void pause(long now) {
+			pausedUntil = Math.max(pausedUntil, now + throttlePause * 1000000L);
+			tokens = Math.min(tokens, 0);
+			refilled = now;
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Pauses the classes whose messages were throttled.
+	 */
+	private class SchedulerListener extends SmppObject implements ServerPDUEventListener {
+		private final ServerPDUEventListener listener;
+
+		SchedulerListener(ServerPDUEventListener listener) {
+			this.listener = listener;
+		}
+
+		public void handleEvent(ServerPDUEvent received) {
+			PDU pdu = received.getPDU();
+			if ((pdu != null) && pdu.isResponse() && !inFlight.isEmpty()) {
+				TrafficClass trafficClass = inFlight.remove(new Integer(pdu.getSequenceNumber()));
+				if ((trafficClass != null)
+					&& !(received instanceof ResponseTimeoutEvent)
+					&& (pdu.getCommandStatus() == Data.ESME_RTHROTTLED)) {
+					throttled(trafficClass);
+				}
+			}
+			listener.handleEvent(received);
+		}
+	}
+
+	private final Session session;
+	private final PrefixTrie<TrafficClass> trie = new PrefixTrie<TrafficClass>();
+	private final List<TrafficClass> classes = new ArrayList<TrafficClass>();
+	private final TrafficClass defaultClass;
+	private final ConcurrentHashMap<Integer, TrafficClass> inFlight = new ConcurrentHashMap<Integer, TrafficClass>();
+	private int maxQueueDepth = DEFAULT_MAX_QUEUE_DEPTH;
+	private long throttlePause = DEFAULT_THROTTLE_PAUSE;
+
+	/** The index of the class to start the next search for a message at. */
+	private int turn = 0;
+
+	/**
+	 * @param session the session the messages are sent through
+	 */
+	public OutboundScheduler(Session session) {
+		this.session = session;
+		defaultClass = addClass(DEFAULT_CLASS, 0, 1, 0);
+	}
+
+	private static void checkRate(double rate, int burst) {
+		if ((rate < 0) || (burst < 1)) {
+			throw new IllegalArgumentException("Invalid rate " + rate + " with burst " + burst);
+		}
+	}
+
+	/**
+	 * Adds the class of messages.
+	 *
+	 * @param name     the name of the class
+	 * @param rate     the messages per second, 0 for unlimited
+	 * @param burst    the messages which can be sent at once after
+	 *                 the class was idle
+	 * @param priority the classes with higher priority are served first
+	 * @return the class added
+	 */
+	public synchronized TrafficClass addClass(String name, double rate, int burst, int priority) {
+		if (getTrafficClass(name) != null) {
+			throw new IllegalArgumentException("Class " + name + " already exists");
+		}
+		TrafficClass trafficClass = new TrafficClass(name, rate, burst, priority);
+		classes.add(trafficClass);
+		return trafficClass;
+	}
+
+	/**
+	 * Makes the messages whose destination address starts with the prefix
+	 * belong to the class, unless a longer prefix matches.
+	 */
+	public void addPrefix(String prefix, String className) {
+		TrafficClass trafficClass = getTrafficClass(className);
+		if (trafficClass == null) {
+			throw new IllegalArgumentException("Unknown class " + className);
+		}
+		trie.put(prefix, trafficClass);
+	}
+
+	/** Returns the class with the name, null if there's none. */
+	public synchronized TrafficClass getTrafficClass(String name) {
+		for (int i = 0; i < classes.size(); i++) {
+			if (classes.get(i).getName().equals(name)) {
+				return classes.get(i);
+			}
+		}
+		return null;
+	}
+
+	/** Returns all the classes including the default one. */
+	public synchronized List<TrafficClass> getTrafficClasses() {
+		return new ArrayList<TrafficClass>(classes);
+	}
+
+	/** Returns the class of the messages to the destination address. */
+	public TrafficClass classify(String destAddr) {
+		TrafficClass trafficClass = trie.get(destAddr);
+		return trafficClass == null ? defaultClass : trafficClass;
+	}
+
+	/** Sets how many messages can wait in the queue of each class. */
+	public synchronized void setMaxQueueDepth(int maxQueueDepth) {
+		this.maxQueueDepth = maxQueueDepth;
+	}
+
+	/** Sets how long a class doesn't send after it was throttled. */
+	public synchronized void setThrottlePause(long throttlePause) {
+		this.throttlePause = throttlePause;
+	}
+
+	/**
+	 * Queues the message to be sent when its class can send.
+	 *
+	 * @return false if the queue of the message's class is full
+	 */
+	public boolean submit(SubmitSM request) {
+		Address destAddr = request.getDestAddr();
+		TrafficClass trafficClass = classify(destAddr == null ? null : destAddr.getAddress());
+		synchronized (this) {
+			if (trafficClass.queue.size() >= maxQueueDepth) {
+				return false;
+			}
+			trafficClass.queue.add(request);
+			notifyAll();
+		}
+		return true;
+	}
+
+	/**
+	 * Sends the next message which can be sent or waits until one can.
+	 */
+	public void process() {
+		TrafficClass chosen = null;
+		SubmitSM request = null;
+		synchronized (this) {
+			long now = System.nanoTime();
+			long wait = MAX_WAIT * 1000000L;
+			int count = classes.size();
+			for (int i = 0; i < count; i++) {
+				TrafficClass trafficClass = classes.get((turn + i) % count);
+				if (trafficClass.queue.isEmpty() || ((chosen != null) && (chosen.priority >= trafficClass.priority))) {
+					continue;
+				}
+				long ready = trafficClass.nanosUntilReady(now);
+				if (ready == 0) {
+					chosen = trafficClass;
+				} else {
+					wait = Math.min(wait, ready);
+				}
+			}
+			if (chosen == null) {
+				try {
+					wait(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					// we don't care
+				}
+				return;
+			}
+			turn = (classes.indexOf(chosen) + 1) % count;
+			request = chosen.queue.removeFirst();
+		}
+		// only this thread takes the tokens, so the one found above is
+		// still there; it's taken once the message was actually sent
+		request.assignSequenceNumber();
+		Integer sequenceNumber = new Integer(request.getSequenceNumber());
+		inFlight.put(sequenceNumber, chosen);
+		Response response;
+		try {
+			response = session.submit(request);
+		} catch (IOException e) {
+			inFlight.remove(sequenceNumber);
+			event.write(e, "outbound scheduler: sending failed, pausing class " + chosen);
+			synchronized (this) {
+				chosen.queue.addFirst(request);
+				chosen.pause(System.nanoTime());
+			}
+			return;
+		} catch (TimeoutException e) {
+			// the synchronous session sent the message but got no response
+			inFlight.remove(sequenceNumber);
+			event.write(e, "outbound scheduler: no response to " + request.debugString());
+			sent(chosen);
+			return;
+		} catch (Exception e) {
+			inFlight.remove(sequenceNumber);
+			event.write(e, "outbound scheduler: dropping invalid message " + request.debugString());
+			return;
+		}
+		sent(chosen);
+		// the synchronous session returns the response instead of passing
+		// it to the listener
+		if ((response != null) && (inFlight.remove(sequenceNumber) != null)
+			&& (response.getCommandStatus() == Data.ESME_RTHROTTLED)) {
+			throttled(chosen);
+		}
+	}
+
+	private synchronized void sent(TrafficClass trafficClass) {
+		trafficClass.sent(System.nanoTime());
+	}
+
+	private synchronized void throttled(TrafficClass trafficClass) {
+		trafficClass.throttledCount++;
+		trafficClass.pause(System.nanoTime());
+		debug.write(DUTL, "outbound scheduler: class " + trafficClass + " throttled");
+	}
+
+	/**
+	 * Stops sending; the messages queued stay in the queues.
+	 */
+	public void stop() {
+		stopProcessing(null);
+		synchronized (this) {
+			notifyAll();
+		}
+		super.stop();
+	}
+
+	/**
+	 * Returns the listener the session should be bound with, which pauses
+	 * the throttled classes and passes all events to <code>listener</code>.
+	 */
+	public ServerPDUEventListener wrap(ServerPDUEventListener listener) {
+		return new SchedulerListener(listener);
+	}
+
+	public String getThreadName() {
+		return "OutboundScheduler";
+	}
+}
@@ -0,0 +1,123 @@
+package org.smpp.util;
+
+/**
+ * Maps the longest matching prefix of a numeric address to a value.
+ * The prefixes are digits; an address may start with <code>+</code>,
+ * which is ignored, and the matching stops at its first character which
+ * isn't a digit. The trie is compiled to flat arrays on each change,
+ * so lookups, which are far more frequent, are lock free and don't
+ * allocate.
+ *
+ * @param <T> the type of the values
+ */
+public class PrefixTrie<T> {
+	private static final int DIGITS = 10;
+
+	/**
+	 * The compiled trie, replaced as a whole on change.
+	 */
+	private static class Compiled {
+		/**
+		 * The children of the nodes, <code>DIGITS</code> entries per node
+		 * indexed by the digit, 0 if there's no child; node 0 is the root.
+		 */
+		final int[] children;
+
+		/** The values of the nodes, null if no prefix ends in the node. */
+		final Object[] values;
+
+		Compiled(int[] children, Object[] values) {
+			this.children = children;
+			this.values = values;
+		}
+	}
+
+	private volatile Compiled compiled = new Compiled(new int[DIGITS], new Object[1]);
+	private int size = 0;
+
+	/**
+	 * Maps the prefix to the value, replacing the value mapped before.
+	 * The empty prefix matches all addresses.
+	 *
+	 * @exception IllegalArgumentException if the prefix contains
+	 *            a character which isn't a digit
+	 */
+	public synchronized void put(String prefix, T value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (digit(prefix.charAt(i)) < 0) {
+				throw new IllegalArgumentException("Prefix isn't numeric: " + prefix);
+			}
+		}
+		Compiled current = compiled;
+		int nodes = current.values.length;
+		// worst case a new node per digit
+		int[] newChildren = resize(current.children, (nodes + prefix.length()) * DIGITS);
+		Object[] newValues = resize(current.values, nodes + prefix.length());
+		int node = 0;
+		for (int i = 0; i < prefix.length(); i++) {
+			int slot = node * DIGITS + digit(prefix.charAt(i));
+			if (newChildren[slot] == 0) {
+				newChildren[slot] = nodes++;
+			}
+			node = newChildren[slot];
+		}
+		if (newValues[node] == null) {
+			size++;
+		}
+		newValues[node] = value;
+		compiled = new Compiled(resize(newChildren, nodes * DIGITS), resize(newValues, nodes));
+	}
+
+	/**
+	 * Returns the value of the longest prefix of the address, null if
+	 * no prefix matches.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(CharSequence address) {
+		Compiled current = compiled;
+		int[] currentChildren = current.children;
+		Object[] currentValues = current.values;
+		Object match = currentValues[0];
+		int node = 0;
+		int length = address == null ? 0 : address.length();
+		int start = (length > 0) && (address.charAt(0) == '+') ? 1 : 0;
+		for (int i = start; i < length; i++) {
+			int digit = digit(address.charAt(i));
+			if (digit < 0) {
+				break;
+			}
+			node = currentChildren[node * DIGITS + digit];
+			if (node == 0) {
+				break;
+			}
+			if (currentValues[node] != null) {
+				match = currentValues[node];
+			}
+		}
+		return (T) match;
+	}
+
+	/** Returns the number of prefixes mapped. */
+	public synchronized int size() {
+		return size;
+	}
+
+	private static int[] resize(int[] array, int length) {
+		int[] resized = new int[length];
+		System.arraycopy(array, 0, resized, 0, Math.min(array.length, length));
+		return resized;
+	}
+
+	private static Object[] resize(Object[] array, int length) {
+		Object[] resized = new Object[length];
+		System.arraycopy(array, 0, resized, 0, Math.min(array.length, length));
+		return resized;
+	}
+
+	private static int digit(char c) {
+		return ((c >= '0') && (c <= '9')) ? c - '0' : -1;
+	}
+}
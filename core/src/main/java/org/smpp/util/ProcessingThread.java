@@ -52,9 +52,8 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 	 * @see #start()
 	 * @see #stop()
 	 * @see #setProcessingStatus(byte)
-	 * @see #isInitialising()
+	 * @see #waitWhileStatus(byte)
 	 * @see #isProcessing()
-	 * @see #isFinished()
 	 */
 	private byte processingStatus = PROC_INITIALISING;
 
@@ -64,7 +63,6 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 	 * but before entering while-loop in the <code>run</code> method.
 	 *
 	 * @see #processingStatus
-	 * @see #isInitialising()
 	 */
 	private static final byte PROC_INITIALISING = 0;
 
@@ -87,7 +85,6 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 	 * by calling <code>start</code> method again.
 	 *
 	 * @see #processingStatus
-	 * @see #isFinished()
 	 */
 	private static final byte PROC_FINISHED = 2;
 
@@ -142,14 +139,9 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 			keepProcessing = true;
 			processingThread = new Thread(this);
 			processingThread.setName(generateIndexedThreadName());
+			processingThread.setDaemon(isDaemon());
 			processingThread.start();
-			while (isInitialising()) {
-				try {
-					Thread.sleep(100); // we're waiting for the proc thread to start
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-				}
-			}
+			waitWhileStatus(PROC_INITIALISING); // we're waiting for the proc thread to start
 		}
 		debug.exit(DUTL, this);
 	}
@@ -162,13 +154,7 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 		debug.enter(DUTL, this, "stop()");
 		if (isProcessing()) {
 			stopProcessing(null);
-			while (!isFinished()) {
-				try {
-					Thread.sleep(100); // we're waiting for the proc thread to stop
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-				}
-			}
+			waitWhileStatus(PROC_RECEIVING); // we're waiting for the proc thread to stop
 		}
 		debug.exit(DUTL, this);
 	}
@@ -209,6 +195,17 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 		}
 	}
 
+	/**
+	 * Returns if the thread should be started as a daemon thread, i.e.
+	 * one which doesn't prevent the JVM from exiting. Derived classes
+	 * providing background services can override it to return true.
+	 *
+	 * @see Thread#setDaemon(boolean)
+	 */
+	protected boolean isDaemon() {
+		return false;
+	}
+
 	/**
 	 * Should return the name for the thread. Derived classes are expected
 	 * to return specific name here from this method.
@@ -260,17 +257,34 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 	private void setProcessingStatus(byte value) {
 		synchronized (processingStatusLock) {
 			processingStatus = value;
+			processingStatusLock.notifyAll();
 		}
 	}
 
 	/**
-	 * Returns if the <code>processingStatus</code> indicates that
-	 * the receiving is in initialisation stage, i.e. the processing loop
-	 * has not been entered yet.
+	 * Blocks the calling thread for as long as the <code>processingStatus</code>
+	 * is equal to the value provided. The thread is woken up by
+	 * <code>setProcessingStatus</code> exactly when the status changes,
+	 * so there is no polling delay on starting or stopping the thread.
+	 * If the calling thread is interrupted, the waiting continues and the
+	 * interrupted status is restored before return.
+	 *
+	 * @param value the status to wait out
+	 * @see #setProcessingStatus(byte)
 	 */
-	private boolean isInitialising() {
+	private void waitWhileStatus(byte value) {
+		boolean interrupted = false;
 		synchronized (processingStatusLock) {
-			return processingStatus == PROC_INITIALISING;
+			while (processingStatus == value) {
+				try {
+					processingStatusLock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -284,17 +298,6 @@ public abstract class ProcessingThread extends SmppObject implements Runnable {
 			return processingStatus == PROC_RECEIVING;
 		}
 	}
-
-	/**
-	 * Returns if the <code>processingStatus</code> indicates that
-	 * the receiving has finished, i.e. the processing loop
-	 * has finished.
-	 */
-	private boolean isFinished() {
-		synchronized (processingStatusLock) {
-			return processingStatus == PROC_FINISHED;
-		}
-	}
 }
 /*
  * $Log: not supported by cvs2svn $
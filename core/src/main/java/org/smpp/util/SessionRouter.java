@@ -0,0 +1,547 @@
+package org.smpp.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.smpp.Data;
+import org.smpp.KeepaliveListener;
+import org.smpp.Receiver;
+import org.smpp.ResponseTimeoutEvent;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.SmppObject;
+import org.smpp.TimeoutException;
+import org.smpp.WrongSessionStateException;
+import org.smpp.pdu.DataSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitMultiSM;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.ValueNotSetException;
+
+/**
+ * Spreads the messages over sessions bound to several SMSCs, shifting
+ * the traffic away from the SMSCs which degrade. The sessions are added
+ * with their weights and bound with the listener wrapped by the router:
+ * <pre>
+ * SessionRouter router = new SessionRouter();
+ * ServerPDUEventListener listener = router.wrap(applicationListener);
+ * a.bind(bindRequest, listener);
+ * router.addSession("a", a, 2);
+ * b.bind(bindRequest, listener);
+ * router.addSession("b", b, 1);
+ * router.addRetryStatus(Data.ESME_RSYSERR);
+ * keepaliveService.register(a, router);
+ * ...
+ * router.submit(submitSM);
+ * </pre>
+ * Each session keeps a rolling health score from 0 to 1, the product of
+ * the rates of responses which were not errors and not throttled, of the
+ * keepalive factor, which halves each time the session is declared dead
+ * by keepalive and recovers with the responses, and of the latency factor,
+ * which is 1 up to the latency target and falls in inverse proportion
+ * above it. The messages are sent to an available
+ * session chosen randomly with the probability of its weight multiplied
+ * by its score; a session keeps a small share of the traffic whatever
+ * its score, so it can prove it has recovered.
+ * <p>
+ * A session is unavailable once it's unbound, its receiver failed, sending
+ * through it failed or the <code>KeepaliveService</code> declared it dead;
+ * the message is then sent through another session at once. It becomes
+ * available when it's bound again or another session is added under its
+ * name. Responses with a status added by <code>addRetryStatus</code> make
+ * the router send the request again through a session it wasn't sent
+ * through yet, up to the maximum attempts; the response is passed to the
+ * application only when the request isn't retried.
+ * The responses to the timed out requests, reported by
+ * <code>ResponseTimeoutEvent</code>, count as errors, so the sessions
+ * should have a response timeout set.
+ *
+ * @see Session#setResponseTimeout(long)
+ * @see org.smpp.KeepaliveService
+ */
+public class SessionRouter extends SmppObject implements KeepaliveListener {
+	/** Default number of sessions a request is sent through at most. */
+	public static final int DEFAULT_MAX_ATTEMPTS = 2;
+
+	/** Default latency in milliseconds above which the score falls. */
+	public static final long DEFAULT_LATENCY_TARGET = 500;
+
+	/** The lowest score, so the traffic of a session never stops. */
+	private static final double MIN_SCORE = 0.01;
+
+	/** The weight of a new sample in the rolling averages. */
+	private static final double SMOOTHING = 1.0 / 16;
+
+	/**
+	 * The weight of a keepalive failure in its rolling rate; they're rare,
+	 * so one counts much more than a response.
+	 */
+	private static final double KEEPALIVE_SMOOTHING = 0.5;
+
+	/**
+	 * A session the router sends through and its health.
+	 */
+	public static class Member {
+		private final String name;
+		private volatile Session session;
+		private volatile int weight;
+		private double latency = -1;
+		private double latencyFactor = 1;
+		private double errorRate = 0;
+		private double throttleRate = 0;
+		private double keepaliveFailureRate = 0;
+		private int keepaliveFailures = 0;
+		private long sentCount = 0;
+
+		/** The receiver of the session when it was found unavailable, null if it wasn't. */
+		private volatile Receiver failedReceiver = null;
+
+		Member(String name, Session session, int weight) {
+			this.name = name;
+			this.session = session;
+			this.weight = weight;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Session getSession() {
+			return session;
+		}
+
+		public int getWeight() {
+			return weight;
+		}
+
+		public void setWeight(int weight) {
+			checkWeight(weight);
+			this.weight = weight;
+		}
+
+		/**
+		 * Returns if the session is bound and wasn't found failed since
+		 * it was bound.
+		 */
+		public boolean isAvailable() {
+			Session current = session;
+			if ((current == null) || !current.isBound()) {
+				return false;
+			}
+			Receiver receiver = current.getReceiver();
+			return (receiver != null) && (receiver != failedReceiver) && (receiver.getTermException() == null);
+		}
+
+		/** Returns the health score from 0 to 1. */
+		public synchronized double getScore() {
+			return Math.max((1 - errorRate) * (1 - throttleRate) * (1 - keepaliveFailureRate) * latencyFactor, MIN_SCORE);
+		}
+
+		/** Returns the smoothed response latency in milliseconds, -1 if unknown. */
+		public synchronized long getLatency() {
+			return Math.round(latency);
+		}
+
+		/** Returns the rolling rate of responses with an error status or timed out. */
+		public synchronized double getErrorRate() {
+			return errorRate;
+		}
+
+		/** Returns the rolling rate of responses throttling the ESME. */
+		public synchronized double getThrottleRate() {
+			return throttleRate;
+		}
+
+		/**
+		 * Returns the rolling rate of the keepalive failures, which rises
+		 * when the session is declared dead and decays with the responses.
+		 */
+		public synchronized double getKeepaliveFailureRate() {
+			return keepaliveFailureRate;
+		}
+
+		/** Returns how many times the session was declared dead by keepalive. */
+		public synchronized int getKeepaliveFailures() {
+			return keepaliveFailures;
+		}
+
+		/** Returns the number of requests sent through the session. */
+		public synchronized long getSentCount() {
+			return sentCount;
+		}
+
+		synchronized void sent() {
+			sentCount++;
+		}
+
+		synchronized void responded(int status, long responseLatency, long latencyTarget) {
+			boolean throttled = (status == Data.ESME_RTHROTTLED) || (status == Data.ESME_RMSGQFUL);
+			throttleRate += ((throttled ? 1 : 0) - throttleRate) * SMOOTHING;
+			errorRate += (((status != Data.ESME_ROK) && !throttled ? 1 : 0) - errorRate) * SMOOTHING;
+			latency = latency < 0 ? responseLatency : latency + (responseLatency - latency) * SMOOTHING;
+			latencyFactor = latency <= latencyTarget ? 1 : latencyTarget / latency;
+			keepaliveFailureRate -= keepaliveFailureRate * SMOOTHING;
+		}
+
+		synchronized void timedOut() {
+			errorRate += (1 - errorRate) * SMOOTHING;
+		}
+
+		/**
+		 * Makes the session unavailable until it's bound again; it starts
+		 * with the worst error rate then, or with the keepalive factor
+		 * lowered if it was declared dead by keepalive.
+		 */
+		synchronized void failed(Session failedSession, boolean keepalive) {
+			if (failedSession != session) {
+				return;
+			}
+			failedReceiver = failedSession.getReceiver();
+			if (keepalive) {
+				keepaliveFailures++;
+				keepaliveFailureRate += (1 - keepaliveFailureRate) * KEEPALIVE_SMOOTHING;
+			} else {
+				errorRate = 1;
+			}
+		}
+
+		synchronized void replace(Session replacement, int replacementWeight) {
+			session = replacement;
+			weight = replacementWeight;
+			failedReceiver = null;
+		}
+
+		public String toString() {
+			return name + " (weight " + weight + ", score " + getScore() + ")";
+		}
+	}
+
+	/**
+	 * A request sent asynchronously, waiting for its response.
+	 */
+	private static class Pending {
+		final Request request;
+		final Member member;
+		final long sent;
+		final List<Member> tried;
+
+		Pending(Request request, Member member, List<Member> tried) {
+			this.request = request;
+			this.member = member;
+			this.sent = System.currentTimeMillis();
+			this.tried = tried;
+		}
+	}
+
+	/**
+	 * Observes the responses to the requests sent asynchronously
+	 * and retries them.
+	 */
+	private class RouterListener extends SmppObject implements ServerPDUEventListener {
+		private final ServerPDUEventListener listener;
+
+		RouterListener(ServerPDUEventListener listener) {
+			this.listener = listener;
+		}
+
+		public void handleEvent(ServerPDUEvent received) {
+			PDU pdu = received.getPDU();
+			if ((pdu != null) && pdu.isResponse() && !inFlight.isEmpty()) {
+				Pending pending = inFlight.remove(new Integer(pdu.getSequenceNumber()));
+				if (pending != null) {
+					int status = pdu.getCommandStatus();
+					if (received instanceof ResponseTimeoutEvent) {
+						pending.member.timedOut();
+					} else {
+						pending.member.responded(status, System.currentTimeMillis() - pending.sent, latencyTarget);
+					}
+					if (retryStatuses.contains(new Integer(status)) && retry(pending)) {
+						pdu.release();
+						return;
+					}
+				}
+			}
+			listener.handleEvent(received);
+		}
+	}
+
+	private final List<Member> members = new CopyOnWriteArrayList<Member>();
+	private final Set<Integer> retryStatuses = new CopyOnWriteArraySet<Integer>();
+	private final ConcurrentHashMap<Integer, Pending> inFlight = new ConcurrentHashMap<Integer, Pending>();
+	private final Random random = new Random();
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long latencyTarget = DEFAULT_LATENCY_TARGET;
+	private volatile KeepaliveListener keepaliveListener = null;
+
+	private static void checkWeight(int weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("Invalid weight " + weight);
+		}
+	}
+
+	/**
+	 * Adds the session to send through. If there is a session with the
+	 * name already, it's replaced, e.g. by the session which reconnected,
+	 * and its health is kept.
+	 *
+	 * @param name    the name of the SMSC
+	 * @param session the session bound to the SMSC
+	 * @param weight  the share of the traffic when all the sessions are
+	 *                healthy, 0 to use the session only when no other
+	 *                is available
+	 * @return the member representing the session
+	 */
+	public Member addSession(String name, Session session, int weight) {
+		checkWeight(weight);
+		synchronized (members) {
+			Member member = getMember(name);
+			if (member != null) {
+				member.replace(session, weight);
+			} else {
+				member = new Member(name, session, weight);
+				members.add(member);
+			}
+			return member;
+		}
+	}
+
+	/**
+	 * Stops sending through the session with the name.
+	 */
+	public void removeSession(String name) {
+		synchronized (members) {
+			Member member = getMember(name);
+			if (member != null) {
+				members.remove(member);
+			}
+		}
+	}
+
+	/** Returns the member with the name, null if there's none. */
+	public Member getMember(String name) {
+		for (Member member : members) {
+			if (member.getName().equals(name)) {
+				return member;
+			}
+		}
+		return null;
+	}
+
+	/** Returns all the sessions the router sends through. */
+	public List<Member> getMembers() {
+		return new ArrayList<Member>(members);
+	}
+
+	/**
+	 * Makes the requests responded with the status be sent again through
+	 * another session.
+	 *
+	 * @see #setMaxAttempts(int)
+	 */
+	public void addRetryStatus(int commandStatus) {
+		retryStatuses.add(new Integer(commandStatus));
+	}
+
+	/**
+	 * Sets through how many sessions a request is sent at most, including
+	 * the first attempt.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("Invalid max attempts " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Sets the response latency in milliseconds above which the score
+	 * of the session falls.
+	 */
+	public void setLatencyTarget(long latencyTarget) {
+		if (latencyTarget < 1) {
+			throw new IllegalArgumentException("Invalid latency target " + latencyTarget);
+		}
+		this.latencyTarget = latencyTarget;
+	}
+
+	/**
+	 * Sets the listener the dead sessions are passed to after the router
+	 * stopped using them, e.g. to reconnect them.
+	 */
+	public void setKeepaliveListener(KeepaliveListener keepaliveListener) {
+		this.keepaliveListener = keepaliveListener;
+	}
+
+	/**
+	 * Chooses the session for the next request.
+	 *
+	 * @return the member chosen, null if no session is available
+	 */
+	public Member choose() {
+		return choose(null);
+	}
+
+	/**
+	 * Chooses randomly by the weights multiplied by the scores from the
+	 * available members not excluded; members with zero weight are chosen
+	 * only if there is no other.
+	 */
+	private Member choose(List<Member> excluded) {
+		List<Member> candidates = new ArrayList<Member>(members.size());
+		List<Member> spare = new ArrayList<Member>();
+		double[] shares = new double[members.size()];
+		double total = 0;
+		for (Member member : members) {
+			if (((excluded != null) && excluded.contains(member)) || !member.isAvailable()) {
+				continue;
+			}
+			if (member.getWeight() == 0) {
+				spare.add(member);
+				continue;
+			}
+			total += member.getWeight() * member.getScore();
+			shares[candidates.size()] = total;
+			candidates.add(member);
+		}
+		if (candidates.isEmpty()) {
+			return spare.isEmpty() ? null : spare.get(0);
+		}
+		double point;
+		synchronized (random) {
+			point = random.nextDouble() * total;
+		}
+		for (int i = 0; i < candidates.size(); i++) {
+			if (point < shares[i]) {
+				return candidates.get(i);
+			}
+		}
+		return candidates.get(candidates.size() - 1);
+	}
+
+	/**
+	 * Sends the request through the chosen session; if sending fails, the
+	 * session is made unavailable and the request is sent through another.
+	 * If the sessions are synchronous, the response is observed, retried
+	 * if its status is a retry status, and returned; otherwise the responses
+	 * are observed by the listener returned by <code>wrap</code> and null
+	 * is returned.
+	 *
+	 * @param request <code>submit_sm</code>, <code>data_sm</code> or
+	 *                <code>submit_multi</code>
+	 * @exception IOException if no session is available or sending failed
+	 *            through all of them
+	 */
+	public Response submit(Request request)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		request.assignSequenceNumber();
+		return send(request, new ArrayList<Member>(maxAttempts));
+	}
+
+	private Response send(Request request, List<Member> tried)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		IOException failure = null;
+		while (true) {
+			Member member = choose(tried);
+			if (member == null) {
+				throw failure != null ? failure : new IOException("No SMSC available");
+			}
+			tried.add(member);
+			Session session = member.getSession();
+			Integer sequenceNumber = new Integer(request.getSequenceNumber());
+			Pending pending = new Pending(request, member, tried);
+			inFlight.put(sequenceNumber, pending);
+			Response response;
+			try {
+				member.sent();
+				response = send(session, request);
+			} catch (IOException e) {
+				inFlight.remove(sequenceNumber);
+				event.write(e, "session router: sending through " + member.getName() + " failed");
+				member.failed(session, false);
+				failure = e;
+				continue;
+			} catch (RuntimeException e) {
+				inFlight.remove(sequenceNumber);
+				throw e;
+			}
+			if (session.isAsynchronous() || (inFlight.remove(sequenceNumber) == null)) {
+				return response;
+			}
+			if (response == null) {
+				member.timedOut();
+				return null;
+			}
+			member.responded(response.getCommandStatus(), System.currentTimeMillis() - pending.sent, latencyTarget);
+			if (!retryStatuses.contains(new Integer(response.getCommandStatus())) || (tried.size() >= maxAttempts)) {
+				return response;
+			}
+			debug.write(DUTL, "session router: retrying after status " + response.getCommandStatus());
+		}
+	}
+
+	/**
+	 * Sends the request whose response has a retry status through another
+	 * session.
+	 *
+	 * @return false if the request can't be retried
+	 */
+	private boolean retry(Pending pending) {
+		if (pending.tried.size() >= maxAttempts) {
+			return false;
+		}
+		try {
+			send(pending.request, pending.tried);
+			return true;
+		} catch (Exception e) {
+			debug.write(DUTL, "session router: retry of " + pending.request.debugString() + " failed: " + e);
+			return false;
+		}
+	}
+
+	private static Response send(Session session, Request request)
+		throws ValueNotSetException, TimeoutException, PDUException, IOException, WrongSessionStateException {
+		if (request instanceof SubmitSM) {
+			return session.submit((SubmitSM) request);
+		} else if (request instanceof DataSM) {
+			return session.data((DataSM) request);
+		} else if (request instanceof SubmitMultiSM) {
+			return session.submitMulti((SubmitMultiSM) request);
+		}
+		throw new IllegalArgumentException("Can't route " + request.getClass().getName());
+	}
+
+	/**
+	 * Makes the dead session unavailable and passes it to the keepalive
+	 * listener set.
+	 *
+	 * @see org.smpp.KeepaliveService#register(Session,KeepaliveListener)
+	 */
+	public void sessionDead(Session session) {
+		for (Member member : members) {
+			member.failed(session, true);
+		}
+		KeepaliveListener next = keepaliveListener;
+		if (next != null) {
+			next.sessionDead(session);
+		}
+	}
+
+	/**
+	 * Returns the listener the sessions should be bound with, which
+	 * observes and retries the responses and passes the others to
+	 * <code>listener</code>.
+	 */
+	public ServerPDUEventListener wrap(ServerPDUEventListener listener) {
+		return new RouterListener(listener);
+	}
+}
@@ -0,0 +1,314 @@
+package org.smpp.util;
+
+/**
+ * Hashed timing wheel for tracking large numbers of timeouts cheaply.
+ * <p>
+ * The time is divided into ticks of fixed length and the wheel has
+ * a power-of-two number of buckets; a timeout expiring in tick
+ * <code>t</code> is kept in bucket <code>t &amp; (wheelSize - 1)</code>
+ * in a doubly linked list, so both scheduling and cancelling
+ * a timeout are O(1) regardless of how many timeouts are outstanding.
+ * One background thread advances the wheel a tick at a time and fires
+ * the timeouts whose tick has been reached; timeouts longer than one
+ * revolution of the wheel just stay in their bucket until their tick
+ * comes. A timeout never fires before its delay elapses, but it can fire
+ * up to one tick later.
+ * <p>
+ * The timeouts are represented by subclasses of
+ * <code>TimingWheel.Timeout</code>, so a caller can embed its own state in
+ * the timeout object and no other object is allocated per timeout.
+ * The <code>expired</code> method is called from the wheel's thread outside
+ * of any lock and it should be short, as it delays the following timeouts.
+ * <p>
+ * One wheel is shared by all sessions of the library, see
+ * <code>getSharedInstance</code>; its thread is daemon and runs forever.
+ *
+ * @see org.smpp.Session#setResponseTimeout(long)
+ */
+public class TimingWheel extends ProcessingThread {
+	private static final String TIMING_WHEEL_THREAD_NAME = "TimingWheel";
+
+	/**
+	 * Default length of one tick in milliseconds.
+	 */
+	public static final long DEFAULT_TICK_DURATION = 10;
+
+	/**
+	 * Default number of buckets of the wheel.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private static TimingWheel sharedInstance = null;
+
+	private final Object lock = new Object();
+	private final long tickNanos;
+	private final long tickMillis;
+	private final Timeout[] buckets;
+	private final int mask;
+
+	/**
+	 * Number of the last processed tick.
+	 */
+	private long tick = 0;
+	private long startTime = 0;
+	private boolean started = false;
+	private int pendingCount = 0;
+
+	/**
+	 * Timeout managed by a <code>TimingWheel</code>.
+	 * Derived classes implement <code>expired</code> which is called when
+	 * the timeout elapses without being cancelled.
+	 * A timeout object can be scheduled again after it expired or
+	 * was cancelled.
+	 */
+	public static abstract class Timeout {
+		private static final byte IDLE = 0;
+		private static final byte SCHEDULED = 1;
+		private static final byte CANCELLED = 2;
+		private static final byte EXPIRED = 3;
+
+		private volatile TimingWheel wheel = null;
+		private Timeout prev = null;
+		private Timeout next = null;
+		private Timeout nextExpired = null;
+		private long deadlineTick;
+		private byte state = IDLE;
+
+		/**
+		 * Called from the wheel's thread when the timeout elapsed.
+		 */
+		protected abstract void expired();
+
+		/**
+		 * Cancels the timeout if it's still scheduled.
+		 *
+		 * @return true if the timeout was cancelled, false if it
+		 *         already expired, was cancelled or was never scheduled
+		 */
+		public boolean cancel() {
+			TimingWheel w = wheel;
+			if (w == null) {
+				return false;
+			}
+			synchronized (w.lock) {
+				if (state != SCHEDULED) {
+					return false;
+				}
+				w.unlink(this);
+				state = CANCELLED;
+				return true;
+			}
+		}
+
+		/**
+		 * Returns if the timeout is scheduled, i.e. neither expired
+		 * nor cancelled yet.
+		 */
+		public boolean isScheduled() {
+			TimingWheel w = wheel;
+			if (w == null) {
+				return false;
+			}
+			synchronized (w.lock) {
+				return state == SCHEDULED;
+			}
+		}
+
+		/**
+		 * Returns if the timeout expired.
+		 */
+		public boolean isExpired() {
+			TimingWheel w = wheel;
+			if (w == null) {
+				return false;
+			}
+			synchronized (w.lock) {
+				return state == EXPIRED;
+			}
+		}
+	}
+
+	/**
+	 * Creates a wheel with default tick duration and wheel size.
+	 */
+	public TimingWheel() {
+		this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * Creates a wheel with given tick duration and number of buckets.
+	 * The wheel doesn't run until <code>start</code> is called, timeouts
+	 * scheduled before that are measured from the start.
+	 *
+	 * @param tickDuration length of one tick in milliseconds
+	 * @param wheelSize number of buckets, rounded up to a power of two
+	 */
+	public TimingWheel(long tickDuration, int wheelSize) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+		}
+		if ((wheelSize <= 0) || (wheelSize > (1 << 30))) {
+			throw new IllegalArgumentException("wheelSize out of range: " + wheelSize);
+		}
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		tickMillis = tickDuration;
+		tickNanos = tickDuration * 1000000L;
+		buckets = new Timeout[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns the wheel shared by the whole library, starting it if
+	 * it's not running yet.
+	 */
+	public static synchronized TimingWheel getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new TimingWheel();
+			sharedInstance.start();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Schedules the timeout to expire after <code>delay</code> milliseconds.
+	 * If the timeout is already scheduled, it's rescheduled.
+	 *
+	 * @param timeout the timeout to schedule
+	 * @param delay the delay in milliseconds
+	 */
+	public void schedule(Timeout timeout, long delay) {
+		long delayNanos = Math.max(delay, 0) * 1000000L;
+		if ((timeout.wheel != null) && (timeout.wheel != this)) {
+			timeout.cancel();
+		}
+		synchronized (lock) {
+			if ((timeout.wheel == this) && (timeout.state == Timeout.SCHEDULED)) {
+				unlink(timeout);
+			}
+			timeout.wheel = this;
+			timeout.state = Timeout.SCHEDULED;
+			// the wheel is somewhere inside the tick after the last processed
+			// one, so the deadline is counted from the actual elapsed time
+			long elapsed = started ? System.nanoTime() - startTime : 0;
+			timeout.deadlineTick = Math.max((elapsed + delayNanos + tickNanos - 1) / tickNanos, tick + 1);
+			int index = (int) (timeout.deadlineTick & mask);
+			Timeout head = buckets[index];
+			timeout.prev = null;
+			timeout.next = head;
+			if (head != null) {
+				head.prev = timeout;
+			}
+			buckets[index] = timeout;
+			pendingCount++;
+		}
+	}
+
+	/**
+	 * Returns number of currently scheduled timeouts.
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pendingCount;
+		}
+	}
+
+	/**
+	 * Returns the length of one tick in milliseconds.
+	 */
+	public long getTickDuration() {
+		return tickMillis;
+	}
+
+	/**
+	 * Waits for the next tick and fires the timeouts expiring in it.
+	 */
+	public void process() {
+		Timeout expired = null;
+		synchronized (lock) {
+			if (!started) {
+				startTime = System.nanoTime();
+				started = true;
+			}
+			long waitNanos = startTime + (tick + 1) * tickNanos - System.nanoTime();
+			if (waitNanos > 0) {
+				try {
+					lock.wait(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+				} catch (InterruptedException e) {
+					// we'll just check the time again
+				}
+				return;
+			}
+			tick++;
+			expired = collectExpired((int) (tick & mask));
+		}
+		// fire outside the lock so the handlers can schedule/cancel freely
+		while (expired != null) {
+			Timeout timeout = expired;
+			expired = timeout.nextExpired;
+			timeout.nextExpired = null;
+			try {
+				timeout.expired();
+			} catch (RuntimeException e) {
+				event.write(e, "TimingWheel: timeout handler failed");
+			}
+		}
+	}
+
+	/**
+	 * Removes the timeouts due in the current tick from the bucket and
+	 * returns them as a list linked with <code>nextExpired</code>.
+	 * Must be called with the lock held.
+	 */
+	private Timeout collectExpired(int index) {
+		Timeout expired = null;
+		Timeout timeout = buckets[index];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.deadlineTick <= tick) {
+				unlink(timeout);
+				timeout.state = Timeout.EXPIRED;
+				timeout.nextExpired = expired;
+				expired = timeout;
+			}
+			timeout = next;
+		}
+		return expired;
+	}
+
+	/**
+	 * Removes the timeout from its bucket. Must be called with the lock held.
+	 */
+	private void unlink(Timeout timeout) {
+		int index = (int) (timeout.deadlineTick & mask);
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			buckets[index] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		pendingCount--;
+	}
+
+	protected void stopProcessing(Exception e) {
+		super.stopProcessing(e);
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	protected boolean isDaemon() {
+		return true;
+	}
+
+	// ProcessingThread's getThreadName override
+	public String getThreadName() {
+		return TIMING_WHEEL_THREAD_NAME;
+	}
+}
@@ -0,0 +1,156 @@
+package org.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.SubmitSMResp;
+import org.smpp.util.TimingWheel;
+
+public class KeepaliveServiceTest {
+	private static final long IDLE = 60;
+
+	private TimingWheel wheel;
+	private PipeConnection connection;
+	private Session session;
+	private KeepaliveService keepalive;
+	private final BlockingQueue<ServerPDUEvent> events = new LinkedBlockingQueue<ServerPDUEvent>();
+	private final BlockingQueue<Session> dead = new LinkedBlockingQueue<Session>();
+
+	@Before
+	public void setup() throws Exception {
+		wheel = new TimingWheel(5, 64);
+		wheel.start();
+		connection = new PipeConnection(5);
+		session = connection.bind(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		});
+		keepalive = new KeepaliveService(IDLE, 2, wheel);
+		keepalive.register(session, new KeepaliveListener() {
+			public void sessionDead(Session session) {
+				dead.add(session);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		keepalive.unregister(session);
+		session.getReceiver().stop();
+		wheel.stop();
+	}
+
+	@Test(timeout = 5000)
+	public void testIdleLinkIsProbedAndResponseConsumed() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			PDU sent = connection.takeSentPDU(1000);
+			assertTrue(sent instanceof EnquireLink);
+			connection.feed(((EnquireLink) sent).getResponse());
+		}
+		assertNull(dead.poll(2 * IDLE, TimeUnit.MILLISECONDS));
+		assertNull("enquire_link_resp must not reach the application", events.poll());
+		assertEquals(1, keepalive.getSessionCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testBusyLinkIsNotProbed() throws Exception {
+		long end = System.currentTimeMillis() + 5 * IDLE;
+		int seq = 1000;
+		while (System.currentTimeMillis() < end) {
+			SubmitSMResp traffic = new SubmitSMResp();
+			traffic.setSequenceNumber(seq++);
+			connection.feed(traffic);
+			session.getTransmitter().send(traffic);
+			Thread.sleep(IDLE / 4);
+		}
+		PDU sent;
+		while ((sent = connection.takeSentPDU(0)) != null) {
+			assertTrue(sent instanceof SubmitSMResp);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testSendingOnlyLinkIsProbed() throws Exception {
+		long end = System.currentTimeMillis() + 3 * IDLE;
+		int seq = 1000;
+		while (System.currentTimeMillis() < end) {
+			SubmitSMResp traffic = new SubmitSMResp();
+			traffic.setSequenceNumber(seq++);
+			session.getTransmitter().send(traffic);
+			Thread.sleep(IDLE / 4);
+		}
+		boolean probed = false;
+		PDU sent;
+		while ((sent = connection.takeSentPDU(0)) != null) {
+			probed |= sent instanceof EnquireLink;
+		}
+		assertTrue(probed);
+	}
+
+	@Test(timeout = 5000)
+	public void testTrafficDoesNotAnswerEnquireLink() throws Exception {
+		// the peer keeps sending but never answers the enquire links
+		int seq = 1000;
+		Session declared = null;
+		while (declared == null) {
+			SubmitSMResp traffic = new SubmitSMResp();
+			traffic.setSequenceNumber(seq++);
+			connection.feed(traffic);
+			declared = dead.poll(IDLE / 4, TimeUnit.MILLISECONDS);
+		}
+		assertSame(session, declared);
+	}
+
+	@Test(timeout = 5000)
+	public void testSendingAndListenerLeftToExecutor() throws Exception {
+		keepalive.unregister(session);
+		final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+		KeepaliveService other = new KeepaliveService(IDLE, 1, wheel);
+		other.setExecutor(new Executor() {
+			public void execute(Runnable task) {
+				tasks.add(task);
+			}
+		});
+		other.register(session, new KeepaliveListener() {
+			public void sessionDead(Session session) {
+				dead.add(session);
+			}
+		});
+		try {
+			// the wheel's thread doesn't send the enquire link itself
+			Runnable send = tasks.take();
+			assertNull(connection.takeSentPDU(0));
+			send.run();
+			assertTrue(connection.takeSentPDU(0) instanceof EnquireLink);
+
+			Runnable declare = tasks.take();
+			assertNull(dead.poll());
+			declare.run();
+			assertSame(session, dead.poll());
+		} finally {
+			other.unregister(session);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testUnresponsiveSessionDeclaredDead() throws Exception {
+		assertSame(session, dead.poll(3000, TimeUnit.MILLISECONDS));
+		assertEquals(0, keepalive.getSessionCount());
+		// one enquire link per interval until the session is given up
+		assertTrue(connection.takeSentPDU(0) instanceof EnquireLink);
+		assertTrue(connection.takeSentPDU(0) instanceof EnquireLink);
+	}
+}
@@ -0,0 +1,161 @@
+package org.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.util.Flow;
+
+public class PDUPublisherTest {
+	private PipeConnection connection;
+	private Session session;
+	private PDUPublisher publisher;
+	private final BlockingQueue<PDU> received = new LinkedBlockingQueue<PDU>();
+	private final AtomicReference<Flow.Subscription> subscription = new AtomicReference<Flow.Subscription>();
+	private final CountDownLatch completed = new CountDownLatch(1);
+
+	@Before
+	public void setup() throws Exception {
+		connection = new PipeConnection(10);
+		publisher = new PDUPublisher();
+		publisher.subscribe(new Flow.Subscriber<PDU>() {
+			public void onSubscribe(Flow.Subscription s) {
+				subscription.set(s);
+			}
+
+			public void onNext(PDU pdu) {
+				received.add(pdu);
+			}
+
+			public void onError(Throwable throwable) {
+			}
+
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		session = connection.bind(publisher);
+	}
+
+	@After
+	public void tearDown() {
+		session.getReceiver().stop();
+	}
+
+	private void feed(int count) throws Exception {
+		for (int i = 1; i <= count; i++) {
+			EnquireLink enquire = new EnquireLink();
+			enquire.setSequenceNumber(i);
+			connection.feed(enquire);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testReadsOnlyOnDemand() throws Exception {
+		feed(5);
+		Thread.sleep(100);
+		assertTrue(received.isEmpty());
+		assertEquals(5, connection.getUnreadCount());
+
+		subscription.get().request(2);
+		assertEquals(1, received.take().getSequenceNumber());
+		assertEquals(2, received.take().getSequenceNumber());
+		Thread.sleep(100);
+		assertNull(received.poll());
+		assertEquals(3, connection.getUnreadCount());
+
+		subscription.get().request(10);
+		for (int i = 3; i <= 5; i++) {
+			assertEquals(i, received.take().getSequenceNumber());
+		}
+		assertEquals(7, publisher.getDemand());
+	}
+
+	@Test(timeout = 5000)
+	public void testWrappedPublisherReadsRegardlessOfDemand() throws Exception {
+		final PDUPublisher wrapped = new PDUPublisher();
+		final BlockingQueue<PDU> passed = new LinkedBlockingQueue<PDU>();
+		final AtomicReference<Flow.Subscription> wrappedSubscription = new AtomicReference<Flow.Subscription>();
+		wrapped.subscribe(new Flow.Subscriber<PDU>() {
+			public void onSubscribe(Flow.Subscription s) {
+				wrappedSubscription.set(s);
+			}
+
+			public void onNext(PDU pdu) {
+				passed.add(pdu);
+			}
+
+			public void onError(Throwable throwable) {
+			}
+
+			public void onComplete() {
+			}
+		});
+		PipeConnection other = new PipeConnection(10);
+		Session wrappingSession = other.bind(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				wrapped.handleEvent(event);
+			}
+		});
+		try {
+			for (int i = 1; i <= 3; i++) {
+				EnquireLink enquire = new EnquireLink();
+				enquire.setSequenceNumber(i);
+				other.feed(enquire);
+			}
+			for (int i = 0; (i < 100) && (wrapped.getPendingCount() < 3); i++) {
+				Thread.sleep(10);
+			}
+			// the session can't see the publisher's demand
+			assertEquals(0, other.getUnreadCount());
+			assertEquals(3, wrapped.getPendingCount());
+			assertTrue(passed.isEmpty());
+			wrappedSubscription.get().request(1);
+			assertEquals(1, passed.take().getSequenceNumber());
+			assertEquals(2, wrapped.getPendingCount());
+		} finally {
+			wrappingSession.getReceiver().stop();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testCompletedWhenReceiverStops() throws Exception {
+		long start = System.nanoTime();
+		session.getReceiver().stop();
+		long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+		// the receiver waiting for demand is woken up
+		assertTrue("stop took " + elapsedMillis + " ms", elapsedMillis < 1000);
+		assertTrue(completed.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = 5000)
+	public void testOnlyOneSubscriber() throws Exception {
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		publisher.subscribe(new Flow.Subscriber<Object>() {
+			public void onSubscribe(Flow.Subscription s) {
+			}
+
+			public void onNext(Object item) {
+			}
+
+			public void onError(Throwable throwable) {
+				error.set(throwable);
+			}
+
+			public void onComplete() {
+			}
+		});
+		assertTrue(error.get() instanceof IllegalStateException);
+	}
+}
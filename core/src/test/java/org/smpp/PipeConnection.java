@@ -0,0 +1,116 @@
+package org.smpp;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.util.ByteBuffer;
+
+/**
+ * In-memory connection for tests: data "received" from the peer are
+ * supplied with <code>feed</code>, data sent by the library are collected
+ * and can be taken with <code>takeSent</code>.
+ */
+public class PipeConnection extends Connection {
+	private final BlockingQueue<byte[]> inbound = new LinkedBlockingQueue<byte[]>();
+	private final BlockingQueue<byte[]> outbound = new LinkedBlockingQueue<byte[]>();
+	private volatile boolean opened = true;
+	private final long pollTimeout;
+
+	public PipeConnection(long pollTimeout) {
+		this.pollTimeout = pollTimeout;
+	}
+
+	public void feed(byte[] data) {
+		inbound.add(data);
+	}
+
+	public void feed(PDU pdu) throws Exception {
+		feed(pdu.getData().getBuffer());
+	}
+
+	/** Returns the number of fed data not received yet. */
+	public int getUnreadCount() {
+		return inbound.size();
+	}
+
+	public byte[] takeSent(long timeout) throws InterruptedException {
+		return outbound.poll(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	public PDU takeSentPDU(long timeout) throws Exception {
+		byte[] data = takeSent(timeout);
+		return data == null ? null : PDU.createPDU(new ByteBuffer(data));
+	}
+
+	/**
+	 * Binds a transmitter session over this connection, playing the SMSC
+	 * side of the bind.
+	 */
+	public Session bind(ServerPDUEventListener listener) throws Exception {
+		return bind(new Session(this), listener);
+	}
+
+	/**
+	 * Binds the transmitter session created over this connection.
+	 */
+	public Session bind(Session session, ServerPDUEventListener listener) throws Exception {
+		Thread smsc = new Thread() {
+			public void run() {
+				try {
+					Request bind = (Request) takeSentPDU(5000);
+					feed(bind.getResponse());
+				} catch (Exception e) {
+					// the bind will fail
+				}
+			}
+		};
+		smsc.start();
+		BindTransmitter bind = new BindTransmitter();
+		bind.setSystemId("test");
+		if (session.bind(bind, listener) == null) {
+			throw new IllegalStateException("bind failed");
+		}
+		return session;
+	}
+
+	public void open() {
+		opened = true;
+	}
+
+	public void close() {
+		opened = false;
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void send(ByteBuffer data) throws IOException {
+		if (!opened) {
+			throw new IOException("closed");
+		}
+		outbound.add(data.getBuffer());
+	}
+
+	public ByteBuffer receive() throws IOException {
+		if (!opened) {
+			throw new IOException("closed");
+		}
+		try {
+			byte[] data = inbound.poll(pollTimeout, TimeUnit.MILLISECONDS);
+			return data == null ? new ByteBuffer() : new ByteBuffer(data);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new ByteBuffer();
+		}
+	}
+
+	public Connection accept() {
+		return null;
+	}
+}
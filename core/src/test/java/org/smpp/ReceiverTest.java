@@ -0,0 +1,227 @@
+package org.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.EnquireLinkResp;
+import org.smpp.pdu.GenericNack;
+import org.smpp.pdu.PDU;
+
+public class ReceiverTest {
+	private PipeConnection connection;
+	private Receiver receiver;
+
+	@Before
+	public void setup() {
+		connection = new PipeConnection(10);
+		receiver = new Receiver(new Transmitter(connection), connection);
+	}
+
+	@After
+	public void tearDown() {
+		receiver.stop();
+	}
+
+	@Test(timeout = 5000)
+	public void testStartAndStopDoNotPoll() {
+		for (int i = 0; i < 10; i++) {
+			long start = System.nanoTime();
+			receiver.start();
+			receiver.stop();
+			long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+			// used to take at least 200 ms because of the 100 ms polling
+			assertTrue("start/stop took " + elapsedMillis + " ms", elapsedMillis < 100);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testReceiveHonoursTimeoutShorterThanQueueWait() throws Exception {
+		receiver.setQueueWaitTimeout(2000);
+		receiver.start();
+		long start = System.nanoTime();
+		assertNull(receiver.receive(100));
+		long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+		assertTrue("receive(100) took " + elapsedMillis + " ms", elapsedMillis >= 99 && elapsedMillis < 1000);
+	}
+
+	@Test(timeout = 10000)
+	public void testWaitingCallerWokenUpWhenPDUArrives() throws Exception {
+		receiver.setQueueWaitTimeout(5000);
+		receiver.start();
+		int rounds = 200;
+		long[] latencies = new long[rounds];
+		for (int i = 0; i < rounds; i++) {
+			final EnquireLinkResp resp = new EnquireLinkResp();
+			resp.setSequenceNumber(i + 1);
+			final AtomicReference<PDU> received = new AtomicReference<PDU>();
+			final AtomicLong wokenUp = new AtomicLong();
+			final CountDownLatch waiting = new CountDownLatch(1);
+			Thread caller = new Thread() {
+				public void run() {
+					try {
+						waiting.countDown();
+						received.set(receiver.receive(resp));
+						wokenUp.set(System.nanoTime());
+					} catch (Exception e) {
+						// received stays null
+					}
+				}
+			};
+			caller.start();
+			waiting.await();
+			Thread.sleep(1);
+			long fed = System.nanoTime();
+			connection.feed(resp);
+			caller.join();
+			assertNotNull(received.get());
+			assertEquals(i + 1, received.get().getSequenceNumber());
+			latencies[i] = wokenUp.get() - fed;
+		}
+		Arrays.sort(latencies);
+		long medianMicros = latencies[rounds / 2] / 1000L;
+		// on a quiet machine this is in tens of microseconds; polling the
+		// queue every 10 ms would make the median about 5 ms
+		assertTrue("median wakeup latency " + medianMicros + " us", medianMicros < 500);
+	}
+
+	@Test(timeout = 10000)
+	public void testParallelDecodingKeepsOrder() throws Exception {
+		final int count = 500;
+		final List<PDU> received = new ArrayList<PDU>();
+		final CountDownLatch all = new CountDownLatch(count);
+		ExecutorService decoders = Executors.newFixedThreadPool(4);
+		try {
+			receiver.setServerPDUEventListener(new ServerPDUEventListener() {
+				public void handleEvent(ServerPDUEvent pduReceived) {
+					received.add(pduReceived.getPDU());
+					all.countDown();
+				}
+			});
+			receiver.setDecodingExecutor(decoders, true);
+			receiver.start();
+			for (int i = 1; i <= count; i++) {
+				PDU pdu;
+				if (i % 5 == 0) {
+					pdu = new EnquireLink();
+				} else {
+					DeliverSM deliver = new DeliverSM();
+					deliver.setSourceAddr("4477009" + i);
+					deliver.setShortMessage("message " + i);
+					pdu = deliver;
+				}
+				pdu.setSequenceNumber(i);
+				connection.feed(pdu);
+			}
+			all.await();
+		} finally {
+			decoders.shutdown();
+		}
+		for (int i = 1; i <= count; i++) {
+			PDU pdu = received.get(i - 1);
+			assertEquals(i, pdu.getSequenceNumber());
+			assertTrue(pdu.isDecoded());
+			if (pdu instanceof DeliverSM) {
+				assertEquals("message " + i, ((DeliverSM) pdu).getShortMessage());
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testParallelDecodingReadsAheadLimited() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch all = new CountDownLatch(10);
+		ExecutorService decoders = Executors.newFixedThreadPool(2);
+		try {
+			receiver.setServerPDUEventListener(new ServerPDUEventListener() {
+				public void handleEvent(ServerPDUEvent pduReceived) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						// go on
+					}
+					all.countDown();
+				}
+			});
+			receiver.setDecodingExecutor(decoders, true);
+			receiver.setMaxDecodingPDUs(3);
+			receiver.start();
+			for (int i = 1; i <= 10; i++) {
+				DeliverSM deliver = new DeliverSM();
+				deliver.setSourceAddr("4477009" + i);
+				deliver.setSequenceNumber(i);
+				connection.feed(deliver);
+			}
+			Thread.sleep(200);
+			// the listener holds the first one, two more are read ahead
+			assertEquals(7, connection.getUnreadCount());
+			assertEquals(0, receiver.getAvailableDecodingPermits());
+			release.countDown();
+			all.await();
+			assertEquals(0, connection.getUnreadCount());
+			// the receiver holds a permit while it's reading
+			receiver.stop();
+			for (int i = 0; (i < 100) && (receiver.getAvailableDecodingPermits() < 3); i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(3, receiver.getAvailableDecodingPermits());
+		} finally {
+			decoders.shutdown();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testParallelDecodingRejectsMalformedBody() throws Exception {
+		final CountDownLatch delivered = new CountDownLatch(1);
+		final AtomicReference<PDU> received = new AtomicReference<PDU>();
+		ExecutorService decoders = Executors.newFixedThreadPool(2);
+		try {
+			receiver.setServerPDUEventListener(new ServerPDUEventListener() {
+				public void handleEvent(ServerPDUEvent pduReceived) {
+					received.set(pduReceived.getPDU());
+					delivered.countDown();
+				}
+			});
+			receiver.setDecodingExecutor(decoders, false);
+			receiver.start();
+			DeliverSM deliver = new DeliverSM();
+			deliver.setSourceAddr("447700900123");
+			deliver.setSequenceNumber(7);
+			byte[] data = deliver.getData().getBuffer();
+			// cut the PDU after the service type and the source address ton
+			byte[] truncated = new byte[Data.PDU_HEADER_SIZE + 2];
+			System.arraycopy(data, 0, truncated, 0, truncated.length);
+			truncated[3] = (byte) truncated.length;
+			connection.feed(truncated);
+			PDU nack = connection.takeSentPDU(5000);
+			assertTrue(nack instanceof GenericNack);
+			assertEquals(7, nack.getSequenceNumber());
+			assertEquals(Data.ESME_RINVMSGLEN, nack.getCommandStatus());
+
+			EnquireLink enquire = new EnquireLink();
+			enquire.setSequenceNumber(8);
+			connection.feed(enquire);
+			delivered.await();
+			assertEquals(8, received.get().getSequenceNumber());
+			assertFalse(received.get() instanceof DeliverSM);
+		} finally {
+			decoders.shutdown();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+
+public class SessionResponseTimeoutTest {
+	private PipeConnection connection;
+	private Session session;
+	private final BlockingQueue<ServerPDUEvent> events = new LinkedBlockingQueue<ServerPDUEvent>();
+
+	@Before
+	public void setup() throws Exception {
+		connection = new PipeConnection(10);
+		session = connection.bind(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		});
+		session.setResponseTimeout(100);
+	}
+
+	@After
+	public void tearDown() {
+		session.getReceiver().stop();
+	}
+
+	@Test(timeout = 5000)
+	public void testUnansweredRequestTimesOut() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		assertNull(session.submit(submit));
+		assertEquals(1, session.getOutstandingRequestCount());
+		ServerPDUEvent event = events.poll(2000, TimeUnit.MILLISECONDS);
+		assertTrue(event instanceof ResponseTimeoutEvent);
+		ResponseTimeoutEvent timeout = (ResponseTimeoutEvent) event;
+		assertSame(submit, timeout.getRequest());
+		assertTrue(timeout.getPDU() instanceof SubmitSMResp);
+		assertEquals(submit.getSequenceNumber(), timeout.getPDU().getSequenceNumber());
+		assertEquals(Data.ESME_RUNKNOWNERR, timeout.getPDU().getCommandStatus());
+		assertEquals(0, session.getOutstandingRequestCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testAnsweredRequestDoesNotTimeOut() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		session.submit(submit);
+		PDU sent = connection.takeSentPDU(1000);
+		assertEquals(submit.getSequenceNumber(), sent.getSequenceNumber());
+		connection.feed(submit.getResponse());
+		ServerPDUEvent event = events.poll(1000, TimeUnit.MILLISECONDS);
+		assertEquals(ServerPDUEvent.class, event.getClass());
+		assertEquals(0, session.getOutstandingRequestCount());
+		assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+	}
+}
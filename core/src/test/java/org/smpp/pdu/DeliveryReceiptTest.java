@@ -0,0 +1,99 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.smpp.Data;
+
+public class DeliveryReceiptTest {
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static long millis(TimeZone zone, int year, int month, int day, int hour, int minute) {
+		Calendar calendar = Calendar.getInstance(zone);
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute);
+		return calendar.getTimeInMillis();
+	}
+
+	@Test
+	public void testParseText() throws Exception {
+		DeliveryReceipt receipt = new DeliveryReceipt();
+		receipt.setTimeZone(UTC);
+		byte[] data = ("id:0123456789 sub:001 dlvrd:001 submit date:2402291530 done date:240301000512"
+			+ " stat:UNDELIV err:017 Text:Hello world and more").getBytes("US-ASCII");
+		assertTrue(receipt.parse(data, 0, data.length));
+		assertEquals("0123456789", receipt.getMessageId());
+		assertTrue(receipt.isMessageId("0123456789"));
+		assertFalse(receipt.isMessageId("012345678"));
+		assertEquals(1, receipt.getSubmitted());
+		assertEquals(1, receipt.getDelivered());
+		assertEquals(millis(UTC, 2024, 2, 29, 15, 30), receipt.getSubmitDate());
+		assertEquals(millis(UTC, 2024, 3, 1, 0, 5) + 12000, receipt.getDoneDate());
+		assertEquals(Data.SM_STATE_UNDELIVERABLE, receipt.getState());
+		assertEquals(17, receipt.getError());
+		assertEquals("Hello world and more", receipt.getText());
+
+		data = "id:abc stat:BOGUS err:x submit date:99".getBytes("US-ASCII");
+		assertTrue(receipt.parse(data, 0, data.length));
+		assertEquals("abc", receipt.getMessageId());
+		assertEquals(DeliveryReceipt.NOT_SET, receipt.getState());
+		assertEquals(DeliveryReceipt.NOT_SET, receipt.getError());
+		assertEquals(DeliveryReceipt.NOT_SET, receipt.getSubmitDate());
+		assertEquals(DeliveryReceipt.NOT_SET, receipt.getSubmitted());
+	}
+
+	@Test
+	public void testOptionalParametersFallback() throws Exception {
+		DeliverSM deliver = new DeliverSM();
+		deliver.setShortMessage("sub:001 dlvrd:000 err:000");
+		deliver.setReceiptedMessageId("m42");
+		deliver.setMessageState((byte) Data.SM_STATE_EXPIRED);
+		DeliveryReceipt receipt = new DeliveryReceipt();
+		assertTrue(receipt.parse(deliver));
+		assertEquals("m42", receipt.getMessageId());
+		assertEquals(Data.SM_STATE_EXPIRED, receipt.getState());
+		assertEquals(0, receipt.getDelivered());
+
+		assertFalse(receipt.parse(new DeliverSM()));
+	}
+
+	@Test
+	public void testBuildAndParseBack() throws Exception {
+		TimeZone zone = TimeZone.getTimeZone("Europe/Prague");
+		DeliveryReceipt receipt = new DeliveryReceipt();
+		receipt.setTimeZone(zone);
+		receipt.setMessageId("7f3a");
+		receipt.setSubmitted(1);
+		receipt.setDelivered(1);
+		receipt.setSubmitDate(millis(zone, 2023, 7, 14, 23, 59));
+		receipt.setDoneDate(millis(zone, 2031, 12, 31, 8, 0));
+		receipt.setState(Data.SM_STATE_DELIVERED);
+		receipt.setError(0);
+		receipt.setText("Hello world, this is a long message");
+
+		DeliverSM deliver = new DeliverSM();
+		receipt.write(deliver);
+		assertEquals(Data.SM_SMSC_DLV_RCPT_TYPE, deliver.getEsmClass());
+		assertEquals("7f3a", deliver.getReceiptedMessageId());
+		assertEquals(Data.SM_STATE_DELIVERED, deliver.getMessageState());
+		byte[] data = deliver.getShortMessageData().getBuffer();
+		assertEquals(receipt.getEncodedLength(), data.length);
+		assertEquals("id:7f3a sub:001 dlvrd:001 submit date:2307142359 done date:3112310800"
+			+ " stat:DELIVRD err:000 text:Hello world, this is", new String(data, "US-ASCII"));
+
+		DeliveryReceipt parsed = new DeliveryReceipt();
+		parsed.setTimeZone(zone);
+		assertTrue(parsed.parse(deliver));
+		assertEquals(receipt.getSubmitDate(), parsed.getSubmitDate());
+		assertEquals(receipt.getDoneDate(), parsed.getDoneDate());
+		assertEquals(Data.SM_STATE_DELIVERED, parsed.getState());
+		assertEquals(0, parsed.getError());
+		assertEquals("Hello world, this is", parsed.getText());
+
+		receipt.setText("žluťoučký");
+		assertEquals("?lu?ou?ký", receipt.getText());
+	}
+}
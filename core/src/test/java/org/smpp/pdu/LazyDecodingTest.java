@@ -0,0 +1,103 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.util.ByteBuffer;
+
+public class LazyDecodingTest {
+
+	private static ByteBuffer deliverData() throws Exception {
+		DeliverSM deliver = new DeliverSM();
+		deliver.setSequenceNumber(42);
+		deliver.setSourceAddr("447700900123");
+		deliver.setShortMessage("id:1 stat:DELIVRD");
+		deliver.setReceiptedMessageId("abc");
+		deliver.setExtraOptional((short) 0x1400, new ByteBuffer(new byte[] { 1 }));
+		return deliver.getData();
+	}
+
+	@Test
+	public void testHeaderParsedBodyOnDemand() throws Exception {
+		DeliverSM deliver = (DeliverSM) PDU.createPDU(deliverData(), null, true);
+		assertFalse(deliver.isDecoded());
+		assertEquals(42, deliver.getSequenceNumber());
+		assertEquals(Data.DELIVER_SM, deliver.getCommandId());
+		deliver.debugString();
+		assertFalse(deliver.isDecoded());
+
+		assertEquals("abc", deliver.getReceiptedMessageId());
+		assertTrue(deliver.isDecoded());
+		assertEquals("447700900123", deliver.getSourceAddr().getAddress());
+		assertEquals("id:1 stat:DELIVRD", deliver.getShortMessage());
+		assertNotNull(deliver.getExtraOptional((short) 0x1400));
+		assertTrue(deliver.isValid());
+	}
+
+	@Test
+	public void testUntouchedPDUReusesReceivedBytes() throws Exception {
+		String hex = deliverData().getHexDump();
+		DeliverSM deliver = (DeliverSM) PDU.createPDU(deliverData(), null, true);
+		assertEquals(hex.length() / 2, deliver.getEncodedLength());
+		assertEquals(hex, deliver.getData().getHexDump());
+		assertFalse(deliver.isDecoded());
+
+		deliver.setSequenceNumber(43);
+		byte[] data = new byte[deliver.getEncodedLength()];
+		deliver.encode(data, 0);
+		assertEquals(43, PDU.createPDU(new ByteBuffer(data)).getSequenceNumber());
+		assertFalse(deliver.isDecoded());
+	}
+
+	@Test
+	public void testSetterDecodesFirst() throws Exception {
+		DeliverSM deliver = (DeliverSM) PDU.createPDU(deliverData(), null, true);
+		deliver.setEsmClass((byte) 4);
+		assertTrue(deliver.isDecoded());
+		DeliverSM parsed = (DeliverSM) PDU.createPDU(deliver.getData());
+		assertEquals(4, parsed.getEsmClass());
+		assertEquals("abc", parsed.getReceiptedMessageId());
+	}
+
+	@Test
+	public void testMalformedBodyFoundOnAccess() throws Exception {
+		byte[] data = deliverData().getBuffer();
+		// cut the PDU after the service type and the source address ton
+		byte[] truncated = new byte[Data.PDU_HEADER_SIZE + 2];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		truncated[3] = (byte) truncated.length;
+		DeliverSM deliver = (DeliverSM) PDU.createPDU(new ByteBuffer(truncated), null, true);
+		assertTrue(deliver.isHeaderValid());
+		assertFalse(deliver.isValid());
+		assertTrue(deliver.isDecoded());
+	}
+
+	@Test
+	public void testMalformedBodyReportedByDecode() throws Exception {
+		byte[] data = deliverData().getBuffer();
+		byte[] truncated = new byte[Data.PDU_HEADER_SIZE + 2];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		truncated[3] = (byte) truncated.length;
+		DeliverSM deliver = (DeliverSM) PDU.createPDU(new ByteBuffer(truncated), null, true);
+		try {
+			deliver.decode();
+			fail("decode() accepted a truncated body");
+		} catch (InvalidPDUException e) {
+			assertSame(deliver, e.getPDU());
+		}
+		assertTrue(deliver.isHeaderValid());
+		assertFalse(deliver.isValid());
+		// decoded at most once
+		deliver.decode();
+	}
+
+	@Test
+	public void testUnsupportedPDUDecodedAtOnce() throws Exception {
+		SubmitSMResp resp = new SubmitSMResp();
+		resp.setMessageId("m1");
+		SubmitSMResp parsed = (SubmitSMResp) PDU.createPDU(resp.getData(), null, true);
+		assertTrue(parsed.isDecoded());
+		assertEquals("m1", parsed.getMessageId());
+	}
+}
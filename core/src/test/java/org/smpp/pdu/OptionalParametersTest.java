@@ -0,0 +1,106 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.pdu.tlv.TLV;
+import org.smpp.pdu.tlv.TLVByte;
+import org.smpp.pdu.tlv.TLVInt;
+import org.smpp.pdu.tlv.TLVShort;
+import org.smpp.pdu.tlv.TLVTable;
+import org.smpp.util.ByteBuffer;
+
+public class OptionalParametersTest {
+
+	@Test
+	public void testTableLookup() {
+		TLVTable parent = new TLVTable(new TLV[] { new TLVShort((short) 0x0204), new TLVByte((short) 0x0424) });
+		TLVTable table = new TLVTable(parent, new TLV[] { new TLVInt((short) 0x1400) });
+		assertEquals(3, table.size());
+		assertEquals(0, table.indexOf((short) 0x0204));
+		assertEquals(1, table.indexOf((short) 0x0424));
+		assertEquals(2, table.indexOf((short) 0x1400));
+		assertEquals(-1, table.indexOf((short) 0x0205));
+		TLV created = table.create(2);
+		assertTrue(created instanceof TLVInt);
+		assertEquals((short) 0x1400, created.getTag());
+		assertFalse(created.hasValue());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateTagRejected() {
+		new TLVTable(new TLV[] { new TLVShort((short) 0x0204), new TLVByte((short) 0x0204) });
+	}
+
+	@Test
+	public void testUnsetParametersAreAbsent() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		assertFalse(submit.hasSourcePort());
+		assertNull(submit.getOptional(Data.OPT_PAR_SRC_PORT));
+		try {
+			submit.getSourcePort();
+			fail("ValueNotSetException expected");
+		} catch (ValueNotSetException e) {
+			// expected
+		}
+		// without optional parameters the PDU is just the header and the body
+		assertEquals(Data.PDU_HEADER_SIZE + submit.getBody().length(), submit.getData().length());
+	}
+
+	@Test
+	public void testRoundTripKeepsParametersAndOrder() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setUssdServiceOp((byte) 2);
+		submit.setSourcePort((short) 1234);
+		submit.setMessagePayload(new ByteBuffer(new byte[] { 1, 2, 3 }));
+		submit.setExtraOptional((short) 0x1401, new ByteBuffer(new byte[] { 9 }));
+		String hex = submit.getData().getHexDump();
+
+		SubmitSM parsed = (SubmitSM) PDU.createPDU(submit.getData());
+		assertEquals(1234, parsed.getSourcePort());
+		assertEquals(2, parsed.getUssdServiceOp());
+		assertEquals(3, parsed.getMessagePayload().length());
+		assertFalse(parsed.hasDestinationPort());
+		assertNotNull(parsed.getExtraOptional((short) 0x1401));
+		assertNull(parsed.getOptional((short) 0x1401));
+		// defined parameters are encoded in the order of the table, extra ones last
+		assertTrue(hex.endsWith("020a000204d2" + "04240003010203" + "0501000102" + "1401000109"));
+		assertEquals(hex, parsed.getData().getHexDump());
+	}
+
+	@Test
+	public void testRegisteredOptionalStillSupported() throws Exception {
+		final short tag = (short) 0x1402;
+		final TLVShort custom = new TLVShort(tag);
+		SubmitSM submit = new SubmitSM() {
+			{
+				registerOptional(custom);
+			}
+		};
+		assertFalse(submit.hasOptional(tag));
+		custom.setValue((short) 7);
+		assertSame(custom, submit.getOptional(tag));
+		assertNull(submit.getExtraOptional(tag));
+	}
+
+	@Test
+	public void testCongestionStateOnResponses() throws Exception {
+		Response[] responses = new Response[] { new SubmitSMResp(), new DataSMResp(), new BindTransmitterResp() };
+		for (int i = 0; i < responses.length; i++) {
+			Response response = responses[i];
+			assertFalse(response.hasCongestionState());
+			response.setCongestionState(85);
+			Response parsed = (Response) PDU.createPDU(response.getData());
+			assertTrue(parsed.hasCongestionState());
+			assertEquals(85, parsed.getCongestionState());
+			assertNull(parsed.getExtraOptional(Data.OPT_PAR_CONGESTION_STATE));
+		}
+		try {
+			new SubmitSMResp().setCongestionState(101);
+			fail("IntegerOutOfRangeException expected");
+		} catch (IntegerOutOfRangeException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.Transmitter;
+import org.smpp.util.ByteBuffer;
+
+public class PDUEncodingTest {
+
+	private static List<PDU> samples() throws Exception {
+		List<PDU> pdus = new ArrayList<PDU>();
+		SubmitSM submit = new SubmitSM();
+		submit.setServiceType("CMT");
+		submit.setSourceAddr((byte) 1, (byte) 1, "447700900123");
+		submit.setDestAddr("447700900456");
+		submit.setShortMessage("hello world");
+		submit.setValidityPeriod("000001000000000R");
+		submit.setSourcePort((short) 16000);
+		submit.setMessagePayload(new ByteBuffer(new byte[300]));
+		submit.setExtraOptional((short) 0x1400, new ByteBuffer(new byte[] { 1 }));
+		pdus.add(submit);
+
+		DeliverSM deliver = new DeliverSM();
+		deliver.setSourceAddr("café"); // non ascii chars are replaced
+		deliver.setShortMessage("id:1 stat:DELIVRD");
+		deliver.setReceiptedMessageId("abc");
+		pdus.add(deliver);
+
+		DataSM data = new DataSM();
+		data.setAlertOnMsgDelivery(true);
+		data.setQosTimeToLive(1000);
+		pdus.add(data);
+
+		SubmitSMResp submitResp = new SubmitSMResp();
+		submitResp.setMessageId("m1");
+		pdus.add(submitResp);
+		SubmitSMResp failed = new SubmitSMResp();
+		failed.setCommandStatus(Data.ESME_RTHROTTLED);
+		pdus.add(failed);
+
+		DataSMResp dataResp = new DataSMResp();
+		dataResp.setMessageId("m2");
+		dataResp.setAdditionalStatusInfoText("ok");
+		pdus.add(dataResp);
+
+		BindTransmitter bind = new BindTransmitter();
+		bind.setSystemId("test");
+		bind.setPassword("secret");
+		pdus.add(bind);
+		pdus.add(new EnquireLink());
+		pdus.add(new DeliverSMResp());
+		return pdus;
+	}
+
+	@Test
+	public void testEncodeMatchesGetData() throws Exception {
+		for (PDU pdu : samples()) {
+			pdu.assignSequenceNumber();
+			byte[] expected = pdu.getData().getBuffer();
+			assertEquals(pdu.getClass().getName(), expected.length, pdu.getEncodedLength());
+			assertEquals(expected.length, pdu.getCommandLength());
+
+			byte[] array = new byte[expected.length + 10];
+			assertEquals(5 + expected.length, pdu.encode(array, 5));
+			byte[] written = new byte[expected.length];
+			System.arraycopy(array, 5, written, 0, expected.length);
+			assertEquals(new ByteBuffer(expected).getHexDump(), new ByteBuffer(written).getHexDump());
+
+			for (java.nio.ByteBuffer nio : new java.nio.ByteBuffer[] {
+				java.nio.ByteBuffer.allocate(expected.length + 3), java.nio.ByteBuffer.allocateDirect(expected.length + 3) }) {
+				nio.put((byte) 7);
+				pdu.encode(nio);
+				assertEquals(1 + expected.length, nio.position());
+				nio.flip();
+				nio.get();
+				nio.get(written);
+				assertEquals(new ByteBuffer(expected).getHexDump(), new ByteBuffer(written).getHexDump());
+			}
+		}
+	}
+
+	@Test
+	public void testEncodedPDUParsesBack() throws Exception {
+		for (PDU pdu : samples()) {
+			byte[] data = new byte[pdu.getEncodedLength()];
+			pdu.encode(data, 0);
+			PDU parsed = PDU.createPDU(new ByteBuffer(data));
+			assertEquals(pdu.getClass(), parsed.getClass());
+			assertEquals(new ByteBuffer(data).getHexDump(), parsed.getData().getHexDump());
+		}
+	}
+
+	@Test
+	public void testBodyMatchesAppendedFields() throws Exception {
+		SubmitSM submit = (SubmitSM) samples().get(0);
+		ByteBuffer buffer = new ByteBuffer();
+		buffer.appendCString(submit.getServiceType());
+		buffer.appendBuffer(submit.getSourceAddr().getData());
+		buffer.appendBuffer(submit.getDestAddr().getData());
+		buffer.appendByte(submit.getEsmClass());
+		buffer.appendByte(submit.getProtocolId());
+		buffer.appendByte(submit.getPriorityFlag());
+		buffer.appendCString(submit.getScheduleDeliveryTime());
+		buffer.appendCString(submit.getValidityPeriod());
+		buffer.appendByte(submit.getRegisteredDelivery());
+		buffer.appendByte(submit.getReplaceIfPresentFlag());
+		buffer.appendByte(submit.getDataCoding());
+		buffer.appendByte(submit.getSmDefaultMsgId());
+		buffer.appendByte((byte) submit.getSmLength());
+		buffer.appendBuffer(submit.getShortMessageData());
+		assertEquals(buffer.getHexDump(), submit.getBody().getHexDump());
+
+		Address address = ((DeliverSM) samples().get(1)).getSourceAddr();
+		byte[] encoded = new byte[address.getEncodedLength()];
+		address.encode(encoded, 0);
+		assertEquals("00006361663f00", address.getData().getHexDump());
+		assertEquals("00006361663f00", new ByteBuffer(encoded).getHexDump());
+	}
+
+	@Test
+	public void testFallbackBodyBuiltOnce() throws Exception {
+		final int[] built = new int[1];
+		QuerySM query = new QuerySM() {
+			public ByteBuffer getBody() {
+				built[0]++;
+				return super.getBody();
+			}
+		};
+		query.setMessageId("m1");
+		query.setSourceAddr("447700900123");
+		query.assignSequenceNumber();
+		PipeConnection connection = new PipeConnection(10);
+		new Transmitter(connection).send(query);
+		assertEquals(1, built[0]);
+		byte[] sent = connection.takeSent(0);
+		assertArrayEquals(query.getData().getBuffer(), sent);
+	}
+
+	@Test(expected = java.nio.BufferOverflowException.class)
+	public void testNioBufferTooSmall() throws Exception {
+		new SubmitSM().encode(java.nio.ByteBuffer.allocate(10));
+	}
+}
@@ -0,0 +1,111 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.util.ByteBuffer;
+
+public class PDUPoolTest {
+
+	private static ByteBuffer submitData(int seq, String source, String message, boolean withPayloadType)
+		throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setSequenceNumber(seq);
+		submit.setSourceAddr(source);
+		submit.setShortMessage(message);
+		if (withPayloadType) {
+			submit.setPayloadType((byte) 1);
+		}
+		submit.setExtraOptional((short) 0x1400, new ByteBuffer(new byte[] { 1, 2 }));
+		return submit.getData();
+	}
+
+	@Test
+	public void testReleasedPDUIsReusedAndReset() throws Exception {
+		PDUPool pool = new PDUPool(4, false);
+		SubmitSM first = (SubmitSM) PDU.createPDU(submitData(7, "123", "first", true), pool);
+		assertTrue(first.isPooled());
+		assertTrue(first.hasPayloadType());
+		assertNotNull(first.getExtraOptional((short) 0x1400));
+		first.setApplicationSpecificInfo("key", "value");
+		first.release();
+		assertEquals(1, pool.getAvailableCount(Data.SUBMIT_SM));
+
+		SubmitSM second = (SubmitSM) PDU.createPDU(submitData(8, "456", "second", false), pool);
+		assertSame(first, second);
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, pool.getReusedCount());
+		assertEquals(8, second.getSequenceNumber());
+		assertEquals("456", second.getSourceAddr().getAddress());
+		assertEquals("second", second.getShortMessage());
+		assertFalse(second.hasPayloadType());
+		assertNull(second.getApplicationSpecificInfo("key"));
+	}
+
+	@Test
+	public void testResetRestoresDefaults() throws Exception {
+		SubmitSM submit = (SubmitSM) PDU.createPDU(submitData(9, "789", "text", true));
+		submit.reset();
+		assertEquals(Data.SUBMIT_SM, submit.getCommandId());
+		assertEquals("", submit.getSourceAddr().getAddress());
+		assertEquals(0, submit.getSmLength());
+		assertNull(submit.getShortMessage());
+		assertFalse(submit.hasPayloadType());
+		assertNull(submit.getExtraOptional((short) 0x1400));
+		assertEquals(new SubmitSM().getData().getHexDump(), submit.getData().getHexDump());
+	}
+
+	@Test
+	public void testReleaseOfUnpooledPDUIsIgnored() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		assertFalse(submit.isPooled());
+		submit.release();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDoubleReleaseDetectedInDebugMode() throws Exception {
+		PDUPool pool = new PDUPool(4, true);
+		PDU pdu = PDU.createPDU(submitData(1, "1", "x", false), pool);
+		pdu.release();
+		pdu.release();
+	}
+
+	@Test
+	public void testDoubleReleaseIgnoredOutsideDebugMode() throws Exception {
+		PDUPool pool = new PDUPool(4, false);
+		PDU pdu = PDU.createPDU(submitData(1, "1", "x", false), pool);
+		pdu.release();
+		pdu.release();
+		assertEquals(1, pool.getAvailableCount(Data.SUBMIT_SM));
+	}
+
+	@Test
+	public void testLeakDetectedInDebugMode() throws Exception {
+		PDUPool pool = new PDUPool(4, true);
+		PDU.createPDU(submitData(1, "1", "x", false), pool);
+		PDU kept = PDU.createPDU(submitData(2, "2", "y", false), pool);
+		assertEquals(2, pool.getBorrowedCount());
+		long end = System.currentTimeMillis() + 5000;
+		while ((pool.checkLeaks() == 0) && (System.currentTimeMillis() < end)) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, pool.getLeakCount());
+		kept.release();
+		assertEquals(0, pool.getBorrowedCount());
+	}
+
+	@Test
+	public void testResponseWithChangedCommandIdNotPooled() throws Exception {
+		PDUPool pool = new PDUPool(4, false);
+		SubmitSMResp resp = new SubmitSMResp();
+		resp.setSequenceNumber(3);
+		PDU pdu = PDU.createPDU(resp.getData(), pool);
+		pdu.setCommandId(Data.GENERIC_NACK);
+		pdu.release();
+		assertFalse(pdu.isPooled());
+		assertEquals(0, pool.getAvailableCount(Data.GENERIC_NACK));
+		assertEquals(0, pool.getAvailableCount(Data.SUBMIT_SM_RESP));
+	}
+}
@@ -0,0 +1,76 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.charset.Gsm7BitTransliterator;
+import org.smpp.util.ByteBuffer;
+import org.smpp.util.DataCodingCharsetHandler;
+
+public class ShortMessageTest {
+
+	@Test
+	public void testPackedMessage() throws Exception {
+		ShortMessage message = new ShortMessage(Data.SM_MSG_LEN);
+		message.setMessage("hellohello", Data.ENC_GSM7BIT_PACKED);
+		assertEquals(9, message.getLength());
+		assertEquals("e8329bfd4697d9ec37", message.getData().getHexDump());
+
+		ShortMessage received = new ShortMessage(Data.SM_MSG_LEN);
+		received.setData(message.getData());
+		assertEquals("hellohello", received.getMessage(Data.ENC_GSM7BIT_PACKED));
+		assertTrue(ShortMessage.encodingSupported(Data.ENC_GSM7BIT_PACKED));
+	}
+
+	@Test
+	public void testPackedMessageLengthChecked() throws Exception {
+		ShortMessage message = new ShortMessage(140);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 160; i++) {
+			text.append('a');
+		}
+		// 160 septets fit into 140 octets only when packed
+		message.setMessage(text.toString(), Data.ENC_GSM7BIT_PACKED);
+		assertEquals(140, message.getLength());
+		try {
+			message.setMessage(text.toString(), Data.ENC_GSM7BIT);
+			fail("WrongLengthOfStringException expected");
+		} catch (WrongLengthOfStringException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPackedUserDataInSubmit() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		byte[] udh = new byte[] { 0x05, 0x00, 0x03, 0x01, 0x02, 0x01 };
+		submit.setEsmClass((byte) Data.SM_UDH_GSM);
+		submit.setShortMessageData(new ByteBuffer(Gsm7BitPackedCodec.encodeUserData(udh, "part one")));
+		byte[] data = submit.getShortMessageData().getBuffer();
+		String encoding = DataCodingCharsetHandler.getCharsetName(submit.getDataCoding(), true);
+		assertEquals(Data.ENC_GSM7BIT_PACKED, encoding);
+		assertEquals("part one", Gsm7BitPackedCodec.decodeUserData(data, 0, data.length, true));
+	}
+
+	@Test
+	public void testTransliteration() throws Exception {
+		ShortMessage message = new ShortMessage(Data.SM_MSG_LEN);
+		message.setMessage("“Grüße”");
+		assertEquals('?', message.getData().getBuffer()[0]);
+		assertEquals(0, message.getSubstitutionCount());
+		message.setMessageTransliterated("“Grüße”", new Gsm7BitTransliterator());
+		assertEquals("\"Grüße\"", message.getMessage());
+		assertEquals(2, message.getSubstitutionCount());
+		// only the call with the transliterator transliterates
+		message.setMessage("“Grüße”");
+		assertEquals('?', message.getData().getBuffer()[0]);
+		assertEquals(0, message.getSubstitutionCount());
+
+		SubmitSM submit = new SubmitSM();
+		submit.setShortMessageTransliterated("it’s", new Gsm7BitTransliterator());
+		assertEquals("it's", submit.getShortMessage());
+		assertEquals(4, submit.getSmLength());
+	}
+}
@@ -0,0 +1,108 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class SmppTimeTest {
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static long millis(int year, int month, int day, int hour, int minute, int second) {
+		Calendar calendar = Calendar.getInstance(UTC);
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+		return calendar.getTimeInMillis();
+	}
+
+	@Test
+	public void testAbsolute() throws Exception {
+		SmppTime time = SmppTime.parse("240229153012304+");
+		assertFalse(time.isRelative());
+		assertEquals(24, time.getYear());
+		assertEquals(2, time.getMonth());
+		assertEquals(29, time.getDay());
+		assertEquals(3, time.getTenths());
+		assertEquals(4, time.getUtcOffset());
+		assertEquals(millis(2024, 2, 29, 14, 30, 12) + 300, time.toMillis(0));
+		assertEquals("240229153012304+", time.toString());
+
+		time = SmppTime.parse("991231235959948-");
+		assertEquals(-48, time.getUtcOffset());
+		assertEquals(millis(2100, 1, 1, 11, 59, 59) + 900, time.toMillis(0));
+		assertEquals(time, SmppTime.absolute(time.toMillis(0), -48));
+
+		assertEquals("000101000000000+", SmppTime.absolute(millis(2000, 1, 1, 0, 0, 0), 0).toString());
+		byte[] buffer = new byte[18];
+		assertEquals(17, SmppTime.absolute(millis(2031, 7, 4, 5, 6, 7), 8).format(buffer, 1));
+		assertEquals("310704070607008+", new String(buffer, 1, 16, "US-ASCII"));
+	}
+
+	@Test
+	public void testRelative() throws Exception {
+		SmppTime time = SmppTime.parse("000102030405600R");
+		assertTrue(time.isRelative());
+		long base = millis(2024, 1, 31, 12, 0, 0);
+		// one month from January 31 is February 29 in a leap year
+		assertEquals(millis(2024, 3, 2, 15, 4, 5) + 600, time.toMillis(base));
+		assertEquals(SmppTime.parse("010000000000000R").toMillis(base), millis(2025, 1, 31, 12, 0, 0));
+		assertEquals(SmppTime.parse("001300000000000R").toMillis(base), millis(2025, 2, 28, 12, 0, 0));
+
+		SmppTime relative = SmppTime.relative(((2 * 24 + 3) * 60 + 4) * 60000L + 5100);
+		assertEquals("000002030405100R", relative.toString());
+		assertEquals(((2 * 24 + 3) * 60 + 4) * 60000L + 5100, relative.getDurationMillis(base));
+	}
+
+	@Test
+	public void testCheckAgreesWithSimpleDateFormat() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat("yyMMddHHmmss");
+		format.setLenient(false);
+		String[] dates = {
+			"240229000000000+", "230229000000000+", "000229000000000+", "240431000000000+", "241301000000000+",
+			"240001000000000+", "240100000000000+", "240101240000000+", "240101006000000+", "240101000060000+",
+			"240101235959000-"
+		};
+		for (String date : dates) {
+			boolean valid;
+			try {
+				format.parse(date.substring(0, 12));
+				valid = true;
+			} catch (java.text.ParseException e) {
+				valid = false;
+			}
+			try {
+				SmppTime.check(date);
+				assertTrue(date, valid);
+			} catch (WrongDateFormatException e) {
+				assertFalse(date, valid);
+			}
+		}
+	}
+
+	@Test
+	public void testInvalid() throws Exception {
+		String[] invalid = {
+			null, "", "24022915301230+", "2402291530123040+", "240229153012304X", "24022915301230x+",
+			"240229153012349+", "2402291530123 4R", "000000000000049R"
+		};
+		for (String date : invalid) {
+			try {
+				SmppTime.parse(date);
+				fail(date);
+			} catch (WrongDateFormatException e) {
+			}
+		}
+		SmppTime.check("999999999999948R");
+		ByteData.checkDate(null);
+		ByteData.checkDate("");
+		ByteData.checkDate("240229153012304+");
+		try {
+			ByteData.checkDate("230229153012304+");
+			fail();
+		} catch (WrongDateFormatException e) {
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.smpp.pdu;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.util.ByteBuffer;
+
+public class SubmitSMTemplateTest {
+
+	private static SubmitSM prototype(String text) throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setServiceType("CMT");
+		submit.setSourceAddr((byte) 5, (byte) 0, "Shop");
+		submit.setDestAddr((byte) 1, (byte) 1, "000");
+		submit.setValidityPeriod("000001000000000R");
+		submit.setRegisteredDelivery((byte) 1);
+		submit.setShortMessage(text, Data.ENC_ASCII);
+		submit.setUserMessageReference((short) 77);
+		return submit;
+	}
+
+	private static byte[] expected(String destAddr, String text, int sequenceNumber) throws Exception {
+		SubmitSM submit = prototype(text);
+		submit.setDestAddr((byte) 1, (byte) 1, destAddr);
+		submit.setSequenceNumber(sequenceNumber);
+		return submit.getData().getBuffer();
+	}
+
+	@Test
+	public void testPatchedLikeEncoded() throws Exception {
+		SubmitSMTemplate template = new SubmitSMTemplate(prototype("Hi {}, your code is {}."), "{}", Data.ENC_ASCII);
+		assertEquals(2, template.getVariableCount());
+		byte[] buffer = new byte[300];
+		int end = template.encode(buffer, 7, 42, "420600111222", template.encodeValue("Jo"), template.encodeValue("4711"));
+		byte[] expected = expected("420600111222", "Hi Jo, your code is 4711.", 42);
+		assertEquals(7 + expected.length, end);
+		assertArrayEquals(expected, Arrays.copyOfRange(buffer, 7, end));
+
+		end = template.encode(buffer, 0, 43, "1", new byte[0], template.encodeValue("123456789"));
+		assertArrayEquals(expected("1", "Hi , your code is 123456789.", 43), Arrays.copyOfRange(buffer, 0, end));
+	}
+
+	@Test
+	public void testCreatedSubmitSM() throws Exception {
+		SubmitSMTemplate template = new SubmitSMTemplate(prototype("Good morning"));
+		assertEquals(0, template.getVariableCount());
+		SubmitSM submit = template.createSubmitSM("420600333444");
+		submit.setSequenceNumber(9);
+		assertFalse(submit.isDecoded());
+		byte[] data = new byte[submit.getEncodedLength()];
+		submit.encode(data, 0);
+		assertArrayEquals(expected("420600333444", "Good morning", 9), data);
+
+		// the body is parsed when accessed
+		assertEquals("420600333444", submit.getDestAddr().getAddress());
+		assertEquals("Good morning", submit.getShortMessage());
+		assertEquals(77, submit.getUserMessageReference());
+		assertEquals(new ByteBuffer(data).getHexDump(), submit.getData().getHexDump());
+	}
+
+	@Test
+	public void testTooLong() throws Exception {
+		SubmitSMTemplate template = new SubmitSMTemplate(prototype("{}"), "{}", Data.ENC_ASCII);
+		byte[] buffer = new byte[400];
+		try {
+			template.encode(buffer, 0, 1, "123456789012345678901", new byte[1]);
+			fail("WrongLengthOfStringException expected");
+		} catch (WrongLengthOfStringException e) {
+			// expected
+		}
+		try {
+			template.createSubmitSM("1", new byte[Data.SM_MSG_LEN + 1]);
+			fail("WrongLengthOfStringException expected");
+		} catch (WrongLengthOfStringException e) {
+			// expected
+		}
+		try {
+			template.createSubmitSM("1");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
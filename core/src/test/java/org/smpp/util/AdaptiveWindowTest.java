@@ -0,0 +1,132 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+
+public class AdaptiveWindowTest {
+
+	private static Response response(int congestionState) throws Exception {
+		SubmitSMResp response = new SubmitSMResp();
+		if (congestionState >= 0) {
+			response.setCongestionState(congestionState);
+		}
+		return response;
+	}
+
+	@Test
+	public void testGrowsWhileCongestionLow() throws Exception {
+		AdaptiveWindow window = new AdaptiveWindow(10, 1, 15);
+		for (int i = 0; i < 100; i++) {
+			window.responded(response(30), 20);
+		}
+		assertTrue(window.getWindow() > 10);
+		assertEquals(30, window.getCongestionState());
+		for (int i = 0; i < 1000; i++) {
+			window.responded(response(-1), 20);
+		}
+		assertEquals(15, window.getWindow());
+		assertEquals(-1, window.getCongestionState());
+		assertEquals(20, window.getLatency());
+
+		// optimum load keeps the window
+		for (int i = 0; i < 100; i++) {
+			window.responded(response(85), 20);
+		}
+		assertEquals(15, window.getWindow());
+		assertEquals(0, window.getDecreaseCount());
+	}
+
+	@Test
+	public void testShrinksOncePerWindow() throws Exception {
+		AdaptiveWindow window = new AdaptiveWindow(16, 2, 100);
+		for (int i = 0; i < 16; i++) {
+			assertTrue(window.acquire(0));
+		}
+		window.responded(response(95), 20);
+		assertEquals(14, window.getWindow());
+		// the responses to the requests sent before don't shrink it again
+		for (int i = 0; i < 15; i++) {
+			window.responded(response(95), 20);
+		}
+		assertEquals(14, window.getWindow());
+		assertEquals(0, window.getOutstandingCount());
+		window.responded(response(100), 20);
+		assertEquals(7, window.getWindow());
+		window.responded(new SubmitSMResp(), 20);
+		window.timedOut();
+		assertEquals(3, window.getWindow());
+		SubmitSMResp throttled = new SubmitSMResp();
+		throttled.setCommandStatus(Data.ESME_RTHROTTLED);
+		window.responded(throttled, 20);
+		window.responded(throttled, 20);
+		assertEquals(2, window.getWindow());
+		assertEquals(5, window.getDecreaseCount());
+	}
+
+	@Test
+	public void testShrinksWhenLatencyRises() throws Exception {
+		AdaptiveWindow window = new AdaptiveWindow(10, 1, 100);
+		for (int i = 0; i < 50; i++) {
+			window.responded(response(-1), 10);
+		}
+		int grown = window.getWindow();
+		assertTrue(grown > 10);
+		for (int i = 0; i < 10; i++) {
+			window.responded(response(-1), 200);
+		}
+		assertTrue(window.getWindow() < grown);
+		assertTrue(window.getLatency() > 20);
+	}
+
+	@Test
+	public void testAcquireWaitsForRoom() throws Exception {
+		AdaptiveWindow window = new AdaptiveWindow(2, 1, 4);
+		assertTrue(window.acquire(10));
+		assertTrue(window.acquire(10));
+		assertFalse(window.acquire(10));
+		window.release();
+		assertTrue(window.acquire(10));
+		assertEquals(2, window.getOutstandingCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testAsynchronousResponsesObserved() throws Exception {
+		AdaptiveWindow window = new AdaptiveWindow(4, 1, 10);
+		final BlockingQueue<ServerPDUEvent> events = new LinkedBlockingQueue<ServerPDUEvent>();
+		PipeConnection connection = new PipeConnection(10);
+		Session session = connection.bind(window.wrap(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		}));
+		try {
+			SubmitSM submit = new SubmitSM();
+			submit.setDestAddr("420600111222");
+			submit.setShortMessage("text");
+			assertNull(window.submit(session, submit));
+			assertEquals(1, window.getOutstandingCount());
+			connection.takeSentPDU(1000);
+			SubmitSMResp response = (SubmitSMResp) submit.getResponse();
+			response.setCongestionState(40);
+			connection.feed(response);
+			assertNotNull(events.poll(1000, TimeUnit.MILLISECONDS));
+			assertEquals(0, window.getOutstandingCount());
+			assertEquals(40, window.getCongestionState());
+		} finally {
+			session.getReceiver().stop();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+import org.smpp.Data;
+
+public class CharsetRegistryTest {
+	private static final String[] ENCODINGS = {
+		Data.ENC_ASCII, Data.ENC_CP1252, Data.ENC_ISO8859_1, Data.ENC_UTF8, Data.ENC_UTF16,
+		Data.ENC_UTF16_BE, Data.ENC_UTF16_BEM, Data.ENC_UTF16_LE, Data.ENC_GSM7BIT
+	};
+
+	private static final String[] TEXTS = {
+		"", "hello", "Grüße {€} ñ", "日本語 😀", "lone \ud800 surrogate", longText()
+	};
+
+	private static String longText() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			text.append("čřž€@");
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void testSameAsStringMethods() throws Exception {
+		for (String encoding : ENCODINGS) {
+			for (String text : TEXTS) {
+				byte[] expected = text.getBytes(encoding);
+				byte[] encoded = CharsetRegistry.encode(text, encoding);
+				assertEquals(encoding + " " + text, new ByteBuffer(expected).getHexDump(), new ByteBuffer(encoded).getHexDump());
+				assertEquals(encoding + " " + text, new String(expected, encoding),
+					CharsetRegistry.decode(expected, 0, expected.length, encoding));
+			}
+		}
+		byte[] malformed = { 0x41, (byte) 0xc3, 0x28, (byte) 0xff, 0x42 };
+		assertEquals(new String(malformed, "UTF-8"), CharsetRegistry.decode(malformed, 0, malformed.length, "UTF-8"));
+		assertEquals(new String(malformed, "US-ASCII"), CharsetRegistry.decode(malformed, 0, malformed.length, "ASCII"));
+		assertEquals("(", CharsetRegistry.decode(malformed, 2, 1, Data.ENC_UTF8));
+	}
+
+	@Test
+	public void testAsciiFastPath() throws Exception {
+		for (String text : TEXTS) {
+			assertEquals(new ByteBuffer(text.getBytes("US-ASCII")).getHexDump(),
+				new ByteBuffer(CharsetRegistry.encodeAscii(text)).getHexDump());
+		}
+		byte[] data = { 0x61, (byte) 0x80, 0x62 };
+		assertEquals(new String(data, "US-ASCII"), CharsetRegistry.decodeAscii(data, 0, 3));
+
+		ByteBuffer buffer = new ByteBuffer();
+		buffer.appendCString("abc");
+		buffer.appendCString("ž", Data.ENC_UTF8);
+		buffer.appendString("xyz");
+		assertEquals("abc", buffer.removeCString());
+		assertEquals("ž", buffer.removeCString(Data.ENC_UTF8));
+		assertEquals("xyz", buffer.removeString(3, Data.ENC_ASCII));
+	}
+
+	@Test
+	public void testCharsetsCached() throws Exception {
+		assertSame(CharsetRegistry.getCharset(Data.ENC_UTF16_BE), CharsetRegistry.getCharset(Data.ENC_UTF16_BE));
+		assertEquals("UTF-16BE", CharsetRegistry.getCharset(Data.ENC_UTF16_BE).name());
+		assertEquals(CharsetRegistry.getCharset(Data.ENC_UTF16), CharsetRegistry.getCharset((byte) 8));
+		assertEquals(CharsetRegistry.getCharset(Data.ENC_GSM7BIT), CharsetRegistry.getCharset((byte) 0));
+		assertTrue(CharsetRegistry.isSupported(Data.ENC_ISO8859_1));
+		assertFalse(CharsetRegistry.isSupported("X-NoSuchCharset"));
+		assertFalse(CharsetRegistry.isSupported("bad name!"));
+	}
+
+	@Test(expected = UnsupportedEncodingException.class)
+	public void testUnsupportedEncoding() throws Exception {
+		CharsetRegistry.encode("abc", "X-NoSuchCharset");
+	}
+}
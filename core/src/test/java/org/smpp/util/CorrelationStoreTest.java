@@ -0,0 +1,143 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.smpp.pdu.DeliveryReceipt;
+
+public class CorrelationStoreTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] payload(long value) {
+		byte[] payload = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			payload[i] = (byte) (value >>> (56 - 8 * i));
+		}
+		return payload;
+	}
+
+	private static long value(byte[] payload) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (payload[i] & 0xff);
+		}
+		return value;
+	}
+
+	@Test
+	public void testPutGetRemove() throws Exception {
+		CorrelationStore store = new CorrelationStore(100, 8);
+		byte[] payload = new byte[8];
+		assertTrue(store.put("0a1b2c", payload(7), 0, 0));
+		assertTrue(store.put("0a1b2d", payload(8), 0, 0));
+		assertTrue(store.get("0a1b2c", payload, 0));
+		assertEquals(7, value(payload));
+		assertTrue(store.put("0a1b2c", payload(9), 0, 0));
+		assertEquals(2, store.size());
+
+		DeliveryReceipt receipt = new DeliveryReceipt();
+		byte[] data = "id:0a1b2c stat:DELIVRD".getBytes("US-ASCII");
+		receipt.parse(data, 0, data.length);
+		byte[] key = new byte[CorrelationStore.DEFAULT_MAX_KEY_LENGTH];
+		int length = receipt.getMessageId(key, 0);
+		assertTrue(store.remove(key, 0, length, payload, 0));
+		assertEquals(9, value(payload));
+		assertFalse(store.remove(key, 0, length, payload, 0));
+		assertFalse(store.get("0a1b2", payload, 0));
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		// small table so the entries collide and get shifted on removal
+		CorrelationStore store = new CorrelationStore(48, 4, 8);
+		Map<String, Long> expected = new HashMap<String, Long>();
+		Random random = new Random(11);
+		byte[] payload = new byte[8];
+		for (int i = 0; i < 20000; i++) {
+			String key = Integer.toString(random.nextInt(80), 36);
+			if (random.nextBoolean()) {
+				if ((expected.size() < 48) || expected.containsKey(key)) {
+					assertTrue(store.put(key, payload(i), 0, 0));
+					expected.put(key, new Long(i));
+				} else {
+					assertFalse(store.put(key, payload(i), 0, 0));
+				}
+			} else {
+				Long value = expected.remove(key);
+				assertEquals(value != null, store.remove(key, payload, 0));
+				if (value != null) {
+					assertEquals(value.longValue(), value(payload));
+				}
+			}
+			assertEquals(expected.size(), store.size());
+		}
+		for (Map.Entry<String, Long> entry : expected.entrySet()) {
+			assertTrue(store.get(entry.getKey(), payload, 0));
+			assertEquals(entry.getValue().longValue(), value(payload));
+		}
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		CorrelationStore store = new CorrelationStore(2, 8);
+		byte[] payload = new byte[8];
+		assertTrue(store.put("short", payload(1), 0, 1));
+		assertTrue(store.put("long", payload(2), 0, 60000));
+		Thread.sleep(5);
+		assertFalse(store.get("short", payload, 0));
+		// full, the expired entry is purged
+		assertTrue(store.put("new", payload(3), 0, 60000));
+		assertEquals(1, store.getExpiredCount());
+		assertFalse(store.put("another", payload(4), 0, 60000));
+		assertTrue(store.get("long", payload, 0));
+		assertEquals(2, value(payload));
+	}
+
+	@Test
+	public void testFullStorePurgedOnceEntryExpires() throws Exception {
+		CorrelationStore store = new CorrelationStore(2, 8);
+		assertTrue(store.put("first", payload(1), 0, 0));
+		assertTrue(store.put("second", payload(2), 0, 100));
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(store.put("refused" + i, payload(i), 0, 0));
+		}
+		Thread.sleep(150);
+		assertTrue(store.put("third", payload(3), 0, 0));
+		assertEquals(1, store.getExpiredCount());
+		assertFalse(store.put("fourth", payload(4), 0, 0));
+		// removing frees the slot without waiting for any expiry
+		assertTrue(store.remove("first", null, 0));
+		assertTrue(store.put("fourth", payload(4), 0, 0));
+	}
+
+	@Test
+	public void testFileBackedStoreReopened() throws Exception {
+		File file = new File(folder.getRoot(), "correlation");
+		CorrelationStore store = new CorrelationStore(file, 1000, 16, 8);
+		for (int i = 0; i < 500; i++) {
+			store.put("msg" + i, payload(i), 0, 0);
+		}
+		store.remove("msg7", null, 0);
+		store.force();
+
+		store = new CorrelationStore(file, 1000, 16, 8);
+		assertEquals(499, store.size());
+		byte[] payload = new byte[8];
+		assertTrue(store.get("msg499", payload, 0));
+		assertEquals(499, value(payload));
+		assertFalse(store.get("msg7", payload, 0));
+
+		// different layout clears the store
+		store = new CorrelationStore(file, 1000, 16, 4);
+		assertEquals(0, store.size());
+	}
+}
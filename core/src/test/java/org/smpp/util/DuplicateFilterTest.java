@@ -0,0 +1,95 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.PipeConnection;
+import org.smpp.Receiver;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Transmitter;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+
+public class DuplicateFilterTest {
+	private PipeConnection connection;
+	private Receiver receiver;
+	private List<ServerPDUEvent> events;
+	private List<Request> acknowledged;
+	private DuplicateFilter filter;
+
+	@Before
+	public void setup() {
+		connection = new PipeConnection(10);
+		receiver = new Receiver(new Transmitter(connection), connection);
+		events = new ArrayList<ServerPDUEvent>();
+		acknowledged = new ArrayList<Request>();
+		filter = new DuplicateFilter(null, new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		}, 4) {
+			protected void acknowledge(ServerPDUEvent received, Request duplicate) {
+				acknowledged.add(duplicate);
+			}
+		};
+	}
+
+	private void receive(PDU pdu) {
+		filter.handleEvent(new ServerPDUEvent(receiver, connection, pdu));
+	}
+
+	private static DeliverSM deliver(String source, String text, String receiptedId) throws Exception {
+		DeliverSM deliver = new DeliverSM();
+		deliver.setSourceAddr(source);
+		deliver.setDestAddr("1234");
+		deliver.setShortMessage(text);
+		if (receiptedId != null) {
+			deliver.setReceiptedMessageId(receiptedId);
+		}
+		return deliver;
+	}
+
+	@Test
+	public void testRetransmissionSuppressed() throws Exception {
+		receive(deliver("111", "hello", null));
+		receive(deliver("111", "hello", "r1"));
+		receive(deliver("222", "hello", null));
+		receive(deliver("111", "hellO", null));
+		receive(new EnquireLink());
+		receive(new EnquireLink());
+		assertEquals(6, events.size());
+		assertEquals(0, filter.getDuplicateCount());
+
+		DeliverSM retransmitted = deliver("111", "hello", "r1");
+		receive(retransmitted);
+		assertEquals(6, events.size());
+		assertEquals(1, acknowledged.size());
+		assertSame(retransmitted, acknowledged.get(0));
+		assertEquals(1, filter.getDuplicateCount());
+	}
+
+	@Test
+	public void testWindowAndCapacity() {
+		long now = System.currentTimeMillis();
+		assertFalse(filter.isDuplicate(42, now));
+		assertTrue(filter.isDuplicate(42, now + 29999));
+		// rotated into the previous table, still remembered
+		assertTrue(filter.isDuplicate(42, now + 30000));
+		assertFalse(filter.isDuplicate(42, now + 60000));
+
+		// capacity 4 per half of the window
+		for (int i = 1; i <= 8; i++) {
+			assertFalse(filter.isDuplicate(100 + i, now + 60001));
+		}
+		assertFalse(filter.isDuplicate(101, now + 60001));
+		assertTrue(filter.isDuplicate(108, now + 60001));
+		assertEquals(3, filter.getDuplicateCount());
+	}
+}
@@ -0,0 +1,184 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.Receiver;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Transmitter;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+
+public class MessageReassemblerTest {
+	private PipeConnection connection;
+	private Receiver receiver;
+	private TimingWheel wheel;
+	private List<ServerPDUEvent> events;
+	private List<Request> acknowledged;
+	private MessageReassembler reassembler;
+
+	@Before
+	public void setup() {
+		connection = new PipeConnection(10);
+		receiver = new Receiver(new Transmitter(connection), connection);
+		wheel = new TimingWheel(5, 16);
+		wheel.start();
+		events = new ArrayList<ServerPDUEvent>();
+		acknowledged = new ArrayList<Request>();
+		reassembler = new MessageReassembler(null, new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		}) {
+			protected void acknowledge(ServerPDUEvent received, Request segment) {
+				acknowledged.add(segment);
+			}
+		};
+		reassembler.setTimingWheel(wheel);
+	}
+
+	@After
+	public void tearDown() {
+		wheel.stop();
+	}
+
+	private void receive(PDU pdu) {
+		reassembler.handleEvent(new ServerPDUEvent(receiver, connection, pdu));
+	}
+
+	private static DeliverSM udhSegment(String source, int reference, int total, int seqnum, String text)
+		throws Exception {
+		byte[] chars = text.getBytes("US-ASCII");
+		byte[] data = new byte[6 + chars.length];
+		data[0] = 5;
+		data[2] = 3;
+		data[3] = (byte) reference;
+		data[4] = (byte) total;
+		data[5] = (byte) seqnum;
+		System.arraycopy(chars, 0, data, 6, chars.length);
+		DeliverSM deliver = new DeliverSM();
+		deliver.setSourceAddr(source);
+		deliver.setDestAddr("1234");
+		deliver.setEsmClass((byte) Data.SM_UDH_GSM);
+		deliver.setShortMessageData(new ByteBuffer(data));
+		deliver.setSequenceNumber(seqnum);
+		return deliver;
+	}
+
+	@Test
+	public void testUdhSegmentsAssembledOutOfOrder() throws Exception {
+		receive(udhSegment("111", 7, 3, 2, "lo "));
+		receive(udhSegment("222", 7, 3, 3, "other"));
+		receive(new EnquireLink());
+		receive(udhSegment("111", 7, 3, 3, "world"));
+		receive(udhSegment("111", 7, 3, 3, "world"));
+		assertEquals(1, events.size());
+		assertEquals(2, reassembler.getPendingCount());
+		receive(udhSegment("111", 7, 3, 1, "Hel"));
+
+		assertEquals(2, events.size());
+		assertTrue(events.get(0).getPDU() instanceof EnquireLink);
+		MessageReassembler.AssembledEvent assembled = (MessageReassembler.AssembledEvent) events.get(1);
+		assertEquals("Hello world", new String(assembled.getMessage(), "US-ASCII"));
+		assertEquals(3, assembled.getSegmentCount());
+		assertEquals(1, assembled.getPDU().getSequenceNumber());
+		assertEquals(5, acknowledged.size());
+		assertEquals(1, reassembler.getPendingCount());
+		assertEquals(1, reassembler.getAssembledCount());
+	}
+
+	@Test
+	public void testPackedSegmentsUnpacked() throws Exception {
+		reassembler.setPacked(true);
+		// 6 octets of the header make 1 fill bit, 8 characters leave
+		// 7 bits in the last octet padded with a carriage return
+		String[] texts = { "Hello wo", "rld" };
+		for (int i = 1; i <= texts.length; i++) {
+			byte[] udh = { 5, 0, 3, 9, (byte) texts.length, (byte) i };
+			DeliverSM deliver = new DeliverSM();
+			deliver.setSourceAddr("111");
+			deliver.setDestAddr("1234");
+			deliver.setEsmClass((byte) Data.SM_UDH_GSM);
+			deliver.setShortMessageData(new ByteBuffer(Gsm7BitPackedCodec.encodeUserData(udh, texts[i - 1])));
+			receive(deliver);
+		}
+		assertEquals(1, events.size());
+		byte[] message = ((MessageReassembler.AssembledEvent) events.get(0)).getMessage();
+		assertEquals(Gsm7BitPackedCodec.getPackedLength(11, 0), message.length);
+		assertEquals("Hello world", Gsm7BitPackedCodec.decode(message, 0, message.length, 0));
+	}
+
+	@Test
+	public void testSarSegmentsAssembled() throws Exception {
+		for (int i = 1; i <= 2; i++) {
+			DeliverSM deliver = new DeliverSM();
+			deliver.setSourceAddr("111");
+			deliver.setShortMessage(i == 1 ? "ab" : "cd");
+			deliver.setSarMsgRefNum((short) 300);
+			deliver.setSarTotalSegments((short) 2);
+			deliver.setSarSegmentSeqnum((short) i);
+			receive(deliver);
+		}
+		assertEquals(1, events.size());
+		assertEquals("abcd", new String(((MessageReassembler.AssembledEvent) events.get(0)).getMessage(), "US-ASCII"));
+		assertEquals(0, reassembler.getBufferedBytes());
+	}
+
+	@Test
+	public void testSingleMessagePassedThrough() throws Exception {
+		DeliverSM deliver = new DeliverSM();
+		deliver.setShortMessage("hello");
+		receive(deliver);
+		receive(udhSegment("111", 1, 1, 1, "one"));
+		assertEquals(2, events.size());
+		assertSame(deliver, events.get(0).getPDU());
+		assertFalse(events.get(1) instanceof MessageReassembler.AssembledEvent);
+		assertTrue(acknowledged.isEmpty());
+	}
+
+	@Test
+	public void testLeastRecentlyUpdatedEvicted() throws Exception {
+		reassembler.setMaxBufferedBytes(12);
+		receive(udhSegment("111", 1, 3, 2, "aaaa"));
+		receive(udhSegment("222", 1, 3, 2, "bbbb"));
+		receive(udhSegment("111", 1, 3, 3, "cccc"));
+		receive(udhSegment("333", 1, 3, 2, "dddd"));
+		assertEquals(1, reassembler.getEvictedCount());
+		assertEquals(2, reassembler.getPendingCount());
+		assertEquals(12, reassembler.getBufferedBytes());
+		receive(udhSegment("111", 1, 3, 1, "eeee"));
+		receive(udhSegment("222", 1, 3, 1, "ffff"));
+		assertEquals(1, events.size());
+		assertEquals("eeeeaaaacccc", new String(((MessageReassembler.AssembledEvent) events.get(0)).getMessage(), "US-ASCII"));
+
+		reassembler.setMaxBufferedBytes(2);
+		receive(udhSegment("444", 1, 2, 2, "gggg"));
+		assertEquals(0, reassembler.getPendingCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+	}
+
+	@Test(timeout = 5000)
+	public void testIncompleteMessageTimesOut() throws Exception {
+		reassembler.setTimeout(50);
+		receive(udhSegment("111", 1, 2, 1, "aaaa"));
+		assertEquals(1, reassembler.getPendingCount());
+		while (reassembler.getTimeoutCount() == 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, reassembler.getPendingCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+		receive(udhSegment("111", 1, 2, 2, "bbbb"));
+		assertTrue(events.isEmpty());
+	}
+}
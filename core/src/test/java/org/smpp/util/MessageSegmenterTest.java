@@ -0,0 +1,155 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.charset.Gsm7BitPackedCodec;
+import org.smpp.charset.Gsm7BitTransliterator;
+import org.smpp.pdu.Address;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.WrongLengthOfStringException;
+
+public class MessageSegmenterTest {
+
+	private static String repeat(char ch, int count) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			text.append(ch);
+		}
+		return text.toString();
+	}
+
+	private static List<SubmitSM> segment(MessageSegmenter segmenter, String text) throws Exception {
+		return segmenter.segment(text, new Address("1234"), new Address("447700900123"));
+	}
+
+	private static byte[] data(SubmitSM submit) {
+		return submit.getShortMessageData().getBuffer();
+	}
+
+	@Test
+	public void testPackedFullMessageInOneSegment() throws Exception {
+		MessageSegmenter segmenter = new MessageSegmenter();
+		String text = repeat('a', 160);
+		assertEquals(2, segmenter.countSegments(text));
+		segmenter.setPacked(true);
+		List<SubmitSM> pdus = segment(segmenter, text);
+		assertEquals(1, pdus.size());
+		assertEquals(140, pdus.get(0).getSmLength());
+		assertEquals(0, pdus.get(0).getEsmClass());
+		assertEquals(text, Gsm7BitPackedCodec.decodeUserData(data(pdus.get(0)), 0, 140, false));
+	}
+
+	@Test
+	public void testUdhSegmentsDoNotSplitEscapes() throws Exception {
+		MessageSegmenter segmenter = new MessageSegmenter();
+		segmenter.setPacked(true);
+		String text = repeat('a', 152) + "€" + repeat('b', 10);
+		List<SubmitSM> pdus = segment(segmenter, text);
+		assertEquals(2, pdus.size());
+		StringBuilder decoded = new StringBuilder();
+		for (int i = 0; i < 2; i++) {
+			SubmitSM submit = pdus.get(i);
+			byte[] data = data(submit);
+			assertEquals(Data.SM_UDH_GSM, submit.getEsmClass());
+			assertEquals(MessageSegmenter.DATA_CODING_DEFAULT, submit.getDataCoding());
+			assertEquals(5, data[0]);
+			assertEquals(data(pdus.get(0))[3], data[3]);
+			assertEquals(2, data[4]);
+			assertEquals(i + 1, data[5]);
+			assertTrue(data.length <= 140);
+			decoded.append(Gsm7BitPackedCodec.decodeUserData(data, 0, data.length, true));
+		}
+		assertEquals(repeat('a', 152), Gsm7BitPackedCodec.decodeUserData(data(pdus.get(0)), 0, 140, true).substring(0, 152));
+		assertEquals(text, decoded.toString());
+
+		segmenter.setConcatenation(MessageSegmenter.CONCAT_UDH16);
+		byte[] data = data(segment(segmenter, text).get(1));
+		assertEquals(6, data[0]);
+		assertEquals(8, data[1]);
+	}
+
+	@Test
+	public void testEncodingSelection() throws Exception {
+		MessageSegmenter segmenter = new MessageSegmenter();
+		assertEquals(MessageSegmenter.DATA_CODING_DEFAULT, segmenter.getDataCoding("Hello {world} é"));
+		assertEquals(MessageSegmenter.DATA_CODING_UCS2, segmenter.getDataCoding("Prõov"));
+		segmenter.setLatin1Allowed(true);
+		assertEquals(MessageSegmenter.DATA_CODING_LATIN1, segmenter.getDataCoding("Prõov"));
+		// the extension characters take two septets, Latin-1 is shorter
+		String brackets = repeat('{', 71);
+		assertEquals(MessageSegmenter.DATA_CODING_LATIN1, segmenter.getDataCoding(brackets));
+		segmenter.setLatin1Allowed(false);
+		assertEquals(MessageSegmenter.DATA_CODING_DEFAULT, segmenter.getDataCoding(brackets));
+		assertEquals(2, segmenter.countSegments(brackets));
+		segmenter.setUcs2Allowed(false);
+		List<SubmitSM> pdus = segment(segmenter, "ł");
+		assertEquals(MessageSegmenter.DATA_CODING_DEFAULT, pdus.get(0).getDataCoding());
+		assertEquals("3f", pdus.get(0).getShortMessageData().getHexDump());
+	}
+
+	@Test
+	public void testTransliteration() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 30; i++) {
+			text.append("don’t ");
+		}
+		MessageSegmenter segmenter = new MessageSegmenter();
+		assertEquals(MessageSegmenter.DATA_CODING_UCS2, segmenter.getDataCoding(text.toString()));
+		assertEquals(3, segmenter.countSegments(text.toString()));
+		segmenter.setTransliterator(new Gsm7BitTransliterator());
+		assertEquals(MessageSegmenter.DATA_CODING_DEFAULT, segmenter.getDataCoding(text.toString()));
+		assertEquals(2, segmenter.countSegments(text.toString()));
+	}
+
+	@Test
+	public void testSurrogatePairNotSplit() throws Exception {
+		MessageSegmenter segmenter = new MessageSegmenter();
+		String text = repeat('x', 66) + "😀" + repeat('y', 10) + "ł";
+		List<SubmitSM> pdus = segment(segmenter, text);
+		assertEquals(2, pdus.size());
+		assertEquals(MessageSegmenter.DATA_CODING_UCS2, pdus.get(0).getDataCoding());
+		assertEquals(6 + 132, pdus.get(0).getSmLength());
+		byte[] second = data(pdus.get(1));
+		assertEquals(text.substring(66), new String(second, 6, second.length - 6, "UTF-16BE"));
+	}
+
+	@Test
+	public void testSarAndPayload() throws Exception {
+		MessageSegmenter segmenter = new MessageSegmenter();
+		segmenter.setConcatenation(MessageSegmenter.CONCAT_SAR);
+		String text = repeat('a', 300);
+		List<SubmitSM> pdus = segment(segmenter, text);
+		assertEquals(3, pdus.size());
+		for (int i = 0; i < 3; i++) {
+			SubmitSM submit = pdus.get(i);
+			assertEquals(0, submit.getEsmClass());
+			assertEquals(pdus.get(0).getSarMsgRefNum(), submit.getSarMsgRefNum());
+			assertEquals(3, submit.getSarTotalSegments());
+			assertEquals(i + 1, submit.getSarSegmentSeqnum());
+		}
+		assertEquals(140, pdus.get(0).getSmLength());
+		assertEquals(20, pdus.get(2).getSmLength());
+
+		segmenter.setConcatenation(MessageSegmenter.CONCAT_PAYLOAD);
+		pdus = segment(segmenter, text);
+		assertEquals(1, pdus.size());
+		assertEquals(0, pdus.get(0).getSmLength());
+		assertEquals(300, pdus.get(0).getMessagePayload().length());
+		assertFalse(pdus.get(0).hasSarMsgRefNum());
+		try {
+			segment(segmenter, repeat('a', 1501));
+			fail("WrongLengthOfStringException expected");
+		} catch (WrongLengthOfStringException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = WrongLengthOfStringException.class)
+	public void testTooManySegments() throws Exception {
+		new MessageSegmenter().countSegments(repeat('a', 134 * 255 + 1));
+	}
+}
@@ -0,0 +1,265 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+
+public class OutboundJournalTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static SubmitSM submit(String text) throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setDestAddr("420600111222");
+		submit.setShortMessage(text);
+		return submit;
+	}
+
+	private static String text(OutboundJournal.Entry entry) throws Exception {
+		return ((SubmitSM) entry.getRequest()).getShortMessage();
+	}
+
+	@Test
+	public void testUnacknowledgedRecovered() throws Exception {
+		File directory = folder.newFolder("journal");
+		OutboundJournal journal = new OutboundJournal(directory, 4096);
+		long first = journal.append(submit("first"));
+		long second = journal.append(submit("second"));
+		long third = journal.append(submit("third"));
+		journal.acknowledge(second, Data.ESME_ROK);
+		journal.commit();
+		assertEquals(2, journal.getPendingCount());
+		journal.close();
+
+		journal = new OutboundJournal(directory, 4096);
+		List<OutboundJournal.Entry> pending = journal.getPendingEntries();
+		assertEquals(2, pending.size());
+		assertEquals(first, pending.get(0).getId());
+		assertEquals("first", text(pending.get(0)));
+		assertEquals(third, pending.get(1).getId());
+		assertEquals("third", text(pending.get(1)));
+		assertTrue(journal.append(submit("fourth")) > third);
+		journal.close();
+	}
+
+	@Test
+	public void testTornRecordIgnored() throws Exception {
+		File directory = folder.newFolder("journal");
+		OutboundJournal journal = new OutboundJournal(directory, 4096);
+		journal.append(submit("complete"));
+		journal.append(submit("torn"));
+		journal.close();
+
+		File segment = directory.listFiles()[0];
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		// corrupt the last octet of the second request
+		int end = 17 + submit("complete").getEncodedLength() + 17 + submit("torn").getEncodedLength() - 1;
+		file.seek(end);
+		int last = file.read();
+		file.seek(end);
+		file.write(last ^ 0xff);
+		file.close();
+
+		journal = new OutboundJournal(directory, 4096);
+		assertEquals(1, journal.getPendingCount());
+		assertEquals("complete", text(journal.getPendingEntries().get(0)));
+		// the torn record is overwritten
+		journal.append(submit("next"));
+		journal.close();
+		journal = new OutboundJournal(directory, 4096);
+		assertEquals(2, journal.getPendingCount());
+		assertEquals("next", text(journal.getPendingEntries().get(1)));
+		journal.close();
+	}
+
+	@Test
+	public void testRecordsAfterTornRecordErased() throws Exception {
+		File directory = folder.newFolder("journal");
+		OutboundJournal journal = new OutboundJournal(directory, 4096);
+		journal.append(submit("complete"));
+		long torn = journal.append(submit("torn"));
+		journal.append(submit("after"));
+		journal.acknowledge(torn, Data.ESME_ROK);
+		journal.close();
+
+		// the pages after the torn record were written before the crash
+		File segment = directory.listFiles()[0];
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		int end = 17 + submit("complete").getEncodedLength() + 17 + submit("torn").getEncodedLength() - 1;
+		file.seek(end);
+		int last = file.read();
+		file.seek(end);
+		file.write(last ^ 0xff);
+		file.close();
+
+		journal = new OutboundJournal(directory, 4096);
+		assertEquals(1, journal.getPendingCount());
+		// a record of the same length and id as the torn one lines up
+		// with the records after it
+		assertEquals(torn, journal.append(submit("next")));
+		journal.close();
+		journal = new OutboundJournal(directory, 4096);
+		List<OutboundJournal.Entry> pending = journal.getPendingEntries();
+		assertEquals(2, pending.size());
+		assertEquals("complete", text(pending.get(0)));
+		assertEquals("next", text(pending.get(1)));
+		journal.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File directory = folder.newFolder("journal");
+		OutboundJournal journal = new OutboundJournal(directory, 1024);
+		journal.setMaxSegments(3);
+		long kept = journal.append(submit("kept"));
+		for (int i = 0; i < 200; i++) {
+			journal.acknowledge(journal.append(submit("message " + i)), Data.ESME_ROK);
+			assertTrue(journal.getSegmentCount() <= 4);
+		}
+		journal.commit();
+		assertTrue(journal.getSegmentCount() <= 4);
+		assertEquals(journal.getSegmentCount(), directory.listFiles().length);
+		journal.close();
+
+		journal = new OutboundJournal(directory, 1024);
+		assertEquals(1, journal.getPendingCount());
+		assertEquals(kept, journal.getPendingEntries().get(0).getId());
+		assertEquals("kept", text(journal.getPendingEntries().get(0)));
+		journal.close();
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		final OutboundJournal journal = new OutboundJournal(folder.newFolder("journal"), 1024 * 1024);
+		final int count = 200;
+		Thread[] threads = new Thread[8];
+		final Exception[] failure = new Exception[1];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < count; i++) {
+							journal.append(submit("text"));
+							journal.commit();
+						}
+					} catch (Exception e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+		assertNull(failure[0]);
+		assertEquals(threads.length * count, journal.getPendingCount());
+		assertTrue(journal.getSyncCount() <= threads.length * count);
+		journal.close();
+	}
+
+	@Test(timeout = 30000)
+	public void testCommitWhileSegmentsCompacted() throws Exception {
+		// small segments roll and are deleted or relocated all the time
+		File directory = folder.newFolder("journal");
+		final OutboundJournal journal = new OutboundJournal(directory, 1024);
+		journal.setMaxSegments(2);
+		final int count = 2000;
+		Thread[] threads = new Thread[6];
+		final Throwable[] failure = new Throwable[1];
+		for (int t = 0; t < threads.length; t++) {
+			final boolean keep = t == 0;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < count; i++) {
+							long id = journal.append(submit("message " + i));
+							if (!keep || (i % 100 != 0)) {
+								journal.acknowledge(id, Data.ESME_ROK);
+							}
+							journal.commit();
+						}
+					} catch (Throwable e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+		assertNull(failure[0]);
+		assertEquals(count / 100, journal.getPendingCount());
+		assertTrue(journal.getSegmentCount() <= 3);
+		journal.close();
+		assertEquals(count / 100, new OutboundJournal(directory, 1024).getPendingCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testAsynchronousResponseRecordedAndReplay() throws Exception {
+		File directory = folder.newFolder("journal");
+		OutboundJournal journal = new OutboundJournal(directory, 4096);
+		final BlockingQueue<ServerPDUEvent> events = new LinkedBlockingQueue<ServerPDUEvent>();
+		PipeConnection connection = new PipeConnection(10);
+		Session session = connection.bind(journal.wrap(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				events.add(event);
+			}
+		}));
+		try {
+			SubmitSM answered = submit("answered");
+			assertNull(journal.submit(session, answered));
+			journal.submit(session, submit("unanswered"));
+			PDU sent = connection.takeSentPDU(1000);
+			assertEquals(answered.getSequenceNumber(), sent.getSequenceNumber());
+			connection.takeSentPDU(1000);
+			SubmitSMResp response = (SubmitSMResp) answered.getResponse();
+			response.setMessageId("m1");
+			connection.feed(response);
+			assertNotNull(events.poll(1000, TimeUnit.MILLISECONDS));
+			assertEquals(1, journal.getPendingCount());
+		} finally {
+			session.getReceiver().stop();
+		}
+		journal.close();
+
+		journal = new OutboundJournal(directory, 4096);
+		connection = new PipeConnection(10);
+		session = connection.bind(journal.wrap(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+			}
+		}));
+		try {
+			assertEquals(1, journal.replay(session));
+			SubmitSM resent = (SubmitSM) connection.takeSentPDU(1000);
+			assertEquals("unanswered", resent.getShortMessage());
+			connection.feed(resent.getResponse());
+			long deadline = System.currentTimeMillis() + 2000;
+			while ((journal.getPendingCount() > 0) && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, journal.getPendingCount());
+		} finally {
+			session.getReceiver().stop();
+		}
+		journal.close();
+	}
+}
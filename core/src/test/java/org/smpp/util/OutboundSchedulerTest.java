@@ -0,0 +1,147 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+
+public class OutboundSchedulerTest {
+	private PipeConnection connection;
+	private Session session;
+	private OutboundScheduler scheduler;
+
+	@Before
+	public void setup() throws Exception {
+		connection = new PipeConnection(10);
+		session = new Session(connection);
+		scheduler = new OutboundScheduler(session);
+		connection.bind(session, scheduler.wrap(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+			}
+		}));
+		scheduler.addClass("slow", 5, 1, 0);
+		scheduler.addPrefix("420", "slow");
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.stop();
+		session.getReceiver().stop();
+	}
+
+	private static SubmitSM submit(String destAddr) throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setDestAddr(destAddr);
+		return submit;
+	}
+
+	private int sentTo(String prefix, long timeout) throws Exception {
+		int count = 0;
+		PDU sent;
+		while ((sent = connection.takeSentPDU(timeout)) != null) {
+			if (((SubmitSM) sent).getDestAddr().getAddress().startsWith(prefix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test(timeout = 10000)
+	public void testLimitedClassDoesNotHoldBackOthers() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertTrue(scheduler.submit(submit("42060000000" + i)));
+			assertTrue(scheduler.submit(submit("44770090000" + i)));
+		}
+		OutboundScheduler.TrafficClass slow = scheduler.getTrafficClass("slow");
+		assertSame(slow, scheduler.classify("+420600000000"));
+		assertEquals(5, slow.getQueueDepth());
+		scheduler.start();
+		Thread.sleep(150);
+		assertEquals(0, scheduler.getTrafficClass(OutboundScheduler.DEFAULT_CLASS).getQueueDepth());
+		assertTrue(slow.getQueueDepth() >= 3);
+		assertEquals(5, sentTo("4477", 50));
+	}
+
+	@Test(timeout = 10000)
+	public void testThrottledClassPauses() throws Exception {
+		scheduler.setThrottlePause(60000);
+		scheduler.getTrafficClass("slow").setRate(0, 1);
+		scheduler.start();
+		scheduler.submit(submit("420600000001"));
+		SubmitSM sent = (SubmitSM) connection.takeSentPDU(1000);
+		Response throttled = sent.getResponse();
+		throttled.setCommandStatus(Data.ESME_RTHROTTLED);
+		connection.feed(throttled);
+		OutboundScheduler.TrafficClass slow = scheduler.getTrafficClass("slow");
+		for (int i = 0; (i < 100) && (slow.getThrottledCount() == 0); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, slow.getThrottledCount());
+
+		scheduler.submit(submit("420600000002"));
+		scheduler.submit(submit("447700900001"));
+		sent = (SubmitSM) connection.takeSentPDU(1000);
+		assertEquals("447700900001", sent.getDestAddr().getAddress());
+		assertNull(connection.takeSentPDU(200));
+		assertEquals(1, slow.getQueueDepth());
+		assertEquals(1, slow.getSentCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedSendNotCounted() throws Exception {
+		scheduler.setThrottlePause(60000);
+		OutboundScheduler.TrafficClass slow = scheduler.getTrafficClass("slow");
+		scheduler.submit(submit("420600000001"));
+		connection.close();
+		scheduler.start();
+		Thread.sleep(200);
+		assertEquals(1, slow.getQueueDepth());
+		assertEquals(0, slow.getSentCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testSynchronousSessionThrottled() throws Exception {
+		PipeConnection syncConnection = new PipeConnection(10);
+		Session syncSession = syncConnection.bind(new Session(syncConnection), null);
+		OutboundScheduler syncScheduler = new OutboundScheduler(syncSession);
+		try {
+			syncScheduler.setThrottlePause(60000);
+			syncScheduler.start();
+			syncScheduler.submit(submit("447700900001"));
+			syncScheduler.submit(submit("447700900002"));
+			SubmitSM sent = (SubmitSM) syncConnection.takeSentPDU(1000);
+			Response throttled = sent.getResponse();
+			throttled.setCommandStatus(Data.ESME_RTHROTTLED);
+			syncConnection.feed(throttled);
+			OutboundScheduler.TrafficClass other = syncScheduler.getTrafficClass(OutboundScheduler.DEFAULT_CLASS);
+			for (int i = 0; (i < 100) && (other.getThrottledCount() == 0); i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, other.getThrottledCount());
+			assertEquals(1, other.getSentCount());
+			assertNull(syncConnection.takeSentPDU(200));
+			assertEquals(1, other.getQueueDepth());
+		} finally {
+			syncScheduler.stop();
+			syncSession.getReceiver().stop();
+		}
+	}
+
+	@Test
+	public void testQueueDepthLimited() throws Exception {
+		scheduler.setMaxQueueDepth(2);
+		assertTrue(scheduler.submit(submit("420600000001")));
+		assertTrue(scheduler.submit(submit("420600000002")));
+		assertFalse(scheduler.submit(submit("420600000003")));
+		assertTrue(scheduler.submit(submit("447700900001")));
+	}
+}
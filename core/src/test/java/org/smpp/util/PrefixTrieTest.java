@@ -0,0 +1,34 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PrefixTrieTest {
+
+	@Test
+	public void testLongestPrefixWins() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put("420", "cz");
+		trie.put("42060", "cz-a");
+		trie.put("4206", "cz-6");
+		assertEquals(3, trie.size());
+		assertEquals("cz-a", trie.get("420601234567"));
+		assertEquals("cz-6", trie.get("+420612345678"));
+		assertEquals("cz", trie.get("420777123456"));
+		assertNull(trie.get("44770090012"));
+		assertNull(trie.get("42"));
+		assertNull(trie.get(null));
+		trie.put("", "any");
+		assertEquals("any", trie.get("44770090012"));
+		assertEquals("any", trie.get("Shop"));
+		trie.put("420", "cz-2");
+		assertEquals("cz-2", trie.get("420777123456"));
+		assertEquals(4, trie.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonNumericPrefix() {
+		new PrefixTrie<String>().put("42a", "x");
+	}
+}
@@ -0,0 +1,151 @@
+package org.smpp.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.PipeConnection;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+
+public class SessionRouterTest {
+	private final BlockingQueue<PDU> received = new LinkedBlockingQueue<PDU>();
+	private SessionRouter router;
+	private PipeConnection connectionA;
+	private PipeConnection connectionB;
+	private Session sessionA;
+	private Session sessionB;
+
+	@Before
+	public void setup() throws Exception {
+		router = new SessionRouter();
+		ServerPDUEventListener listener = router.wrap(new ServerPDUEventListener() {
+			public void handleEvent(ServerPDUEvent event) {
+				received.add(event.getPDU());
+			}
+		});
+		connectionA = new PipeConnection(10);
+		connectionB = new PipeConnection(10);
+		sessionA = connectionA.bind(listener);
+		sessionB = connectionB.bind(listener);
+		router.addSession("a", sessionA, 1);
+		router.addSession("b", sessionB, 1);
+	}
+
+	@After
+	public void tearDown() {
+		sessionA.getReceiver().stop();
+		sessionB.getReceiver().stop();
+	}
+
+	private int countChoices(String name, int rounds) {
+		int count = 0;
+		for (int i = 0; i < rounds; i++) {
+			if (router.choose().getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testTrafficShiftsFromDegradedSMSC() {
+		int a = countChoices("a", 2000);
+		assertTrue("healthy a chosen " + a + " times", (a > 800) && (a < 1200));
+		SessionRouter.Member member = router.getMember("a");
+		for (int i = 0; i < 30; i++) {
+			member.responded(Data.ESME_RTHROTTLED, 10, SessionRouter.DEFAULT_LATENCY_TARGET);
+		}
+		assertTrue(member.getThrottleRate() > 0.8);
+		a = countChoices("a", 2000);
+		assertTrue("throttling a chosen " + a + " times", (a > 0) && (a < 400));
+
+		SessionRouter.Member slow = router.getMember("b");
+		slow.responded(Data.ESME_ROK, 5000, SessionRouter.DEFAULT_LATENCY_TARGET);
+		assertEquals(0.1, slow.getScore(), 0.001);
+	}
+
+	@Test
+	public void testKeepaliveFailuresLowerScore() throws Exception {
+		SessionRouter.Member member = router.getMember("a");
+		router.sessionDead(sessionA);
+		assertFalse(member.isAvailable());
+		assertEquals(1, member.getKeepaliveFailures());
+		assertEquals(0.5, member.getScore(), 0.001);
+		// a second failure after reconnecting counts on top of the first
+		Session reconnected = new PipeConnection(10).bind(null);
+		try {
+			router.addSession("a", reconnected, 1);
+			assertTrue(member.isAvailable());
+			router.sessionDead(reconnected);
+			assertEquals(2, member.getKeepaliveFailures());
+			assertEquals(0.25, member.getScore(), 0.001);
+			assertEquals(0, member.getErrorRate(), 0.001);
+			for (int i = 0; i < 30; i++) {
+				member.responded(Data.ESME_ROK, 10, SessionRouter.DEFAULT_LATENCY_TARGET);
+			}
+			assertTrue("score " + member.getScore(), member.getScore() > 0.8);
+		} finally {
+			reconnected.getReceiver().stop();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testFailoverWhenSendingFails() throws Exception {
+		connectionA.close();
+		for (int i = 0; i < 10; i++) {
+			assertNull(router.submit(new SubmitSM()));
+			assertNotNull(connectionB.takeSent(1000));
+		}
+		assertFalse(router.getMember("a").isAvailable());
+		assertEquals("b", router.choose().getName());
+
+		connectionB.close();
+		try {
+			router.submit(new SubmitSM());
+			fail("sent without available session");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testRetriedThroughAnotherSMSC() throws Exception {
+		router.addRetryStatus(Data.ESME_RSYSERR);
+		SubmitSM submit = new SubmitSM();
+		router.submit(submit);
+		PipeConnection first = connectionA;
+		PDU sent = connectionA.takeSentPDU(50);
+		if (sent == null) {
+			first = connectionB;
+			sent = connectionB.takeSentPDU(1000);
+		}
+		PipeConnection second = first == connectionA ? connectionB : connectionA;
+		Response rejected = ((SubmitSM) sent).getResponse();
+		rejected.setCommandStatus(Data.ESME_RSYSERR);
+		first.feed(rejected);
+
+		PDU retried = second.takeSentPDU(1000);
+		assertNotNull(retried);
+		assertEquals(submit.getSequenceNumber(), retried.getSequenceNumber());
+		second.feed(((SubmitSM) retried).getResponse());
+		// only the response of the retried request reaches the application
+		PDU response = received.poll(1000, TimeUnit.MILLISECONDS);
+		assertEquals(Data.ESME_ROK, response.getCommandStatus());
+		assertEquals(submit.getSequenceNumber(), response.getSequenceNumber());
+		assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+		assertEquals(1, router.getMember("a").getSentCount());
+		assertEquals(1, router.getMember("b").getSentCount());
+	}
+}
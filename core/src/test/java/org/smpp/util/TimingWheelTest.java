@@ -0,0 +1,127 @@
+package org.smpp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest {
+	private TimingWheel wheel;
+
+	@Before
+	public void setup() {
+		wheel = new TimingWheel(5, 16);
+		wheel.start();
+	}
+
+	@After
+	public void tearDown() {
+		wheel.stop();
+	}
+
+	private static class LatchTimeout extends TimingWheel.Timeout {
+		final CountDownLatch latch = new CountDownLatch(1);
+		volatile long expiredAt;
+
+		protected void expired() {
+			expiredAt = System.nanoTime();
+			latch.countDown();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testExpiresNotBeforeDelay() throws Exception {
+		LatchTimeout timeout = new LatchTimeout();
+		long start = System.nanoTime();
+		wheel.schedule(timeout, 50);
+		assertEquals(1, wheel.getPendingCount());
+		timeout.latch.await();
+		assertTrue((timeout.expiredAt - start) >= 50 * 1000000L);
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.cancel());
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testDelayLongerThanOneRevolution() throws Exception {
+		// 16 buckets of 5 ms make 80 ms revolution
+		LatchTimeout timeout = new LatchTimeout();
+		long start = System.nanoTime();
+		wheel.schedule(timeout, 200);
+		timeout.latch.await();
+		assertTrue((timeout.expiredAt - start) >= 200 * 1000000L);
+	}
+
+	@Test(timeout = 5000)
+	public void testCancelledTimeoutDoesNotExpire() throws Exception {
+		LatchTimeout cancelled = new LatchTimeout();
+		LatchTimeout other = new LatchTimeout();
+		wheel.schedule(cancelled, 20);
+		wheel.schedule(other, 40);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		other.latch.await();
+		assertFalse(cancelled.latch.await(20, TimeUnit.MILLISECONDS));
+		assertFalse(cancelled.isExpired());
+	}
+
+	@Test(timeout = 5000)
+	public void testRescheduleMovesDeadline() throws Exception {
+		LatchTimeout timeout = new LatchTimeout();
+		long start = System.nanoTime();
+		wheel.schedule(timeout, 10);
+		wheel.schedule(timeout, 100);
+		assertEquals(1, wheel.getPendingCount());
+		timeout.latch.await();
+		assertTrue((timeout.expiredAt - start) >= 100 * 1000000L);
+	}
+
+	@Test(timeout = 5000)
+	public void testScheduledInsideTickExpiresNotBeforeDelay() throws Exception {
+		// ticks of 200 ms, scheduled 150 ms into the first one: counting
+		// the delay from the last processed tick would fire after 50 ms
+		TimingWheel coarse = new TimingWheel(200, 16);
+		coarse.start();
+		try {
+			Thread.sleep(150);
+			LatchTimeout timeout = new LatchTimeout();
+			long start = System.nanoTime();
+			coarse.schedule(timeout, 100);
+			timeout.latch.await();
+			assertTrue((timeout.expiredAt - start) >= 100 * 1000000L);
+		} finally {
+			coarse.stop();
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testManyOutstandingTimeouts() throws Exception {
+		final int count = 200000;
+		final AtomicInteger expired = new AtomicInteger();
+		TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[count];
+		for (int i = 0; i < count; i++) {
+			timeouts[i] = new TimingWheel.Timeout() {
+				protected void expired() {
+					expired.incrementAndGet();
+				}
+			};
+			wheel.schedule(timeouts[i], 100 + (i % 500));
+		}
+		assertEquals(count, wheel.getPendingCount());
+		// cancel every other one as if their responses arrived
+		for (int i = 0; i < count; i += 2) {
+			assertTrue(timeouts[i].cancel());
+		}
+		while (wheel.getPendingCount() > 0) {
+			Thread.sleep(20);
+		}
+		assertEquals(count / 2, expired.get());
+	}
+}
@@ -0,0 +1,89 @@
+package org.smpp.proxy;
+
+import java.io.IOException;
+
+import org.smpp.Data;
+import org.smpp.pdu.BindRequest;
+import org.smpp.pdu.BindResponse;
+import org.smpp.pdu.PDUException;
+
+/**
+ * Connection of an ESME to the proxy. The proxy answers the binds,
+ * enquire links and unbind itself and forwards the other requests to the
+ * SMSC chosen by the router; requests from the SMSCs are forwarded to
+ * the ESME if it's bound as a receiver or transceiver.
+ */
+public class DownstreamLink extends Link {
+	private volatile boolean receiver = false;
+
+	public DownstreamLink(SmppProxy proxy, FrameConnection connection) {
+		super(proxy, connection);
+	}
+
+	/** Returns if the ESME is bound to receive messages. */
+	public boolean isReceiver() {
+		return isBound() && receiver;
+	}
+
+	protected void handle(Frame frame) throws IOException {
+		switch (frame.getCommandId()) {
+			case Data.BIND_TRANSMITTER :
+			case Data.BIND_RECEIVER :
+			case Data.BIND_TRANSCEIVER :
+				bind(frame);
+				break;
+			case Data.ENQUIRE_LINK :
+				respond(frame, Data.ESME_ROK);
+				break;
+			case Data.UNBIND :
+				respond(frame, Data.ESME_ROK);
+				closed();
+				break;
+			default :
+				if (!frame.isRequest()) {
+					debug.write("proxy: unexpected response from " + this + " " + frame);
+				} else if (!isBound()) {
+					respond(frame, Data.ESME_RINVBNDSTS);
+				} else if (frame.getCommandId() == Data.OUTBIND) {
+					debug.write("proxy: outbind from " + this + " ignored");
+				} else {
+					UpstreamLink upstream = proxy.getRouter().route(frame, this);
+					if (upstream == null) {
+						respond(frame, Data.ESME_RINVDSTADR);
+					} else if (!upstream.forward(frame, this)) {
+						respond(frame, Data.ESME_RTHROTTLED);
+					}
+				}
+		}
+	}
+
+	private void bind(Frame frame) throws IOException {
+		if (isBound()) {
+			respond(frame, Data.ESME_RALYBND);
+			return;
+		}
+		try {
+			BindRequest request = (BindRequest) frame.toPDU();
+			int status = proxy.authenticate(request.getSystemId(), request.getPassword());
+			if (status != Data.ESME_ROK) {
+				respond(frame, status);
+				return;
+			}
+			BindResponse response = (BindResponse) request.getResponse();
+			response.setSystemId(proxy.getSystemId());
+			setSystemId(request.getSystemId());
+			receiver = frame.getCommandId() != Data.BIND_TRANSMITTER;
+			send(Frame.valueOf(response));
+			setBound(true);
+			debug.write("proxy: bound " + this);
+		} catch (PDUException e) {
+			event.write(e, "proxy: invalid bind from " + this);
+			respond(frame, Data.ESME_RBINDFAIL);
+		}
+	}
+
+	protected void closed() {
+		super.closed();
+		stopProcessing(null);
+	}
+}
@@ -0,0 +1,177 @@
+package org.smpp.proxy;
+
+import org.smpp.Data;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.PDUHeader;
+import org.smpp.pdu.ValueNotSetException;
+import org.smpp.util.ByteBuffer;
+
+/**
+ * One binary PDU as received, forwarded by the proxy without decoding.
+ * The header fields are read from and the sequence number is written to
+ * the bytes directly, the fields used for routing are read from the body
+ * only when asked for.
+ *
+ * @see PDUHeader#getCommandId(byte[],int)
+ */
+public class Frame {
+	private final byte[] data;
+
+	/**
+	 * Creates a frame of the binary PDU.
+	 *
+	 * @param data exactly one PDU, the array isn't copied
+	 */
+	public Frame(byte[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Creates a frame by encoding the PDU, used for the PDUs
+	 * the proxy sends itself.
+	 */
+	public static Frame valueOf(PDU pdu) throws ValueNotSetException {
+		byte[] data = new byte[pdu.getEncodedLength()];
+		pdu.encode(data, 0);
+		return new Frame(data);
+	}
+
+	/**
+	 * Creates the header-only response to the request, e.g. reporting an error.
+	 */
+	public static Frame createResponse(Frame request, int commandStatus) {
+		return createResponse(request.getCommandId(), request.getSequenceNumber(), commandStatus);
+	}
+
+	/**
+	 * Creates the header-only response to the request with the command id
+	 * and the sequence number, e.g. when the request itself isn't kept.
+	 */
+	public static Frame createResponse(int commandId, int sequenceNumber, int commandStatus) {
+		byte[] data = new byte[Data.PDU_HEADER_SIZE];
+		PDUHeader header = new PDUHeader();
+		header.setCommandLength(Data.PDU_HEADER_SIZE);
+		header.setCommandId(commandId | Data.GENERIC_NACK);
+		header.setCommandStatus(commandStatus);
+		header.setSequenceNumber(sequenceNumber);
+		header.encode(data, 0);
+		return new Frame(data);
+	}
+
+	/** Decodes the PDU, used for the PDUs the proxy handles itself. */
+	public PDU toPDU() throws PDUException {
+		return PDU.createPDU(new ByteBuffer(data));
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getCommandLength() {
+		return PDUHeader.getCommandLength(data, 0);
+	}
+
+	public int getCommandId() {
+		return PDUHeader.getCommandId(data, 0);
+	}
+
+	public int getCommandStatus() {
+		return PDUHeader.getCommandStatus(data, 0);
+	}
+
+	public int getSequenceNumber() {
+		return PDUHeader.getSequenceNumber(data, 0);
+	}
+
+	public void setSequenceNumber(int sequenceNumber) {
+		PDUHeader.setSequenceNumber(data, 0, sequenceNumber);
+	}
+
+	public boolean isRequest() {
+		return (getCommandId() & Data.GENERIC_NACK) == 0;
+	}
+
+	/**
+	 * Returns the <code>system_id</code> of a bind or outbind,
+	 * null for other PDUs.
+	 */
+	public String getSystemId() {
+		switch (getCommandId()) {
+			case Data.BIND_TRANSMITTER :
+			case Data.BIND_RECEIVER :
+			case Data.BIND_TRANSCEIVER :
+			case Data.OUTBIND :
+				return getCString(Data.PDU_HEADER_SIZE);
+			default :
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the <code>source_addr</code> of a message, null for other PDUs.
+	 */
+	public String getSourceAddr() {
+		int pos = getSourceAddrOffset();
+		return pos < 0 ? null : getCString(pos);
+	}
+
+	/**
+	 * Returns the <code>destination_addr</code> of a message,
+	 * null for other PDUs, including <code>submit_multi</code>.
+	 */
+	public String getDestAddr() {
+		switch (getCommandId()) {
+			case Data.SUBMIT_SM :
+			case Data.DELIVER_SM :
+			case Data.DATA_SM :
+				int pos = skipCString(getSourceAddrOffset());
+				return pos < 0 ? null : getCString(pos + 2);
+			default :
+				return null;
+		}
+	}
+
+	/** Offset of the source address after service_type, ton and npi. */
+	private int getSourceAddrOffset() {
+		switch (getCommandId()) {
+			case Data.SUBMIT_SM :
+			case Data.DELIVER_SM :
+			case Data.DATA_SM :
+			case Data.SUBMIT_MULTI :
+				int pos = skipCString(Data.PDU_HEADER_SIZE);
+				return pos < 0 ? -1 : pos + 2;
+			default :
+				return -1;
+		}
+	}
+
+	private int skipCString(int pos) {
+		if (pos < 0) {
+			return -1;
+		}
+		while (pos < data.length) {
+			if (data[pos++] == 0) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	private String getCString(int pos) {
+		int end = skipCString(pos);
+		if (end < 0) {
+			return null;
+		}
+		char[] chars = new char[end - 1 - pos];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (data[pos + i] & 0xff);
+		}
+		return new String(chars);
+	}
+
+	public String toString() {
+		return "(frame: " + Integer.toHexString(getCommandId()) + " " + getCommandStatus() + " "
+			+ getSequenceNumber() + " " + data.length + ")";
+	}
+}
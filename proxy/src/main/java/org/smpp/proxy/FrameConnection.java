@@ -0,0 +1,106 @@
+package org.smpp.proxy;
+
+import java.io.IOException;
+import java.util.LinkedList;
+
+import org.smpp.Connection;
+import org.smpp.Data;
+import org.smpp.SmppObject;
+import org.smpp.pdu.PDUHeader;
+import org.smpp.util.ByteBuffer;
+
+/**
+ * Splits the data received from a connection into frames by the
+ * <code>command_length</code> of the PDU headers and sends frames.
+ * The bodies aren't looked at.
+ *
+ * @see Frame
+ */
+public class FrameConnection extends SmppObject {
+	/** The longest PDU accepted, longer lengths are taken as garbage. */
+	public static final int MAX_FRAME_LENGTH = 70000;
+
+	private final Connection connection;
+
+	/** The received data not split into frames yet. */
+	private byte[] pending = new byte[4096];
+	private int pendingLength = 0;
+
+	/** Frames split from the received data and not returned yet. */
+	private final LinkedList<Frame> frames = new LinkedList<Frame>();
+
+	public FrameConnection(Connection connection) {
+		this.connection = connection;
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Returns the next frame received, or null if no complete frame was
+	 * received within the receive timeout of the connection.
+	 *
+	 * @exception IOException if the connection failed or the data
+	 *            received aren't PDUs
+	 */
+	public Frame receive() throws IOException {
+		if (frames.isEmpty()) {
+			ByteBuffer received = connection.receive();
+			if ((received != null) && (received.length() > 0)) {
+				append(received.getBuffer(), received.length());
+			}
+		}
+		return frames.isEmpty() ? null : frames.removeFirst();
+	}
+
+	/**
+	 * Adds the received data and splits all the complete frames from them.
+	 */
+	void append(byte[] data, int length) throws IOException {
+		if (pendingLength + length > pending.length) {
+			byte[] larger = new byte[Math.max(pending.length * 2, pendingLength + length)];
+			System.arraycopy(pending, 0, larger, 0, pendingLength);
+			pending = larger;
+		}
+		System.arraycopy(data, 0, pending, pendingLength, length);
+		pendingLength += length;
+		int pos = 0;
+		while (pendingLength - pos >= Data.PDU_HEADER_SIZE) {
+			int frameLength = PDUHeader.getCommandLength(pending, pos);
+			if ((frameLength < Data.PDU_HEADER_SIZE) || (frameLength > MAX_FRAME_LENGTH)) {
+				pendingLength = 0;
+				throw new IOException("Invalid command_length " + frameLength);
+			}
+			if (pendingLength - pos < frameLength) {
+				break;
+			}
+			byte[] frame = new byte[frameLength];
+			System.arraycopy(pending, pos, frame, 0, frameLength);
+			frames.add(new Frame(frame));
+			pos += frameLength;
+		}
+		if (pos > 0) {
+			System.arraycopy(pending, pos, pending, 0, pendingLength - pos);
+			pendingLength -= pos;
+		}
+	}
+
+	/**
+	 * Sends the frame, can be called by several threads.
+	 */
+	public void send(Frame frame) throws IOException {
+		byte[] data = frame.getData();
+		synchronized (this) {
+			connection.send(data, 0, data.length);
+		}
+	}
+
+	public void close() {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			debug.write("closing proxy connection: " + e);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package org.smpp.proxy;
+
+import java.io.IOException;
+
+import org.smpp.Data;
+
+import org.smpp.util.ProcessingThread;
+
+/**
+ * A connection of the proxy, either from an ESME or to an SMSC.
+ * The thread of the link receives the frames and handles them;
+ * the requests forwarded over the link get sequence numbers from
+ * the link's map, so the responses can be returned to the link
+ * they came from.
+ */
+public abstract class Link extends ProcessingThread {
+	/** Default number of requests forwarded over a link without response. */
+	public static final int DEFAULT_WINDOW = 4096;
+
+	protected final SmppProxy proxy;
+	protected volatile FrameConnection connection;
+	protected final SequenceMap<Link> sequences;
+	private volatile String systemId = null;
+	private volatile boolean bound = false;
+
+	protected Link(SmppProxy proxy, FrameConnection connection) {
+		this.proxy = proxy;
+		this.connection = connection;
+		this.sequences = new SequenceMap<Link>(DEFAULT_WINDOW);
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	protected void setSystemId(String systemId) {
+		this.systemId = systemId;
+	}
+
+	public boolean isBound() {
+		return bound;
+	}
+
+	protected void setBound(boolean bound) {
+		this.bound = bound;
+	}
+
+	/** Returns the number of requests forwarded over the link without response. */
+	public int getPendingCount() {
+		return sequences.size();
+	}
+
+	public void process() {
+		FrameConnection current = connection;
+		if (current == null) {
+			connect();
+			return;
+		}
+		try {
+			Frame frame = current.receive();
+			if (frame != null) {
+				if (!frame.isRequest() && returnResponse(frame)) {
+					return;
+				}
+				handle(frame);
+			}
+		} catch (IOException e) {
+			debug.write("proxy link " + this + " failed: " + e);
+			closed();
+		}
+	}
+
+	/**
+	 * Called when the link has no connection.
+	 */
+	protected void connect() {
+		stopProcessing(null);
+	}
+
+	/**
+	 * Handles the frame received which isn't a response to a forwarded request.
+	 */
+	protected abstract void handle(Frame frame) throws IOException;
+
+	/**
+	 * Forwards the request received from the origin over this link.
+	 *
+	 * @return false if the request couldn't be forwarded, because the link
+	 *         isn't bound or too many requests are waiting for response
+	 */
+	public boolean forward(Frame request, Link origin) {
+		FrameConnection current = connection;
+		if (!isBound() || (current == null)) {
+			return false;
+		}
+		int original = request.getSequenceNumber();
+		int mapped = sequences.put(origin, original, request.getCommandId());
+		if (mapped < 0) {
+			return false;
+		}
+		request.setSequenceNumber(mapped);
+		try {
+			current.send(request);
+			return true;
+		} catch (IOException e) {
+			sequences.remove(mapped);
+			request.setSequenceNumber(original);
+			debug.write("proxy link " + this + " failed sending: " + e);
+			closed();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the response to the link the request came from with the
+	 * original sequence number.
+	 *
+	 * @return false if the response doesn't answer a forwarded request
+	 */
+	private boolean returnResponse(Frame response) {
+		SequenceMap.Mapping<Link> mapping = sequences.remove(response.getSequenceNumber());
+		if (mapping == null) {
+			return false;
+		}
+		response.setSequenceNumber(mapping.getSequenceNumber());
+		mapping.getOrigin().send(response);
+		return true;
+	}
+
+	/**
+	 * Sends the frame, closes the link if it fails.
+	 */
+	public void send(Frame frame) {
+		FrameConnection current = connection;
+		if (current == null) {
+			debug.write("proxy link " + this + " not connected, dropping " + frame);
+			return;
+		}
+		try {
+			current.send(frame);
+		} catch (IOException e) {
+			debug.write("proxy link " + this + " failed sending: " + e);
+			closed();
+		}
+	}
+
+	/**
+	 * Responds to the request with the status and without body,
+	 * e.g. to reject it.
+	 */
+	protected void respond(Frame request, int commandStatus) {
+		send(Frame.createResponse(request, commandStatus));
+	}
+
+	/**
+	 * Closes the connection and answers the requests forwarded over the link
+	 * without response with <code>ESME_RSYSERR</code>, so their origins
+	 * don't wait for the responses which can't come anymore.
+	 */
+	protected void closed() {
+		FrameConnection current = connection;
+		if (current == null) {
+			return;
+		}
+		connection = null;
+		setBound(false);
+		current.close();
+		for (SequenceMap.Mapping<Link> mapping : sequences.clear()) {
+			mapping.getOrigin().send(
+				Frame.createResponse(mapping.getCommandId(), mapping.getSequenceNumber(), Data.ESME_RSYSERR));
+		}
+		proxy.linkClosed(this);
+	}
+
+	/**
+	 * Forgets the requests which came from the link, e.g. when it was
+	 * closed, and those forwarded more than <code>maxAge</code> ago.
+	 */
+	void purge(long maxAge, Link origin) {
+		sequences.purge(maxAge, origin);
+	}
+
+	public String getThreadName() {
+		return "ProxyLink";
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() + "(" + systemId + ")";
+	}
+}
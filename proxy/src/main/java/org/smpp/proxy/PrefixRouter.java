@@ -0,0 +1,89 @@
+package org.smpp.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the messages by the longest prefix of the destination address
+ * which has a route. Requests without destination address or without
+ * matching route go to the default SMSC. Requests from the SMSCs go to
+ * the ESME with the system id routed for their destination address,
+ * or to the bound receivers in turn.
+ */
+public class PrefixRouter implements Router {
+	private static class Route<T> {
+		final String prefix;
+		final T target;
+
+		Route(String prefix, T target) {
+			this.prefix = prefix;
+			this.target = target;
+		}
+	}
+
+	private final List<Route<UpstreamLink>> routes = new ArrayList<Route<UpstreamLink>>();
+	private final List<Route<String>> inboundRoutes = new ArrayList<Route<String>>();
+	private volatile UpstreamLink defaultRoute = null;
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Routes the messages whose destination address starts with the prefix
+	 * to the SMSC.
+	 */
+	public synchronized void addRoute(String prefix, UpstreamLink upstream) {
+		routes.add(new Route<UpstreamLink>(prefix, upstream));
+	}
+
+	/**
+	 * Routes the messages without a matching route to the SMSC.
+	 */
+	public void setDefaultRoute(UpstreamLink upstream) {
+		defaultRoute = upstream;
+	}
+
+	/**
+	 * Routes the messages from the SMSCs whose destination address starts
+	 * with the prefix to the ESME bound with the system id.
+	 */
+	public synchronized void addInboundRoute(String prefix, String systemId) {
+		inboundRoutes.add(new Route<String>(prefix, systemId));
+	}
+
+	public UpstreamLink route(Frame request, DownstreamLink from) {
+		UpstreamLink upstream = longestMatch(routes, request.getDestAddr());
+		return upstream == null ? defaultRoute : upstream;
+	}
+
+	public DownstreamLink routeInbound(Frame request, UpstreamLink from, List<DownstreamLink> receivers) {
+		if (receivers.isEmpty()) {
+			return null;
+		}
+		String systemId = longestMatch(inboundRoutes, request.getDestAddr());
+		if (systemId != null) {
+			for (int i = 0; i < receivers.size(); i++) {
+				DownstreamLink receiver = receivers.get(i);
+				if (systemId.equals(receiver.getSystemId())) {
+					return receiver;
+				}
+			}
+			return null;
+		}
+		int index = (next.getAndIncrement() & Integer.MAX_VALUE) % receivers.size();
+		return receivers.get(index);
+	}
+
+	private synchronized <T> T longestMatch(List<Route<T>> routes, String address) {
+		if (address == null) {
+			return null;
+		}
+		Route<T> best = null;
+		for (int i = 0; i < routes.size(); i++) {
+			Route<T> route = routes.get(i);
+			if (address.startsWith(route.prefix) && ((best == null) || (route.prefix.length() > best.prefix.length()))) {
+				best = route;
+			}
+		}
+		return best == null ? null : best.target;
+	}
+}
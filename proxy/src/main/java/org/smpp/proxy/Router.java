@@ -0,0 +1,26 @@
+package org.smpp.proxy;
+
+import java.util.List;
+
+/**
+ * Chooses the links the proxy forwards the requests to. Called by the
+ * threads of the links, so implementations must be thread safe; the
+ * frames shouldn't be modified.
+ *
+ * @see PrefixRouter
+ */
+public interface Router {
+	/**
+	 * Returns the SMSC to forward the ESME's request to,
+	 * null if there's no route.
+	 */
+	public UpstreamLink route(Frame request, DownstreamLink from);
+
+	/**
+	 * Returns the ESME to forward the SMSC's request to, null if
+	 * there's no route.
+	 *
+	 * @param receivers the ESMEs currently bound as receivers
+	 */
+	public DownstreamLink routeInbound(Frame request, UpstreamLink from, List<DownstreamLink> receivers);
+}
@@ -0,0 +1,154 @@
+package org.smpp.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the sequence numbers of the requests the proxy forwards over a link
+ * to the link the request came from and its original sequence number,
+ * so the response can be returned. The sequence numbers on the link are
+ * assigned by the map; the entries are kept in a ring of slots indexed by
+ * the sequence number, so the number of requests waiting for their
+ * responses is limited by the capacity.
+ *
+ * @param <T> the type of the links the requests come from
+ */
+public class SequenceMap<T> {
+	/**
+	 * The link and the sequence number a request came with.
+	 */
+	public static class Mapping<T> {
+		private final T origin;
+		private final int sequenceNumber;
+		private final int commandId;
+		private final int mapped;
+		private final long created;
+
+		Mapping(T origin, int sequenceNumber, int commandId, int mapped, long created) {
+			this.origin = origin;
+			this.sequenceNumber = sequenceNumber;
+			this.commandId = commandId;
+			this.mapped = mapped;
+			this.created = created;
+		}
+
+		public T getOrigin() {
+			return origin;
+		}
+
+		public int getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		/** Returns the command id of the request, e.g. to answer it. */
+		public int getCommandId() {
+			return commandId;
+		}
+	}
+
+	private final Mapping<T>[] slots;
+	private final int mask;
+	private int size = 0;
+	private int lastSequenceNumber = 0;
+
+	/**
+	 * @param capacity the most requests waiting for the response,
+	 *                 rounded up to a power of two
+	 */
+	@SuppressWarnings("unchecked")
+	public SequenceMap(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity) {
+			length <<= 1;
+		}
+		slots = new Mapping[length];
+		mask = length - 1;
+	}
+
+	/**
+	 * Assigns a sequence number for forwarding the request.
+	 *
+	 * @param origin         the link the request came from
+	 * @param sequenceNumber the sequence number the request came with
+	 * @param commandId      the command id of the request
+	 * @return the sequence number to send the request with, or -1 if there
+	 *         are too many requests waiting for their responses
+	 */
+	public synchronized int put(T origin, int sequenceNumber, int commandId) {
+		if (size == slots.length) {
+			return -1;
+		}
+		// the slots of requests without response are skipped
+		int mapped;
+		do {
+			mapped = lastSequenceNumber == Integer.MAX_VALUE ? 1 : lastSequenceNumber + 1;
+			lastSequenceNumber = mapped;
+		} while (slots[mapped & mask] != null);
+		slots[mapped & mask] = new Mapping<T>(origin, sequenceNumber, commandId, mapped, System.currentTimeMillis());
+		size++;
+		return mapped;
+	}
+
+	/**
+	 * Removes and returns the mapping of the response's sequence number,
+	 * null if there's none.
+	 */
+	public synchronized Mapping<T> remove(int mapped) {
+		Mapping<T> mapping = slots[mapped & mask];
+		if ((mapping == null) || (mapping.mapped != mapped)) {
+			return null;
+		}
+		slots[mapped & mask] = null;
+		size--;
+		return mapping;
+	}
+
+	/**
+	 * Removes the mappings of the requests older than the age, whose
+	 * responses aren't expected anymore, and the mappings of the link.
+	 *
+	 * @param origin the link which was closed, can be null
+	 * @return the number of mappings removed
+	 */
+	public synchronized int purge(long maxAge, T origin) {
+		long oldest = System.currentTimeMillis() - maxAge;
+		int removed = 0;
+		for (int i = 0; i < slots.length; i++) {
+			Mapping<T> mapping = slots[i];
+			if ((mapping != null) && ((mapping.created < oldest) || (mapping.origin == origin))) {
+				slots[i] = null;
+				removed++;
+			}
+		}
+		size -= removed;
+		return removed;
+	}
+
+	/**
+	 * Removes all the mappings.
+	 *
+	 * @return the mappings removed, i.e. of the requests without response
+	 */
+	public synchronized List<Mapping<T>> clear() {
+		List<Mapping<T>> removed = new ArrayList<Mapping<T>>(size);
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] != null) {
+				removed.add(slots[i]);
+				slots[i] = null;
+			}
+		}
+		size = 0;
+		return removed;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+}
@@ -0,0 +1,285 @@
+package org.smpp.proxy;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.smpp.Connection;
+import org.smpp.Data;
+import org.smpp.SmppObject;
+import org.smpp.TCPIPConnection;
+import org.smpp.util.ProcessingThread;
+
+/**
+ * SMPP proxy routing the messages of ESMEs to several SMSCs without
+ * decoding them. The PDUs are split from the received data by their
+ * headers and forwarded as received, only their sequence numbers are
+ * rewritten so the responses can be returned to the link the request came
+ * from; the router looks only at the fields it needs, e.g. the destination
+ * address. Binds, enquire links and unbinds are answered by the proxy.
+ * <p>
+ * Started from the command line with a properties file:
+ * <pre>
+ * port=2775
+ * system-id=proxy
+ * # name=host:port:system id:password
+ * upstream.a=smsc-a.example.com:2775:user:secret
+ * upstream.b=smsc-b.example.com:2775:user:secret
+ * # destination prefix=upstream name, default is the route without prefix
+ * route.420=a
+ * route=b
+ * # ESMEs allowed to bind, anyone can bind if there's none
+ * account.esme=secret
+ * </pre>
+ *
+ * @see Frame
+ * @see Router
+ */
+public class SmppProxy extends SmppObject {
+	/** Default time in milliseconds the responses are waited for. */
+	public static final long DEFAULT_RESPONSE_TIMEOUT = 120000;
+
+	private final int port;
+	private final String systemId;
+	private Router router = new PrefixRouter();
+	private long responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
+	private final Map<String, String> accounts = new ConcurrentHashMap<String, String>();
+	private final List<UpstreamLink> upstreams = new CopyOnWriteArrayList<UpstreamLink>();
+	private final List<DownstreamLink> downstreams = new CopyOnWriteArrayList<DownstreamLink>();
+	private Connection serverConnection = null;
+	private Listener listener = null;
+
+	/**
+	 * Accepts the connections of the ESMEs and purges the mappings
+	 * of the requests without response.
+	 */
+	private class Listener extends ProcessingThread {
+		private long purged = System.currentTimeMillis();
+
+		public void process() {
+			try {
+				Connection accepted = serverConnection.accept();
+				if (accepted != null) {
+					DownstreamLink link = new DownstreamLink(SmppProxy.this, new FrameConnection(accepted));
+					downstreams.add(link);
+					link.start();
+				}
+			} catch (IOException e) {
+				event.write(e, "proxy: accepting connection");
+				stopProcessing(e);
+			}
+			long now = System.currentTimeMillis();
+			if (now - purged > responseTimeout / 2) {
+				purged = now;
+				for (Link link : getLinks()) {
+					link.purge(responseTimeout, null);
+				}
+			}
+		}
+
+		public String getThreadName() {
+			return "ProxyListener";
+		}
+	}
+
+	/**
+	 * @param port     the port the ESMEs connect to
+	 * @param systemId the system id the proxy returns in bind responses
+	 */
+	public SmppProxy(int port, String systemId) {
+		this.port = port;
+		this.systemId = systemId;
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	public Router getRouter() {
+		return router;
+	}
+
+	public void setRouter(Router router) {
+		this.router = router;
+	}
+
+	/**
+	 * Sets how long the response to a forwarded request is waited for
+	 * before its sequence number mapping is forgotten.
+	 */
+	public void setResponseTimeout(long responseTimeout) {
+		this.responseTimeout = responseTimeout;
+	}
+
+	/**
+	 * Allows the ESME to bind with the system id and password. If there
+	 * are no accounts, any ESME can bind.
+	 */
+	public void addAccount(String systemId, String password) {
+		accounts.put(systemId, password);
+	}
+
+	/**
+	 * Returns the status for the bind response.
+	 */
+	int authenticate(String systemId, String password) {
+		if (accounts.isEmpty()) {
+			return Data.ESME_ROK;
+		}
+		String expected = accounts.get(systemId);
+		if (expected == null) {
+			return Data.ESME_RINVSYSID;
+		}
+		return expected.equals(password) ? Data.ESME_ROK : Data.ESME_RINVPASWD;
+	}
+
+	/**
+	 * Adds the SMSC, it's connected when the proxy starts.
+	 */
+	public void addUpstream(UpstreamLink upstream) {
+		upstreams.add(upstream);
+	}
+
+	public UpstreamLink getUpstream(String name) {
+		for (UpstreamLink upstream : upstreams) {
+			if (upstream.getName().equals(name)) {
+				return upstream;
+			}
+		}
+		return null;
+	}
+
+	/** Returns the ESMEs bound as receivers. */
+	public List<DownstreamLink> getReceivers() {
+		List<DownstreamLink> receivers = new ArrayList<DownstreamLink>(downstreams.size());
+		for (DownstreamLink downstream : downstreams) {
+			if (downstream.isReceiver()) {
+				receivers.add(downstream);
+			}
+		}
+		return receivers;
+	}
+
+	private List<Link> getLinks() {
+		List<Link> links = new ArrayList<Link>(upstreams);
+		links.addAll(downstreams);
+		return links;
+	}
+
+	/**
+	 * Connects to the SMSCs and starts accepting the ESMEs.
+	 */
+	public synchronized void start() throws IOException {
+		TCPIPConnection server = new TCPIPConnection(port);
+		server.setReceiveTimeout(1000);
+		server.open();
+		serverConnection = server;
+		for (UpstreamLink upstream : upstreams) {
+			upstream.start();
+		}
+		listener = new Listener();
+		listener.start();
+	}
+
+	/**
+	 * Stops accepting and closes all the links.
+	 */
+	public synchronized void stop() throws IOException {
+		if (listener != null) {
+			listener.stop();
+			serverConnection.close();
+			listener = null;
+		}
+		for (Link link : getLinks()) {
+			link.stop();
+			link.closed();
+		}
+	}
+
+	/**
+	 * Called by the link when its connection was closed.
+	 */
+	void linkClosed(Link link) {
+		debug.write("proxy: closed " + link);
+		if (link instanceof DownstreamLink) {
+			downstreams.remove(link);
+		}
+		// the responses can't be returned to the link anymore
+		for (Link other : getLinks()) {
+			other.purge(responseTimeout, link);
+		}
+	}
+
+	/**
+	 * Creates the proxy from the properties.
+	 *
+	 * @see SmppProxy
+	 */
+	public static SmppProxy create(Properties properties) {
+		SmppProxy proxy = new SmppProxy(
+			Integer.parseInt(properties.getProperty("port", "2775")),
+			properties.getProperty("system-id", "proxy"));
+		PrefixRouter router = new PrefixRouter();
+		proxy.setRouter(router);
+		Map<String, String> routes = new HashMap<String, String>();
+		for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements();) {
+			String name = (String) names.nextElement();
+			String value = properties.getProperty(name);
+			if (name.startsWith("upstream.")) {
+				String[] fields = value.split(":", 4);
+				if (fields.length != 4) {
+					throw new IllegalArgumentException("Expected host:port:system id:password for " + name);
+				}
+				proxy.addUpstream(
+					new UpstreamLink(
+						proxy,
+						name.substring("upstream.".length()),
+						fields[0],
+						Integer.parseInt(fields[1]),
+						fields[2],
+						fields[3]));
+			} else if (name.equals("route")) {
+				routes.put("", value);
+			} else if (name.startsWith("route.")) {
+				routes.put(name.substring("route.".length()), value);
+			} else if (name.startsWith("account.")) {
+				proxy.addAccount(name.substring("account.".length()), value);
+			}
+		}
+		for (Map.Entry<String, String> route : routes.entrySet()) {
+			UpstreamLink upstream = proxy.getUpstream(route.getValue());
+			if (upstream == null) {
+				throw new IllegalArgumentException("Unknown upstream " + route.getValue());
+			}
+			if (route.getKey().length() == 0) {
+				router.setDefaultRoute(upstream);
+			} else {
+				router.addRoute(route.getKey(), upstream);
+			}
+		}
+		return proxy;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: SmppProxy <properties file>");
+			System.exit(1);
+		}
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(args[0]);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		create(properties).start();
+	}
+}
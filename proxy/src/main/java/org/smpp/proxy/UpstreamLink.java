@@ -0,0 +1,127 @@
+package org.smpp.proxy;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.smpp.Data;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindTransciever;
+import org.smpp.pdu.PDUException;
+
+/**
+ * Connection of the proxy to an SMSC, bound as a transceiver. The requests
+ * of the ESMEs are forwarded over it and the requests of the SMSC, e.g.
+ * delivery receipts, are forwarded to the ESME chosen by the router.
+ * A lost connection is opened and bound again.
+ */
+public class UpstreamLink extends Link {
+	/** Default time in milliseconds between the attempts to connect. */
+	public static final long DEFAULT_RECONNECT_INTERVAL = 5000;
+
+	private final String name;
+	private final String host;
+	private final int port;
+	private final String password;
+	private long reconnectInterval = DEFAULT_RECONNECT_INTERVAL;
+	private boolean connectedBefore = false;
+
+	/**
+	 * @param name     the name of the SMSC used in the routes
+	 * @param host     the address of the SMSC
+	 * @param port     the port of the SMSC
+	 * @param systemId the system id to bind with
+	 * @param password the password to bind with
+	 */
+	public UpstreamLink(SmppProxy proxy, String name, String host, int port, String systemId, String password) {
+		super(proxy, null);
+		this.name = name;
+		this.host = host;
+		this.port = port;
+		this.password = password;
+		setSystemId(systemId);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setReconnectInterval(long reconnectInterval) {
+		this.reconnectInterval = reconnectInterval;
+	}
+
+	/**
+	 * Opens the connection and sends the bind, the link is bound
+	 * when the response comes.
+	 */
+	protected void connect() {
+		if (connectedBefore) {
+			try {
+				Thread.sleep(reconnectInterval);
+			} catch (InterruptedException e) {
+				stopProcessing(null);
+				return;
+			}
+		}
+		connectedBefore = true;
+		FrameConnection opened = null;
+		try {
+			TCPIPConnection tcp = new TCPIPConnection(host, port);
+			tcp.open();
+			opened = new FrameConnection(tcp);
+			BindTransciever bind = new BindTransciever();
+			bind.setSystemId(getSystemId());
+			bind.setPassword(password);
+			bind.setInterfaceVersion(Data.SMPP_V34);
+			bind.setSequenceNumber(1);
+			opened.send(Frame.valueOf(bind));
+			connection = opened;
+		} catch (IOException e) {
+			debug.write("proxy: can't connect " + this + ": " + e);
+			if (opened != null) {
+				opened.close();
+			}
+		} catch (PDUException e) {
+			event.write(e, "proxy: invalid bind parameters of " + this);
+			stopProcessing(e);
+		}
+	}
+
+	protected void handle(Frame frame) throws IOException {
+		switch (frame.getCommandId()) {
+			case Data.BIND_TRANSCEIVER_RESP :
+				if (frame.getCommandStatus() == Data.ESME_ROK) {
+					setBound(true);
+					debug.write("proxy: bound " + this);
+				} else {
+					event.write("proxy: bind of " + this + " rejected with status " + frame.getCommandStatus());
+					closed();
+				}
+				break;
+			case Data.ENQUIRE_LINK :
+				respond(frame, Data.ESME_ROK);
+				break;
+			case Data.UNBIND :
+				respond(frame, Data.ESME_ROK);
+				closed();
+				break;
+			default :
+				if (!frame.isRequest()) {
+					debug.write("proxy: unexpected response from " + this + " " + frame);
+					break;
+				}
+				List<DownstreamLink> receivers = proxy.getReceivers();
+				DownstreamLink downstream = proxy.getRouter().routeInbound(frame, this, receivers);
+				if ((downstream == null) || !downstream.forward(frame, this)) {
+					respond(frame, Data.ESME_RX_T_APPN);
+				}
+		}
+	}
+
+	public String getThreadName() {
+		return "ProxyUpstream";
+	}
+
+	public String toString() {
+		return "UpstreamLink(" + name + " " + host + ":" + port + ")";
+	}
+}
@@ -0,0 +1,46 @@
+package org.smpp.proxy;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.SubmitSM;
+
+public class FrameConnectionTest {
+
+	@Test
+	public void testFramesSplitAcrossReads() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setDestAddr("420600111222");
+		submit.setShortMessage("Hello");
+		submit.setSequenceNumber(1);
+		EnquireLink enquire = new EnquireLink();
+		enquire.setSequenceNumber(2);
+		byte[] first = Frame.valueOf(submit).getData();
+		byte[] second = Frame.valueOf(enquire).getData();
+		byte[] stream = new byte[first.length + second.length];
+		System.arraycopy(first, 0, stream, 0, first.length);
+		System.arraycopy(second, 0, stream, first.length, second.length);
+
+		FrameConnection connection = new FrameConnection(null);
+		for (int i = 0; i < stream.length; i += 5) {
+			byte[] chunk = new byte[Math.min(5, stream.length - i)];
+			System.arraycopy(stream, i, chunk, 0, chunk.length);
+			connection.append(chunk, chunk.length);
+		}
+		Frame frame = connection.receive();
+		assertArrayEquals(first, frame.getData());
+		frame = connection.receive();
+		assertArrayEquals(second, frame.getData());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidLength() throws Exception {
+		FrameConnection connection = new FrameConnection(null);
+		byte[] header = new byte[16];
+		header[3] = 8;
+		connection.append(header, header.length);
+	}
+}
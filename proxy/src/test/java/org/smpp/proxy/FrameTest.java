@@ -0,0 +1,69 @@
+package org.smpp.proxy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.SubmitSM;
+
+public class FrameTest {
+
+	@Test
+	public void testRoutingFieldsOfSubmit() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setServiceType("CMT");
+		submit.setSourceAddr((byte) 5, (byte) 0, "Shop");
+		submit.setDestAddr((byte) 1, (byte) 1, "420600111222");
+		submit.setShortMessage("Hello");
+		submit.setSequenceNumber(17);
+		Frame frame = Frame.valueOf(submit);
+		assertTrue(frame.isRequest());
+		assertEquals(Data.SUBMIT_SM, frame.getCommandId());
+		assertEquals(17, frame.getSequenceNumber());
+		assertEquals(frame.getData().length, frame.getCommandLength());
+		assertEquals("Shop", frame.getSourceAddr());
+		assertEquals("420600111222", frame.getDestAddr());
+		assertNull(frame.getSystemId());
+	}
+
+	@Test
+	public void testRoutingFieldsOfDeliverAndBind() throws Exception {
+		DeliverSM deliver = new DeliverSM();
+		deliver.setSourceAddr("420600111222");
+		deliver.setDestAddr("1234");
+		assertEquals("1234", Frame.valueOf(deliver).getDestAddr());
+		BindTransmitter bind = new BindTransmitter();
+		bind.setSystemId("esme");
+		bind.setPassword("secret");
+		Frame frame = Frame.valueOf(bind);
+		assertEquals("esme", frame.getSystemId());
+		assertNull(frame.getDestAddr());
+	}
+
+	@Test
+	public void testSequenceNumberRewrittenInPlace() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setDestAddr("123");
+		submit.setSequenceNumber(1);
+		Frame frame = Frame.valueOf(submit);
+		frame.setSequenceNumber(0x01020304);
+		PDU decoded = frame.toPDU();
+		assertEquals(0x01020304, decoded.getSequenceNumber());
+		assertEquals("123", ((SubmitSM) decoded).getDestAddr().getAddress());
+	}
+
+	@Test
+	public void testResponseWithoutBody() throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setSequenceNumber(9);
+		Frame response = Frame.createResponse(Frame.valueOf(submit), Data.ESME_RTHROTTLED);
+		assertFalse(response.isRequest());
+		assertEquals(Data.SUBMIT_SM_RESP, response.getCommandId());
+		assertEquals(Data.ESME_RTHROTTLED, response.getCommandStatus());
+		assertEquals(9, response.getSequenceNumber());
+		assertEquals(Data.PDU_HEADER_SIZE, response.getData().length);
+	}
+}
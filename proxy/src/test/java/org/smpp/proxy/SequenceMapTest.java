@@ -0,0 +1,53 @@
+package org.smpp.proxy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.smpp.Data;
+
+public class SequenceMapTest {
+
+	@Test
+	public void testMappedBack() {
+		SequenceMap<String> map = new SequenceMap<String>(3);
+		assertEquals(4, map.getCapacity());
+		int a = map.put("a", 7, Data.SUBMIT_SM);
+		int b = map.put("b", 7, Data.SUBMIT_SM);
+		assertTrue(a != b);
+		assertEquals(2, map.size());
+		SequenceMap.Mapping<String> mapping = map.remove(b);
+		assertEquals("b", mapping.getOrigin());
+		assertEquals(7, mapping.getSequenceNumber());
+		assertNull(map.remove(b));
+		assertEquals("a", map.remove(a).getOrigin());
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void testFullAndPendingSlotsSkipped() {
+		SequenceMap<String> map = new SequenceMap<String>(4);
+		int first = map.put("a", 1, Data.SUBMIT_SM);
+		for (int i = 2; i <= 4; i++) {
+			assertTrue(map.put("a", i, Data.SUBMIT_SM) > 0);
+		}
+		assertEquals(-1, map.put("a", 5, Data.SUBMIT_SM));
+		int second = map.remove(first + 1).getSequenceNumber();
+		assertEquals(2, second);
+		// the only free slot is reused with a new sequence number
+		int mapped = map.put("b", 6, Data.SUBMIT_SM);
+		assertTrue(mapped > first + 3);
+		assertNull(map.remove(first + 1));
+		assertEquals("b", map.remove(mapped).getOrigin());
+	}
+
+	@Test
+	public void testPurgedByOrigin() {
+		SequenceMap<String> map = new SequenceMap<String>(8);
+		int a = map.put("a", 1, Data.SUBMIT_SM);
+		map.put("b", 2, Data.SUBMIT_SM);
+		map.put("b", 3, Data.SUBMIT_SM);
+		assertEquals(2, map.purge(Long.MAX_VALUE, "b"));
+		assertEquals(1, map.size());
+		assertNotNull(map.remove(a));
+	}
+}
@@ -0,0 +1,144 @@
+package org.smpp.proxy;
+
+import static org.junit.Assert.*;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.smpp.Data;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+import org.smpp.pdu.Unbind;
+
+public class SmppProxyTest {
+	private ServerSocket smscSocket;
+	private SmppProxy proxy;
+	private UpstreamLink upstream;
+	private FrameConnection smsc;
+	private FrameConnection esme;
+
+	@Before
+	public void setup() throws Exception {
+		smscSocket = new ServerSocket(0);
+		smscSocket.setSoTimeout(5000);
+		ServerSocket free = new ServerSocket(0);
+		int port = free.getLocalPort();
+		free.close();
+
+		proxy = new SmppProxy(port, "proxy");
+		upstream = new UpstreamLink(proxy, "a", "127.0.0.1", smscSocket.getLocalPort(), "user", "secret");
+		upstream.setReconnectInterval(100);
+		proxy.addUpstream(upstream);
+		PrefixRouter router = new PrefixRouter();
+		router.setDefaultRoute(upstream);
+		proxy.setRouter(router);
+		proxy.start();
+
+		// the proxy connects to the SMSC and binds as a transceiver
+		Socket accepted = smscSocket.accept();
+		smsc = new FrameConnection(new TCPIPConnection(accepted));
+		Frame bind = receive(smsc);
+		assertEquals(Data.BIND_TRANSCEIVER, bind.getCommandId());
+		smsc.send(Frame.valueOf(((Request) bind.toPDU()).getResponse()));
+		for (int i = 0; (i < 100) && !upstream.isBound(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(upstream.isBound());
+
+		TCPIPConnection connection = new TCPIPConnection("127.0.0.1", port);
+		connection.open();
+		esme = new FrameConnection(connection);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		esme.close();
+		smsc.close();
+		smscSocket.close();
+		proxy.stop();
+	}
+
+	private static Frame receive(FrameConnection connection) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		Frame frame;
+		while (((frame = connection.receive()) == null) && (System.currentTimeMillis() < deadline)) {
+		}
+		assertNotNull(frame);
+		return frame;
+	}
+
+	private static void send(FrameConnection connection, PDU pdu, int sequenceNumber) throws Exception {
+		pdu.setSequenceNumber(sequenceNumber);
+		connection.send(Frame.valueOf(pdu));
+	}
+
+	private static SubmitSM submit(String text) throws Exception {
+		SubmitSM submit = new SubmitSM();
+		submit.setDestAddr("420600111222");
+		submit.setShortMessage(text);
+		return submit;
+	}
+
+	@Test(timeout = 30000)
+	public void testForwardedAndAnswered() throws Exception {
+		BindTransmitter bind = new BindTransmitter();
+		bind.setSystemId("esme");
+		bind.setPassword("secret");
+		send(esme, bind, 1);
+		Frame response = receive(esme);
+		assertEquals(Data.BIND_TRANSMITTER_RESP, response.getCommandId());
+		assertEquals(Data.ESME_ROK, response.getCommandStatus());
+		assertEquals(1, response.getSequenceNumber());
+
+		send(esme, new EnquireLink(), 2);
+		response = receive(esme);
+		assertEquals(Data.ENQUIRE_LINK_RESP, response.getCommandId());
+		assertEquals(2, response.getSequenceNumber());
+
+		// forwarded with the sequence number of the upstream link
+		send(esme, submit("first"), 3);
+		Frame forwarded = receive(smsc);
+		assertEquals(Data.SUBMIT_SM, forwarded.getCommandId());
+		assertEquals("420600111222", forwarded.getDestAddr());
+		assertTrue(forwarded.getSequenceNumber() != 3);
+		assertEquals(1, upstream.getPendingCount());
+		SubmitSMResp submitResp = (SubmitSMResp) ((Request) forwarded.toPDU()).getResponse();
+		submitResp.setMessageId("m1");
+		smsc.send(Frame.valueOf(submitResp));
+		response = receive(esme);
+		assertEquals(Data.SUBMIT_SM_RESP, response.getCommandId());
+		assertEquals(3, response.getSequenceNumber());
+		assertEquals("m1", ((SubmitSMResp) response.toPDU()).getMessageId());
+		assertEquals(0, upstream.getPendingCount());
+
+		send(esme, new Unbind(), 4);
+		response = receive(esme);
+		assertEquals(Data.UNBIND_RESP, response.getCommandId());
+		assertEquals(4, response.getSequenceNumber());
+	}
+
+	@Test(timeout = 30000)
+	public void testPendingAnsweredWhenUpstreamClosed() throws Exception {
+		BindTransmitter bind = new BindTransmitter();
+		bind.setSystemId("esme");
+		send(esme, bind, 1);
+		assertEquals(Data.ESME_ROK, receive(esme).getCommandStatus());
+
+		send(esme, submit("lost"), 7);
+		assertEquals(Data.SUBMIT_SM, receive(smsc).getCommandId());
+		smsc.close();
+		Frame response = receive(esme);
+		assertEquals(Data.SUBMIT_SM_RESP, response.getCommandId());
+		assertEquals(Data.ESME_RSYSERR, response.getCommandStatus());
+		assertEquals(7, response.getSequenceNumber());
+		assertEquals(0, upstream.getPendingCount());
+	}
+}
@@ -10,15 +10,15 @@
  */
 package org.smpp.smscsim;
 
-import java.util.Date;
-import java.text.SimpleDateFormat;
-
 import org.smpp.Data;
 import org.smpp.SmppObject;
 import org.smpp.debug.Debug;
 import org.smpp.pdu.DeliverSM;
+import org.smpp.pdu.DeliveryReceipt;
+import org.smpp.pdu.PDUException;
+import org.smpp.pdu.SmppTime;
 import org.smpp.pdu.SubmitSM;
-import org.smpp.pdu.WrongLengthOfStringException;
+import org.smpp.pdu.WrongDateFormatException;
 import org.smpp.util.ProcessingThread;
 import org.smpp.util.Queue;
 
@@ -42,32 +42,36 @@ public class DeliveryInfoSender extends ProcessingThread {
 	private static final String DLVR_INFO_SENDER_NAME = "DlvrInfoSender";
 	private static int dlvrInfoSenderIndex = 0;
 
-	private static final String DELIVERY_RCPT_DATE_FORMAT = "yyMMddHHmm";
-
-	private SimpleDateFormat dateFormatter = new SimpleDateFormat(DELIVERY_RCPT_DATE_FORMAT);
+	/**
+	 * Only used from the sender's thread.
+	 */
+	private DeliveryReceipt receipt = new DeliveryReceipt();
 
 	private long waitForQueueInterval = 5000; // in ms
 
 	private Debug debug = SmppObject.getDebug();
 
-	private static String[] states;
+	private static int[] states;
 
 	static {
-		states = new String[7];
-		states[DELIVERED] = "DELIVRD";
-		states[EXPIRED] = "EXPIRED";
-		states[DELETED] = "DELETED";
-		states[UNDELIVERABLE] = "UNDELIV";
-		states[ACCEPTED] = "ACCEPTD";
-		states[UNKNOWN] = "UNKNOWN";
-		states[REJECTED] = "REJECTD";
+		states = new int[7];
+		states[DELIVERED] = Data.SM_STATE_DELIVERED;
+		states[EXPIRED] = Data.SM_STATE_EXPIRED;
+		states[DELETED] = Data.SM_STATE_DELETED;
+		states[UNDELIVERABLE] = Data.SM_STATE_UNDELIVERABLE;
+		states[ACCEPTED] = Data.SM_STATE_ACCEPTED;
+		states[UNKNOWN] = Data.SM_STATE_INVALID;
+		states[REJECTED] = Data.SM_STATE_REJECTED;
 	}
 
 	private Queue submitRequests = new Queue();
 
 	public void submit(PDUProcessor processor, SubmitSM submitRequest, String messageId, int stat, int err) {
 		DeliveryInfoEntry entry = new DeliveryInfoEntry(processor, submitRequest, stat, err, messageId);
-		submitRequests.enqueue(entry);
+		synchronized (submitRequests) {
+			submitRequests.enqueue(entry);
+			submitRequests.notify();
+		}
 	}
 
 	public void submit(PDUProcessor processor, SubmitSM submitRequest, String messageId) {
@@ -78,31 +82,29 @@ public class DeliveryInfoSender extends ProcessingThread {
 		debug.enter(this, "deliver");
 		SubmitSM submit = entry.submit;
 		DeliverSM deliver = new DeliverSM();
-                deliver.setEsmClass((byte)Data.SM_SMSC_DLV_RCPT_TYPE);
-                
 		deliver.setSourceAddr(submit.getDestAddr());
 		deliver.setDestAddr(submit.getDestAddr());
-                
-                deliver.setDataCoding((byte) 0x03); // ISO-Latin-1
-		String msg = "";
-		msg += "id:" + entry.messageId + " ";
-		msg += "sub:" + entry.sub + " ";
-		msg += "dlvrd:" + entry.dlvrd + " ";
-		msg += "submit date:" + formatDate(entry.submitted) + " ";
-		msg += "done date:" + formatDate(System.currentTimeMillis()) + " ";
-		msg += "stat:" + states[entry.stat] + " ";
-		msg += "err:" + entry.err + " ";
-		String shortMessage = submit.getShortMessage();
-		if (shortMessage == null) {
-			msg += "text:";
-		} else {
-			int msgLen = shortMessage.length();
-			msg += "text:" + shortMessage.substring(0, (msgLen > 20 ? 20 : msgLen));
+
+		deliver.setDataCoding((byte) 0x03); // ISO-Latin-1
+		long now = System.currentTimeMillis();
+		if ((entry.stat == DELIVERED) && (entry.expires != 0) && (now > entry.expires)) {
+			// the validity period passed before the message could be delivered
+			entry.stat = EXPIRED;
+			entry.dlvrd = 0;
 		}
+		receipt.clear();
+		receipt.setMessageId(entry.messageId);
+		receipt.setSubmitted(entry.sub);
+		receipt.setDelivered(entry.dlvrd);
+		receipt.setSubmitDate(entry.submitted);
+		receipt.setDoneDate(now);
+		receipt.setState(states[entry.stat]);
+		receipt.setError(entry.err);
+		receipt.setText(submit.getShortMessage());
 		try {
-			deliver.setShortMessage(msg);
+			receipt.write(deliver);
 			deliver.setServiceType(submit.getServiceType());
-		} catch (WrongLengthOfStringException e) {
+		} catch (PDUException e) {
 		}
 		try {
 			entry.processor.serverRequest(deliver);
@@ -115,7 +117,10 @@ public class DeliveryInfoSender extends ProcessingThread {
 		if (submitRequests.isEmpty()) {
 			try {
 				synchronized (submitRequests) {
-					submitRequests.wait(waitForQueueInterval);
+					// submit() notifies us, the interval is only a safety net
+					if (submitRequests.isEmpty()) {
+						submitRequests.wait(waitForQueueInterval);
+					}
 				}
 			} catch (InterruptedException e) {
 				// it's ok to be interrupted when waiting
@@ -127,6 +132,14 @@ public class DeliveryInfoSender extends ProcessingThread {
 		}
 	}
 
+	protected void stopProcessing(Exception e) {
+		super.stopProcessing(e);
+		// don't let stop() wait for the rest of the queue wait interval
+		synchronized (submitRequests) {
+			submitRequests.notify();
+		}
+	}
+
 	public String getThreadName() {
 		return DLVR_INFO_SENDER_NAME;
 	}
@@ -135,12 +148,6 @@ public class DeliveryInfoSender extends ProcessingThread {
 		return ++dlvrInfoSenderIndex;
 	}
 
-	private String formatDate(long ms) {
-		synchronized (dateFormatter) {
-			return dateFormatter.format(new Date(ms));
-		}
-	}
-
 	protected class DeliveryInfoEntry {
 		public PDUProcessor processor;
 		public SubmitSM submit;
@@ -150,6 +157,8 @@ public class DeliveryInfoSender extends ProcessingThread {
 		public int err;
 		public String messageId;
 		public long submitted = System.currentTimeMillis();
+		/** When the validity period of the message ends, 0 if it doesn't. */
+		public long expires;
 
 		public DeliveryInfoEntry(PDUProcessor processor, SubmitSM submit, int stat, int err, String messageId) {
 			this.processor = processor;
@@ -157,6 +166,14 @@ public class DeliveryInfoSender extends ProcessingThread {
 			this.stat = stat;
 			this.err = err;
 			this.messageId = messageId;
+			String validityPeriod = submit.getValidityPeriod();
+			if ((validityPeriod != null) && (validityPeriod.length() > 0)) {
+				try {
+					expires = SmppTime.parse(validityPeriod).toMillis(submitted);
+				} catch (WrongDateFormatException e) {
+					debug.write("invalid validity period " + validityPeriod);
+				}
+			}
 		}
 	}
 }
@@ -92,19 +92,29 @@ public class SMSCListenerImpl extends SmppObject implements Runnable, SMSCListen
 
 	/**
 	 * Signals the listener that it should stop listening and wait
-	 * until the listener stops. Note that based on the timeout settings
-	 * it can take some time befor this method is finished -- the listener
-	 * can be blocked on i/o operation and only after exiting i/o
-	 * it can detect that it should stop.
+	 * until the listener stops. The listening socket is closed first,
+	 * so the listener blocked in accept is released immediately and
+	 * the method returns as soon as the listener signals it has finished.
 	 * @see #start()
 	 */
 	public synchronized void stop() throws IOException {
 		debug.write("going to stop SMSCListener on port " + port);
 		keepReceiving = false;
-		while (isReceiving) {
-			Thread.yield();
+		try {
+			serverConn.close();
+		} finally {
+			boolean interrupted = false;
+			while (isReceiving) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
-		serverConn.close();
 		debug.write("SMSCListener stopped on port " + port);
 	}
 
@@ -125,7 +135,10 @@ public class SMSCListenerImpl extends SmppObject implements Runnable, SMSCListen
 				Thread.yield();
 			}
 		} finally {
-			isReceiving = false;
+			synchronized (this) {
+				isReceiving = false;
+				notifyAll();
+			}
 		}
 		debug.exit(this);
 	}